@@ -0,0 +1,74 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.benchmarks;
+
+import com.microsoft.azure.storage.blob.PipelineOptions;
+import com.microsoft.azure.storage.blob.SharedKeyCredentials;
+import com.microsoft.azure.storage.blob.StorageURL;
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpPipeline;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.InvalidKeyException;
+
+/**
+ * The account, URLs and pipelines shared by the benchmarks.
+ */
+final class Fixtures {
+
+    static final String ACCOUNT_NAME = "benchmarkaccount";
+
+    // Any valid Base64 key will do; nothing checks the signatures.
+    static final String ACCOUNT_KEY =
+            "Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==";
+
+    static final String SERVICE_URL = "https://" + ACCOUNT_NAME + ".blob.core.windows.net";
+
+    static final String CONTAINER_NAME = "benchmarkcontainer";
+
+    static final String BLOB_NAME = "directory/benchmark blob.txt";
+
+    private Fixtures() {
+        // Static members only.
+    }
+
+    static SharedKeyCredentials credentials() {
+        try {
+            return new SharedKeyCredentials(ACCOUNT_NAME, ACCOUNT_KEY);
+        } catch (InvalidKeyException e) {
+            throw new Error(e); // The key is a constant.
+        }
+    }
+
+    static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new Error(e); // The URLs are constants.
+        }
+    }
+
+    /**
+     * @return
+     *      The pipeline {@link StorageURL#createPipeline} builds with default options and SharedKey credentials, over
+     *      the given client.
+     */
+    static HttpPipeline defaultPipeline(HttpClient client) {
+        PipelineOptions options = new PipelineOptions();
+        options.client = client;
+        return StorageURL.createPipeline(credentials(), options);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.benchmarks;
+
+import com.microsoft.azure.storage.blob.BlockBlobURL;
+import com.microsoft.azure.storage.blob.CommonRestResponse;
+import com.microsoft.azure.storage.blob.Highlevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures uploading a buffer in blocks with {@link Highlevel}: splitting it, naming the blocks and sending a Put
+ * Block for each and a Put Block List at the end. Dividing by the number of blocks gives the per-block overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HighlevelBenchmarks {
+
+    /**
+     * The size of the buffer uploaded.
+     */
+    @Param({"67108864"})
+    public int dataLength;
+
+    /**
+     * The size of each block. The upload sends {@code dataLength / blockLength} blocks.
+     */
+    @Param({"65536", "4194304"})
+    public int blockLength;
+
+    private ByteBuffer data;
+
+    private BlockBlobURL blobURL;
+
+    @Setup
+    public void setup() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ETag", "\"0x8D58EBE3A5A8B2C\"");
+        headers.put("Last-Modified", "Wed, 21 Mar 2018 00:00:00 GMT");
+        headers.put("x-ms-request-id", "bc2fe5c7-001e-0049-3a9f-c0b2ce000000");
+        headers.put("x-ms-version", "2017-04-17");
+        headers.put("x-ms-request-server-encrypted", "true");
+        headers.put("Date", "Wed, 21 Mar 2018 00:00:00 GMT");
+
+        this.data = ByteBuffer.allocateDirect(this.dataLength);
+        this.blobURL = new BlockBlobURL(Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME + "/"
+                + Fixtures.BLOB_NAME), Fixtures.defaultPipeline(new CannedHttpClient(201, headers, new byte[0])));
+    }
+
+    @Benchmark
+    public CommonRestResponse uploadByteBufferToBlockBlob() {
+        return Highlevel.uploadByteBufferToBlockBlob(this.data, this.blobURL, this.blockLength,
+                Highlevel.UploadToBlockBlobOptions.DEFAULT).blockingGet();
+    }
+}
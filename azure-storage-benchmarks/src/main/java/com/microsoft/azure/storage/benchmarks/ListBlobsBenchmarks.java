@@ -0,0 +1,110 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.benchmarks;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.ListBlobsOptions;
+import com.microsoft.azure.storage.models.ListBlobsResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing a page of blobs, which is dominated by deserializing the XML body into a
+ * {@link ListBlobsResponse}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBlobsBenchmarks {
+
+    /**
+     * The number of blobs in the page. 5000 is the most the service returns in one response.
+     */
+    @Param({"5000"})
+    public int blobCount;
+
+    private ContainerURL containerURL;
+
+    @Setup
+    public void setup() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/xml");
+        headers.put("x-ms-request-id", "bc2fe5c7-001e-0049-3a9f-c0b2ce000000");
+        headers.put("x-ms-version", "2017-04-17");
+        headers.put("Date", "Wed, 21 Mar 2018 00:00:00 GMT");
+
+        CannedHttpClient client = new CannedHttpClient(200, headers,
+                listBlobsBody(this.blobCount).getBytes(Charset.forName("UTF-8")));
+        this.containerURL = new ContainerURL(Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME),
+                Fixtures.defaultPipeline(client));
+    }
+
+    @Benchmark
+    public ListBlobsResponse listBlobs() {
+        return this.containerURL.listBlobs(null, ListBlobsOptions.DEFAULT).blockingGet().body();
+    }
+
+    private static String listBlobsBody(int blobCount) {
+        StringBuilder body = new StringBuilder(blobCount * 1024);
+        body.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
+                .append("<EnumerationResults ServiceEndpoint=\"").append(Fixtures.SERVICE_URL)
+                .append("/\" ContainerName=\"").append(Fixtures.CONTAINER_NAME).append("\">")
+                .append("<MaxResults>").append(blobCount).append("</MaxResults>")
+                .append("<Blobs>");
+        for (int i = 0; i < blobCount; i++) {
+            body.append("<Blob>")
+                    .append("<Name>directory/blob").append(i).append(".txt</Name>")
+                    .append("<Properties>")
+                    .append("<Last-Modified>Wed, 21 Mar 2018 00:00:00 GMT</Last-Modified>")
+                    .append("<Etag>0x8D58EBE3A5A8B2C</Etag>")
+                    .append("<Content-Length>").append(i * 1024).append("</Content-Length>")
+                    .append("<Content-Type>application/octet-stream</Content-Type>")
+                    .append("<Content-Encoding />")
+                    .append("<Content-Language />")
+                    .append("<Content-MD5>1B2M2Y8AsgTpgAmY7PhCfg==</Content-MD5>")
+                    .append("<Cache-Control />")
+                    .append("<Content-Disposition />")
+                    .append("<BlobType>BlockBlob</BlobType>")
+                    .append("<AccessTier>Hot</AccessTier>")
+                    .append("<AccessTierInferred>true</AccessTierInferred>")
+                    .append("<LeaseStatus>unlocked</LeaseStatus>")
+                    .append("<LeaseState>available</LeaseState>")
+                    .append("<ServerEncrypted>true</ServerEncrypted>")
+                    .append("</Properties>")
+                    .append("</Blob>");
+        }
+        body.append("</Blobs>")
+                .append("<NextMarker>2!96!MDAwMDE2IWRpcmVjdG9yeS9ibG9iNTAwMCE-</NextMarker>")
+                .append("</EnumerationResults>");
+        return body.toString();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.benchmarks;
+
+import com.microsoft.azure.storage.blob.BlockBlobURL;
+import com.microsoft.azure.storage.blob.LoggingFactory;
+import com.microsoft.azure.storage.blob.LoggingOptions;
+import com.microsoft.azure.storage.blob.RequestIDFactory;
+import com.microsoft.azure.storage.blob.RequestRetryFactory;
+import com.microsoft.azure.storage.blob.RequestRetryOptions;
+import com.microsoft.azure.storage.blob.TelemetryFactory;
+import com.microsoft.azure.storage.blob.TelemetryOptions;
+import com.microsoft.rest.v2.http.HttpHeaders;
+import com.microsoft.rest.v2.http.HttpMethod;
+import com.microsoft.rest.v2.http.HttpPipeline;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import com.microsoft.rest.v2.policy.RequestPolicyFactory;
+import io.reactivex.Flowable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost each request policy adds to a request, and the cost of whole operations sent through the
+ * pipeline {@link com.microsoft.azure.storage.blob.StorageURL#createPipeline} builds. The terminal client does no
+ * I/O, so the difference between a policy and {@code none} is the policy's own overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmarks {
+
+    /**
+     * A pipeline with at most one of the policies {@code createPipeline} adds.
+     */
+    @State(Scope.Benchmark)
+    public static class SinglePolicy {
+
+        @Param({"none", "telemetry", "requestID", "retry", "sharedKey", "logging"})
+        public String policy;
+
+        HttpPipeline pipeline;
+
+        URL url;
+
+        @Setup
+        public void setup() {
+            this.pipeline = HttpPipeline.build(new CannedHttpClient(200, new HashMap<String, String>(), new byte[0]),
+                    policyFactories(this.policy));
+            this.url = Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME + "/blob?comp=metadata");
+        }
+
+        private static RequestPolicyFactory[] policyFactories(String policy) {
+            switch (policy) {
+                case "none":
+                    return new RequestPolicyFactory[0];
+                case "telemetry":
+                    return new RequestPolicyFactory[]{new TelemetryFactory(TelemetryOptions.DEFAULT)};
+                case "requestID":
+                    return new RequestPolicyFactory[]{new RequestIDFactory()};
+                case "retry":
+                    return new RequestPolicyFactory[]{new RequestRetryFactory(RequestRetryOptions.DEFAULT)};
+                case "sharedKey":
+                    return new RequestPolicyFactory[]{Fixtures.credentials()};
+                case "logging":
+                    return new RequestPolicyFactory[]{new LoggingFactory(LoggingOptions.DEFAULT)};
+                default:
+                    throw new IllegalArgumentException("Unknown policy: " + policy);
+            }
+        }
+    }
+
+    /**
+     * The pipeline {@code createPipeline} builds, over a client which answers as the service does to the operations
+     * below.
+     */
+    @State(Scope.Benchmark)
+    public static class DefaultPipeline {
+
+        BlockBlobURL existingBlobURL;
+
+        BlockBlobURL createdBlobURL;
+
+        Flowable<ByteBuffer> block;
+
+        @Setup
+        public void setup() {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Last-Modified", "Wed, 21 Mar 2018 00:00:00 GMT");
+            headers.put("ETag", "\"0x8D58EBE3A5A8B2C\"");
+            headers.put("Content-Length", "1024");
+            headers.put("Content-Type", "application/octet-stream");
+            headers.put("x-ms-blob-type", "BlockBlob");
+            headers.put("x-ms-lease-state", "available");
+            headers.put("x-ms-lease-status", "unlocked");
+            headers.put("x-ms-request-server-encrypted", "true");
+            headers.put("x-ms-request-id", "bc2fe5c7-001e-0049-3a9f-c0b2ce000000");
+            headers.put("x-ms-version", "2017-04-17");
+            headers.put("Date", "Wed, 21 Mar 2018 00:00:00 GMT");
+
+            URL url = Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME + "/" + Fixtures.BLOB_NAME);
+            this.existingBlobURL = new BlockBlobURL(url,
+                    Fixtures.defaultPipeline(new CannedHttpClient(200, headers, new byte[0])));
+            this.createdBlobURL = new BlockBlobURL(url,
+                    Fixtures.defaultPipeline(new CannedHttpClient(201, headers, new byte[0])));
+            this.block = Flowable.just(ByteBuffer.allocate(1024));
+        }
+    }
+
+    /**
+     * A bare request, as the generated code hands it to the pipeline, through a pipeline with one policy.
+     */
+    @Benchmark
+    public HttpResponse sendRequest(SinglePolicy state) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("x-ms-version", "2017-04-17");
+        headers.set("x-ms-meta-key", "value");
+        return state.pipeline.sendRequestAsync(new HttpRequest("benchmark", HttpMethod.PUT, state.url, headers, null,
+                null)).blockingGet();
+    }
+
+    /**
+     * A HEAD request and the decoding of its response headers.
+     */
+    @Benchmark
+    public Object getPropertiesAndMetadata(DefaultPipeline state) {
+        return state.existingBlobURL.getPropertiesAndMetadata(null).blockingGet();
+    }
+
+    /**
+     * A PUT with a 1 KiB body.
+     */
+    @Benchmark
+    public Object putBlock(DefaultPipeline state) {
+        return state.createdBlobURL.putBlock("YmxvY2s=", state.block, 1024, null).blockingGet();
+    }
+}
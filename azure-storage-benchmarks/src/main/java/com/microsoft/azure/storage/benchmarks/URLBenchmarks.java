@@ -0,0 +1,127 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.benchmarks;
+
+import com.microsoft.azure.storage.blob.BlobURLParts;
+import com.microsoft.azure.storage.blob.BlockBlobURL;
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.IPRange;
+import com.microsoft.azure.storage.blob.SASProtocol;
+import com.microsoft.azure.storage.blob.SASQueryParameters;
+import com.microsoft.azure.storage.blob.ServiceSASSignatureValues;
+import com.microsoft.azure.storage.blob.ServiceURL;
+import com.microsoft.azure.storage.blob.SharedKeyCredentials;
+import com.microsoft.azure.storage.blob.URLParser;
+import com.microsoft.rest.v2.http.HttpPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building URL objects for containers and blobs, parsing blob URLs and producing SAS tokens.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class URLBenchmarks {
+
+    private HttpPipeline pipeline;
+
+    private ServiceURL serviceURL;
+
+    private ContainerURL containerURL;
+
+    private URL containerURLValue;
+
+    private URL sasBlobURLValue;
+
+    private SharedKeyCredentials credentials;
+
+    private ServiceSASSignatureValues sasValues;
+
+    private SASQueryParameters sasQueryParameters;
+
+    @Setup
+    public void setup() {
+        this.pipeline = Fixtures.defaultPipeline(new CannedHttpClient(200, new HashMap<String, String>(),
+                new byte[0]));
+        this.serviceURL = new ServiceURL(Fixtures.url(Fixtures.SERVICE_URL), this.pipeline);
+        this.containerURL = this.serviceURL.createContainerURL(Fixtures.CONTAINER_NAME);
+        this.containerURLValue = Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME);
+        this.credentials = Fixtures.credentials();
+
+        this.sasValues = new ServiceSASSignatureValues();
+        this.sasValues.protocol = SASProtocol.HTTPS_ONLY;
+        this.sasValues.expiryTime = new Date(1500000000000L);
+        this.sasValues.permissions = "r";
+        this.sasValues.ipRange = IPRange.DEFAULT;
+        this.sasValues.containerName = Fixtures.CONTAINER_NAME;
+        this.sasValues.blobName = Fixtures.BLOB_NAME;
+        this.sasQueryParameters = this.sasValues.GenerateSASQueryParameters(this.credentials);
+
+        this.sasBlobURLValue = Fixtures.url(Fixtures.SERVICE_URL + "/" + Fixtures.CONTAINER_NAME
+                + "/directory/benchmark%20blob.txt?snapshot=2018-03-21T00:00:00.0000000Z&"
+                + this.sasQueryParameters.encode());
+    }
+
+    @Benchmark
+    public ContainerURL newContainerURL() {
+        return new ContainerURL(this.containerURLValue, this.pipeline);
+    }
+
+    @Benchmark
+    public ContainerURL createContainerURL() {
+        return this.serviceURL.createContainerURL(Fixtures.CONTAINER_NAME);
+    }
+
+    @Benchmark
+    public BlockBlobURL createBlockBlobURL() {
+        return this.containerURL.createBlockBlobURL(Fixtures.BLOB_NAME);
+    }
+
+    @Benchmark
+    public BlobURLParts parseURL() throws UnknownHostException {
+        return URLParser.parse(this.sasBlobURLValue);
+    }
+
+    @Benchmark
+    public String encodeSAS() {
+        return this.sasQueryParameters.encode();
+    }
+
+    /**
+     * Signing the SAS values with the account key, the same HMAC the SharedKey policy computes for every request.
+     */
+    @Benchmark
+    public SASQueryParameters generateSAS() {
+        return this.sasValues.GenerateSASQueryParameters(this.credentials);
+    }
+}
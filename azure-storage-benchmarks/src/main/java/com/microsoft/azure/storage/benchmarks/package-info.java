@@ -0,0 +1,31 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * JMH benchmarks of the work the library does for each request: the pipeline policies, SharedKey and SAS signing,
+ * building and parsing URLs, formatting range headers, deserializing responses and splitting uploads into blocks.
+ * Every benchmark sends its requests to a terminal client which answers immediately without I/O, so the results do
+ * not depend on a network or a storage account.
+ *
+ * Build the benchmarks jar with {@code mvn -pl azure-storage-benchmarks -am package} and run it with the GC
+ * profiler, which reports allocations per operation ({@code gc.alloc.rate.norm}, in B/op) beside the throughput in
+ * ops/s:
+ * <pre>
+ * java -jar azure-storage-benchmarks/target/benchmarks.jar -prof gc
+ * </pre>
+ * A regular expression selects benchmarks, for example {@code java -jar benchmarks.jar PipelineBenchmarks -prof gc}.
+ * Compare runs of the same benchmarks on the same machine before and after a change.
+ */
+package com.microsoft.azure.storage.benchmarks;
@@ -0,0 +1,70 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.Date;
+
+/**
+ * Evaluates the If-Match, If-None-Match, If-Modified-Since and If-Unmodified-Since headers of a request.
+ */
+final class AccessConditions {
+
+    private AccessConditions() {
+    }
+
+    /**
+     * Checks the conditions against an existing resource. A read which fails an If-None-Match or If-Modified-Since
+     * condition is answered with 304 (Not Modified), and anything else which fails with 412 (Precondition Failed).
+     */
+    static void check(EmulatorRequest request, String etag, Date lastModified, boolean isRead) {
+        String ifMatch = request.header("If-Match");
+        if (ifMatch != null && !ifMatch.equals("*") && !ifMatch.equals(etag)) {
+            throw StorageError.conditionNotMet();
+        }
+        Date ifUnmodifiedSince = request.dateHeader("If-Unmodified-Since");
+        if (ifUnmodifiedSince != null && lastModified.after(ifUnmodifiedSince)) {
+            throw StorageError.conditionNotMet();
+        }
+        String ifNoneMatch = request.header("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.equals(etag))) {
+            throw notModified(isRead);
+        }
+        Date ifModifiedSince = request.dateHeader("If-Modified-Since");
+        if (ifModifiedSince != null && !lastModified.after(ifModifiedSince)) {
+            throw notModified(isRead);
+        }
+    }
+
+    /**
+     * Checks the conditions of a request which creates a resource if it does not exist.
+     */
+    static void checkCreate(EmulatorRequest request, String etag, Date lastModified, boolean exists) {
+        if (exists) {
+            check(request, etag, lastModified, false);
+        } else if (request.header("If-Match") != null) {
+            throw StorageError.conditionNotMet();
+        }
+    }
+
+    private static StorageError notModified(boolean isRead) {
+        if (isRead) {
+            return new StorageError(HttpResponseStatus.NOT_MODIFIED, "ConditionNotMet",
+                    "The condition specified using HTTP conditional header(s) is not met.");
+        }
+        return StorageError.conditionNotMet();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The bytes of a blob, or of a block of one. Reads of ranges which were never written return zeros, so page blobs
+ * may be sparse. Callers synchronize on the blob which owns the content.
+ */
+abstract class BlobContent {
+
+    /**
+     * Creates empty content, kept in a temporary file in the given directory, or in memory if it is null.
+     */
+    static BlobContent create(File dataDirectory) {
+        if (dataDirectory == null) {
+            return new MemoryBlobContent();
+        }
+        try {
+            return new FileBlobContent(dataDirectory);
+        } catch (IOException e) {
+            throw new StorageError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                    "InternalError", "The blob data could not be stored: " + e.getMessage());
+        }
+    }
+
+    abstract long length();
+
+    /**
+     * Truncates the content, or extends it with zeros.
+     */
+    abstract void setLength(long length);
+
+    /**
+     * Writes all the readable bytes of data at the offset, extending the content if needed. The reader index of data
+     * is not changed.
+     */
+    abstract void write(long offset, ByteBuf data);
+
+    /**
+     * Writes length bytes from the offset to the destination.
+     */
+    abstract void read(long offset, int length, ByteBuf destination);
+
+    /**
+     * Sets a range to zeros.
+     */
+    abstract void clear(long offset, long length);
+
+    /**
+     * Returns new content with the same bytes.
+     */
+    abstract BlobContent copy();
+
+    /**
+     * Frees the storage held by the content. It must not be used afterwards.
+     */
+    abstract void release();
+}
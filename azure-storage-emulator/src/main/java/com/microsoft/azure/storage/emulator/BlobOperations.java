@@ -0,0 +1,1081 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.w3c.dom.Element;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * The operations on blobs of all three types.
+ */
+final class BlobOperations {
+
+    private static final int MAX_PUT_BLOB_BYTES = 256 * 1024 * 1024;
+
+    private static final int MAX_PUT_BLOCK_BYTES = 100 * 1024 * 1024;
+
+    private static final int MAX_APPEND_BLOCK_BYTES = 4 * 1024 * 1024;
+
+    private static final int MAX_RANGE_MD5_BYTES = 4 * 1024 * 1024;
+
+    private static final int MAX_BLOCKS = 50000;
+
+    private static final int MAX_UNCOMMITTED_BLOCKS = 100000;
+
+    private static final String ARCHIVE = "Archive";
+
+    private final StorageAccount account;
+
+    private final ContainerOperations containers;
+
+    BlobOperations(StorageAccount account, ContainerOperations containers) {
+        this.account = account;
+        this.containers = containers;
+    }
+
+    EmulatorResponse handle(EmulatorRequest request) {
+        String comp = request.query("comp");
+        HttpMethod method = request.method();
+        boolean isRead = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+        if (HttpMethod.PUT.equals(method)) {
+            if (comp == null) {
+                return request.header("x-ms-copy-source") == null ? putBlob(request) : copy(request);
+            }
+            switch (comp) {
+                case "block":
+                    return putBlock(request);
+                case "blocklist":
+                    return putBlockList(request);
+                case "page":
+                    return putPage(request);
+                case "appendblock":
+                    return appendBlock(request);
+                case "properties":
+                    return setProperties(request);
+                case "metadata":
+                    return setMetadata(request);
+                case "lease":
+                    return lease(request);
+                case "snapshot":
+                    return snapshot(request);
+                case "copy":
+                    return abortCopy(request);
+                case "tier":
+                    return setTier(request);
+                case "undelete":
+                    return undelete(request);
+                default:
+                    throw StorageError.invalidQueryParameter("comp");
+            }
+        } else if (isRead) {
+            if (comp == null) {
+                return get(request);
+            }
+            switch (comp) {
+                case "metadata":
+                    return getMetadata(request);
+                case "blocklist":
+                    return getBlockList(request);
+                case "pagelist":
+                    return getPageRanges(request);
+                default:
+                    throw StorageError.invalidQueryParameter("comp");
+            }
+        } else if (HttpMethod.DELETE.equals(method) && comp == null) {
+            return delete(request);
+        }
+        throw BlobService.unsupportedVerb();
+    }
+
+    /**
+     * Returns the blob with its lock held, creating an entry for it if create is set. The caller must unlock it.
+     */
+    private StoredBlob lockBlob(EmulatorRequest request, boolean create) {
+        StoredContainer container = this.containers.container(request.containerName());
+        String name = request.blobName();
+        while (true) {
+            StoredBlob blob = container.blobs.get(name);
+            if (blob == null) {
+                if (!create) {
+                    throw blobNotFound();
+                }
+                StoredBlob created = new StoredBlob(name);
+                blob = container.blobs.putIfAbsent(name, created);
+                if (blob == null) {
+                    blob = created;
+                }
+            }
+            blob.lock.lock();
+            if (!blob.removed) {
+                return blob;
+            }
+            blob.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the existing blob with its lock held. The caller must unlock it.
+     */
+    private StoredBlob lockExistingBlob(EmulatorRequest request) {
+        StoredBlob blob = lockBlob(request, false);
+        if (!blob.exists) {
+            blob.lock.unlock();
+            throw blobNotFound();
+        }
+        return blob;
+    }
+
+    /**
+     * Returns the snapshot named by the request, or the blob itself.
+     */
+    private static StoredBlob target(EmulatorRequest request, StoredBlob blob) {
+        String snapshot = request.query("snapshot");
+        if (snapshot == null) {
+            return blob;
+        }
+        StoredBlob target = blob.snapshots.get(snapshot);
+        if (target == null) {
+            throw blobNotFound();
+        }
+        return target;
+    }
+
+    private void removeIfEmpty(EmulatorRequest request, StoredBlob blob) {
+        if (!blob.exists && blob.uncommittedBlocks.isEmpty()) {
+            blob.removed = true;
+            this.containers.container(request.containerName()).blobs.remove(blob.name, blob);
+        }
+    }
+
+    private void touch(StoredBlob blob) {
+        blob.etag = this.account.nextETag();
+        blob.lastModified = StorageAccount.now();
+    }
+
+    static StorageError blobNotFound() {
+        return new StorageError(HttpResponseStatus.NOT_FOUND, "BlobNotFound", "The specified blob does not exist.");
+    }
+
+    private static StorageError invalidBlobType() {
+        return new StorageError(HttpResponseStatus.CONFLICT, "InvalidBlobType",
+                "The blob type is invalid for this operation.");
+    }
+
+    private static StorageError requestBodyTooLarge() {
+        return new StorageError(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, "RequestBodyTooLarge",
+                "The request body is too large and exceeds the maximum permissible limit.");
+    }
+
+    private static void checkType(StoredBlob blob, String type) {
+        if (!type.equals(blob.type)) {
+            throw invalidBlobType();
+        }
+    }
+
+    private static void checkNotArchived(StoredBlob blob) {
+        if (ARCHIVE.equals(blob.accessTier)) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "BlobArchived",
+                    "This operation is not permitted on an archived blob.");
+        }
+    }
+
+    /*
+     Checks the lease and conditions of a write to a blob which may not exist yet.
+     */
+    private static void checkCreate(EmulatorRequest request, StoredBlob blob) {
+        if (blob.exists) {
+            blob.lease.checkWrite(request.header("x-ms-lease-id"));
+        }
+        AccessConditions.checkCreate(request, blob.etag, blob.lastModified, blob.exists);
+    }
+
+    private static void checkWrite(EmulatorRequest request, StoredBlob blob) {
+        blob.lease.checkWrite(request.header("x-ms-lease-id"));
+        AccessConditions.check(request, blob.etag, blob.lastModified, false);
+    }
+
+    static String md5(ByteBuf data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            ByteBuffer[] buffers = data.nioBuffers();
+            for (ByteBuffer buffer : buffers) {
+                digest.update(buffer);
+            }
+            return base64(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String base64(byte[] bytes) {
+        ByteBuf encoded = Base64.encode(Unpooled.wrappedBuffer(bytes), false);
+        try {
+            return encoded.toString(Charset.forName("US-ASCII"));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    /*
+     Checks the transactional Content-MD5 of a request body.
+     */
+    private static String checkContentMD5(EmulatorRequest request) {
+        String md5 = md5(request.body());
+        String expected = request.header("Content-MD5");
+        if (expected != null && !expected.equals(md5)) {
+            throw StorageError.badRequest("Md5Mismatch",
+                    "The MD5 value specified in the request did not match with the MD5 value calculated by the "
+                            + "server.");
+        }
+        return md5;
+    }
+
+    private static void setPropertiesFromHeaders(EmulatorRequest request, StoredBlob blob, String contentMD5) {
+        blob.setProperties(request.header("x-ms-blob-content-type"), request.header("x-ms-blob-content-encoding"),
+                request.header("x-ms-blob-content-language"), contentMD5, request.header("x-ms-blob-cache-control"),
+                request.header("x-ms-blob-content-disposition"));
+    }
+
+    private static void clearCopy(StoredBlob blob) {
+        blob.copyId = null;
+        blob.copyStatus = null;
+        blob.copySource = null;
+        blob.copyProgress = null;
+        blob.copyCompletionTime = null;
+    }
+
+    private static long pageAlignedLength(EmulatorRequest request) {
+        Long length = request.longHeader("x-ms-blob-content-length");
+        if (length == null) {
+            throw StorageError.missingHeader("x-ms-blob-content-length");
+        }
+        if (length < 0 || length % StoredBlob.PAGE_SIZE != 0) {
+            throw StorageError.invalidHeader("x-ms-blob-content-length");
+        }
+        return length;
+    }
+
+    private EmulatorResponse putBlob(EmulatorRequest request) {
+        String type = request.requiredHeader("x-ms-blob-type");
+        ByteBuf body = request.body();
+        String contentMD5 = checkContentMD5(request);
+        List<Block> blocks = new ArrayList<Block>();
+        BlobContent pages = null;
+        long sequenceNumber = 0;
+        String blobContentMD5 = request.header("x-ms-blob-content-md5");
+        if (type.equals(StoredBlob.BLOCK_BLOB)) {
+            if (body.readableBytes() > MAX_PUT_BLOB_BYTES) {
+                throw requestBodyTooLarge();
+            }
+            if (blobContentMD5 == null) {
+                blobContentMD5 = contentMD5;
+            }
+        } else if (type.equals(StoredBlob.PAGE_BLOB) || type.equals(StoredBlob.APPEND_BLOB)) {
+            if (body.isReadable()) {
+                throw StorageError.invalidHeader("Content-Length");
+            }
+            if (type.equals(StoredBlob.PAGE_BLOB)) {
+                Long requestedSequenceNumber = request.longHeader("x-ms-blob-sequence-number");
+                sequenceNumber = requestedSequenceNumber == null ? 0 : requestedSequenceNumber;
+            }
+        } else {
+            throw StorageError.invalidHeader("x-ms-blob-type");
+        }
+
+        StoredBlob blob = lockBlob(request, true);
+        try {
+            checkCreate(request, blob);
+            if (type.equals(StoredBlob.BLOCK_BLOB)) {
+                BlobContent content = this.account.newContent();
+                content.write(0, body);
+                blocks.add(new Block(null, content));
+            } else if (type.equals(StoredBlob.PAGE_BLOB)) {
+                pages = this.account.newContent();
+                pages.setLength(pageAlignedLength(request));
+            }
+            blob.replaceData(type, blocks, pages);
+            blob.sequenceNumber = sequenceNumber;
+            setPropertiesFromHeaders(request, blob, blobContentMD5);
+            Map<String, String> metadata = request.metadata();
+            blob.metadata = metadata == null ? new LinkedHashMap<String, String>() : metadata;
+            blob.exists = true;
+            blob.accessTier = null;
+            clearCopy(blob);
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("Content-MD5", type.equals(StoredBlob.BLOCK_BLOB) ? contentMD5 : null)
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse putBlock(EmulatorRequest request) {
+        String blockId = request.query("blockid");
+        if (blockId == null || blockId.isEmpty()) {
+            throw StorageError.invalidQueryParameter("blockid");
+        }
+        ByteBuf body = request.body();
+        if (body.readableBytes() > MAX_PUT_BLOCK_BYTES) {
+            throw requestBodyTooLarge();
+        }
+        String contentMD5 = checkContentMD5(request);
+
+        StoredBlob blob = lockBlob(request, true);
+        try {
+            if (blob.exists) {
+                checkType(blob, StoredBlob.BLOCK_BLOB);
+                blob.lease.checkWrite(request.header("x-ms-lease-id"));
+            }
+            if (blob.uncommittedBlocks.size() >= MAX_UNCOMMITTED_BLOCKS
+                    && !blob.uncommittedBlocks.containsKey(blockId)) {
+                throw new StorageError(HttpResponseStatus.CONFLICT, "BlockCountExceedsLimit",
+                        "The uncommitted block count cannot exceed the maximum limit of 100,000 blocks.");
+            }
+            BlobContent content = this.account.newContent();
+            content.write(0, body);
+            Block replaced = blob.uncommittedBlocks.put(blockId, new Block(blockId, content));
+            if (replaced != null) {
+                replaced.content.release();
+            }
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("Content-MD5", contentMD5)
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse putBlockList(EmulatorRequest request) {
+        Element blockList = Xml.parse(request.body());
+        if (!blockList.getTagName().equals("BlockList")) {
+            throw Xml.invalidXml();
+        }
+
+        StoredBlob blob = lockBlob(request, true);
+        try {
+            if (blob.exists) {
+                checkType(blob, StoredBlob.BLOCK_BLOB);
+            }
+            checkCreate(request, blob);
+            Map<String, Block> committed = new HashMap<String, Block>();
+            for (Block block : blob.blocks) {
+                if (block.id != null) {
+                    committed.put(block.id, block);
+                }
+            }
+            List<Block> blocks = new ArrayList<Block>();
+            for (Element element : Xml.children(blockList)) {
+                String id = element.getTextContent().trim();
+                Block block;
+                switch (element.getTagName()) {
+                    case "Committed":
+                        block = committed.get(id);
+                        break;
+                    case "Uncommitted":
+                        block = blob.uncommittedBlocks.get(id);
+                        break;
+                    case "Latest":
+                        block = blob.uncommittedBlocks.get(id);
+                        if (block == null) {
+                            block = committed.get(id);
+                        }
+                        break;
+                    default:
+                        throw Xml.invalidXml();
+                }
+                if (block == null) {
+                    throw StorageError.badRequest("InvalidBlockList", "The specified block list is invalid.");
+                }
+                blocks.add(block);
+            }
+            if (blocks.size() > MAX_BLOCKS) {
+                throw new StorageError(HttpResponseStatus.CONFLICT, "BlockCountExceedsLimit",
+                        "The committed block count cannot exceed the maximum limit of 50,000 blocks.");
+            }
+
+            blob.replaceData(StoredBlob.BLOCK_BLOB, blocks, null);
+            setPropertiesFromHeaders(request, blob, request.header("x-ms-blob-content-md5"));
+            Map<String, String> metadata = request.metadata();
+            blob.metadata = metadata == null ? new LinkedHashMap<String, String>() : metadata;
+            blob.exists = true;
+            blob.accessTier = null;
+            clearCopy(blob);
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse getBlockList(EmulatorRequest request) {
+        String listType = request.query("blocklisttype");
+        if (listType == null) {
+            listType = "committed";
+        }
+        boolean committed = listType.equals("committed") || listType.equals("all");
+        boolean uncommitted = listType.equals("uncommitted") || listType.equals("all");
+        if (!committed && !uncommitted) {
+            throw StorageError.invalidQueryParameter("blocklisttype");
+        }
+
+        StoredBlob blob = lockBlob(request, false);
+        try {
+            StoredBlob target = target(request, blob);
+            if (!target.exists && (committed || target.uncommittedBlocks.isEmpty())) {
+                throw blobNotFound();
+            }
+            if (target.exists) {
+                checkType(target, StoredBlob.BLOCK_BLOB);
+            }
+            if (target == blob) {
+                blob.lease.checkRead(request.header("x-ms-lease-id"));
+            }
+            Xml xml = new Xml().start("BlockList");
+            if (committed) {
+                xml.start("CommittedBlocks");
+                for (Block block : target.blocks) {
+                    if (block.id != null) {
+                        xml.start("Block").element("Name", block.id).element("Size", block.size()).end("Block");
+                    }
+                }
+                xml.end("CommittedBlocks");
+            }
+            if (uncommitted) {
+                xml.start("UncommittedBlocks");
+                for (Block block : target.uncommittedBlocks.values()) {
+                    xml.start("Block").element("Name", block.id).element("Size", block.size()).end("Block");
+                }
+                xml.end("UncommittedBlocks");
+            }
+            xml.end("BlockList");
+            EmulatorResponse response = new EmulatorResponse(HttpResponseStatus.OK).xmlBody(xml);
+            if (target.exists) {
+                response.header("ETag", target.etag)
+                        .dateHeader("Last-Modified", target.lastModified)
+                        .header("x-ms-blob-content-length", target.length());
+            }
+            return response;
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse putPage(EmulatorRequest request) {
+        String pageWrite = request.requiredHeader("x-ms-page-write");
+        boolean update = pageWrite.equals("update");
+        if (!update && !pageWrite.equals("clear")) {
+            throw StorageError.invalidHeader("x-ms-page-write");
+        }
+        long[] range = request.range();
+        if (range == null) {
+            throw StorageError.missingHeader("x-ms-range");
+        }
+        long start = range[0];
+        long end = range[1] + 1;
+        if (range[1] == Long.MAX_VALUE || start % StoredBlob.PAGE_SIZE != 0 || end % StoredBlob.PAGE_SIZE != 0) {
+            throw StorageError.invalidHeader("x-ms-range");
+        }
+        ByteBuf body = request.body();
+        String contentMD5 = null;
+        if (update) {
+            if (body.readableBytes() != end - start) {
+                throw StorageError.invalidHeader("Content-Length");
+            }
+            contentMD5 = checkContentMD5(request);
+        } else if (body.isReadable()) {
+            throw StorageError.invalidHeader("Content-Length");
+        }
+
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            checkType(blob, StoredBlob.PAGE_BLOB);
+            checkWrite(request, blob);
+            checkSequenceNumber(request, blob);
+            if (end > blob.pages.length()) {
+                throw new StorageError(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, "InvalidPageRange",
+                        "The page range specified is invalid.");
+            }
+            if (update) {
+                blob.pages.write(start, body);
+                blob.addPageRange(start, end);
+            } else {
+                blob.pages.clear(start, end - start);
+                blob.removePageRange(start, end);
+            }
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("Content-MD5", contentMD5)
+                    .header("x-ms-blob-sequence-number", blob.sequenceNumber)
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private static void checkSequenceNumber(EmulatorRequest request, StoredBlob blob) {
+        Long lessThanOrEqual = request.longHeader("x-ms-if-sequence-number-le");
+        Long lessThan = request.longHeader("x-ms-if-sequence-number-lt");
+        Long equal = request.longHeader("x-ms-if-sequence-number-eq");
+        if ((lessThanOrEqual != null && blob.sequenceNumber > lessThanOrEqual)
+                || (lessThan != null && blob.sequenceNumber >= lessThan)
+                || (equal != null && blob.sequenceNumber != equal)) {
+            throw new StorageError(HttpResponseStatus.PRECONDITION_FAILED, "SequenceNumberConditionNotMet",
+                    "The sequence number condition specified was not met.");
+        }
+    }
+
+    private EmulatorResponse getPageRanges(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            StoredBlob target = target(request, blob);
+            checkType(target, StoredBlob.PAGE_BLOB);
+            if (target == blob) {
+                blob.lease.checkRead(request.header("x-ms-lease-id"));
+            }
+            AccessConditions.check(request, target.etag, target.lastModified, true);
+
+            long length = target.pages.length();
+            long[] range = request.range();
+            long windowStart = range == null ? 0 : range[0];
+            long windowEnd = range == null || range[1] == Long.MAX_VALUE ? length : Math.min(length, range[1] + 1);
+
+            Xml xml = new Xml().start("PageList");
+            String previousSnapshot = request.query("prevsnapshot");
+            if (previousSnapshot == null) {
+                for (Map.Entry<Long, Long> pageRange : target.pageRanges.entrySet()) {
+                    long start = Math.max(pageRange.getKey(), windowStart);
+                    long end = Math.min(pageRange.getValue(), windowEnd);
+                    if (start < end) {
+                        writePageRange(xml, "PageRange", start, end);
+                    }
+                }
+            } else {
+                StoredBlob previous = blob.snapshots.get(previousSnapshot);
+                if (previous == null) {
+                    throw new StorageError(HttpResponseStatus.CONFLICT, "PreviousSnapshotNotFound",
+                            "The previous snapshot is not found.");
+                }
+                writePageRangesDiff(xml, target, previous, windowStart, windowEnd);
+            }
+            xml.end("PageList");
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .xmlBody(xml)
+                    .header("ETag", target.etag)
+                    .dateHeader("Last-Modified", target.lastModified)
+                    .header("x-ms-blob-content-length", length);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private static void writePageRange(Xml xml, String kind, long start, long end) {
+        xml.start(kind).element("Start", start).element("End", end - 1).end(kind);
+    }
+
+    /*
+     Writes the pages which differ between the blob and an earlier snapshot: written pages whose content changed as
+     PageRange, and pages which were written in the snapshot but are now clear as ClearRange. Pages rewritten with the
+     same content are not reported, unlike the service, which tracks writes rather than content.
+     */
+    private static void writePageRangesDiff(Xml xml, StoredBlob target, StoredBlob previous, long windowStart,
+            long windowEnd) {
+        StoredBlob union = new StoredBlob(target.name);
+        for (Map.Entry<Long, Long> pageRange : target.pageRanges.entrySet()) {
+            union.addPageRange(pageRange.getKey(), pageRange.getValue());
+        }
+        for (Map.Entry<Long, Long> pageRange : previous.pageRanges.entrySet()) {
+            union.addPageRange(pageRange.getKey(), pageRange.getValue());
+        }
+
+        ByteBuf current = Unpooled.buffer(StoredBlob.PAGE_SIZE);
+        ByteBuf earlier = Unpooled.buffer(StoredBlob.PAGE_SIZE);
+        String runKind = null;
+        long runStart = 0;
+        long runEnd = 0;
+        for (Map.Entry<Long, Long> pageRange : union.pageRanges.entrySet()) {
+            long end = Math.min(pageRange.getValue(), windowEnd);
+            for (long page = Math.max(pageRange.getKey(), windowStart); page < end; page += StoredBlob.PAGE_SIZE) {
+                boolean inTarget = isWritten(target, page);
+                boolean inPrevious = isWritten(previous, page) && page < previous.pages.length();
+                String kind = null;
+                if (inTarget) {
+                    if (inPrevious) {
+                        current.clear();
+                        earlier.clear();
+                        target.pages.read(page, StoredBlob.PAGE_SIZE, current);
+                        previous.pages.read(page, StoredBlob.PAGE_SIZE, earlier);
+                        if (!current.equals(earlier)) {
+                            kind = "PageRange";
+                        }
+                    } else {
+                        kind = "PageRange";
+                    }
+                } else if (inPrevious) {
+                    kind = "ClearRange";
+                }
+                if (kind != null && kind.equals(runKind) && runEnd == page) {
+                    runEnd = page + StoredBlob.PAGE_SIZE;
+                    continue;
+                }
+                if (runKind != null) {
+                    writePageRange(xml, runKind, runStart, runEnd);
+                }
+                runKind = kind;
+                runStart = page;
+                runEnd = page + StoredBlob.PAGE_SIZE;
+            }
+        }
+        if (runKind != null) {
+            writePageRange(xml, runKind, runStart, runEnd);
+        }
+    }
+
+    private static boolean isWritten(StoredBlob blob, long page) {
+        Map.Entry<Long, Long> pageRange = blob.pageRanges.floorEntry(page);
+        return pageRange != null && pageRange.getValue() > page;
+    }
+
+    private EmulatorResponse appendBlock(EmulatorRequest request) {
+        ByteBuf body = request.body();
+        if (body.readableBytes() > MAX_APPEND_BLOCK_BYTES) {
+            throw requestBodyTooLarge();
+        }
+        if (!body.isReadable()) {
+            throw StorageError.invalidHeader("Content-Length");
+        }
+        String contentMD5 = checkContentMD5(request);
+
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            checkType(blob, StoredBlob.APPEND_BLOB);
+            checkWrite(request, blob);
+            long length = blob.length();
+            Long appendPosition = request.longHeader("x-ms-blob-condition-appendpos");
+            if (appendPosition != null && appendPosition != length) {
+                throw new StorageError(HttpResponseStatus.PRECONDITION_FAILED, "AppendPositionConditionNotMet",
+                        "The append position condition specified was not met.");
+            }
+            Long maxSize = request.longHeader("x-ms-blob-condition-maxsize");
+            if (maxSize != null && length + body.readableBytes() > maxSize) {
+                throw new StorageError(HttpResponseStatus.PRECONDITION_FAILED, "MaxBlobSizeConditionNotMet",
+                        "The max blob size condition specified was not met.");
+            }
+            if (blob.blocks.size() >= MAX_BLOCKS) {
+                throw new StorageError(HttpResponseStatus.CONFLICT, "BlockCountExceedsLimit",
+                        "The committed block count cannot exceed the maximum limit of 50,000 blocks.");
+            }
+            BlobContent content = this.account.newContent();
+            content.write(0, body);
+            blob.blocks.add(new Block(null, content));
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("Content-MD5", contentMD5)
+                    .header("x-ms-blob-append-offset", length)
+                    .header("x-ms-blob-committed-block-count", blob.blocks.size())
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse setProperties(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            checkWrite(request, blob);
+            if (StoredBlob.PAGE_BLOB.equals(blob.type)) {
+                if (request.header("x-ms-blob-content-length") != null) {
+                    long length = pageAlignedLength(request);
+                    blob.pages.setLength(length);
+                    blob.removePageRange(length, Long.MAX_VALUE);
+                }
+                String action = request.header("x-ms-sequence-number-action");
+                Long sequenceNumber = request.longHeader("x-ms-blob-sequence-number");
+                if (action != null) {
+                    if (action.equals("increment")) {
+                        if (sequenceNumber != null) {
+                            throw StorageError.invalidHeader("x-ms-blob-sequence-number");
+                        }
+                        blob.sequenceNumber++;
+                    } else if (sequenceNumber == null) {
+                        throw StorageError.missingHeader("x-ms-blob-sequence-number");
+                    } else if (action.equals("update")) {
+                        blob.sequenceNumber = sequenceNumber;
+                    } else if (action.equals("max")) {
+                        blob.sequenceNumber = Math.max(blob.sequenceNumber, sequenceNumber);
+                    } else {
+                        throw StorageError.invalidHeader("x-ms-sequence-number-action");
+                    }
+                }
+            }
+            setPropertiesFromHeaders(request, blob, request.header("x-ms-blob-content-md5"));
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("x-ms-blob-sequence-number",
+                            StoredBlob.PAGE_BLOB.equals(blob.type) ? blob.sequenceNumber : null);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse setMetadata(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            checkWrite(request, blob);
+            Map<String, String> metadata = request.metadata();
+            blob.metadata = metadata == null ? new LinkedHashMap<String, String>() : metadata;
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified)
+                    .header("x-ms-request-server-encrypted", true);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse getMetadata(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            StoredBlob target = target(request, blob);
+            if (target == blob) {
+                blob.lease.checkRead(request.header("x-ms-lease-id"));
+            }
+            AccessConditions.check(request, target.etag, target.lastModified, true);
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", target.etag)
+                    .dateHeader("Last-Modified", target.lastModified)
+                    .metadata(target.metadata);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse get(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            StoredBlob target = target(request, blob);
+            if (target == blob) {
+                blob.lease.checkRead(request.header("x-ms-lease-id"));
+            }
+            AccessConditions.check(request, target.etag, target.lastModified, true);
+            long length = target.length();
+            EmulatorResponse response;
+            if (request.isHead()) {
+                response = new EmulatorResponse(HttpResponseStatus.OK)
+                        .header("Content-Length", length)
+                        .header("Content-MD5", target.contentMD5);
+            } else {
+                checkNotArchived(target);
+                long[] range = request.range();
+                long start = 0;
+                long end = length;
+                if (range != null) {
+                    if (range[0] >= length) {
+                        throw new StorageError(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, "InvalidRange",
+                                "The range specified is invalid for the current size of the resource.");
+                    }
+                    start = range[0];
+                    end = range[1] == Long.MAX_VALUE ? length : Math.min(length, range[1] + 1);
+                }
+                if (end - start > Integer.MAX_VALUE) {
+                    throw StorageError.badRequest("OutOfRangeInput",
+                            "The emulator returns at most 2GB in one response; read the blob in ranges.");
+                }
+                ByteBuf body = PooledByteBufAllocator.DEFAULT.heapBuffer((int) (end - start));
+                target.read(start, (int) (end - start), body);
+                response = new EmulatorResponse(range == null ? HttpResponseStatus.OK
+                        : HttpResponseStatus.PARTIAL_CONTENT);
+                response.body = body;
+                if (range == null) {
+                    response.header("Content-MD5", target.contentMD5);
+                } else {
+                    response.header("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length);
+                    if ("true".equals(request.header("x-ms-range-get-content-md5"))) {
+                        if (end - start > MAX_RANGE_MD5_BYTES) {
+                            body.release();
+                            throw StorageError.badRequest("OutOfRangeInput",
+                                    "The requested range is too large to compute its MD5.");
+                        }
+                        response.header("Content-MD5", md5(body));
+                    }
+                }
+            }
+            writeProperties(response, target, target == blob);
+            return response;
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private static void writeProperties(EmulatorResponse response, StoredBlob blob, boolean isBase) {
+        response.header("ETag", blob.etag)
+                .dateHeader("Last-Modified", blob.lastModified)
+                .header("x-ms-blob-type", blob.type)
+                .header("Content-Type", blob.contentType == null ? "application/octet-stream" : blob.contentType)
+                .header("Content-Encoding", blob.contentEncoding)
+                .header("Content-Language", blob.contentLanguage)
+                .header("Cache-Control", blob.cacheControl)
+                .header("Content-Disposition", blob.contentDisposition)
+                .metadata(blob.metadata)
+                .header("Accept-Ranges", "bytes")
+                .header("x-ms-server-encrypted", true)
+                .header("x-ms-copy-id", blob.copyId)
+                .header("x-ms-copy-status", blob.copyStatus)
+                .header("x-ms-copy-source", blob.copySource)
+                .header("x-ms-copy-progress", blob.copyProgress)
+                .dateHeader("x-ms-copy-completion-time", blob.copyCompletionTime);
+        if (isBase) {
+            response.header("x-ms-lease-state", blob.lease.leaseState())
+                    .header("x-ms-lease-status", blob.lease.leaseStatus())
+                    .header("x-ms-lease-duration", blob.lease.leaseDuration());
+        }
+        if (StoredBlob.PAGE_BLOB.equals(blob.type)) {
+            response.header("x-ms-blob-sequence-number", blob.sequenceNumber);
+        } else if (StoredBlob.APPEND_BLOB.equals(blob.type)) {
+            response.header("x-ms-blob-committed-block-count", blob.blocks.size());
+        } else {
+            response.header("x-ms-access-tier", blob.accessTier == null ? "Hot" : blob.accessTier)
+                    .header("x-ms-access-tier-inferred", blob.accessTier == null ? true : null);
+        }
+    }
+
+    private EmulatorResponse delete(EmulatorRequest request) {
+        String deleteSnapshots = request.header("x-ms-delete-snapshots");
+        if (deleteSnapshots != null && !deleteSnapshots.equals("include") && !deleteSnapshots.equals("only")) {
+            throw StorageError.invalidHeader("x-ms-delete-snapshots");
+        }
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            String snapshot = request.query("snapshot");
+            if (snapshot != null) {
+                if (deleteSnapshots != null) {
+                    throw StorageError.invalidHeader("x-ms-delete-snapshots");
+                }
+                StoredBlob target = target(request, blob);
+                AccessConditions.check(request, target.etag, target.lastModified, false);
+                blob.snapshots.remove(snapshot);
+                target.releaseData();
+                return new EmulatorResponse(HttpResponseStatus.ACCEPTED);
+            }
+            checkWrite(request, blob);
+            if (deleteSnapshots == null && !blob.snapshots.isEmpty()) {
+                throw new StorageError(HttpResponseStatus.CONFLICT, "SnapshotsPresent",
+                        "This operation is not permitted because the blob has snapshots.");
+            }
+            if ("only".equals(deleteSnapshots)) {
+                for (StoredBlob deleted : blob.snapshots.values()) {
+                    deleted.releaseData();
+                }
+                blob.snapshots.clear();
+            } else {
+                blob.releaseData();
+                blob.exists = false;
+                removeIfEmpty(request, blob);
+            }
+            return new EmulatorResponse(HttpResponseStatus.ACCEPTED);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse lease(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            AccessConditions.check(request, blob.etag, blob.lastModified, false);
+            return LeaseRequests.apply(request, blob.lease)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse snapshot(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            blob.lease.checkRead(request.header("x-ms-lease-id"));
+            AccessConditions.check(request, blob.etag, blob.lastModified, false);
+            StoredBlob snapshot = blob.copy();
+            Map<String, String> metadata = request.metadata();
+            if (metadata != null) {
+                snapshot.metadata = metadata;
+            }
+            // Snapshots are named by their time with 100ns precision; step past any taken in the same millisecond.
+            long time = System.currentTimeMillis();
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'0000Z'", Locale.ROOT);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            String name = format.format(new Date(time));
+            while (blob.snapshots.containsKey(name)) {
+                name = format.format(new Date(++time));
+            }
+            snapshot.snapshot = name;
+            blob.snapshots.put(name, snapshot);
+            return new EmulatorResponse(HttpResponseStatus.CREATED)
+                    .header("x-ms-snapshot", name)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    /*
+     Copies are only supported between blobs of the emulated account, and finish before the response is sent. The
+     source is copied under its own lock and installed under the destination's, so two copies in opposite directions
+     cannot deadlock.
+     */
+    private EmulatorResponse copy(EmulatorRequest request) {
+        String copySource = request.header("x-ms-copy-source");
+        QueryStringDecoder source = new QueryStringDecoder(copySource.replaceFirst("^[a-zA-Z]+://[^/]*", ""));
+        String[] segments = source.rawPath().length() > 1 ? source.rawPath().substring(1).split("/", 3)
+                : new String[0];
+        if (segments.length < 3 || !EmulatorRequest.decodePath(segments[0]).equals(this.account.name)) {
+            throw new StorageError(HttpResponseStatus.NOT_FOUND, "CannotVerifyCopySource",
+                    "The emulator can only copy blobs within the emulated account.");
+        }
+        StoredContainer sourceContainer = this.account.containers.get(EmulatorRequest.decodePath(segments[1]));
+        StoredBlob sourceBlob = sourceContainer == null ? null
+                : sourceContainer.blobs.get(EmulatorRequest.decodePath(segments[2]));
+        if (sourceBlob == null) {
+            throw new StorageError(HttpResponseStatus.NOT_FOUND, "CannotVerifyCopySource",
+                    "The specified blob does not exist.");
+        }
+        StoredBlob copy;
+        sourceBlob.lock.lock();
+        try {
+            List<String> snapshot = source.parameters().get("snapshot");
+            StoredBlob target = snapshot == null ? sourceBlob : sourceBlob.snapshots.get(snapshot.get(0));
+            if (target == null || !target.exists || sourceBlob.removed) {
+                throw new StorageError(HttpResponseStatus.NOT_FOUND, "CannotVerifyCopySource",
+                        "The specified blob does not exist.");
+            }
+            checkNotArchived(target);
+            copy = target.copy();
+        } finally {
+            sourceBlob.lock.unlock();
+        }
+
+        StoredBlob blob = lockBlob(request, true);
+        try {
+            if (blob.exists && !copy.type.equals(blob.type)) {
+                throw invalidBlobType();
+            }
+            checkCreate(request, blob);
+            blob.replaceData(copy.type, copy.blocks, copy.pages);
+            blob.pageRanges.putAll(copy.pageRanges);
+            blob.sequenceNumber = copy.sequenceNumber;
+            blob.setProperties(copy.contentType, copy.contentEncoding, copy.contentLanguage, copy.contentMD5,
+                    copy.cacheControl, copy.contentDisposition);
+            Map<String, String> metadata = request.metadata();
+            blob.metadata = metadata == null ? copy.metadata : metadata;
+            blob.exists = true;
+            blob.accessTier = null;
+            long length = blob.length();
+            blob.copyId = UUID.randomUUID().toString();
+            blob.copyStatus = "success";
+            blob.copySource = copySource;
+            blob.copyProgress = length + "/" + length;
+            blob.copyCompletionTime = StorageAccount.now();
+            touch(blob);
+            return new EmulatorResponse(HttpResponseStatus.ACCEPTED)
+                    .header("x-ms-copy-id", blob.copyId)
+                    .header("x-ms-copy-status", blob.copyStatus)
+                    .header("ETag", blob.etag)
+                    .dateHeader("Last-Modified", blob.lastModified);
+        } catch (StorageError e) {
+            // The copied data was not installed.
+            copy.releaseData();
+            throw e;
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse abortCopy(EmulatorRequest request) {
+        if (!"abort".equals(request.header("x-ms-copy-action"))) {
+            throw StorageError.invalidHeader("x-ms-copy-action");
+        }
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            blob.lease.checkWrite(request.header("x-ms-lease-id"));
+            throw new StorageError(HttpResponseStatus.CONFLICT, "NoPendingCopyOperation",
+                    "There is currently no pending copy operation.");
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    private EmulatorResponse setTier(EmulatorRequest request) {
+        String tier = request.requiredHeader("x-ms-access-tier");
+        StoredBlob blob = lockExistingBlob(request);
+        try {
+            if (StoredBlob.BLOCK_BLOB.equals(blob.type)) {
+                if (!tier.equals("Hot") && !tier.equals("Cool") && !tier.equals(ARCHIVE)) {
+                    throw StorageError.invalidHeader("x-ms-access-tier");
+                }
+            } else if (!StoredBlob.PAGE_BLOB.equals(blob.type) || !tier.matches("P[0-9]+")) {
+                throw StorageError.invalidHeader("x-ms-access-tier");
+            }
+            // Rehydration from the archive tier is accepted and completes at once.
+            boolean rehydrating = ARCHIVE.equals(blob.accessTier) && !tier.equals(ARCHIVE);
+            blob.accessTier = tier;
+            return new EmulatorResponse(rehydrating ? HttpResponseStatus.ACCEPTED : HttpResponseStatus.OK);
+        } finally {
+            blob.lock.unlock();
+        }
+    }
+
+    /*
+     Soft delete is not emulated, so only blobs which exist can be undeleted, which has no effect.
+     */
+    private EmulatorResponse undelete(EmulatorRequest request) {
+        StoredBlob blob = lockExistingBlob(request);
+        blob.lock.unlock();
+        return new EmulatorResponse(HttpResponseStatus.OK);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Authenticates requests to the emulated account and routes them to the service, container and blob operations.
+ */
+final class BlobService {
+
+    /**
+     * The service version the emulator implements, which is returned in x-ms-version.
+     */
+    static final String VERSION = "2017-04-17";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String DEFAULT_SERVICE_PROPERTIES = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<StorageServiceProperties>"
+            + "<Logging><Version>1.0</Version><Delete>false</Delete><Read>false</Read><Write>false</Write>"
+            + "<RetentionPolicy><Enabled>false</Enabled></RetentionPolicy></Logging>"
+            + "<HourMetrics><Version>1.0</Version><Enabled>false</Enabled>"
+            + "<RetentionPolicy><Enabled>false</Enabled></RetentionPolicy></HourMetrics>"
+            + "<MinuteMetrics><Version>1.0</Version><Enabled>false</Enabled>"
+            + "<RetentionPolicy><Enabled>false</Enabled></RetentionPolicy></MinuteMetrics>"
+            + "<Cors />"
+            + "</StorageServiceProperties>";
+
+    private final StorageAccount account;
+
+    private final SharedKeyVerifier verifier;
+
+    private final ContainerOperations containers;
+
+    private final BlobOperations blobs;
+
+    BlobService(StorageAccount account, SharedKeyVerifier verifier) {
+        this.account = account;
+        this.verifier = verifier;
+        this.containers = new ContainerOperations(account);
+        this.blobs = new BlobOperations(account, this.containers);
+    }
+
+    static String serviceEndpoint(EmulatorRequest request) {
+        return "http://" + request.header("Host") + "/" + request.accountName() + "/";
+    }
+
+    static StorageError unsupportedVerb() {
+        return StorageError.badRequest("UnsupportedHttpVerb",
+                "The resource doesn't support the specified HTTP verb.");
+    }
+
+    /**
+     * Performs the request, returning the service's error response if it fails. The headers common to all responses
+     * are added by {@link #addCommonHeaders(EmulatorRequest, EmulatorResponse)}.
+     */
+    EmulatorResponse handle(EmulatorRequest request) {
+        EmulatorResponse response;
+        try {
+            authenticate(request);
+            response = route(request);
+        } catch (StorageError e) {
+            response = error(request.isHead(), e);
+        } catch (RuntimeException e) {
+            response = error(request.isHead(), new StorageError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                    "InternalError", "The emulator failed to perform the request: " + e));
+        }
+        return response;
+    }
+
+    /**
+     * Returns the response for an error which happened before the request could be parsed or performed.
+     */
+    static EmulatorResponse error(boolean isHead, StorageError error) {
+        EmulatorResponse response = new EmulatorResponse(error.status()).header("x-ms-error-code", error.code());
+        // Like the service, errors have no body for HEAD requests, and a 304 has none at all.
+        if (!isHead && error.status().code() != HttpResponseStatus.NOT_MODIFIED.code()) {
+            response.xmlBody(new Xml()
+                    .start("Error")
+                    .element("Code", error.code())
+                    .element("Message", error.getMessage() + "\nRequestId:" + UUID.randomUUID())
+                    .end("Error"));
+        }
+        return response;
+    }
+
+    static EmulatorResponse addCommonHeaders(EmulatorRequest request, EmulatorResponse response) {
+        return response.header("x-ms-request-id", UUID.randomUUID().toString())
+                .header("x-ms-version", VERSION)
+                .header("x-ms-client-request-id", request == null ? null : request.header("x-ms-client-request-id"))
+                .dateHeader("Date", new Date())
+                .header("Server", "Windows-Azure-Blob/1.0 Microsoft-HTTPAPI/2.0");
+    }
+
+    /*
+     SharedKey signatures are checked. Requests with a SAS are accepted without checking the signature or the
+     permissions it grants, so that SAS URLs can be used against the emulator; anything else is anonymous, which is only
+     allowed for reads from public containers.
+     */
+    private void authenticate(EmulatorRequest request) {
+        String authorization = request.header("Authorization");
+        if (authorization != null) {
+            if (!this.verifier.verify(request, authorization)) {
+                throw new StorageError(HttpResponseStatus.FORBIDDEN, "AuthenticationFailed",
+                        "Server failed to authenticate the request. Make sure the value of Authorization header is "
+                                + "formed correctly including the signature.");
+            }
+            return;
+        }
+        if (request.query("sig") != null) {
+            return;
+        }
+
+        boolean isRead = HttpMethod.GET.equals(request.method()) || HttpMethod.HEAD.equals(request.method());
+        StoredContainer container = request.containerName() == null ? null
+                : this.account.containers.get(request.containerName());
+        if (isRead && container != null && container.publicAccess != null) {
+            boolean isBlobRead = request.blobName() != null
+                    && (request.query("comp") == null || "metadata".equals(request.query("comp")));
+            if (isBlobRead || container.publicAccess.equals("container")) {
+                return;
+            }
+        }
+        if (isRead && container != null) {
+            throw new StorageError(HttpResponseStatus.NOT_FOUND, "ResourceNotFound",
+                    "The specified resource does not exist.");
+        }
+        throw new StorageError(HttpResponseStatus.UNAUTHORIZED, "NoAuthenticationInformation",
+                "Server failed to authenticate the request. Please refer to the information in the www-authenticate "
+                        + "header.");
+    }
+
+    private EmulatorResponse route(EmulatorRequest request) {
+        if (!request.accountName().equals(this.account.name)) {
+            throw StorageError.badRequest("InvalidUri",
+                    "The requested URI does not represent any resource on the server.");
+        }
+        if (request.containerName() == null) {
+            String comp = request.query("comp");
+            if ("list".equals(comp)) {
+                if (!HttpMethod.GET.equals(request.method())) {
+                    throw unsupportedVerb();
+                }
+                return this.containers.listContainers(request);
+            }
+            if ("service".equals(request.query("restype")) && "properties".equals(comp)) {
+                return serviceProperties(request);
+            }
+            throw StorageError.invalidQueryParameter("comp");
+        }
+        if (request.blobName() == null) {
+            if (!"container".equals(request.query("restype"))) {
+                throw StorageError.invalidQueryParameter("restype");
+            }
+            return this.containers.handle(request);
+        }
+        return this.blobs.handle(request);
+    }
+
+    private EmulatorResponse serviceProperties(EmulatorRequest request) {
+        if (HttpMethod.PUT.equals(request.method())) {
+            if (!Xml.parse(request.body()).getTagName().equals("StorageServiceProperties")) {
+                throw Xml.invalidXml();
+            }
+            this.account.serviceProperties = request.body().toString(UTF8);
+            return new EmulatorResponse(HttpResponseStatus.ACCEPTED);
+        } else if (HttpMethod.GET.equals(request.method())) {
+            String properties = this.account.serviceProperties;
+            return new EmulatorResponse(HttpResponseStatus.OK).body(Unpooled.copiedBuffer(
+                    properties == null ? DEFAULT_SERVICE_PROPERTIES : properties, UTF8), "application/xml");
+        }
+        throw unsupportedVerb();
+    }
+}
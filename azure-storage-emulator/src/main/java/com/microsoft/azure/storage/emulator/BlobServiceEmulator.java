@@ -0,0 +1,248 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process implementation of the Blob service REST API for tests and benchmarks which should not depend on a
+ * storage account or the network. It serves one account over HTTP on the loopback interface with path-style URLs, so
+ * {@link #getServiceURL()} can be used wherever a service URL is expected, with SharedKey credentials built from
+ * {@link #getAccountName()} and {@link #getAccountKey()}.
+ * <p>
+ * The emulator implements the container, blob, block blob, page blob and append blob operations of the 2017-04-17
+ * version, including leases, snapshots, conditions and ranges, and returns the service's status codes and error codes.
+ * It differs from the service in a few ways:
+ * <ul>
+ *     <li>SAS signatures and permissions are not checked.</li>
+ *     <li>Copies are only supported from blobs in the emulated account, and complete before the response is
+ *     sent.</li>
+ *     <li>Soft delete is not emulated, and rehydrating an archived blob completes at once.</li>
+ *     <li>Incremental copy, service statistics and account information are not supported.</li>
+ * </ul>
+ * Latency, bandwidth limits, throttling and connection resets can be injected through {@link EmulatorOptions} to see
+ * how a client behaves against a slow or unreliable service.
+ */
+public final class BlobServiceEmulator implements Closeable {
+
+    /**
+     * The prefix of the names of the emulator's threads, so that a benchmark in the same process can tell the time and
+     * memory spent serving requests from the time and memory spent sending them.
+     */
+    public static final String THREAD_NAME_PREFIX = "blob-emulator";
+
+    // Put Blob accepts up to 256MB; the margin is for the rest of the request.
+    private static final int MAX_REQUEST_BYTES = 257 * 1024 * 1024;
+
+    private final String accountName;
+
+    private final String accountKey;
+
+    private final int requestedPort;
+
+    private final long latencyInMs;
+
+    private final long bandwidthBytesPerSecond;
+
+    private final double throttleProbability;
+
+    private final double connectionResetProbability;
+
+    private final StorageAccount account;
+
+    private final BlobService service;
+
+    private final Random random;
+
+    private EventLoopGroup bossGroup;
+
+    private EventLoopGroup workerGroup;
+
+    private GlobalTrafficShapingHandler trafficShapingHandler;
+
+    private Channel serverChannel;
+
+    /**
+     * Creates an emulator. It does not listen until {@link #start()} is called.
+     *
+     * @param options
+     *      {@link EmulatorOptions}. If null, the defaults are used.
+     */
+    public BlobServiceEmulator(EmulatorOptions options) {
+        options = options == null ? new EmulatorOptions() : options;
+        if (options.accountName == null || !options.accountName.matches("[a-z0-9]{3,24}")) {
+            throw new IllegalArgumentException("The account name must be 3 to 24 lowercase letters and digits.");
+        }
+        if (options.port < 0 || options.port > 65535) {
+            throw new IllegalArgumentException("The port must be between 0 and 65535.");
+        }
+        if (options.latencyInMs < 0 || options.bandwidthBytesPerSecond < 0) {
+            throw new IllegalArgumentException("The latency and bandwidth must not be negative.");
+        }
+        if (!(options.throttleProbability >= 0 && options.throttleProbability <= 1)
+                || !(options.connectionResetProbability >= 0 && options.connectionResetProbability <= 1)) {
+            throw new IllegalArgumentException("Probabilities must be between 0 and 1.");
+        }
+        File dataDirectory = options.dataDirectory;
+        if (dataDirectory != null && !dataDirectory.isDirectory()) {
+            throw new IllegalArgumentException("The data directory must be an existing directory.");
+        }
+        this.accountName = options.accountName;
+        this.accountKey = options.accountKey;
+        this.requestedPort = options.port;
+        this.latencyInMs = options.latencyInMs;
+        this.bandwidthBytesPerSecond = options.bandwidthBytesPerSecond;
+        this.throttleProbability = options.throttleProbability;
+        this.connectionResetProbability = options.connectionResetProbability;
+        this.random = new Random(options.randomSeed);
+        this.account = new StorageAccount(this.accountName, dataDirectory);
+        this.service = new BlobService(this.account, new SharedKeyVerifier(this.accountName, this.accountKey));
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @return
+     *      This emulator, so that creating and starting it can be chained.
+     * @throws InterruptedException
+     *      If the thread is interrupted while binding.
+     */
+    public synchronized BlobServiceEmulator start() throws InterruptedException {
+        if (this.serverChannel != null) {
+            throw new IllegalStateException("The emulator has already been started.");
+        }
+        this.bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory(THREAD_NAME_PREFIX + "-boss"));
+        this.workerGroup = new NioEventLoopGroup(0, new DefaultThreadFactory(THREAD_NAME_PREFIX));
+        if (this.bandwidthBytesPerSecond > 0) {
+            this.trafficShapingHandler = new GlobalTrafficShapingHandler(this.workerGroup,
+                    this.bandwidthBytesPerSecond, this.bandwidthBytesPerSecond);
+        }
+        try {
+            this.serverChannel = new ServerBootstrap()
+                    .group(this.bossGroup, this.workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel channel) {
+                            ChannelPipeline pipeline = channel.pipeline();
+                            if (trafficShapingHandler != null) {
+                                pipeline.addLast(trafficShapingHandler);
+                            }
+                            pipeline.addLast(new HttpServerCodec())
+                                    .addLast(new HttpObjectAggregator(MAX_REQUEST_BYTES))
+                                    .addLast(new EmulatorHandler(service, latencyInMs, throttleProbability,
+                                            connectionResetProbability, random));
+                        }
+                    })
+                    .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.requestedPort))
+                    .sync()
+                    .channel();
+        } catch (InterruptedException e) {
+            shutdown();
+            throw e;
+        } catch (RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * @return
+     *      The port the emulator listens on.
+     */
+    public int getPort() {
+        if (this.serverChannel == null) {
+            throw new IllegalStateException("The emulator has not been started.");
+        }
+        return ((InetSocketAddress) this.serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * @return
+     *      The name of the emulated account.
+     */
+    public String getAccountName() {
+        return this.accountName;
+    }
+
+    /**
+     * @return
+     *      The Base64-encoded key of the emulated account.
+     */
+    public String getAccountKey() {
+        return this.accountKey;
+    }
+
+    /**
+     * @return
+     *      The URL of the emulated Blob service, such as http://127.0.0.1:10000/devstoreaccount1.
+     */
+    public URL getServiceURL() {
+        try {
+            return new URL("http", "127.0.0.1", getPort(), "/" + this.accountName);
+        } catch (MalformedURLException e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Stops listening and deletes all data.
+     */
+    @Override
+    public synchronized void close() {
+        shutdown();
+        this.account.releaseData();
+    }
+
+    private void shutdown() {
+        if (this.serverChannel != null) {
+            this.serverChannel.close().syncUninterruptibly();
+            this.serverChannel = null;
+        }
+        if (this.trafficShapingHandler != null) {
+            this.trafficShapingHandler.release();
+            this.trafficShapingHandler = null;
+        }
+        if (this.bossGroup != null) {
+            this.bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            this.workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            this.bossGroup = null;
+            this.workerGroup = null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+/**
+ * A block of a block or append blob. Blocks are immutable once written, so a block may appear more than once in a
+ * block list and be shared between the committed and uncommitted lists.
+ */
+final class Block {
+
+    // The Base64 block ID, or null for the data written by Put Blob, which has no ID.
+    final String id;
+
+    final BlobContent content;
+
+    Block(String id, BlobContent content) {
+        this.id = id;
+        this.content = content;
+    }
+
+    long size() {
+        return this.content.length();
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The operations on containers, including listing their blobs.
+ */
+final class ContainerOperations {
+
+    private static final Pattern CONTAINER_NAME = Pattern.compile("\\$root|[a-z0-9](?:[a-z0-9]|-(?!-)){1,61}[a-z0-9]");
+
+    private static final int MAX_LIST_RESULTS = 5000;
+
+    private final StorageAccount account;
+
+    ContainerOperations(StorageAccount account) {
+        this.account = account;
+    }
+
+    /**
+     * Returns the container, or throws the service's error for a missing container.
+     */
+    StoredContainer container(String name) {
+        StoredContainer container = this.account.containers.get(name);
+        if (container == null || !container.exists) {
+            throw containerNotFound();
+        }
+        return container;
+    }
+
+    static StorageError containerNotFound() {
+        return new StorageError(HttpResponseStatus.NOT_FOUND, "ContainerNotFound",
+                "The specified container does not exist.");
+    }
+
+    EmulatorResponse handle(EmulatorRequest request) {
+        String comp = request.query("comp");
+        HttpMethod method = request.method();
+        if (comp == null) {
+            if (HttpMethod.PUT.equals(method)) {
+                return create(request);
+            } else if (HttpMethod.DELETE.equals(method)) {
+                return delete(request);
+            } else if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+                return getProperties(request);
+            }
+        } else if (comp.equals("metadata")) {
+            if (HttpMethod.PUT.equals(method)) {
+                return setMetadata(request);
+            } else if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+                return getProperties(request);
+            }
+        } else if (comp.equals("acl")) {
+            if (HttpMethod.PUT.equals(method)) {
+                return setAccessPolicy(request);
+            } else if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+                return getAccessPolicy(request);
+            }
+        } else if (comp.equals("lease") && HttpMethod.PUT.equals(method)) {
+            return lease(request);
+        } else if (comp.equals("list") && HttpMethod.GET.equals(method)) {
+            return listBlobs(request);
+        } else {
+            throw StorageError.invalidQueryParameter("comp");
+        }
+        throw BlobService.unsupportedVerb();
+    }
+
+    private EmulatorResponse create(EmulatorRequest request) {
+        String name = request.containerName();
+        if (!CONTAINER_NAME.matcher(name).matches()) {
+            throw StorageError.badRequest("InvalidResourceName",
+                    "The specified resource name contains invalid characters.");
+        }
+        StoredContainer container = new StoredContainer(name);
+        container.etag = this.account.nextETag();
+        container.lastModified = StorageAccount.now();
+        container.publicAccess = publicAccess(request);
+        Map<String, String> metadata = request.metadata();
+        if (metadata != null) {
+            container.metadata = metadata;
+        }
+        if (this.account.containers.putIfAbsent(name, container) != null) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "ContainerAlreadyExists",
+                    "The specified container already exists.");
+        }
+        return new EmulatorResponse(HttpResponseStatus.CREATED)
+                .header("ETag", container.etag)
+                .dateHeader("Last-Modified", container.lastModified);
+    }
+
+    private static String publicAccess(EmulatorRequest request) {
+        String publicAccess = request.header("x-ms-blob-public-access");
+        if (publicAccess != null && !publicAccess.equals("container") && !publicAccess.equals("blob")) {
+            throw StorageError.invalidHeader("x-ms-blob-public-access");
+        }
+        return publicAccess;
+    }
+
+    private EmulatorResponse delete(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        synchronized (container) {
+            if (!container.exists) {
+                throw containerNotFound();
+            }
+            container.lease.checkWrite(request.header("x-ms-lease-id"));
+            AccessConditions.check(request, container.etag, container.lastModified, false);
+            container.exists = false;
+            this.account.containers.remove(container.name, container);
+        }
+        for (StoredBlob blob : container.blobs.values()) {
+            blob.lock.lock();
+            try {
+                blob.removed = true;
+                blob.releaseData();
+            } finally {
+                blob.lock.unlock();
+            }
+        }
+        return new EmulatorResponse(HttpResponseStatus.ACCEPTED);
+    }
+
+    private EmulatorResponse getProperties(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        synchronized (container) {
+            container.lease.checkRead(request.header("x-ms-lease-id"));
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", container.etag)
+                    .dateHeader("Last-Modified", container.lastModified)
+                    .metadata(container.metadata)
+                    .header("x-ms-lease-state", container.lease.leaseState())
+                    .header("x-ms-lease-status", container.lease.leaseStatus())
+                    .header("x-ms-lease-duration", container.lease.leaseDuration())
+                    .header("x-ms-blob-public-access", container.publicAccess);
+        }
+    }
+
+    private EmulatorResponse setMetadata(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        synchronized (container) {
+            container.lease.checkRead(request.header("x-ms-lease-id"));
+            AccessConditions.check(request, container.etag, container.lastModified, false);
+            Map<String, String> metadata = request.metadata();
+            container.metadata = metadata == null ? new LinkedHashMap<String, String>() : metadata;
+            touch(container);
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", container.etag)
+                    .dateHeader("Last-Modified", container.lastModified);
+        }
+    }
+
+    private EmulatorResponse getAccessPolicy(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        synchronized (container) {
+            container.lease.checkRead(request.header("x-ms-lease-id"));
+            EmulatorResponse response = new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", container.etag)
+                    .dateHeader("Last-Modified", container.lastModified)
+                    .header("x-ms-blob-public-access", container.publicAccess);
+            if (!request.isHead()) {
+                response.xmlBody(new Xml().raw(container.signedIdentifiers == null ? "<SignedIdentifiers />"
+                        : container.signedIdentifiers));
+            }
+            return response;
+        }
+    }
+
+    private EmulatorResponse setAccessPolicy(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        String signedIdentifiers = null;
+        if (request.body().isReadable()) {
+            // Only checked for well-formedness; the stored policies are not used to authorize requests.
+            if (!Xml.parse(request.body()).getTagName().equals("SignedIdentifiers")) {
+                throw Xml.invalidXml();
+            }
+            String body = request.body().toString(Charset.forName("UTF-8"));
+            signedIdentifiers = body.startsWith("<?xml") ? body.substring(body.indexOf("?>") + 2) : body;
+        }
+        synchronized (container) {
+            container.lease.checkRead(request.header("x-ms-lease-id"));
+            AccessConditions.check(request, container.etag, container.lastModified, false);
+            container.publicAccess = publicAccess(request);
+            container.signedIdentifiers = signedIdentifiers;
+            touch(container);
+            return new EmulatorResponse(HttpResponseStatus.OK)
+                    .header("ETag", container.etag)
+                    .dateHeader("Last-Modified", container.lastModified);
+        }
+    }
+
+    private void touch(StoredContainer container) {
+        container.etag = this.account.nextETag();
+        container.lastModified = StorageAccount.now();
+    }
+
+    private EmulatorResponse lease(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        synchronized (container) {
+            AccessConditions.check(request, container.etag, container.lastModified, false);
+            EmulatorResponse response = LeaseRequests.apply(request, container.lease);
+            return response.header("ETag", container.etag)
+                    .dateHeader("Last-Modified", container.lastModified);
+        }
+    }
+
+    private EmulatorResponse listBlobs(EmulatorRequest request) {
+        StoredContainer container = container(request.containerName());
+        String prefix = request.query("prefix");
+        String delimiter = request.query("delimiter");
+        String marker = request.query("marker");
+        Integer maxResults = request.intQuery("maxresults");
+        if (maxResults != null && maxResults <= 0) {
+            throw StorageError.invalidQueryParameter("maxresults");
+        }
+        int limit = maxResults == null ? MAX_LIST_RESULTS : Math.min(maxResults, MAX_LIST_RESULTS);
+        Set<String> include = new HashSet<String>();
+        String includeValue = request.query("include");
+        if (includeValue != null) {
+            include.addAll(Arrays.asList(includeValue.split(",")));
+        }
+
+        Xml xml = new Xml()
+                .start("EnumerationResults", "ServiceEndpoint", BlobService.serviceEndpoint(request),
+                        "ContainerName", container.name)
+                .optionalElement("Prefix", prefix)
+                .optionalElement("Marker", marker)
+                .optionalElement("MaxResults", maxResults)
+                .optionalElement("Delimiter", delimiter)
+                .start("Blobs");
+
+        String start = marker != null ? marker : prefix != null ? prefix : "";
+        String nextMarker = null;
+        String lastBlobPrefix = null;
+        int count = 0;
+        for (StoredBlob blob : container.blobs.tailMap(start, true).values()) {
+            if (prefix != null && !blob.name.startsWith(prefix)) {
+                break;
+            }
+            blob.lock.lock();
+            try {
+                if (blob.removed || !(blob.exists || include.contains("uncommittedblobs"))) {
+                    continue;
+                }
+                if (delimiter != null && !delimiter.isEmpty()) {
+                    int end = blob.name.indexOf(delimiter, prefix == null ? 0 : prefix.length());
+                    if (end >= 0) {
+                        String blobPrefix = blob.name.substring(0, end + delimiter.length());
+                        if (blobPrefix.equals(lastBlobPrefix)) {
+                            continue;
+                        }
+                        if (count == limit) {
+                            nextMarker = blob.name;
+                            break;
+                        }
+                        xml.start("BlobPrefix").element("Name", blobPrefix).end("BlobPrefix");
+                        lastBlobPrefix = blobPrefix;
+                        count++;
+                        continue;
+                    }
+                }
+                if (count == limit) {
+                    nextMarker = blob.name;
+                    break;
+                }
+                if (include.contains("snapshots")) {
+                    for (StoredBlob snapshot : blob.snapshots.values()) {
+                        writeBlob(xml, snapshot, include);
+                    }
+                }
+                if (blob.exists) {
+                    writeBlob(xml, blob, include);
+                } else {
+                    writeUncommittedBlob(xml, blob);
+                }
+                count++;
+            } finally {
+                blob.lock.unlock();
+            }
+        }
+        xml.end("Blobs").element("NextMarker", nextMarker).end("EnumerationResults");
+        return new EmulatorResponse(HttpResponseStatus.OK).xmlBody(xml);
+    }
+
+    private static void writeBlob(Xml xml, StoredBlob blob, Set<String> include) {
+        xml.start("Blob").element("Name", blob.name).optionalElement("Snapshot", blob.snapshot)
+                .start("Properties")
+                .element("Last-Modified", blob.lastModified)
+                .element("Etag", blob.etag)
+                .element("Content-Length", blob.length())
+                .element("Content-Type", blob.contentType)
+                .element("Content-Encoding", blob.contentEncoding)
+                .element("Content-Language", blob.contentLanguage)
+                .element("Content-MD5", blob.contentMD5)
+                .element("Cache-Control", blob.cacheControl)
+                .optionalElement("Content-Disposition", blob.contentDisposition)
+                .optionalElement("x-ms-blob-sequence-number",
+                        StoredBlob.PAGE_BLOB.equals(blob.type) ? blob.sequenceNumber : null)
+                .element("BlobType", blob.type);
+        if (blob.snapshot == null) {
+            xml.element("LeaseStatus", blob.lease.leaseStatus())
+                    .element("LeaseState", blob.lease.leaseState())
+                    .optionalElement("LeaseDuration", blob.lease.leaseDuration());
+        }
+        if (include.contains("copy") && blob.copyId != null) {
+            xml.element("CopyId", blob.copyId)
+                    .element("CopyStatus", blob.copyStatus)
+                    .element("CopySource", blob.copySource)
+                    .element("CopyProgress", blob.copyProgress)
+                    .element("CopyCompletionTime", blob.copyCompletionTime);
+        }
+        xml.element("ServerEncrypted", true);
+        if (StoredBlob.BLOCK_BLOB.equals(blob.type)) {
+            xml.element("AccessTier", blob.accessTier == null ? "Hot" : blob.accessTier);
+            if (blob.accessTier == null) {
+                xml.element("AccessTierInferred", true);
+            }
+        }
+        xml.end("Properties");
+        if (include.contains("metadata")) {
+            writeMetadata(xml, blob.metadata);
+        }
+        xml.end("Blob");
+    }
+
+    private static void writeUncommittedBlob(Xml xml, StoredBlob blob) {
+        long length = 0;
+        for (Block block : blob.uncommittedBlocks.values()) {
+            length += block.size();
+        }
+        xml.start("Blob").element("Name", blob.name)
+                .start("Properties")
+                .element("Content-Length", length)
+                .element("BlobType", StoredBlob.BLOCK_BLOB)
+                .end("Properties")
+                .end("Blob");
+    }
+
+    static void writeMetadata(Xml xml, Map<String, String> metadata) {
+        xml.start("Metadata");
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            xml.element(entry.getKey(), entry.getValue());
+        }
+        xml.end("Metadata");
+    }
+
+    /**
+     * Lists the containers of the account.
+     */
+    EmulatorResponse listContainers(EmulatorRequest request) {
+        String prefix = request.query("prefix");
+        String marker = request.query("marker");
+        Integer maxResults = request.intQuery("maxresults");
+        if (maxResults != null && maxResults <= 0) {
+            throw StorageError.invalidQueryParameter("maxresults");
+        }
+        int limit = maxResults == null ? MAX_LIST_RESULTS : Math.min(maxResults, MAX_LIST_RESULTS);
+        boolean includeMetadata = "metadata".equals(request.query("include"));
+
+        Xml xml = new Xml()
+                .start("EnumerationResults", "ServiceEndpoint", BlobService.serviceEndpoint(request))
+                .optionalElement("Prefix", prefix)
+                .optionalElement("Marker", marker)
+                .optionalElement("MaxResults", maxResults)
+                .start("Containers");
+        String start = marker != null ? marker : prefix != null ? prefix : "";
+        String nextMarker = null;
+        int count = 0;
+        for (StoredContainer container : this.account.containers.tailMap(start, true).values()) {
+            if (prefix != null && !container.name.startsWith(prefix)) {
+                break;
+            }
+            if (count == limit) {
+                nextMarker = container.name;
+                break;
+            }
+            synchronized (container) {
+                if (!container.exists) {
+                    continue;
+                }
+                xml.start("Container").element("Name", container.name)
+                        .start("Properties")
+                        .element("Last-Modified", container.lastModified)
+                        .element("Etag", container.etag)
+                        .element("LeaseStatus", container.lease.leaseStatus())
+                        .element("LeaseState", container.lease.leaseState())
+                        .optionalElement("LeaseDuration", container.lease.leaseDuration())
+                        .optionalElement("PublicAccess", container.publicAccess)
+                        .end("Properties");
+                if (includeMetadata) {
+                    writeMetadata(xml, container.metadata);
+                }
+                xml.end("Container");
+            }
+            count++;
+        }
+        xml.end("Containers").element("NextMarker", nextMarker).end("EnumerationResults");
+        return new EmulatorResponse(HttpResponseStatus.OK).xmlBody(xml);
+    }
+}
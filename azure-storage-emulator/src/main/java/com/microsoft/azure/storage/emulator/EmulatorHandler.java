@@ -0,0 +1,137 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs each request on the event loop of its connection and injects the configured latency and faults into the
+ * response.
+ */
+final class EmulatorHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private final BlobService service;
+
+    private final long latencyInMs;
+
+    private final double throttleProbability;
+
+    private final double connectionResetProbability;
+
+    private final Random random;
+
+    EmulatorHandler(BlobService service, long latencyInMs, double throttleProbability,
+            double connectionResetProbability, Random random) {
+        this.service = service;
+        this.latencyInMs = latencyInMs;
+        this.throttleProbability = throttleProbability;
+        this.connectionResetProbability = connectionResetProbability;
+        this.random = random;
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, FullHttpRequest httpRequest) {
+        final boolean keepAlive = HttpUtil.isKeepAlive(httpRequest);
+        EmulatorRequest request = null;
+        EmulatorResponse response;
+        if (httpRequest.decoderResult().isFailure()) {
+            response = BlobService.error(false, StorageError.badRequest("InvalidInput",
+                    "One of the request inputs is not valid."));
+        } else if (this.throttleProbability > 0 && this.random.nextDouble() < this.throttleProbability) {
+            request = new EmulatorRequest(httpRequest);
+            response = BlobService.error(request.isHead(), new StorageError(HttpResponseStatus.SERVICE_UNAVAILABLE,
+                    "ServerBusy", "The server is busy."));
+        } else {
+            request = new EmulatorRequest(httpRequest);
+            response = this.service.handle(request);
+        }
+        BlobService.addCommonHeaders(request, response);
+
+        ByteBuf body = response.body;
+        if (request != null && request.isHead()) {
+            body.release();
+            body = Unpooled.EMPTY_BUFFER;
+        } else {
+            response.headers.set(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+        }
+        response.headers.set(HttpHeaderNames.CONNECTION,
+                keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+
+        final boolean reset = this.connectionResetProbability > 0
+                && this.random.nextDouble() < this.connectionResetProbability;
+        final EmulatorResponse finalResponse = response;
+        final ByteBuf finalBody = body;
+        Runnable send = new Runnable() {
+            @Override
+            public void run() {
+                if (reset) {
+                    sendAndReset(ctx, finalResponse, finalBody);
+                } else {
+                    ChannelFuture future = ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                            finalResponse.status, finalBody, finalResponse.headers, EmptyHttpHeaders.INSTANCE));
+                    if (!keepAlive) {
+                        future.addListener(ChannelFutureListener.CLOSE);
+                    }
+                }
+            }
+        };
+        if (this.latencyInMs > 0) {
+            ctx.executor().schedule(send, this.latencyInMs, TimeUnit.MILLISECONDS);
+        } else {
+            send.run();
+        }
+    }
+
+    /*
+     Sends the headers and half of the body, then closes the connection with SO_LINGER set to 0 so that the client sees
+     a reset rather than an orderly end of the stream.
+     */
+    private static void sendAndReset(final ChannelHandlerContext ctx, EmulatorResponse response, ByteBuf body) {
+        ctx.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, response.status, response.headers));
+        ctx.writeAndFlush(new DefaultHttpContent(body.retainedSlice(body.readerIndex(), body.readableBytes() / 2)))
+                .addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        ctx.channel().config().setOption(ChannelOption.SO_LINGER, 0);
+                        ctx.close();
+                    }
+                });
+        body.release();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import java.io.File;
+
+/**
+ * Configures a {@link BlobServiceEmulator}. The defaults give a fault-free service on an ephemeral port with the
+ * well-known development storage account.
+ */
+public final class EmulatorOptions {
+    /*
+     EmulatorOptions is mutable. The emulator copies and validates the fields when it is created, so changing them
+     afterwards has no effect on it.
+     */
+
+    /**
+     * The name of the emulated account. It is the first segment of the path of every request.
+     */
+    public String accountName = "devstoreaccount1";
+
+    /**
+     * The Base64-encoded key requests signed with SharedKey must be signed with.
+     */
+    public String accountKey =
+            "Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==";
+
+    /**
+     * The local port to listen on. 0 picks a free port, which {@link BlobServiceEmulator#getPort()} reports.
+     */
+    public int port;
+
+    /**
+     * A directory in which blob data is kept in temporary files, which are deleted as blobs are deleted and when the
+     * emulator is closed. If null, blob data is kept in memory.
+     */
+    public File dataDirectory;
+
+    /**
+     * The time, in milliseconds, added before each response is sent.
+     */
+    public long latencyInMs;
+
+    /**
+     * The most bytes per second the emulator reads and, separately, writes across all connections, like the
+     * ingress and egress limits of an account. 0 means no limit.
+     */
+    public long bandwidthBytesPerSecond;
+
+    /**
+     * The probability, between 0 and 1, that a request is answered with 503 (Server Busy) instead of being
+     * performed.
+     */
+    public double throttleProbability;
+
+    /**
+     * The probability, between 0 and 1, that the connection is reset after part of the response has been sent. The
+     * request is performed first, so a client which retries sees the effects of the earlier attempt.
+     */
+    public double connectionResetProbability;
+
+    /**
+     * The seed for the random choices of which requests fail, so that a run can be repeated.
+     */
+    public long randomSeed = 1;
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A request to the emulated service, with its path split into the account, container and blob names.
+ */
+final class EmulatorRequest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String METADATA_PREFIX = "x-ms-meta-";
+
+    private final FullHttpRequest request;
+
+    private final String rawPath;
+
+    private final Map<String, List<String>> query;
+
+    private final String accountName;
+
+    private final String containerName;
+
+    private final String blobName;
+
+    EmulatorRequest(FullHttpRequest request) {
+        this.request = request;
+        QueryStringDecoder decoder = new QueryStringDecoder(request.uri());
+        this.rawPath = decoder.rawPath();
+        this.query = decoder.parameters();
+
+        String[] segments = this.rawPath.length() > 1 ? this.rawPath.substring(1).split("/", 3)
+                : new String[]{ "" };
+        this.accountName = decodePath(segments[0]);
+        this.containerName = segments.length > 1 && !segments[1].isEmpty() ? decodePath(segments[1]) : null;
+        this.blobName = segments.length > 2 && !segments[2].isEmpty() ? decodePath(segments[2]) : null;
+    }
+
+    /*
+     Decodes the percent-encoded octets of a path segment. Unlike QueryStringDecoder.decodeComponent, a '+' is kept, as
+     it is not an encoded space in a path.
+     */
+    static String decodePath(String segment) {
+        if (segment.indexOf('%') < 0) {
+            return segment;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(segment.length());
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '%' && i + 2 < segment.length()) {
+                bytes.write(Integer.parseInt(segment.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(UTF8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        return new String(bytes.toByteArray(), UTF8);
+    }
+
+    HttpMethod method() {
+        return this.request.method();
+    }
+
+    boolean isHead() {
+        return HttpMethod.HEAD.equals(this.request.method());
+    }
+
+    String rawPath() {
+        return this.rawPath;
+    }
+
+    Map<String, List<String>> queryParameters() {
+        return this.query;
+    }
+
+    HttpHeaders headers() {
+        return this.request.headers();
+    }
+
+    String accountName() {
+        return this.accountName;
+    }
+
+    String containerName() {
+        return this.containerName;
+    }
+
+    String blobName() {
+        return this.blobName;
+    }
+
+    ByteBuf body() {
+        return this.request.content();
+    }
+
+    String query(String name) {
+        List<String> values = this.query.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    Integer intQuery(String name) {
+        String value = query(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw StorageError.invalidQueryParameter(name);
+        }
+    }
+
+    String header(String name) {
+        return this.request.headers().get(name);
+    }
+
+    String requiredHeader(String name) {
+        String value = header(name);
+        if (value == null) {
+            throw StorageError.missingHeader(name);
+        }
+        return value;
+    }
+
+    Long longHeader(String name) {
+        String value = header(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw StorageError.invalidHeader(name);
+        }
+    }
+
+    Date dateHeader(String name) {
+        String value = header(name);
+        if (value == null) {
+            return null;
+        }
+        Date date = DateFormatter.parseHttpDate(value);
+        if (date == null) {
+            throw StorageError.invalidHeader(name);
+        }
+        return date;
+    }
+
+    /**
+     * Returns the x-ms-meta- headers with the prefix removed, or null if there are none.
+     */
+    Map<String, String> metadata() {
+        Map<String, String> metadata = null;
+        for (Map.Entry<String, String> header : this.request.headers()) {
+            if (header.getKey().regionMatches(true, 0, METADATA_PREFIX, 0, METADATA_PREFIX.length())) {
+                if (metadata == null) {
+                    metadata = new LinkedHashMap<String, String>();
+                }
+                metadata.put(header.getKey().substring(METADATA_PREFIX.length()), header.getValue());
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Returns the range from the x-ms-range or Range header as the offset and the inclusive end, which is
+     * Long.MAX_VALUE for an open range, or null if neither is given.
+     */
+    long[] range() {
+        String name = "x-ms-range";
+        String value = header(name);
+        if (value == null) {
+            name = "Range";
+            value = header(name);
+        }
+        if (value == null) {
+            return null;
+        }
+        if (!value.startsWith("bytes=")) {
+            throw StorageError.invalidHeader(name);
+        }
+        int dash = value.indexOf('-');
+        try {
+            long start = Long.parseLong(value.substring("bytes=".length(), dash));
+            long end = dash == value.length() - 1 ? Long.MAX_VALUE : Long.parseLong(value.substring(dash + 1));
+            if (start < 0 || end < start) {
+                throw StorageError.invalidHeader(name);
+            }
+            return new long[]{ start, end };
+        } catch (RuntimeException e) {
+            if (e instanceof StorageError) {
+                throw e;
+            }
+            throw StorageError.invalidHeader(name);
+        }
+    }
+}
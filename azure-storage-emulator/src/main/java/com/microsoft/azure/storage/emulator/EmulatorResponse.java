@@ -0,0 +1,72 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A response of the emulated service. Headers with null values are not added, so optional properties can be passed
+ * through without checks.
+ */
+final class EmulatorResponse {
+
+    final HttpResponseStatus status;
+
+    final HttpHeaders headers = new DefaultHttpHeaders();
+
+    ByteBuf body = Unpooled.EMPTY_BUFFER;
+
+    EmulatorResponse(HttpResponseStatus status) {
+        this.status = status;
+    }
+
+    EmulatorResponse header(String name, Object value) {
+        if (value != null) {
+            this.headers.set(name, value);
+        }
+        return this;
+    }
+
+    EmulatorResponse dateHeader(String name, Date value) {
+        if (value != null) {
+            this.headers.set(name, DateFormatter.format(value));
+        }
+        return this;
+    }
+
+    EmulatorResponse metadata(Map<String, String> metadata) {
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            this.headers.set("x-ms-meta-" + entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    EmulatorResponse body(ByteBuf body, String contentType) {
+        this.body = body;
+        return header("Content-Type", contentType);
+    }
+
+    EmulatorResponse xmlBody(Xml xml) {
+        return body(xml.toByteBuf(), "application/xml");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Content held in a temporary file. Files are extended with {@link RandomAccessFile#setLength(long)}, so on most
+ * file systems the unwritten ranges of a page blob take no space.
+ */
+final class FileBlobContent extends BlobContent {
+
+    private static final int ZEROS_SIZE = 64 * 1024;
+
+    private final File dataDirectory;
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    FileBlobContent(File dataDirectory) throws IOException {
+        this.dataDirectory = dataDirectory;
+        this.file = File.createTempFile("blob", ".dat", dataDirectory);
+        this.file.deleteOnExit();
+        this.randomAccessFile = new RandomAccessFile(this.file, "rw");
+        this.channel = this.randomAccessFile.getChannel();
+    }
+
+    @Override
+    long length() {
+        try {
+            return this.channel.size();
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    void setLength(long length) {
+        try {
+            this.randomAccessFile.setLength(length);
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    void write(long offset, ByteBuf data) {
+        try {
+            int index = data.readerIndex();
+            int end = data.writerIndex();
+            while (index < end) {
+                int count = data.getBytes(index, this.channel, offset, end - index);
+                index += count;
+                offset += count;
+            }
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    void read(long offset, int length, ByteBuf destination) {
+        try {
+            while (length > 0) {
+                int count = destination.writeBytes(this.channel, offset, length);
+                if (count < 0) {
+                    destination.writeZero(length);
+                    return;
+                }
+                offset += count;
+                length -= count;
+            }
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    void clear(long offset, long length) {
+        try {
+            long end = Math.min(offset + length, this.channel.size());
+            ByteBuffer zeros = ByteBuffer.allocate(ZEROS_SIZE);
+            while (offset < end) {
+                zeros.clear();
+                zeros.limit((int) Math.min(ZEROS_SIZE, end - offset));
+                offset += this.channel.write(zeros, offset);
+            }
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    BlobContent copy() {
+        try {
+            FileBlobContent copy = new FileBlobContent(this.dataDirectory);
+            long size = this.channel.size();
+            long position = 0;
+            while (position < size) {
+                position += this.channel.transferTo(position, size - position, copy.channel.position(position));
+            }
+            copy.setLength(size);
+            return copy;
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    void release() {
+        try {
+            this.randomAccessFile.close();
+        } catch (IOException ignored) {
+            // The file is deleted regardless.
+        }
+        this.file.delete();
+    }
+
+    private static StorageError ioError(IOException e) {
+        return new StorageError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "InternalError",
+                "The blob data could not be accessed: " + e.getMessage());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * The lease on a container or blob. The state is derived from the clock when it is read, so leases expire and breaks
+ * complete without a timer. Callers synchronize on the resource which owns the lease.
+ */
+final class Lease {
+
+    private enum State { AVAILABLE, LEASED, BREAKING, BROKEN }
+
+    // "Blob" or "Container", for the error codes.
+    private final String resourceKind;
+
+    private State state = State.AVAILABLE;
+
+    private String id;
+
+    // -1 for an infinite lease.
+    private long durationInSeconds;
+
+    private long expiryTime;
+
+    private long breakTime;
+
+    Lease(String resourceKind) {
+        this.resourceKind = resourceKind;
+    }
+
+    private State state(long now) {
+        if (this.state == State.BREAKING && now >= this.breakTime) {
+            this.state = State.BROKEN;
+        }
+        return this.state;
+    }
+
+    private boolean isExpired(long now) {
+        return this.state == State.LEASED && this.durationInSeconds != -1 && now >= this.expiryTime;
+    }
+
+    /**
+     * Returns the value of the x-ms-lease-state header.
+     */
+    String leaseState() {
+        long now = System.currentTimeMillis();
+        if (isExpired(now)) {
+            return "expired";
+        }
+        return state(now).name().toLowerCase();
+    }
+
+    /**
+     * Returns the value of the x-ms-lease-status header.
+     */
+    String leaseStatus() {
+        long now = System.currentTimeMillis();
+        State state = state(now);
+        return (state == State.LEASED && !isExpired(now)) || state == State.BREAKING ? "locked" : "unlocked";
+    }
+
+    /**
+     * Returns the value of the x-ms-lease-duration header, or null if the resource is not leased.
+     */
+    String leaseDuration() {
+        long now = System.currentTimeMillis();
+        if (state(now) != State.LEASED || isExpired(now)) {
+            return null;
+        }
+        return this.durationInSeconds == -1 ? "infinite" : "fixed";
+    }
+
+    private boolean isHeld(long now) {
+        State state = state(now);
+        return (state == State.LEASED && !isExpired(now)) || state == State.BREAKING;
+    }
+
+    /**
+     * Checks the lease ID of a request which modifies or deletes the resource.
+     */
+    void checkWrite(String leaseId) {
+        long now = System.currentTimeMillis();
+        if (isHeld(now)) {
+            if (leaseId == null) {
+                throw new StorageError(HttpResponseStatus.PRECONDITION_FAILED,
+                        "LeaseIdMissingWith" + this.resourceKind + "Operation",
+                        "There is currently a lease on the " + this.resourceKind.toLowerCase()
+                                + " and no lease ID was specified in the request.");
+            }
+            if (!leaseId.equalsIgnoreCase(this.id)) {
+                throw leaseIdMismatch(this.resourceKind + "Operation");
+            }
+        } else if (leaseId != null) {
+            throw leaseNotPresent(HttpResponseStatus.PRECONDITION_FAILED, this.resourceKind + "Operation");
+        }
+    }
+
+    /**
+     * Checks the lease ID of a request which reads the resource. A read needs no lease ID, but one which is given
+     * must be that of the lease.
+     */
+    void checkRead(String leaseId) {
+        if (leaseId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!isHeld(now)) {
+            throw leaseNotPresent(HttpResponseStatus.PRECONDITION_FAILED, this.resourceKind + "Operation");
+        }
+        if (!leaseId.equalsIgnoreCase(this.id)) {
+            throw leaseIdMismatch(this.resourceKind + "Operation");
+        }
+    }
+
+    void acquire(String proposedId, long durationInSeconds) {
+        long now = System.currentTimeMillis();
+        State state = state(now);
+        if (state == State.BREAKING) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "LeaseIsBreakingAndCannotBeAcquired",
+                    "There is already a breaking lease on the " + this.resourceKind.toLowerCase() + ".");
+        }
+        if (state == State.LEASED && !isExpired(now) && !proposedId.equalsIgnoreCase(this.id)) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "LeaseAlreadyPresent",
+                    "There is already a lease present.");
+        }
+        this.state = State.LEASED;
+        this.id = proposedId;
+        this.durationInSeconds = durationInSeconds;
+        this.expiryTime = now + durationInSeconds * 1000;
+    }
+
+    void renew(String leaseId) {
+        long now = System.currentTimeMillis();
+        State state = state(now);
+        if (state == State.BREAKING || state == State.BROKEN) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "LeaseIsBrokenAndCannotBeRenewed",
+                    "The lease ID matched, but the lease has been broken explicitly and cannot be renewed.");
+        }
+        if (state != State.LEASED || !leaseId.equalsIgnoreCase(this.id)) {
+            throw leaseIdMismatch("LeaseOperation");
+        }
+        this.expiryTime = now + this.durationInSeconds * 1000;
+    }
+
+    void change(String leaseId, String proposedId) {
+        long now = System.currentTimeMillis();
+        State state = state(now);
+        if (state == State.AVAILABLE) {
+            throw leaseNotPresent(HttpResponseStatus.CONFLICT, "LeaseOperation");
+        }
+        if (state == State.BREAKING || state == State.BROKEN) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "LeaseIsBrokenAndCannotBeChanged",
+                    "The lease has been broken and cannot be changed.");
+        }
+        if (isExpired(now)) {
+            throw new StorageError(HttpResponseStatus.CONFLICT, "LeaseNotPresentWithLeaseOperation",
+                    "The lease has expired and cannot be changed.");
+        }
+        if (!leaseId.equalsIgnoreCase(this.id) && !proposedId.equalsIgnoreCase(this.id)) {
+            throw leaseIdMismatch("LeaseOperation");
+        }
+        this.id = proposedId;
+    }
+
+    void release(String leaseId) {
+        long now = System.currentTimeMillis();
+        if (state(now) == State.AVAILABLE) {
+            throw leaseNotPresent(HttpResponseStatus.CONFLICT, "LeaseOperation");
+        }
+        if (!leaseId.equalsIgnoreCase(this.id)) {
+            throw leaseIdMismatch("LeaseOperation");
+        }
+        this.state = State.AVAILABLE;
+        this.id = null;
+    }
+
+    /**
+     * Breaks the lease and returns the number of seconds until the break completes.
+     *
+     * @param breakPeriodInSeconds
+     *      The requested break period, or null to break a fixed lease when it expires and an infinite lease at once.
+     */
+    long breakLease(Long breakPeriodInSeconds) {
+        long now = System.currentTimeMillis();
+        State state = state(now);
+        if (state == State.AVAILABLE) {
+            throw leaseNotPresent(HttpResponseStatus.CONFLICT, "LeaseOperation");
+        }
+        if (state == State.LEASED) {
+            long remaining;
+            if (isExpired(now)) {
+                remaining = 0;
+            } else if (this.durationInSeconds == -1) {
+                remaining = breakPeriodInSeconds == null ? 0 : breakPeriodInSeconds * 1000;
+            } else {
+                remaining = this.expiryTime - now;
+                if (breakPeriodInSeconds != null) {
+                    remaining = Math.min(remaining, breakPeriodInSeconds * 1000);
+                }
+            }
+            this.state = State.BREAKING;
+            this.breakTime = now + remaining;
+        } else if (state == State.BREAKING && breakPeriodInSeconds != null) {
+            this.breakTime = Math.min(this.breakTime, now + breakPeriodInSeconds * 1000);
+        }
+        state = state(now);
+        return state == State.BROKEN ? 0 : (this.breakTime - now + 999) / 1000;
+    }
+
+    private StorageError leaseIdMismatch(String operation) {
+        return new StorageError(operation.equals("LeaseOperation") ? HttpResponseStatus.CONFLICT
+                : HttpResponseStatus.PRECONDITION_FAILED, "LeaseIdMismatchWith" + operation,
+                "The lease ID specified did not match the lease ID for the " + this.resourceKind.toLowerCase() + ".");
+    }
+
+    private StorageError leaseNotPresent(HttpResponseStatus status, String operation) {
+        return new StorageError(status, "LeaseNotPresentWith" + operation,
+                "There is currently no lease on the " + this.resourceKind.toLowerCase() + ".");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.UUID;
+
+/**
+ * Performs the Lease Container and Lease Blob operations, which share their headers and lease semantics.
+ */
+final class LeaseRequests {
+
+    private LeaseRequests() {
+    }
+
+    static EmulatorResponse apply(EmulatorRequest request, Lease lease) {
+        String action = request.requiredHeader("x-ms-lease-action");
+        switch (action) {
+            case "acquire": {
+                Long duration = request.longHeader("x-ms-lease-duration");
+                if (duration == null) {
+                    throw StorageError.missingHeader("x-ms-lease-duration");
+                }
+                if (duration != -1 && (duration < 15 || duration > 60)) {
+                    throw StorageError.invalidHeader("x-ms-lease-duration");
+                }
+                String proposedId = request.header("x-ms-proposed-lease-id");
+                String leaseId = proposedId == null ? UUID.randomUUID().toString() : proposedId;
+                lease.acquire(leaseId, duration);
+                return new EmulatorResponse(HttpResponseStatus.CREATED).header("x-ms-lease-id", leaseId);
+            }
+            case "renew": {
+                String leaseId = request.requiredHeader("x-ms-lease-id");
+                lease.renew(leaseId);
+                return new EmulatorResponse(HttpResponseStatus.OK).header("x-ms-lease-id", leaseId);
+            }
+            case "change": {
+                String proposedId = request.requiredHeader("x-ms-proposed-lease-id");
+                lease.change(request.requiredHeader("x-ms-lease-id"), proposedId);
+                return new EmulatorResponse(HttpResponseStatus.OK).header("x-ms-lease-id", proposedId);
+            }
+            case "release":
+                lease.release(request.requiredHeader("x-ms-lease-id"));
+                return new EmulatorResponse(HttpResponseStatus.OK);
+            case "break": {
+                Long breakPeriod = request.longHeader("x-ms-lease-break-period");
+                if (breakPeriod != null && (breakPeriod < 0 || breakPeriod > 60)) {
+                    throw StorageError.invalidHeader("x-ms-lease-break-period");
+                }
+                return new EmulatorResponse(HttpResponseStatus.ACCEPTED)
+                        .header("x-ms-lease-time", lease.breakLease(breakPeriod));
+            }
+            default:
+                throw StorageError.invalidHeader("x-ms-lease-action");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Content held in fixed-size chunks, of which only those containing written bytes are allocated.
+ */
+final class MemoryBlobContent extends BlobContent {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final Map<Long, byte[]> chunks = new HashMap<Long, byte[]>();
+
+    private long length;
+
+    @Override
+    long length() {
+        return this.length;
+    }
+
+    @Override
+    void setLength(long length) {
+        if (length < this.length) {
+            Iterator<Map.Entry<Long, byte[]>> iterator = this.chunks.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, byte[]> chunk = iterator.next();
+                long chunkStart = chunk.getKey() * CHUNK_SIZE;
+                if (chunkStart >= length) {
+                    iterator.remove();
+                } else if (chunkStart + CHUNK_SIZE > length) {
+                    Arrays.fill(chunk.getValue(), (int) (length - chunkStart), CHUNK_SIZE, (byte) 0);
+                }
+            }
+        }
+        this.length = length;
+    }
+
+    @Override
+    void write(long offset, ByteBuf data) {
+        int index = data.readerIndex();
+        int remaining = data.readableBytes();
+        while (remaining > 0) {
+            long chunkIndex = offset / CHUNK_SIZE;
+            int chunkOffset = (int) (offset % CHUNK_SIZE);
+            int count = Math.min(remaining, CHUNK_SIZE - chunkOffset);
+            byte[] chunk = this.chunks.get(chunkIndex);
+            if (chunk == null) {
+                chunk = new byte[CHUNK_SIZE];
+                this.chunks.put(chunkIndex, chunk);
+            }
+            data.getBytes(index, chunk, chunkOffset, count);
+            index += count;
+            offset += count;
+            remaining -= count;
+        }
+        this.length = Math.max(this.length, offset);
+    }
+
+    @Override
+    void read(long offset, int length, ByteBuf destination) {
+        while (length > 0) {
+            int chunkOffset = (int) (offset % CHUNK_SIZE);
+            int count = Math.min(length, CHUNK_SIZE - chunkOffset);
+            byte[] chunk = this.chunks.get(offset / CHUNK_SIZE);
+            if (chunk == null) {
+                destination.writeZero(count);
+            } else {
+                destination.writeBytes(chunk, chunkOffset, count);
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    void clear(long offset, long length) {
+        long end = Math.min(offset + length, this.length);
+        while (offset < end) {
+            long chunkIndex = offset / CHUNK_SIZE;
+            int chunkOffset = (int) (offset % CHUNK_SIZE);
+            int count = (int) Math.min(end - offset, CHUNK_SIZE - chunkOffset);
+            if (count == CHUNK_SIZE) {
+                this.chunks.remove(chunkIndex);
+            } else {
+                byte[] chunk = this.chunks.get(chunkIndex);
+                if (chunk != null) {
+                    Arrays.fill(chunk, chunkOffset, chunkOffset + count, (byte) 0);
+                }
+            }
+            offset += count;
+        }
+    }
+
+    @Override
+    BlobContent copy() {
+        MemoryBlobContent copy = new MemoryBlobContent();
+        for (Map.Entry<Long, byte[]> chunk : this.chunks.entrySet()) {
+            copy.chunks.put(chunk.getKey(), chunk.getValue().clone());
+        }
+        copy.length = this.length;
+        return copy;
+    }
+
+    @Override
+    void release() {
+        this.chunks.clear();
+    }
+}
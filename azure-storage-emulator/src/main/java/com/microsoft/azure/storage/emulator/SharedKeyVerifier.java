@@ -0,0 +1,148 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.handler.codec.http.HttpHeaders;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checks the SharedKey signatures of requests. The string to sign is built the way the service builds it for the
+ * 2017-04-17 version, with the Date header signed as empty because x-ms-date is always sent.
+ */
+final class SharedKeyVerifier {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String accountName;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> hmacSha256 = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new Error(e); // The key was validated in the constructor.
+            }
+        }
+    };
+
+    /**
+     * Creates a verifier for the account. Throws IllegalArgumentException if the key is not valid Base64.
+     */
+    SharedKeyVerifier(String accountName, String accountKey) {
+        this.accountName = accountName;
+        this.key = new SecretKeySpec(decodeKey(accountKey), "HmacSHA256");
+        this.hmacSha256.get();
+    }
+
+    static byte[] decodeKey(String accountKey) {
+        if (accountKey == null || accountKey.isEmpty() || !accountKey.matches("[A-Za-z0-9+/]*={0,2}")) {
+            throw new IllegalArgumentException("The account key must be a Base64-encoded string.");
+        }
+        ByteBuf decoded = Base64.decode(Unpooled.copiedBuffer(accountKey, UTF8));
+        try {
+            byte[] bytes = new byte[decoded.readableBytes()];
+            decoded.readBytes(bytes);
+            return bytes;
+        } finally {
+            decoded.release();
+        }
+    }
+
+    /**
+     * Returns whether the Authorization header of the request is a valid SharedKey signature for the account.
+     */
+    boolean verify(EmulatorRequest request, String authorization) {
+        String expectedPrefix = "SharedKey " + this.accountName + ":";
+        if (!authorization.startsWith(expectedPrefix)) {
+            return false;
+        }
+        byte[] signature = this.hmacSha256.get().doFinal(stringToSign(request).getBytes(UTF8));
+        byte[] actual = authorization.substring(expectedPrefix.length()).getBytes(UTF8);
+        return MessageDigest.isEqual(BlobOperations.base64(signature).getBytes(UTF8), actual);
+    }
+
+    private String stringToSign(EmulatorRequest request) {
+        HttpHeaders headers = request.headers();
+        String contentLength = standardHeader(headers, "Content-Length");
+        StringBuilder builder = new StringBuilder()
+                .append(request.method().name()).append('\n')
+                .append(standardHeader(headers, "Content-Encoding")).append('\n')
+                .append(standardHeader(headers, "Content-Language")).append('\n')
+                .append(contentLength.equals("0") ? "" : contentLength).append('\n')
+                .append(standardHeader(headers, "Content-MD5")).append('\n')
+                .append(standardHeader(headers, "Content-Type")).append('\n')
+                .append('\n')
+                .append(standardHeader(headers, "If-Modified-Since")).append('\n')
+                .append(standardHeader(headers, "If-Match")).append('\n')
+                .append(standardHeader(headers, "If-None-Match")).append('\n')
+                .append(standardHeader(headers, "If-Unmodified-Since")).append('\n')
+                .append(standardHeader(headers, "Range")).append('\n');
+
+        List<String> names = new ArrayList<String>();
+        for (String name : headers.names()) {
+            String lowerCaseName = name.toLowerCase(Locale.US);
+            if (lowerCaseName.startsWith("x-ms-")) {
+                names.add(lowerCaseName);
+            }
+        }
+        Collections.sort(names);
+        if (names.isEmpty()) {
+            builder.append('\n');
+        }
+        for (String name : names) {
+            builder.append(name).append(':').append(headers.get(name)).append('\n');
+        }
+
+        builder.append('/').append(this.accountName).append(request.rawPath());
+        Map<String, List<String>> parameters = request.queryParameters();
+        List<String> parameterNames = new ArrayList<String>(parameters.keySet());
+        Collections.sort(parameterNames);
+        for (String name : parameterNames) {
+            List<String> values = new ArrayList<String>(parameters.get(name));
+            Collections.sort(values);
+            builder.append('\n').append(name.toLowerCase(Locale.US)).append(':');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(values.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String standardHeader(HttpHeaders headers, String name) {
+        String value = headers.get(name);
+        return value == null ? "" : value;
+    }
+}
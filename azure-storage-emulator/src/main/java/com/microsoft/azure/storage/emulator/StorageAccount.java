@@ -0,0 +1,74 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state of the emulated account.
+ */
+final class StorageAccount {
+
+    final String name;
+
+    final File dataDirectory;
+
+    final ConcurrentSkipListMap<String, StoredContainer> containers =
+            new ConcurrentSkipListMap<String, StoredContainer>();
+
+    // The StorageServiceProperties XML of the last Set Service Properties, or null.
+    volatile String serviceProperties;
+
+    // ETags only need to change on every write; starting from the clock makes them look like the service's.
+    private final AtomicLong etagCounter = new AtomicLong(System.currentTimeMillis() * 10000);
+
+    StorageAccount(String name, File dataDirectory) {
+        this.name = name;
+        this.dataDirectory = dataDirectory;
+    }
+
+    String nextETag() {
+        return String.format("\"0x%X\"", this.etagCounter.incrementAndGet());
+    }
+
+    /**
+     * Returns the current time truncated to seconds, the precision of the Last-Modified header, so that conditions
+     * compare the same value the client saw.
+     */
+    static Date now() {
+        return new Date(System.currentTimeMillis() / 1000 * 1000);
+    }
+
+    BlobContent newContent() {
+        return BlobContent.create(this.dataDirectory);
+    }
+
+    void releaseData() {
+        for (StoredContainer container : this.containers.values()) {
+            for (StoredBlob blob : container.blobs.values()) {
+                blob.lock.lock();
+                try {
+                    blob.releaseData();
+                } finally {
+                    blob.lock.unlock();
+                }
+            }
+        }
+        this.containers.clear();
+    }
+}
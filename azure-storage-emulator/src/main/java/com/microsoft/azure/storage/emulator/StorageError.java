@@ -0,0 +1,65 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * An error the emulated service returns, with the status and error code the real service uses for it.
+ */
+final class StorageError extends RuntimeException {
+
+    private final HttpResponseStatus status;
+
+    private final String code;
+
+    StorageError(HttpResponseStatus status, String code, String message) {
+        super(message);
+        this.status = status;
+        this.code = code;
+    }
+
+    HttpResponseStatus status() {
+        return this.status;
+    }
+
+    String code() {
+        return this.code;
+    }
+
+    static StorageError badRequest(String code, String message) {
+        return new StorageError(HttpResponseStatus.BAD_REQUEST, code, message);
+    }
+
+    static StorageError invalidHeader(String header) {
+        return badRequest("InvalidHeaderValue", "The value for one of the HTTP headers is not in the correct format: "
+                + header);
+    }
+
+    static StorageError invalidQueryParameter(String parameter) {
+        return badRequest("InvalidQueryParameterValue",
+                "Value for one of the query parameters specified in the request URI is invalid: " + parameter);
+    }
+
+    static StorageError missingHeader(String header) {
+        return badRequest("MissingRequiredHeader", "An HTTP header that's mandatory for this request is not specified: "
+                + header);
+    }
+
+    static StorageError conditionNotMet() {
+        return new StorageError(HttpResponseStatus.PRECONDITION_FAILED, "ConditionNotMet",
+                "The condition specified using HTTP conditional header(s) is not met.");
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The state of a blob, or of a snapshot of one. Fields are read and written by {@link BlobOperations} while it holds
+ * the blob's lock; snapshots are immutable and need no lock.
+ */
+final class StoredBlob {
+
+    static final String BLOCK_BLOB = "BlockBlob";
+
+    static final String PAGE_BLOB = "PageBlob";
+
+    static final String APPEND_BLOB = "AppendBlob";
+
+    static final int PAGE_SIZE = 512;
+
+    final String name;
+
+    final Lease lease = new Lease("Blob");
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    // Set once the blob has been removed from its container, after which a new entry must be created.
+    boolean removed;
+
+    // False while the blob has only uncommitted blocks.
+    boolean exists;
+
+    String type;
+
+    String snapshot;
+
+    String etag;
+
+    Date lastModified;
+
+    String contentType;
+
+    String contentEncoding;
+
+    String contentLanguage;
+
+    String contentMD5;
+
+    String cacheControl;
+
+    String contentDisposition;
+
+    Map<String, String> metadata = new LinkedHashMap<String, String>();
+
+    // The committed blocks of a block or append blob.
+    List<Block> blocks = new ArrayList<Block>();
+
+    final Map<String, Block> uncommittedBlocks = new LinkedHashMap<String, Block>();
+
+    // The data of a page blob, and its written ranges as start to exclusive end.
+    BlobContent pages;
+
+    final TreeMap<Long, Long> pageRanges = new TreeMap<Long, Long>();
+
+    long sequenceNumber;
+
+    String accessTier;
+
+    String copyId;
+
+    String copyStatus;
+
+    String copySource;
+
+    String copyProgress;
+
+    Date copyCompletionTime;
+
+    final TreeMap<String, StoredBlob> snapshots = new TreeMap<String, StoredBlob>();
+
+    StoredBlob(String name) {
+        this.name = name;
+    }
+
+    long length() {
+        if (PAGE_BLOB.equals(this.type)) {
+            return this.pages.length();
+        }
+        long length = 0;
+        for (Block block : this.blocks) {
+            length += block.size();
+        }
+        return length;
+    }
+
+    void read(long offset, int length, ByteBuf destination) {
+        if (PAGE_BLOB.equals(this.type)) {
+            this.pages.read(offset, length, destination);
+            return;
+        }
+        long blockStart = 0;
+        for (Block block : this.blocks) {
+            long blockEnd = blockStart + block.size();
+            if (length > 0 && offset < blockEnd) {
+                int count = (int) Math.min(length, blockEnd - offset);
+                block.content.read(offset - blockStart, count, destination);
+                offset += count;
+                length -= count;
+            }
+            blockStart = blockEnd;
+        }
+    }
+
+    void setProperties(String contentType, String contentEncoding, String contentLanguage, String contentMD5,
+            String cacheControl, String contentDisposition) {
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.contentLanguage = contentLanguage;
+        this.contentMD5 = contentMD5;
+        this.cacheControl = cacheControl;
+        this.contentDisposition = contentDisposition;
+    }
+
+    /**
+     * Replaces the data of the blob, releasing the blocks which are no longer referenced.
+     */
+    void replaceData(String type, List<Block> blocks, BlobContent pages) {
+        IdentityHashMap<Block, Boolean> kept = new IdentityHashMap<Block, Boolean>();
+        for (Block block : blocks) {
+            kept.put(block, true);
+        }
+        for (Block block : this.blocks) {
+            if (!kept.containsKey(block)) {
+                kept.put(block, true);
+                block.content.release();
+            }
+        }
+        for (Block block : this.uncommittedBlocks.values()) {
+            if (!kept.containsKey(block)) {
+                kept.put(block, true);
+                block.content.release();
+            }
+        }
+        this.uncommittedBlocks.clear();
+        if (this.pages != null && this.pages != pages) {
+            this.pages.release();
+        }
+        this.type = type;
+        this.blocks = blocks;
+        this.pages = pages;
+        this.pageRanges.clear();
+        this.sequenceNumber = 0;
+    }
+
+    /**
+     * Releases all data of the blob and its snapshots.
+     */
+    void releaseData() {
+        replaceData(null, new ArrayList<Block>(), null);
+        for (StoredBlob snapshot : this.snapshots.values()) {
+            snapshot.releaseData();
+        }
+        this.snapshots.clear();
+    }
+
+    /**
+     * Returns a copy of the committed state of the blob, with its own copy of the data.
+     */
+    StoredBlob copy() {
+        StoredBlob copy = new StoredBlob(this.name);
+        copy.exists = true;
+        copy.type = this.type;
+        copy.etag = this.etag;
+        copy.lastModified = this.lastModified;
+        copy.setProperties(this.contentType, this.contentEncoding, this.contentLanguage, this.contentMD5,
+                this.cacheControl, this.contentDisposition);
+        copy.metadata = new LinkedHashMap<String, String>(this.metadata);
+        if (PAGE_BLOB.equals(this.type)) {
+            copy.pages = this.pages.copy();
+            copy.pageRanges.putAll(this.pageRanges);
+        } else {
+            // Each blob owns the content of its blocks, so that it can be released when the blob is deleted.
+            for (Block block : this.blocks) {
+                copy.blocks.add(new Block(block.id, block.content.copy()));
+            }
+        }
+        copy.sequenceNumber = this.sequenceNumber;
+        copy.accessTier = this.accessTier;
+        copy.copyId = this.copyId;
+        copy.copyStatus = this.copyStatus;
+        copy.copySource = this.copySource;
+        copy.copyProgress = this.copyProgress;
+        copy.copyCompletionTime = this.copyCompletionTime;
+        return copy;
+    }
+
+    /**
+     * Marks the pages in the range as written.
+     */
+    void addPageRange(long start, long end) {
+        Map.Entry<Long, Long> before = this.pageRanges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next = this.pageRanges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            this.pageRanges.remove(next.getKey());
+            next = this.pageRanges.ceilingEntry(start);
+        }
+        this.pageRanges.put(start, end);
+    }
+
+    /**
+     * Marks the pages in the range as cleared.
+     */
+    void removePageRange(long start, long end) {
+        Map.Entry<Long, Long> before = this.pageRanges.lowerEntry(start);
+        if (before != null && before.getValue() > start) {
+            this.pageRanges.put(before.getKey(), start);
+            if (before.getValue() > end) {
+                this.pageRanges.put(end, before.getValue());
+                return;
+            }
+        }
+        Map.Entry<Long, Long> next = this.pageRanges.ceilingEntry(start);
+        while (next != null && next.getKey() < end) {
+            this.pageRanges.remove(next.getKey());
+            if (next.getValue() > end) {
+                this.pageRanges.put(end, next.getValue());
+            }
+            next = this.pageRanges.ceilingEntry(start);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The state of a container. Its properties are read and written while synchronized on it; its blobs each have their
+ * own lock.
+ */
+final class StoredContainer {
+
+    final String name;
+
+    final Lease lease = new Lease("Container");
+
+    final ConcurrentSkipListMap<String, StoredBlob> blobs = new ConcurrentSkipListMap<String, StoredBlob>();
+
+    // Cleared when the container is deleted, so that requests which found it before then fail.
+    boolean exists = true;
+
+    String etag;
+
+    Date lastModified;
+
+    Map<String, String> metadata = new LinkedHashMap<String, String>();
+
+    // "container", "blob", or null for private containers.
+    String publicAccess;
+
+    // The SignedIdentifiers XML of the last Set Container ACL, or null.
+    String signedIdentifiers;
+
+    StoredContainer(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes the XML bodies of responses, and reads those of requests.
+ */
+final class Xml {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+
+    Xml start(String name) {
+        this.builder.append('<').append(name).append('>');
+        return this;
+    }
+
+    /**
+     * Starts an element with attributes, given as alternating names and values.
+     */
+    Xml start(String name, String... attributes) {
+        this.builder.append('<').append(name);
+        for (int i = 0; i < attributes.length; i += 2) {
+            this.builder.append(' ').append(attributes[i]).append("=\"");
+            escape(attributes[i + 1]);
+            this.builder.append('"');
+        }
+        this.builder.append('>');
+        return this;
+    }
+
+    Xml end(String name) {
+        this.builder.append("</").append(name).append('>');
+        return this;
+    }
+
+    /**
+     * Writes an element with text content, or an empty element if the value is null.
+     */
+    Xml element(String name, Object value) {
+        if (value == null) {
+            this.builder.append('<').append(name).append(" />");
+            return this;
+        }
+        start(name);
+        escape(value instanceof Date ? DateFormatter.format((Date) value) : value.toString());
+        return end(name);
+    }
+
+    /**
+     * Writes an element only if the value is not null.
+     */
+    Xml optionalElement(String name, Object value) {
+        return value == null ? this : element(name, value);
+    }
+
+    Xml raw(String xml) {
+        this.builder.append(xml);
+        return this;
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    this.builder.append("&lt;");
+                    break;
+                case '>':
+                    this.builder.append("&gt;");
+                    break;
+                case '&':
+                    this.builder.append("&amp;");
+                    break;
+                case '"':
+                    this.builder.append("&quot;");
+                    break;
+                case '\'':
+                    this.builder.append("&apos;");
+                    break;
+                default:
+                    this.builder.append(c);
+            }
+        }
+    }
+
+    ByteBuf toByteBuf() {
+        return Unpooled.copiedBuffer(this.builder, UTF8);
+    }
+
+    /**
+     * Parses a request body. External entities are not resolved.
+     */
+    static Element parse(ByteBuf body) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            Document document = factory.newDocumentBuilder().parse(
+                    new ByteBufInputStream(body.duplicate()));
+            return document.getDocumentElement();
+        } catch (SAXException e) {
+            throw invalidXml();
+        } catch (IOException e) {
+            throw invalidXml();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the child elements of an element.
+     */
+    static List<Element> children(Element element) {
+        List<Element> children = new ArrayList<Element>();
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                children.add((Element) child);
+            }
+        }
+        return children;
+    }
+
+    static StorageError invalidXml() {
+        return new StorageError(HttpResponseStatus.BAD_REQUEST, "InvalidXmlDocument",
+                "XML specified is not syntactically valid.");
+    }
+}
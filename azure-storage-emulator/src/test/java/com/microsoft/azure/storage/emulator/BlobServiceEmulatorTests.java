@@ -0,0 +1,352 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.emulator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class BlobServiceEmulatorTests {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BlobServiceEmulator emulator;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        this.emulator = new BlobServiceEmulator(null).start();
+    }
+
+    @After
+    public void tearDown() {
+        this.emulator.close();
+    }
+
+    @Test
+    public void TestBlockBlobRoundTrip() throws Exception {
+        assertEquals(201, send("PUT", "/test?restype=container", null).status);
+        assertEquals(409, send("PUT", "/test?restype=container", null).status);
+
+        Response put = send("PUT", "/test/dir/blob", "hello, world".getBytes(UTF8),
+                "x-ms-blob-type", "BlockBlob", "x-ms-meta-key", "value");
+        assertEquals(201, put.status);
+        String etag = put.header("ETag");
+
+        Response get = send("GET", "/test/dir/blob", null);
+        assertEquals(200, get.status);
+        assertEquals("hello, world", get.body());
+        assertEquals(etag, get.header("ETag"));
+        assertEquals("value", get.header("x-ms-meta-key"));
+        assertEquals("BlockBlob", get.header("x-ms-blob-type"));
+
+        Response range = send("GET", "/test/dir/blob", null, "x-ms-range", "bytes=7-");
+        assertEquals(206, range.status);
+        assertEquals("world", range.body());
+        assertEquals("bytes 7-11/12", range.header("Content-Range"));
+        assertEquals(416, send("GET", "/test/dir/blob", null, "x-ms-range", "bytes=12-").status);
+
+        Response head = send("HEAD", "/test/dir/blob", null);
+        assertEquals(200, head.status);
+        assertEquals("12", head.header("Content-Length"));
+
+        assertEquals(304, send("GET", "/test/dir/blob", null, "If-None-Match", etag).status);
+        Response conflict = send("PUT", "/test/dir/blob", new byte[0], "x-ms-blob-type", "BlockBlob",
+                "If-Match", "\"0x1\"");
+        assertEquals(412, conflict.status);
+        assertEquals("ConditionNotMet", conflict.header("x-ms-error-code"));
+
+        Response list = send("GET", "/test?restype=container&comp=list&delimiter=/", null);
+        assertTrue(list.body().contains("<BlobPrefix><Name>dir/</Name></BlobPrefix>"));
+
+        assertEquals(202, send("DELETE", "/test/dir/blob", null).status);
+        Response missing = send("GET", "/test/dir/blob", null);
+        assertEquals(404, missing.status);
+        assertTrue(missing.body().contains("<Code>BlobNotFound</Code>"));
+    }
+
+    @Test
+    public void TestBlockList() throws Exception {
+        send("PUT", "/test?restype=container", null);
+        assertEquals(201, send("PUT", "/test/blob?comp=block&blockid=QUE%3D", "abc".getBytes(UTF8)).status);
+        assertEquals(201, send("PUT", "/test/blob?comp=block&blockid=Qg%3D%3D", "de".getBytes(UTF8)).status);
+        assertEquals(404, send("GET", "/test/blob", null).status);
+
+        Response uncommitted = send("GET", "/test/blob?comp=blocklist&blocklisttype=uncommitted", null);
+        assertTrue(uncommitted.body().contains("<Block><Name>QUE=</Name><Size>3</Size></Block>"));
+
+        String blockList = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<BlockList><Latest>Qg==</Latest><Uncommitted>QUE=</Uncommitted></BlockList>";
+        assertEquals(201, send("PUT", "/test/blob?comp=blocklist", blockList.getBytes(UTF8)).status);
+        assertEquals("deabc", send("GET", "/test/blob", null).body());
+
+        String invalid = "<BlockList><Uncommitted>QUE=</Uncommitted></BlockList>";
+        Response rejected = send("PUT", "/test/blob?comp=blocklist", invalid.getBytes(UTF8));
+        assertEquals(400, rejected.status);
+        assertEquals("InvalidBlockList", rejected.header("x-ms-error-code"));
+    }
+
+    @Test
+    public void TestPageBlob() throws Exception {
+        send("PUT", "/test?restype=container", null);
+        assertEquals(201, send("PUT", "/test/pages", new byte[0], "x-ms-blob-type", "PageBlob",
+                "x-ms-blob-content-length", "4096").status);
+        byte[] page = new byte[1024];
+        page[0] = 1;
+        assertEquals(201, send("PUT", "/test/pages?comp=page", page, "x-ms-page-write", "update",
+                "x-ms-range", "bytes=512-1535").status);
+        assertEquals(201, send("PUT", "/test/pages?comp=page", new byte[0], "x-ms-page-write", "clear",
+                "x-ms-range", "bytes=1024-1535").status);
+        assertEquals(416, send("PUT", "/test/pages?comp=page", new byte[512], "x-ms-page-write", "update",
+                "x-ms-range", "bytes=4096-4607").status);
+
+        Response ranges = send("GET", "/test/pages?comp=pagelist", null);
+        assertTrue(ranges.body().contains("<PageList><PageRange><Start>512</Start><End>1023</End></PageRange>"
+                + "</PageList>"));
+        assertEquals(4096, send("GET", "/test/pages", null).bytes.length);
+    }
+
+    @Test
+    public void TestAppendBlob() throws Exception {
+        send("PUT", "/test?restype=container", null);
+        send("PUT", "/test/log", new byte[0], "x-ms-blob-type", "AppendBlob");
+        Response first = send("PUT", "/test/log?comp=appendblock", "one".getBytes(UTF8));
+        assertEquals("0", first.header("x-ms-blob-append-offset"));
+        Response second = send("PUT", "/test/log?comp=appendblock", "two".getBytes(UTF8),
+                "x-ms-blob-condition-appendpos", "3");
+        assertEquals("3", second.header("x-ms-blob-append-offset"));
+        assertEquals("2", second.header("x-ms-blob-committed-block-count"));
+        Response stale = send("PUT", "/test/log?comp=appendblock", "three".getBytes(UTF8),
+                "x-ms-blob-condition-appendpos", "3");
+        assertEquals(412, stale.status);
+        assertEquals("AppendPositionConditionNotMet", stale.header("x-ms-error-code"));
+        assertEquals("onetwo", send("GET", "/test/log", null).body());
+    }
+
+    @Test
+    public void TestLeaseAndSnapshot() throws Exception {
+        send("PUT", "/test?restype=container", null);
+        send("PUT", "/test/blob", "v1".getBytes(UTF8), "x-ms-blob-type", "BlockBlob");
+        Response lease = send("PUT", "/test/blob?comp=lease", null, "x-ms-lease-action", "acquire",
+                "x-ms-lease-duration", "-1");
+        assertEquals(201, lease.status);
+        String leaseId = lease.header("x-ms-lease-id");
+
+        assertEquals(412, send("PUT", "/test/blob", "v2".getBytes(UTF8), "x-ms-blob-type", "BlockBlob").status);
+        Response snapshot = send("PUT", "/test/blob?comp=snapshot", null);
+        assertEquals(201, snapshot.status);
+        assertEquals(201, send("PUT", "/test/blob", "v2".getBytes(UTF8), "x-ms-blob-type", "BlockBlob",
+                "x-ms-lease-id", leaseId).status);
+
+        String snapshotQuery = "?snapshot=" + snapshot.header("x-ms-snapshot");
+        assertEquals("v1", send("GET", "/test/blob" + snapshotQuery, null).body());
+        assertEquals("v2", send("GET", "/test/blob", null).body());
+        assertEquals(409, send("DELETE", "/test/blob", null, "x-ms-lease-id", leaseId).status);
+        assertEquals(202, send("DELETE", "/test/blob", null, "x-ms-lease-id", leaseId,
+                "x-ms-delete-snapshots", "include").status);
+    }
+
+    @Test
+    public void TestAuthentication() throws Exception {
+        send("PUT", "/test?restype=container", null);
+        Response forged = send("GET", "/test?restype=container", null, "Authorization",
+                "SharedKey " + this.emulator.getAccountName() + ":AAAA");
+        assertEquals(403, forged.status);
+        assertEquals("AuthenticationFailed", forged.header("x-ms-error-code"));
+        assertEquals(404, sendAnonymous("GET", "/test?restype=container&comp=list").status);
+
+        send("PUT", "/test?restype=container&comp=acl", null, "x-ms-blob-public-access", "container");
+        assertEquals(200, sendAnonymous("GET", "/test?restype=container&comp=list").status);
+    }
+
+    @Test
+    public void TestFileBackedData() throws Exception {
+        this.emulator.close();
+        EmulatorOptions options = new EmulatorOptions();
+        options.dataDirectory = this.temporaryFolder.getRoot();
+        this.emulator = new BlobServiceEmulator(options).start();
+        send("PUT", "/test?restype=container", null);
+        byte[] data = new byte[3 * 1024 * 1024 + 7];
+        new Random(1).nextBytes(data);
+        send("PUT", "/test/blob", data, "x-ms-blob-type", "BlockBlob");
+        assertEquals(1, this.temporaryFolder.getRoot().list().length);
+        assertArrayEquals(data, send("GET", "/test/blob", null).bytes);
+
+        send("DELETE", "/test/blob", null);
+        assertEquals(0, this.temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void TestThrottling() throws Exception {
+        this.emulator.close();
+        EmulatorOptions options = new EmulatorOptions();
+        options.throttleProbability = 1;
+        this.emulator = new BlobServiceEmulator(options).start();
+        Response response = send("PUT", "/test?restype=container", null);
+        assertEquals(503, response.status);
+        assertEquals("ServerBusy", response.header("x-ms-error-code"));
+    }
+
+    private static final class Response {
+        final int status;
+
+        final Map<String, List<String>> headers;
+
+        final byte[] bytes;
+
+        Response(int status, Map<String, List<String>> headers, byte[] bytes) {
+            this.status = status;
+            this.headers = headers;
+            this.bytes = bytes;
+        }
+
+        String header(String name) {
+            for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        String body() {
+            return new String(this.bytes, UTF8);
+        }
+    }
+
+    private Response sendAnonymous(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.emulator.getServiceURL() + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        return read(connection);
+    }
+
+    /*
+     Sends a request signed with SharedKey, unless an Authorization header is given. The string to sign is built
+     independently of the emulator's verifier so that the test checks it.
+     */
+    private Response send(String method, String path, byte[] body, String... headers)
+            throws IOException, GeneralSecurityException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.emulator.getServiceURL() + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        SimpleDateFormat rfc1123 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        rfc1123.setTimeZone(TimeZone.getTimeZone("GMT"));
+        TreeMap<String, String> msHeaders = new TreeMap<String, String>();
+        msHeaders.put("x-ms-date", rfc1123.format(new Date()));
+        msHeaders.put("x-ms-version", "2017-04-17");
+        Map<String, String> standardHeaders = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < headers.length; i += 2) {
+            if (headers[i].startsWith("x-ms-")) {
+                msHeaders.put(headers[i], headers[i + 1]);
+            } else {
+                standardHeaders.put(headers[i], headers[i + 1]);
+            }
+        }
+        if (method.equals("PUT")) {
+            standardHeaders.put("Content-Type", "application/octet-stream");
+            body = body == null ? new byte[0] : body;
+        }
+
+        StringBuilder stringToSign = new StringBuilder(method).append('\n');
+        for (String name : new String[]{ "Content-Encoding", "Content-Language", "Content-Length", "Content-MD5",
+                "Content-Type", "Date", "If-Modified-Since", "If-Match", "If-None-Match", "If-Unmodified-Since",
+                "Range" }) {
+            String value = standardHeaders.get(name);
+            if (name.equals("Content-Length") && body != null && body.length > 0) {
+                value = String.valueOf(body.length);
+            }
+            stringToSign.append(value == null ? "" : value).append('\n');
+        }
+        for (Map.Entry<String, String> header : msHeaders.entrySet()) {
+            stringToSign.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        URL url = connection.getURL();
+        stringToSign.append('/').append(this.emulator.getAccountName()).append(url.getPath());
+        if (url.getQuery() != null) {
+            List<String> parameters = new ArrayList<String>();
+            for (String parameter : url.getQuery().split("&")) {
+                parameters.add(java.net.URLDecoder.decode(parameter, "UTF-8").replaceFirst("=", ":"));
+            }
+            Collections.sort(parameters);
+            for (String parameter : parameters) {
+                stringToSign.append('\n').append(parameter);
+            }
+        }
+
+        if (!standardHeaders.containsKey("Authorization")) {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SharedKeyVerifier.decodeKey(this.emulator.getAccountKey()), "HmacSHA256"));
+            String signature = BlobOperations.base64(mac.doFinal(stringToSign.toString().getBytes(UTF8)));
+            standardHeaders.put("Authorization", "SharedKey " + this.emulator.getAccountName() + ":" + signature);
+        }
+        for (Map.Entry<String, String> header : standardHeaders.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        for (Map.Entry<String, String> header : msHeaders.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            OutputStream output = connection.getOutputStream();
+            output.write(body);
+            output.close();
+        }
+        return read(connection);
+    }
+
+    private static Response read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (input != null) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            input.close();
+        }
+        return new Response(status, connection.getHeaderFields(), bytes.toByteArray());
+    }
+}
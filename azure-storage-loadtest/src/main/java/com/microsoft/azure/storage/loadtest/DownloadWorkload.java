@@ -0,0 +1,110 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.BlobRange;
+import com.microsoft.azure.storage.blob.BlockBlobURL;
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.Highlevel;
+import com.microsoft.azure.storage.models.BlobGetHeaders;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Function;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Downloads a blob in block-size ranges, {@link LoadTestOptions#parallelism} ranges at a time, one blob at a time.
+ */
+final class DownloadWorkload implements IWorkload {
+
+    private final BlockBlobURL blobURL;
+
+    private final LoadTestOptions options;
+
+    private final long objectSize;
+
+    DownloadWorkload(ContainerURL containerURL, LoadTestOptions options) {
+        this.blobURL = containerURL.createBlockBlobURL("download");
+        this.options = options;
+        this.objectSize = options.effectiveObjectSize();
+    }
+
+    @Override
+    public Completable prepare() {
+        // Upload the blob in blocks, as the blob is usually larger than a single Put Blob allows.
+        final ByteBuffer data = Payloads.randomBuffer(this.options.seed, this.options.blockSize);
+        final int blockCount = (int) ((this.objectSize + this.options.blockSize - 1) / this.options.blockSize);
+        return Flowable.range(0, blockCount)
+                .map(new Function<Integer, ByteBuffer>() {
+                    @Override
+                    public ByteBuffer apply(Integer i) {
+                        ByteBuffer block = data.duplicate();
+                        block.limit((int) Math.min(block.capacity(), objectSize - (long) i * block.capacity()));
+                        return block;
+                    }
+                })
+                .toList()
+                .flatMapCompletable(new Function<List<ByteBuffer>, Completable>() {
+                    @Override
+                    public Completable apply(List<ByteBuffer> blocks) {
+                        return Highlevel.uploadByteBuffersToBlockBlob(blocks, blobURL,
+                                new Highlevel.UploadToBlockBlobOptions(null, null, null, null, options.parallelism))
+                                .toCompletable();
+                    }
+                });
+    }
+
+    @Override
+    public Single<Long> run(int index) {
+        final long rangeLength = this.options.blockSize;
+        final int rangeCount = (int) ((this.objectSize + rangeLength - 1) / rangeLength);
+        return Flowable.range(0, rangeCount)
+                .flatMap(new Function<Integer, Publisher<Long>>() {
+                    @Override
+                    public Publisher<Long> apply(Integer i) {
+                        long offset = i * rangeLength;
+                        return blobURL.getBlob(new BlobRange(offset, Math.min(rangeLength, objectSize - offset)),
+                                null, false)
+                                .flatMap(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>,
+                                        SingleSource<Long>>() {
+                                    @Override
+                                    public SingleSource<Long> apply(
+                                            RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> response) {
+                                        return Payloads.drain(response.body());
+                                    }
+                                })
+                                .toFlowable();
+                    }
+                }, this.options.parallelism)
+                .reduce(0L, new BiFunction<Long, Long, Long>() {
+                    @Override
+                    public Long apply(Long total, Long rangeBytes) {
+                        return total + rangeBytes;
+                    }
+                });
+    }
+
+    @Override
+    public int concurrency() {
+        return 1;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.models.BlobGetHeaders;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Function;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Downloads small blobs, each with a single Get Blob, going round the blobs created by {@link #prepare()}.
+ */
+final class GetBlobWorkload implements IWorkload {
+
+    private static final String PREFIX = "get/";
+
+    private final ContainerURL containerURL;
+
+    private final LoadTestOptions options;
+
+    GetBlobWorkload(ContainerURL containerURL, LoadTestOptions options) {
+        this.containerURL = containerURL;
+        this.options = options;
+    }
+
+    @Override
+    public Completable prepare() {
+        return Payloads.putBlobs(this.containerURL, PREFIX, this.options.blobCount,
+                Payloads.randomBuffer(this.options.seed, (int) this.options.effectiveObjectSize()),
+                this.options.parallelism);
+    }
+
+    @Override
+    public Single<Long> run(int index) {
+        return this.containerURL.createBlobURL(PREFIX + (index % this.options.blobCount))
+                .getBlob(null, null, false)
+                .flatMap(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>, SingleSource<Long>>() {
+                    @Override
+                    public SingleSource<Long> apply(RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> response) {
+                        return Payloads.drain(response.body());
+                    }
+                });
+    }
+
+    @Override
+    public int concurrency() {
+        return this.options.parallelism;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+
+/**
+ * An operation {@link LoadTest} runs many times and measures.
+ */
+interface IWorkload {
+
+    /**
+     * Creates what the operations need, such as the blobs they read. It is not measured.
+     *
+     * @return
+     *      A {@link Completable} which completes when the workload is ready.
+     */
+    Completable prepare();
+
+    /**
+     * Runs one operation.
+     *
+     * @param index
+     *      The number of the operation, counting from 0 across the warmup and the measured operations.
+     * @return
+     *      A {@link Single} which emits the number of bytes of blob data the operation transferred.
+     */
+    Single<Long> run(int index);
+
+    /**
+     * @return
+     *      The number of operations {@link LoadTest} runs at once.
+     */
+    int concurrency();
+}
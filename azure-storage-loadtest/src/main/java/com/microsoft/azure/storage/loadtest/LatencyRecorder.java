@@ -0,0 +1,60 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the latency of every measured operation, so that percentiles are exact rather than estimated from buckets.
+ */
+final class LatencyRecorder {
+
+    private final long[] latenciesInNanos;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private long[] sorted;
+
+    /**
+     * @param capacity
+     *      The number of operations which will be recorded.
+     */
+    LatencyRecorder(int capacity) {
+        this.latenciesInNanos = new long[capacity];
+    }
+
+    /**
+     * Records the latency of one operation. It may be called from any thread.
+     */
+    void record(long latencyInNanos) {
+        this.latenciesInNanos[this.count.getAndIncrement()] = latencyInNanos;
+    }
+
+    /**
+     * @param fraction
+     *      The percentile as a fraction, for example 0.99 for the 99th percentile.
+     * @return
+     *      The smallest latency, in nanoseconds, which at least {@code fraction} of the operations did not exceed.
+     */
+    long percentile(double fraction) {
+        if (this.sorted == null) {
+            this.sorted = Arrays.copyOf(this.latenciesInNanos, this.count.get());
+            Arrays.sort(this.sorted);
+        }
+        int index = (int) Math.ceil(fraction * this.sorted.length) - 1;
+        return this.sorted[Math.max(0, Math.min(index, this.sorted.length - 1))];
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.ListBlobsOptions;
+import com.microsoft.azure.storage.models.ContainerListBlobsHeaders;
+import com.microsoft.azure.storage.models.ListBlobsResponse;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Function;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lists all the blobs created by {@link #prepare()}, following the continuation markers, in each operation. The
+ * operations transfer no blob data, so only their rate and latency are meaningful.
+ */
+final class ListBlobsWorkload implements IWorkload {
+
+    private static final String PREFIX = "list/";
+
+    private final ContainerURL containerURL;
+
+    private final ListBlobsOptions listBlobsOptions;
+
+    private final LoadTestOptions options;
+
+    ListBlobsWorkload(ContainerURL containerURL, LoadTestOptions options) {
+        this.containerURL = containerURL;
+        this.listBlobsOptions = new ListBlobsOptions(null, PREFIX, null, null);
+        this.options = options;
+    }
+
+    @Override
+    public Completable prepare() {
+        return Payloads.putBlobs(this.containerURL, PREFIX, this.options.blobCount, ByteBuffer.allocate(0),
+                this.options.parallelism);
+    }
+
+    @Override
+    public Single<Long> run(int index) {
+        return listFrom(null);
+    }
+
+    private Single<Long> listFrom(String marker) {
+        return this.containerURL.listBlobs(marker, this.listBlobsOptions)
+                .flatMap(new Function<RestResponse<ContainerListBlobsHeaders, ListBlobsResponse>,
+                        SingleSource<Long>>() {
+                    @Override
+                    public SingleSource<Long> apply(
+                            RestResponse<ContainerListBlobsHeaders, ListBlobsResponse> response) {
+                        String nextMarker = response.body().nextMarker();
+                        if (nextMarker == null || nextMarker.isEmpty()) {
+                            return Single.just(0L);
+                        }
+                        return listFrom(nextMarker);
+                    }
+                });
+    }
+
+    @Override
+    public int concurrency() {
+        return this.options.parallelism;
+    }
+}
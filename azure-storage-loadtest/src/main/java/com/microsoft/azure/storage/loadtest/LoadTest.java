@@ -0,0 +1,192 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.PipelineOptions;
+import com.microsoft.azure.storage.blob.ServiceURL;
+import com.microsoft.azure.storage.blob.SharedKeyCredentials;
+import com.microsoft.azure.storage.blob.StorageURL;
+import com.microsoft.azure.storage.emulator.BlobServiceEmulator;
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import org.reactivestreams.Publisher;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a workload against a {@link BlobServiceEmulator} in the same process and reports its throughput, latency
+ * percentiles, allocation rate and CPU use. Unlike the benchmarks, the requests go through the whole stack: the
+ * pipeline's policies, RxJava's schedulers and Netty's connection pool and event loops.
+ * <p>
+ * Run it with {@code java -jar azure-storage-loadtest/target/loadtest.jar [--option value]...}; see
+ * {@link LoadTestOptions} for the options. For example, to find the block size and parallelism which upload fastest
+ * on a machine:
+ * <pre>
+ * java -jar loadtest.jar --workload upload --object-size 1G --block-size 8M --parallelism 32 --count 10
+ * </pre>
+ * The emulator's CPU time is reported separately from the client's, but both share the machine, so for the most
+ * realistic numbers leave cores free for the emulator or add latency with {@code --latency}.
+ */
+public final class LoadTest {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private static final double BYTES_PER_GB = 1024 * 1024 * 1024;
+
+    private LoadTest() {
+        // Static members only.
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        EmulatorOptions emulatorOptions = new EmulatorOptions();
+        emulatorOptions.latencyInMs = options.latencyInMs;
+        emulatorOptions.randomSeed = options.seed;
+        emulatorOptions.dataDirectory = options.dataDirectory;
+        try (BlobServiceEmulator emulator = new BlobServiceEmulator(emulatorOptions).start()) {
+            PipelineOptions pipelineOptions = new PipelineOptions();
+            ServiceURL serviceURL = new ServiceURL(emulator.getServiceURL(), StorageURL.createPipeline(
+                    new SharedKeyCredentials(emulator.getAccountName(), emulator.getAccountKey()), pipelineOptions));
+            ContainerURL containerURL = serviceURL.createContainerURL("loadtest");
+            containerURL.create(null, null).blockingGet();
+
+            IWorkload workload = createWorkload(options.workload, containerURL, options);
+            workload.prepare().blockingAwait();
+
+            System.out.println(options);
+            run(workload, 0, options.warmupCount, null);
+
+            LatencyRecorder latencies = new LatencyRecorder(options.count);
+            ResourceMeter meter = new ResourceMeter();
+            meter.start();
+            long start = System.nanoTime();
+            long bytes = run(workload, options.warmupCount, options.count, latencies);
+            long elapsedInNanos = System.nanoTime() - start;
+            meter.stop();
+
+            report(options.count, bytes, elapsedInNanos, latencies, meter);
+        }
+    }
+
+    private static IWorkload createWorkload(String name, ContainerURL containerURL, LoadTestOptions options) {
+        switch (name) {
+            case "upload":
+                return new UploadWorkload(containerURL, options);
+            case "download":
+                return new DownloadWorkload(containerURL, options);
+            case "list":
+                return new ListBlobsWorkload(containerURL, options);
+            case "get":
+                return new GetBlobWorkload(containerURL, options);
+            default:
+                return new PutBlobWorkload(containerURL, options);
+        }
+    }
+
+    /**
+     * Runs operations {@code first} to {@code first + count - 1}, {@link IWorkload#concurrency()} at a time.
+     *
+     * @return
+     *      The number of bytes of blob data transferred.
+     */
+    private static long run(final IWorkload workload, int first, int count, final LatencyRecorder latencies) {
+        if (count == 0) {
+            return 0;
+        }
+        return Flowable.range(first, count)
+                .flatMap(new Function<Integer, Publisher<Long>>() {
+                    @Override
+                    public Publisher<Long> apply(Integer index) {
+                        return timed(workload.run(index), latencies).toFlowable();
+                    }
+                }, workload.concurrency())
+                .reduce(0L, new BiFunction<Long, Long, Long>() {
+                    @Override
+                    public Long apply(Long total, Long bytes) {
+                        return total + bytes;
+                    }
+                })
+                .blockingGet();
+    }
+
+    private static Single<Long> timed(final Single<Long> operation, final LatencyRecorder latencies) {
+        if (latencies == null) {
+            return operation;
+        }
+        return Single.defer(new Callable<Single<Long>>() {
+            @Override
+            public Single<Long> call() {
+                final long start = System.nanoTime();
+                return operation.doOnSuccess(new Consumer<Long>() {
+                    @Override
+                    public void accept(Long bytes) {
+                        latencies.record(System.nanoTime() - start);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void report(int count, long bytes, long elapsedInNanos, LatencyRecorder latencies,
+            ResourceMeter meter) {
+        double seconds = elapsedInNanos / NANOS_PER_SECOND;
+        print("Operations", "%d in %.2f s", count, seconds);
+        print("Throughput", "%.1f ops/s, %.1f MB/s", count / seconds, bytes / BYTES_PER_MB / seconds);
+        print("Latency", "p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                latencies.percentile(0.5) / 1e6, latencies.percentile(0.99) / 1e6,
+                latencies.percentile(0.999) / 1e6, latencies.percentile(1) / 1e6);
+        print("Allocation", "%.1f MB/s, %.0f B/op (client threads)",
+                meter.clientAllocatedBytes / BYTES_PER_MB / seconds, (double) meter.clientAllocatedBytes / count);
+        print("GC", "%d collections, %d ms (whole process)", meter.gcCount, meter.gcTimeInMs);
+        print("Client CPU", "%.2f s, %.1f us/op, %s", meter.clientCPUInNanos / NANOS_PER_SECOND,
+                meter.clientCPUInNanos / 1e3 / count, cpuPerGB(meter.clientCPUInNanos, bytes));
+        print("Emulator CPU", "%.2f s, %.1f us/op, %s", meter.emulatorCPUInNanos / NANOS_PER_SECOND,
+                meter.emulatorCPUInNanos / 1e3 / count, cpuPerGB(meter.emulatorCPUInNanos, bytes));
+    }
+
+    private static String cpuPerGB(long cpuInNanos, long bytes) {
+        if (bytes == 0) {
+            return "no data transferred";
+        }
+        return String.format(Locale.ROOT, "%.2f CPU-s/GB", cpuInNanos / NANOS_PER_SECOND / (bytes / BYTES_PER_GB));
+    }
+
+    private static void print(String name, String format, Object... args) {
+        System.out.println(String.format(Locale.ROOT, "%-14s" + format, prepend(name + ":", args)));
+    }
+
+    private static Object[] prepend(Object first, Object[] rest) {
+        Object[] all = new Object[rest.length + 1];
+        all[0] = first;
+        System.arraycopy(rest, 0, all, 1, rest.length);
+        return all;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Configures a {@link LoadTest} run. Every field can be set from the command line with the option named after it, for
+ * example {@code --object-size 256M} for {@link #objectSize}. Two runs with the same options send the same requests
+ * with the same data, so their results can be compared across library versions and machines.
+ */
+public final class LoadTestOptions {
+
+    /**
+     * The workload to run: {@code upload}, {@code download}, {@code list}, {@code put} or {@code get}.
+     */
+    public String workload = "put";
+
+    /**
+     * The size of each blob uploaded or downloaded, in bytes. If 0, 256MB is used for {@code upload} and
+     * {@code download}, and 4KB for the others. Files smaller than 256MB are uploaded with a single Put Blob.
+     */
+    public long objectSize;
+
+    /**
+     * The number of operations which are measured.
+     */
+    public int count = 1000;
+
+    /**
+     * The number of operations run, and not measured, before the measured ones, so that the JIT compiler and the
+     * connection pool have settled.
+     */
+    public int warmupCount = 100;
+
+    /**
+     * The number of requests in flight. For {@code upload} and {@code download} this is the number of blocks or
+     * ranges of one blob transferred at once, and blobs are transferred one at a time; for the other workloads it is
+     * the number of operations at once.
+     */
+    public int parallelism = 16;
+
+    /**
+     * The size of each block uploaded, or range downloaded, in bytes.
+     */
+    public int blockSize = 4 * 1024 * 1024;
+
+    /**
+     * The number of blobs the {@code list} and {@code get} workloads create before they start.
+     */
+    public int blobCount = 5000;
+
+    /**
+     * The time, in milliseconds, the emulator waits before sending each response.
+     */
+    public long latencyInMs;
+
+    /**
+     * The seed for the data uploaded and the emulator's random choices.
+     */
+    public long seed = 1;
+
+    /**
+     * A directory in which the emulator keeps blob data and the {@code upload} workload writes the file it uploads.
+     * If null, blob data is kept in memory and the file is written to the temporary directory.
+     */
+    public File dataDirectory;
+
+    /**
+     * Creates options from command line arguments of the form {@code --name value}.
+     *
+     * @param args
+     *      The command line arguments.
+     * @return
+     *      The options.
+     * @throws IllegalArgumentException
+     *      If an option is not recognized or its value is not valid.
+     */
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " has no value.");
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--workload":
+                    options.workload = value;
+                    break;
+                case "--object-size":
+                    options.objectSize = parseSize(value);
+                    break;
+                case "--count":
+                    options.count = Integer.parseInt(value);
+                    break;
+                case "--warmup-count":
+                    options.warmupCount = Integer.parseInt(value);
+                    break;
+                case "--parallelism":
+                    options.parallelism = Integer.parseInt(value);
+                    break;
+                case "--block-size":
+                    options.blockSize = (int) parseSize(value);
+                    break;
+                case "--blob-count":
+                    options.blobCount = Integer.parseInt(value);
+                    break;
+                case "--latency":
+                    options.latencyInMs = Long.parseLong(value);
+                    break;
+                case "--seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                case "--data-directory":
+                    options.dataDirectory = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+        options.validate();
+        return options;
+    }
+
+    /**
+     * @return
+     *      The size of each blob, with the workload's default applied.
+     */
+    long effectiveObjectSize() {
+        if (this.objectSize > 0) {
+            return this.objectSize;
+        }
+        return this.workload.equals("upload") || this.workload.equals("download") ? 256L * 1024 * 1024 : 4 * 1024;
+    }
+
+    private void validate() {
+        if (!this.workload.matches("upload|download|list|put|get")) {
+            throw new IllegalArgumentException("The workload must be upload, download, list, put or get.");
+        }
+        if (this.objectSize < 0 || this.count < 1 || this.warmupCount < 0 || this.parallelism < 1
+                || this.blockSize < 1 || this.blobCount < 1 || this.latencyInMs < 0) {
+            throw new IllegalArgumentException("The counts and sizes must be positive.");
+        }
+    }
+
+    private static long parseSize(String value) {
+        String upper = value.toUpperCase(Locale.ROOT);
+        long multiplier = 1;
+        if (upper.endsWith("K")) {
+            multiplier = 1024;
+        } else if (upper.endsWith("M")) {
+            multiplier = 1024 * 1024;
+        } else if (upper.endsWith("G")) {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        String digits = multiplier == 1 ? upper : upper.substring(0, upper.length() - 1);
+        return Long.parseLong(digits) * multiplier;
+    }
+
+    @Override
+    public String toString() {
+        return "workload=" + this.workload + " objectSize=" + effectiveObjectSize() + " count=" + this.count
+                + " warmupCount=" + this.warmupCount + " parallelism=" + this.parallelism + " blockSize="
+                + this.blockSize + " blobCount=" + this.blobCount + " latencyInMs=" + this.latencyInMs + " seed="
+                + this.seed + " dataDirectory=" + this.dataDirectory;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Function;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Creates the data and blobs the workloads upload, and consumes the data they download.
+ */
+final class Payloads {
+
+    private static final int FILE_CHUNK_BYTES = 1024 * 1024;
+
+    private Payloads() {
+        // Static members only.
+    }
+
+    /**
+     * @return
+     *      A buffer of {@code length} bytes which depend only on {@code seed}.
+     */
+    static ByteBuffer randomBuffer(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Creates a temporary file of {@code length} bytes which depend only on {@code seed}. It is deleted when the JVM
+     * exits.
+     *
+     * @param directory
+     *      The directory to create the file in, or null for the temporary directory.
+     */
+    static File randomFile(long seed, long length, File directory) throws IOException {
+        File file = File.createTempFile("loadtest", ".dat", directory);
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        byte[] chunk = new byte[FILE_CHUNK_BYTES];
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (long written = 0; written < length; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, length - written));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Reads a body to the end without keeping it, as an application which processes the data as it arrives would.
+     *
+     * @return
+     *      A {@link Single} which emits the number of bytes read.
+     */
+    static Single<Long> drain(Flowable<ByteBuffer> body) {
+        return body.reduce(0L, new BiFunction<Long, ByteBuffer, Long>() {
+            @Override
+            public Long apply(Long total, ByteBuffer buffer) {
+                return total + buffer.remaining();
+            }
+        });
+    }
+
+    /**
+     * Creates the blobs {@code prefix + "0"} to {@code prefix + (count - 1)}, each holding {@code data}.
+     */
+    static Completable putBlobs(final ContainerURL containerURL, final String prefix, int count,
+            final ByteBuffer data, int parallelism) {
+        return Flowable.range(0, count)
+                .flatMapCompletable(new Function<Integer, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(Integer i) {
+                        return containerURL.createBlockBlobURL(prefix + i)
+                                .putBlob(Flowable.just(data.duplicate()), data.remaining(), null, null, null)
+                                .toCompletable();
+                    }
+                }, false, parallelism);
+    }
+}
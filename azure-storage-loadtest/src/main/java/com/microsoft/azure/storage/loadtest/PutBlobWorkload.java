@@ -0,0 +1,66 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.models.BlobPutHeaders;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Uploads small blobs, each with a single Put Blob and each to a new name.
+ */
+final class PutBlobWorkload implements IWorkload {
+
+    private final ContainerURL containerURL;
+
+    private final ByteBuffer data;
+
+    private final int parallelism;
+
+    PutBlobWorkload(ContainerURL containerURL, LoadTestOptions options) {
+        this.containerURL = containerURL;
+        this.data = Payloads.randomBuffer(options.seed, (int) options.effectiveObjectSize());
+        this.parallelism = options.parallelism;
+    }
+
+    @Override
+    public Completable prepare() {
+        return Completable.complete();
+    }
+
+    @Override
+    public Single<Long> run(int index) {
+        final long length = this.data.remaining();
+        return this.containerURL.createBlockBlobURL("put/" + index)
+                .putBlob(Flowable.just(this.data.duplicate()), length, null, null, null)
+                .map(new Function<RestResponse<BlobPutHeaders, Void>, Long>() {
+                    @Override
+                    public Long apply(RestResponse<BlobPutHeaders, Void> response) {
+                        return length;
+                    }
+                });
+    }
+
+    @Override
+    public int concurrency() {
+        return this.parallelism;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.emulator.BlobServiceEmulator;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the CPU time and memory allocated by the threads of the process between {@link #start()} and
+ * {@link #stop()}, separating the emulator's threads from the threads of the library and the application.
+ * <p>
+ * Threads are sampled when the meter starts and stops, so the work of a thread which both starts and ends in between
+ * is missed. The library's event loop and scheduler threads live for the whole run, so in practice nothing is.
+ */
+final class ResourceMeter {
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Map<Long, long[]> startSample;
+
+    private long startGCCount;
+
+    private long startGCTimeInMs;
+
+    /**
+     * The CPU time, in nanoseconds, of the threads other than the emulator's.
+     */
+    long clientCPUInNanos;
+
+    /**
+     * The CPU time, in nanoseconds, of the emulator's threads.
+     */
+    long emulatorCPUInNanos;
+
+    /**
+     * The bytes allocated by the threads other than the emulator's.
+     */
+    long clientAllocatedBytes;
+
+    /**
+     * The number of garbage collections, in the whole process.
+     */
+    long gcCount;
+
+    /**
+     * The time, in milliseconds, spent collecting garbage, in the whole process.
+     */
+    long gcTimeInMs;
+
+    ResourceMeter() {
+        if (this.threads.isThreadCpuTimeSupported()) {
+            this.threads.setThreadCpuTimeEnabled(true);
+        }
+        if (this.threads.isThreadAllocatedMemorySupported()) {
+            this.threads.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    void start() {
+        this.startSample = sample();
+        this.startGCCount = totalGCCount();
+        this.startGCTimeInMs = totalGCTimeInMs();
+    }
+
+    void stop() {
+        Map<Long, long[]> endSample = sample();
+        this.gcCount = totalGCCount() - this.startGCCount;
+        this.gcTimeInMs = totalGCTimeInMs() - this.startGCTimeInMs;
+        for (ThreadInfo info : this.threads.getThreadInfo(toArray(endSample))) {
+            if (info == null) {
+                continue;
+            }
+            long[] end = endSample.get(info.getThreadId());
+            long[] start = this.startSample.get(info.getThreadId());
+            long cpu = end[0] - (start == null ? 0 : start[0]);
+            long allocated = end[1] - (start == null ? 0 : start[1]);
+            if (info.getThreadName().startsWith(BlobServiceEmulator.THREAD_NAME_PREFIX)) {
+                this.emulatorCPUInNanos += cpu;
+            } else {
+                this.clientCPUInNanos += cpu;
+                this.clientAllocatedBytes += allocated;
+            }
+        }
+    }
+
+    private Map<Long, long[]> sample() {
+        long[] ids = this.threads.getAllThreadIds();
+        long[] allocated = this.threads.getThreadAllocatedBytes(ids);
+        long[] cpu = this.threads.getThreadCpuTime(ids);
+        Map<Long, long[]> sample = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            // -1 means the thread has ended or the measurement is not supported.
+            sample.put(ids[i], new long[]{Math.max(0, cpu[i]), Math.max(0, allocated[i])});
+        }
+        return sample;
+    }
+
+    private static long[] toArray(Map<Long, long[]> sample) {
+        long[] ids = new long[sample.size()];
+        int i = 0;
+        for (Long id : sample.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private static long totalGCCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long totalGCTimeInMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
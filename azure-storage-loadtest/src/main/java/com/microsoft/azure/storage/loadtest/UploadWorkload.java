@@ -0,0 +1,76 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.loadtest;
+
+import com.microsoft.azure.storage.blob.BlockBlobURL;
+import com.microsoft.azure.storage.blob.CommonRestResponse;
+import com.microsoft.azure.storage.blob.ContainerURL;
+import com.microsoft.azure.storage.blob.Highlevel;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Function;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Uploads a file with {@link Highlevel#uploadFileToBlockBlob}, one blob at a time, each time over the same blob.
+ */
+final class UploadWorkload implements IWorkload {
+
+    private final BlockBlobURL blobURL;
+
+    private final LoadTestOptions options;
+
+    private final Highlevel.UploadToBlockBlobOptions uploadOptions;
+
+    private FileChannel file;
+
+    UploadWorkload(ContainerURL containerURL, LoadTestOptions options) {
+        this.blobURL = containerURL.createBlockBlobURL("upload");
+        this.options = options;
+        this.uploadOptions = new Highlevel.UploadToBlockBlobOptions(null, null, null, null, options.parallelism);
+    }
+
+    @Override
+    public Completable prepare() {
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() throws IOException {
+                File data = Payloads.randomFile(options.seed, options.effectiveObjectSize(), options.dataDirectory);
+                file = new RandomAccessFile(data, "r").getChannel();
+            }
+        });
+    }
+
+    @Override
+    public Single<Long> run(int index) {
+        return Highlevel.uploadFileToBlockBlob(this.file, this.blobURL, this.options.blockSize, this.uploadOptions)
+                .map(new Function<CommonRestResponse, Long>() {
+                    @Override
+                    public Long apply(CommonRestResponse response) throws IOException {
+                        return file.size();
+                    }
+                });
+    }
+
+    @Override
+    public int concurrency() {
+        return 1;
+    }
+}
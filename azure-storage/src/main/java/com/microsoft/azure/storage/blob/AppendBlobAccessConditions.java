@@ -25,9 +25,9 @@ public final class AppendBlobAccessConditions {
     public static final AppendBlobAccessConditions NONE =
             new AppendBlobAccessConditions(null, null);
 
-    private final Integer ifAppendPositionEquals;
+    private final Long ifAppendPositionEquals;
 
-    private final Integer ifMaxSizeLessThanOrEqual;
+    private final Long ifMaxSizeLessThanOrEqual;
 
     /**
      * Creates a {@code AppendBlobAccessConditions} object.
@@ -38,7 +38,7 @@ public final class AppendBlobAccessConditions {
      *      Ensures that the AppendBlock operation succeeds only if the append blob's size is less than or
      *      equal to a value.
      */
-    public AppendBlobAccessConditions(Integer ifAppendPositionEquals, Integer ifMaxSizeLessThanOrEqual) {
+    public AppendBlobAccessConditions(Long ifAppendPositionEquals, Long ifMaxSizeLessThanOrEqual) {
         if ((ifAppendPositionEquals != null && ifAppendPositionEquals < -1) ||
                 (ifMaxSizeLessThanOrEqual != null && ifMaxSizeLessThanOrEqual < -1)) {
             throw new IllegalArgumentException("Append blob access conditions can't be less than -1.");
@@ -49,19 +49,19 @@ public final class AppendBlobAccessConditions {
 
     /**
      * @return
-     *      An {@code Integer} for ensuring that the AppendBlock operation succeeds only if the append position
+     *      An {@code Long} for ensuring that the AppendBlock operation succeeds only if the append position
      *      is equal to a value.
      */
-    public Integer getIfAppendPositionEquals() {
+    public Long getIfAppendPositionEquals() {
         return ifAppendPositionEquals;
     }
 
     /**
      * @return
-     *      An {@code Integer} for ensuring that the AppendBlock operation succeeds only if the append blob's size
+     *      An {@code Long} for ensuring that the AppendBlock operation succeeds only if the append blob's size
      *      is less than or equal to a value.
      */
-    public Integer getIfMaxSizeLessThanOrEqual() {
+    public Long getIfMaxSizeLessThanOrEqual() {
         return ifMaxSizeLessThanOrEqual;
     }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Defines options available when calling {@link AppendBlobURL#tail(long, AppendBlobTailOptions)}.
+ */
+public final class AppendBlobTailOptions {
+
+    /**
+     * An object representing the default options: polls start one second apart and back off to at most ten seconds
+     * apart while the blob is not growing, and each read fetches at most {@link AppendBlobURL#MAX_APPEND_BLOCK_BYTES}.
+     */
+    public static final AppendBlobTailOptions DEFAULT = new AppendBlobTailOptions(null, null, null);
+
+    private final long minPollIntervalInMs;
+
+    private final long maxPollIntervalInMs;
+
+    private final long maxReadBytes;
+
+    /**
+     * A {@link AppendBlobTailOptions} object.
+     *
+     * @param minPollIntervalInMs
+     *      The time, in milliseconds, to wait before polling again after a poll which found new data. If null, 1000
+     *      will be used.
+     * @param maxPollIntervalInMs
+     *      The longest time, in milliseconds, to wait between polls. The wait doubles after each poll which finds no
+     *      new data, up to this limit. If null, 10000 will be used.
+     * @param maxReadBytes
+     *      The maximum number of bytes to read in one request. When more than this has been appended, the rest is read
+     *      straight away in further requests, so a reader which is far behind catches up without waiting between
+     *      polls. If null, {@link AppendBlobURL#MAX_APPEND_BLOCK_BYTES} will be used.
+     */
+    public AppendBlobTailOptions(Long minPollIntervalInMs, Long maxPollIntervalInMs, Long maxReadBytes) {
+        this.minPollIntervalInMs = minPollIntervalInMs == null ? 1000 : minPollIntervalInMs;
+        this.maxPollIntervalInMs = maxPollIntervalInMs == null ? 10000 : maxPollIntervalInMs;
+        this.maxReadBytes = maxReadBytes == null ? AppendBlobURL.MAX_APPEND_BLOCK_BYTES : maxReadBytes;
+        Utility.assertInBounds("minPollIntervalInMs", this.minPollIntervalInMs, 0, Long.MAX_VALUE);
+        Utility.assertInBounds("maxPollIntervalInMs", this.maxPollIntervalInMs, this.minPollIntervalInMs,
+                Long.MAX_VALUE);
+        Utility.assertInBounds("maxReadBytes", this.maxReadBytes, 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, to wait before polling again after a poll which found new data.
+     */
+    public long getMinPollIntervalInMs() {
+        return this.minPollIntervalInMs;
+    }
+
+    /**
+     * @return
+     *      The longest time, in milliseconds, to wait between polls.
+     */
+    public long getMaxPollIntervalInMs() {
+        return this.maxPollIntervalInMs;
+    }
+
+    /**
+     * @return
+     *      The maximum number of bytes to read in one request.
+     */
+    public long getMaxReadBytes() {
+        return this.maxReadBytes;
+    }
+}
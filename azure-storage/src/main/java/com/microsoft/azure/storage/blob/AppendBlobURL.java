@@ -15,17 +15,24 @@
 package com.microsoft.azure.storage.blob;
 
 import com.microsoft.azure.storage.models.AppendBlobAppendBlockHeaders;
+import com.microsoft.azure.storage.models.BlobGetHeaders;
+import com.microsoft.azure.storage.models.BlobGetPropertiesHeaders;
 import com.microsoft.azure.storage.models.BlobType;
 import com.microsoft.azure.storage.models.BlobPutHeaders;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.http.HttpPipeline;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import org.reactivestreams.Publisher;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -55,6 +62,10 @@ public final class AppendBlobURL extends BlobURL {
         super(url, pipeline);
     }
 
+    AppendBlobURL(StorageURL parent, String url) {
+        super(parent, url);
+    }
+
     /**
      * Creates a new {@link AppendBlobURL} with the given pipeline.
      *
@@ -125,7 +136,8 @@ public final class AppendBlobURL extends BlobURL {
      * For more information, see https://docs.microsoft.com/rest/api/storageservices/append-block.
      *
      * @param data
-     *      A {@code Flowable} which emits {@code byte[]} which represents the data to write to the blob.
+     *      A {@code Flowable} which emits {@code byte[]} which represents the data to write to the blob. Pass a
+     *      {@link FileRegionBody} to upload part of a file without copying it through the heap.
      * @param length
      *      A {@code long} indicating how long the total data is.
      * @param accessConditions
@@ -149,4 +161,109 @@ public final class AppendBlobURL extends BlobURL {
                 accessConditions.getHttpAccessConditions().getIfNoneMatch().toString(),
                 null);
     }
+
+    /**
+     * Follows the append blob as it is written, emitting the data appended from the given offset onwards. The blob's
+     * length is polled, and whenever it has grown only the new range is read. Polls are spaced by the minimum interval
+     * while the blob is growing, and back off exponentially to the maximum interval while it is not. The returned
+     * {@code Flowable} does not complete; dispose of the subscription to stop following the blob. To resume after a
+     * restart, pass the offset plus the number of bytes received so far.
+     *
+     * @param offset
+     *      The offset in the blob from which to start reading.
+     * @param options
+     *      A {@link AppendBlobTailOptions} object to configure the polling behavior. If null,
+     *      {@link AppendBlobTailOptions#DEFAULT} will be used.
+     * @return
+     *      A {@link Flowable} which emits the appended data in order. It errors if a request fails, or if the blob
+     *      becomes shorter than the offset read so far, which means it was deleted and recreated.
+     */
+    public Flowable<ByteBuffer> tail(final long offset, AppendBlobTailOptions options) {
+        // Throwing is preferred to Flowable.error because this will error out immediately instead of waiting until
+        // subscription.
+        Utility.assertInBounds("offset", offset, 0, Long.MAX_VALUE);
+        final AppendBlobTailOptions tailOptions = options == null ? AppendBlobTailOptions.DEFAULT : options;
+
+        return Flowable.defer(new Callable<Publisher<ByteBuffer>>() {
+            @Override
+            public Publisher<ByteBuffer> call() throws Exception {
+                final TailState state = new TailState(offset, tailOptions);
+                return readAppendedData(state)
+                        .repeatWhen(new Function<Flowable<Object>, Publisher<?>>() {
+                            @Override
+                            public Publisher<?> apply(Flowable<Object> reads) throws Exception {
+                                return reads.concatMap(new Function<Object, Publisher<Long>>() {
+                                    @Override
+                                    public Publisher<Long> apply(Object read) throws Exception {
+                                        return Flowable.timer(state.delayInMs, TimeUnit.MILLISECONDS);
+                                    }
+                                });
+                            }
+                        });
+            }
+        });
+    }
+
+    /*
+     Polls the blob's length once and reads whatever has been appended since the last read, setting the delay before
+     the next poll.
+     */
+    private Flowable<ByteBuffer> readAppendedData(final TailState state) {
+        return this.getPropertiesAndMetadata(null)
+                .flatMapPublisher(new Function<RestResponse<BlobGetPropertiesHeaders, Void>,
+                        Publisher<ByteBuffer>>() {
+                    @Override
+                    public Publisher<ByteBuffer> apply(RestResponse<BlobGetPropertiesHeaders, Void> response)
+                            throws Exception {
+                        long length = response.headers().contentLength();
+                        if (length < state.offset) {
+                            return Flowable.error(new IllegalStateException(
+                                    "The blob is shorter than the offset being read. It may have been replaced."));
+                        }
+                        if (length == state.offset) {
+                            state.delayInMs = Math.min(state.options.getMaxPollIntervalInMs(),
+                                    Math.max(state.options.getMinPollIntervalInMs(), 2 * state.delayInMs));
+                            return Flowable.empty();
+                        }
+
+                        // Only the bytes below the length are read, so data appended after the poll waits for the next.
+                        long count = Math.min(state.options.getMaxReadBytes(), length - state.offset);
+                        state.delayInMs = state.offset + count < length ? 0 : state.options.getMinPollIntervalInMs();
+                        return getBlob(new BlobRange(state.offset, count), null, false)
+                                .flatMapPublisher(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>,
+                                        Publisher<ByteBuffer>>() {
+                                    @Override
+                                    public Publisher<ByteBuffer> apply(
+                                            RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> response) {
+                                        return response.body();
+                                    }
+                                })
+                                .doOnNext(new Consumer<ByteBuffer>() {
+                                    @Override
+                                    public void accept(ByteBuffer buffer) {
+                                        state.offset += buffer.remaining();
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /**
+     * The progress of a single subscription to {@link #tail(long, AppendBlobTailOptions)}. Polls are made one after
+     * another, so the fields are never accessed concurrently.
+     */
+    private static final class TailState {
+
+        private final AppendBlobTailOptions options;
+
+        private long offset;
+
+        private long delayInMs;
+
+        private TailState(long offset, AppendBlobTailOptions options) {
+            this.offset = offset;
+            this.options = options;
+            this.delayInMs = options.getMinPollIntervalInMs();
+        }
+    }
 }
@@ -0,0 +1,434 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.AppendBlobAppendBlockHeaders;
+import com.microsoft.azure.storage.models.BlobGetPropertiesHeaders;
+import com.microsoft.azure.storage.models.BlobPutHeaders;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.CompletableObserver;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes records to append blobs, batching many small records into each append block. A block is sent when it is
+ * full, when its oldest record has waited for the configured linger time, or when {@link #flush()} is called. Blocks
+ * are appended one at a time, in the order their records were written, with each append conditioned on the position
+ * at which the previous one ended; records keep accumulating in the next block while one is being sent. When a blob
+ * reaches {@link AppendBlobWriterOptions#getMaxBlocksPerBlob()} blocks, the writer continues in the next blob given by
+ * the factory.
+ * <p>
+ * The writer must be the only writer to its blobs. If a blob already exists when the writer gets to it, for example
+ * because the process restarted, the writer appends to its end. If an append fails, the records in it and in every
+ * block after it fail with the same error and the writer stops accepting records, since continuing would leave a gap
+ * in the log.
+ * <p>
+ * Instances are safe to use from many threads.
+ */
+public final class AppendBlobWriter {
+
+    private final Function<Integer, AppendBlobURL> blobURLFactory;
+
+    private final AppendBlobWriterOptions options;
+
+    private final Object lock = new Object();
+
+    // The fields below are guarded by the lock.
+
+    private Block currentBlock;
+
+    private Disposable lingerTask;
+
+    private Block lastSealedBlock;
+
+    private final ArrayDeque<Block> pendingBlocks = new ArrayDeque<Block>();
+
+    private boolean sending;
+
+    private boolean closed;
+
+    private Throwable failure;
+
+    /*
+     The fields below are only touched by the single append in flight. Starting the next append happens under the lock
+     after the previous one has finished, which makes the previous append's writes visible to it.
+     */
+
+    private AppendBlobURL blobURL;
+
+    private int blobIndex;
+
+    private long appendPosition;
+
+    private int blockCount;
+
+    /**
+     * Creates a writer which appends to the blobs given by the factory.
+     *
+     * @param blobURLFactory
+     *      A function which returns the {@link AppendBlobURL} of the n-th blob to write, starting from 0. It is called
+     *      once when the first block is sent and again each time a blob is full.
+     * @param options
+     *      A {@link AppendBlobWriterOptions} object to configure the writer. If null,
+     *      {@link AppendBlobWriterOptions#DEFAULT} will be used.
+     */
+    public AppendBlobWriter(Function<Integer, AppendBlobURL> blobURLFactory, AppendBlobWriterOptions options) {
+        Utility.assertNotNull("blobURLFactory", blobURLFactory);
+        this.blobURLFactory = blobURLFactory;
+        this.options = options == null ? AppendBlobWriterOptions.DEFAULT : options;
+    }
+
+    /**
+     * Adds a record to the current block. The record is not copied, so its contents must not be changed until the
+     * returned {@link Completable} terminates.
+     *
+     * @param record
+     *      A {@code ByteBuffer} holding the record between its position and limit. It may not be larger than
+     *      {@link AppendBlobWriterOptions#getMaxBlockBytes()}.
+     * @return
+     *      A {@link Completable} which completes once the record has been durably appended, or errors if the append
+     *      failed. All the records in a block share the outcome of its append.
+     */
+    public Completable write(ByteBuffer record) {
+        Utility.assertNotNull("record", record);
+        // Throwing is preferred to Completable.error because this will error out immediately instead of waiting until
+        // subscription.
+        if (record.remaining() > this.options.getMaxBlockBytes()) {
+            throw new IllegalArgumentException("The record is larger than the maximum block size.");
+        }
+        // The service rejects empty appends, and an empty record has nothing to make durable.
+        if (!record.hasRemaining()) {
+            return Completable.complete();
+        }
+
+        Block block;
+        synchronized (this.lock) {
+            if (this.closed) {
+                throw new IllegalStateException("The writer has been closed.");
+            }
+            if (this.failure != null) {
+                return Completable.error(this.failure);
+            }
+            if (this.currentBlock != null
+                    && this.currentBlock.length + record.remaining() > this.options.getMaxBlockBytes()) {
+                this.sealCurrentBlock();
+            }
+            if (this.currentBlock == null) {
+                this.currentBlock = new Block();
+                this.lingerTask = Schedulers.computation().scheduleDirect(this.createLingerAction(this.currentBlock),
+                        this.options.getLingerInMs(), TimeUnit.MILLISECONDS);
+            }
+            block = this.currentBlock;
+            block.add(record.slice());
+            if (block.length == this.options.getMaxBlockBytes()) {
+                this.sealCurrentBlock();
+            }
+        }
+        this.sendNextBlock();
+        return block.written.hide();
+    }
+
+    /**
+     * Sends the current block without waiting for it to fill up or for its linger time to pass.
+     *
+     * @return
+     *      A {@link Completable} which completes once every record written before the call has been durably appended.
+     */
+    public Completable flush() {
+        Block block;
+        synchronized (this.lock) {
+            if (this.failure != null) {
+                return Completable.error(this.failure);
+            }
+            this.sealCurrentBlock();
+            block = this.lastSealedBlock;
+        }
+        this.sendNextBlock();
+        return block == null ? Completable.complete() : block.written.hide();
+    }
+
+    /**
+     * Stops accepting records and sends the current block. Calling {@link #write(ByteBuffer)} after this throws an
+     * {@code IllegalStateException}.
+     *
+     * @return
+     *      A {@link Completable} which completes once every record written has been durably appended.
+     */
+    public Completable close() {
+        synchronized (this.lock) {
+            this.closed = true;
+        }
+        return this.flush();
+    }
+
+    /*
+     Moves the current block, if any, to the queue of blocks to send. Must be called while holding the lock.
+     */
+    private void sealCurrentBlock() {
+        if (this.currentBlock == null) {
+            return;
+        }
+        if (this.lingerTask != null) {
+            this.lingerTask.dispose();
+            this.lingerTask = null;
+        }
+        this.pendingBlocks.add(this.currentBlock);
+        this.lastSealedBlock = this.currentBlock;
+        this.currentBlock = null;
+    }
+
+    private Runnable createLingerAction(final Block block) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    // The block may have been sealed for being full or by a flush in the meantime.
+                    if (currentBlock != block) {
+                        return;
+                    }
+                    sealCurrentBlock();
+                }
+                sendNextBlock();
+            }
+        };
+    }
+
+    /*
+     Starts appending the oldest sealed block unless an append is already in flight, in which case the block is
+     started when that append completes.
+     */
+    private void sendNextBlock() {
+        final Block block;
+        synchronized (this.lock) {
+            if (this.sending || this.failure != null || this.pendingBlocks.isEmpty()) {
+                return;
+            }
+            this.sending = true;
+            block = this.pendingBlocks.poll();
+        }
+
+        this.appendBlock(block).subscribe(new CompletableObserver() {
+            @Override
+            public void onSubscribe(Disposable d) {
+            }
+
+            @Override
+            public void onComplete() {
+                synchronized (lock) {
+                    sending = false;
+                }
+                block.written.onComplete();
+                sendNextBlock();
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                List<Block> failedBlocks = new ArrayList<Block>();
+                failedBlocks.add(block);
+                synchronized (lock) {
+                    sending = false;
+                    failure = e;
+                    failedBlocks.addAll(pendingBlocks);
+                    pendingBlocks.clear();
+                    if (currentBlock != null) {
+                        failedBlocks.add(currentBlock);
+                        currentBlock = null;
+                    }
+                    if (lingerTask != null) {
+                        lingerTask.dispose();
+                        lingerTask = null;
+                    }
+                }
+                for (Block failedBlock : failedBlocks) {
+                    failedBlock.written.onError(e);
+                }
+            }
+        });
+    }
+
+    private Completable appendBlock(final Block block) {
+        return Completable.defer(new Callable<CompletableSource>() {
+            @Override
+            public CompletableSource call() throws Exception {
+                Completable openBlob = Completable.complete();
+                if (blobURL == null) {
+                    openBlob = openBlob(0);
+                } else if (blockCount >= options.getMaxBlocksPerBlob()) {
+                    openBlob = openBlob(blobIndex + 1);
+                }
+                return openBlob.andThen(Completable.defer(new Callable<CompletableSource>() {
+                    @Override
+                    public CompletableSource call() throws Exception {
+                        return appendBlockAtPosition(block);
+                    }
+                }));
+            }
+        });
+    }
+
+    private Completable appendBlockAtPosition(final Block block) {
+        final AppendBlobURL url = this.blobURL;
+        final long position = this.appendPosition;
+        BlobAccessConditions accessConditions = new BlobAccessConditions(null, null,
+                new AppendBlobAccessConditions(position, null), null);
+
+        return url.appendBlock(block.body(), block.length, accessConditions)
+                .flatMapCompletable(new Function<RestResponse<AppendBlobAppendBlockHeaders, Void>,
+                        CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(RestResponse<AppendBlobAppendBlockHeaders, Void> response) {
+                        appendPosition = position + block.length;
+                        blockCount = parseBlockCount(response.headers().blobCommittedBlockCount(), blockCount + 1);
+                        return Completable.complete();
+                    }
+                })
+                .onErrorResumeNext(new Function<Throwable, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(final Throwable e) {
+                        if (!hasStatusCode(e, HttpURLConnection.HTTP_PRECON_FAILED)) {
+                            return Completable.error(e);
+                        }
+
+                        /*
+                         If the response to an append was lost and the request was retried, the retry fails the
+                         position condition even though the block was appended. Since this writer is the only writer,
+                         the block was appended exactly when the blob now ends where the block would.
+                         */
+                        return url.getPropertiesAndMetadata(null).flatMapCompletable(
+                                new Function<RestResponse<BlobGetPropertiesHeaders, Void>, CompletableSource>() {
+                                    @Override
+                                    public CompletableSource apply(
+                                            RestResponse<BlobGetPropertiesHeaders, Void> response) {
+                                        Long length = response.headers().contentLength();
+                                        if (length == null || length != position + block.length) {
+                                            return Completable.error(e);
+                                        }
+                                        appendPosition = length;
+                                        blockCount = parseBlockCount(response.headers().blobCommittedBlockCount(),
+                                                blockCount + 1);
+                                        return Completable.complete();
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /*
+     Makes the index-th blob the one being appended to, creating it if it does not exist and skipping to the next blob
+     if it exists and is already full.
+     */
+    private Completable openBlob(final int index) {
+        return Completable.defer(new Callable<CompletableSource>() {
+            @Override
+            public CompletableSource call() throws Exception {
+                final AppendBlobURL url = blobURLFactory.apply(index);
+                BlobAccessConditions ifNotExists = new BlobAccessConditions(
+                        new HTTPAccessConditions(null, null, null, ETag.ANY), null, null, null);
+
+                return url.create(options.getHttpHeaders(), options.getMetadata(), ifNotExists)
+                        .flatMapCompletable(new Function<RestResponse<BlobPutHeaders, Void>, CompletableSource>() {
+                            @Override
+                            public CompletableSource apply(RestResponse<BlobPutHeaders, Void> response) {
+                                setBlob(url, index, 0, 0);
+                                return Completable.complete();
+                            }
+                        })
+                        .onErrorResumeNext(new Function<Throwable, CompletableSource>() {
+                            @Override
+                            public CompletableSource apply(Throwable e) {
+                                if (!hasStatusCode(e, HttpURLConnection.HTTP_CONFLICT)) {
+                                    return Completable.error(e);
+                                }
+                                return url.getPropertiesAndMetadata(null).flatMapCompletable(
+                                        new Function<RestResponse<BlobGetPropertiesHeaders, Void>,
+                                                CompletableSource>() {
+                                            @Override
+                                            public CompletableSource apply(
+                                                    RestResponse<BlobGetPropertiesHeaders, Void> response) {
+                                                int count = parseBlockCount(
+                                                        response.headers().blobCommittedBlockCount(), 0);
+                                                if (count >= options.getMaxBlocksPerBlob()) {
+                                                    return openBlob(index + 1);
+                                                }
+                                                Long length = response.headers().contentLength();
+                                                setBlob(url, index, length == null ? 0 : length, count);
+                                                return Completable.complete();
+                                            }
+                                        });
+                            }
+                        });
+            }
+        });
+    }
+
+    private void setBlob(AppendBlobURL url, int index, long position, int count) {
+        this.blobURL = url;
+        this.blobIndex = index;
+        this.appendPosition = position;
+        this.blockCount = count;
+    }
+
+    private static int parseBlockCount(String blockCount, int defaultValue) {
+        return blockCount == null ? defaultValue : Integer.parseInt(blockCount);
+    }
+
+    private static boolean hasStatusCode(Throwable e, int statusCode) {
+        return e instanceof RestException && ((RestException) e).response() != null
+                && ((RestException) e).response().statusCode() == statusCode;
+    }
+
+    /**
+     * The records which are sent together in one append.
+     */
+    private static final class Block {
+
+        private final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+
+        private final CompletableSubject written = CompletableSubject.create();
+
+        private long length;
+
+        private void add(ByteBuffer record) {
+            this.records.add(record);
+            this.length += record.remaining();
+        }
+
+        /*
+         Each subscription reads from its own duplicates, so the body can be sent again if the request is retried.
+         */
+        private Flowable<ByteBuffer> body() {
+            return Flowable.fromIterable(this.records).map(new Function<ByteBuffer, ByteBuffer>() {
+                @Override
+                public ByteBuffer apply(ByteBuffer buffer) {
+                    return buffer.duplicate();
+                }
+            });
+        }
+    }
+}
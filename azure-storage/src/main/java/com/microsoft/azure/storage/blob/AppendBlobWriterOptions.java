@@ -0,0 +1,119 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Defines options available when creating an {@link AppendBlobWriter}.
+ */
+public final class AppendBlobWriterOptions {
+
+    /**
+     * An object representing the default options: blocks of up to {@link AppendBlobURL#MAX_APPEND_BLOCK_BYTES}, a
+     * linger time of 100 milliseconds, blobs of up to {@link AppendBlobURL#MAX_BLOCKS} blocks, and default headers and
+     * metadata.
+     */
+    public static final AppendBlobWriterOptions DEFAULT = new AppendBlobWriterOptions(null, null, null, null, null);
+
+    private final int maxBlockBytes;
+
+    private final long lingerInMs;
+
+    private final int maxBlocksPerBlob;
+
+    private final BlobHTTPHeaders httpHeaders;
+
+    private final Metadata metadata;
+
+    /**
+     * A {@link AppendBlobWriterOptions} object.
+     *
+     * @param maxBlockBytes
+     *      The size at which a block is sent. Records are never split across blocks, so no record may be larger than
+     *      this. If null, {@link AppendBlobURL#MAX_APPEND_BLOCK_BYTES} will be used.
+     * @param lingerInMs
+     *      The longest time, in milliseconds, a record waits for more records to join its block before the block is
+     *      sent. If null, 100 will be used.
+     * @param maxBlocksPerBlob
+     *      The number of blocks after which the writer continues in the next blob, for example to keep each blob of a
+     *      log to a manageable size. If null, {@link AppendBlobURL#MAX_BLOCKS} will be used.
+     * @param httpHeaders
+     *      A {@link BlobHTTPHeaders} to be associated with each append blob the writer creates.
+     * @param metadata
+     *      A {@link Metadata} object to be associated with each append blob the writer creates.
+     */
+    public AppendBlobWriterOptions(Integer maxBlockBytes, Long lingerInMs, Integer maxBlocksPerBlob,
+            BlobHTTPHeaders httpHeaders, Metadata metadata) {
+        if (maxBlockBytes != null) {
+            Utility.assertInBounds("maxBlockBytes", maxBlockBytes, 1, AppendBlobURL.MAX_APPEND_BLOCK_BYTES);
+            this.maxBlockBytes = maxBlockBytes;
+        } else {
+            this.maxBlockBytes = AppendBlobURL.MAX_APPEND_BLOCK_BYTES;
+        }
+        if (lingerInMs != null) {
+            Utility.assertInBounds("lingerInMs", lingerInMs, 0, Long.MAX_VALUE);
+            this.lingerInMs = lingerInMs;
+        } else {
+            this.lingerInMs = 100;
+        }
+        if (maxBlocksPerBlob != null) {
+            Utility.assertInBounds("maxBlocksPerBlob", maxBlocksPerBlob, 1, AppendBlobURL.MAX_BLOCKS);
+            this.maxBlocksPerBlob = maxBlocksPerBlob;
+        } else {
+            this.maxBlocksPerBlob = AppendBlobURL.MAX_BLOCKS;
+        }
+        this.httpHeaders = httpHeaders;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @return
+     *      The size at which a block is sent.
+     */
+    public int getMaxBlockBytes() {
+        return this.maxBlockBytes;
+    }
+
+    /**
+     * @return
+     *      The longest time, in milliseconds, a record waits for more records to join its block.
+     */
+    public long getLingerInMs() {
+        return this.lingerInMs;
+    }
+
+    /**
+     * @return
+     *      The number of blocks after which the writer continues in the next blob.
+     */
+    public int getMaxBlocksPerBlob() {
+        return this.maxBlocksPerBlob;
+    }
+
+    /**
+     * @return
+     *      The {@link BlobHTTPHeaders} associated with each append blob the writer creates.
+     */
+    public BlobHTTPHeaders getHttpHeaders() {
+        return this.httpHeaders;
+    }
+
+    /**
+     * @return
+     *      The {@link Metadata} associated with each append blob the writer creates.
+     */
+    public Metadata getMetadata() {
+        return this.metadata;
+    }
+}
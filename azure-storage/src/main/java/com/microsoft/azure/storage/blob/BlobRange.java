@@ -14,8 +14,6 @@
  */
 package com.microsoft.azure.storage.blob;
 
-import java.util.Locale;
-
 /**
  * A representation of a range of bytes to retrieve from a blob.
  */
@@ -71,14 +69,12 @@ public final class BlobRange {
      *      A {@code String} compliant with the format of the Azure Storage x-ms-range and Range headers.
      */
     public String toString() {
-
+        // This is formatted for every download request, so it avoids String.format, which parses the format each time.
         if (count != 0) {
             long rangeEnd = this.offset + this.count - 1;
-            return String.format(
-                    Locale.US, Constants.HeaderConstants.RANGE_HEADER_FORMAT, this.offset, rangeEnd);
+            return "bytes=" + this.offset + '-' + rangeEnd;
         }
 
-        return String.format(
-                Locale.US, Constants.HeaderConstants.BEGIN_RANGE_HEADER_FORMAT, this.offset);
+        return "bytes=" + this.offset + '-';
     }
 }
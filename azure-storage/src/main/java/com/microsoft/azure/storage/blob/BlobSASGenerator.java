@@ -0,0 +1,246 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import javax.crypto.Mac;
+import javax.xml.bind.DatatypeConverter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.security.InvalidKeyException;
+
+/**
+ * Generates service SAS tokens for many blobs which share the same signature values. Everything in the string-to-sign
+ * and in the query string other than the blob's canonical name is computed once when the generator is constructed, so
+ * generating a token only hashes the blob's path and encodes the signature. Instances are immutable and may be shared
+ * between threads; each thread signs with its own {@link Mac} and scratch buffers.
+ */
+public final class BlobSASGenerator {
+
+    private static final Charset UTF8 = Charset.forName(Constants.UTF8_CHARSET);
+
+    private final SharedKeyCredentials sharedKeyCredentials;
+
+    /*
+     The string-to-sign is: permissions, start, expiry, canonical name, identifier, IP range, protocol, version and the
+     five response headers, joined by new lines. The canonical name is "/blob/account/container/blob", so the bytes
+     before the container name and after the blob name never change.
+     */
+    private final byte[] stringToSignPrefix;
+
+    private final byte[] stringToSignSuffix;
+
+    private final String encodedQueryPrefix;
+
+    private final ThreadLocal<SigningState> signingState = new ThreadLocal<SigningState>() {
+        @Override
+        protected SigningState initialValue() {
+            try {
+                return new SigningState(sharedKeyCredentials.createHmacSha256());
+            } catch (InvalidKeyException e) {
+                throw new Error(e); // The key was validated when the credentials were constructed.
+            }
+        }
+    };
+
+    /**
+     * Creates a generator for blob SAS tokens with the given signature values. The {@code containerName} and
+     * {@code blobName} of the values are ignored; they are supplied with each call instead.
+     *
+     * @param signatureValues
+     *      A {@link ServiceSASSignatureValues} object holding the values shared by every token. The object is not
+     *      referenced after construction.
+     * @param sharedKeyCredentials
+     *      A {@link SharedKeyCredentials} object used to sign the tokens.
+     */
+    public BlobSASGenerator(ServiceSASSignatureValues signatureValues, SharedKeyCredentials sharedKeyCredentials) {
+        Utility.assertNotNull("signatureValues", signatureValues);
+        Utility.assertNotNull("sharedKeyCredentials", sharedKeyCredentials);
+        this.sharedKeyCredentials = sharedKeyCredentials;
+
+        // Calling parse and toString guarantees the proper ordering and throws on invalid characters.
+        String permissions = BlobSASPermission.parse(signatureValues.permissions).toString();
+        String startTime = signatureValues.startTime == null ? null :
+                Utility.ISO8601UTCDateFormat.format(signatureValues.startTime);
+        String expiryTime = signatureValues.expiryTime == null ? null :
+                Utility.ISO8601UTCDateFormat.format(signatureValues.expiryTime);
+        String ipRange = signatureValues.ipRange == null ? null : signatureValues.ipRange.toString();
+        String protocol = signatureValues.protocol == null ? null : signatureValues.protocol.toString();
+
+        this.stringToSignPrefix = (Utility.join(new String[]{
+                permissions,
+                startTime,
+                expiryTime,
+                "/blob/" + sharedKeyCredentials.getAccountName() + "/"
+        }, '\n')).getBytes(UTF8);
+
+        this.stringToSignSuffix = ("\n" + Utility.join(new String[]{
+                signatureValues.identifier,
+                ipRange,
+                protocol,
+                signatureValues.version,
+                signatureValues.cacheControl,
+                signatureValues.contentDisposition,
+                signatureValues.contentEncoding,
+                signatureValues.contentLanguage,
+                signatureValues.contentType
+        }, '\n')).getBytes(UTF8);
+
+        // The parameters appear in the same order as in SASQueryParameters.encode, with the signature last.
+        StringBuilder query = new StringBuilder();
+        appendQueryParameter(query, "sv", signatureValues.version);
+        appendQueryParameter(query, "spr", protocol);
+        appendQueryParameter(query, "st", startTime);
+        appendQueryParameter(query, "se", expiryTime);
+        appendQueryParameter(query, "sip", ipRange);
+        appendQueryParameter(query, "si", signatureValues.identifier);
+        appendQueryParameter(query, "sr", "b");
+        appendQueryParameter(query, "sp", permissions);
+        appendQueryParameter(query, "rscc", signatureValues.cacheControl);
+        appendQueryParameter(query, "rscd", signatureValues.contentDisposition);
+        appendQueryParameter(query, "rsce", signatureValues.contentEncoding);
+        appendQueryParameter(query, "rscl", signatureValues.contentLanguage);
+        appendQueryParameter(query, "rsct", signatureValues.contentType);
+        query.append("&sig=");
+        this.encodedQueryPrefix = query.toString();
+    }
+
+    /**
+     * Generates the SAS query string for a blob, including the leading '?'.
+     *
+     * @param containerName
+     *      The name of the container holding the blob.
+     * @param blobName
+     *      The name of the blob, as it appears in the service and not URL-encoded.
+     * @return
+     *      A {@code String} which can be appended to the blob's URL.
+     */
+    public String generateSASQueryString(String containerName, String blobName) {
+        StringBuilder builder = this.signingState.get().output;
+        builder.setLength(0);
+        this.appendSASQueryString(builder, containerName, blobName);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the SAS query string for a blob, including the leading '?', to the given builder. Appending to a builder
+     * which already holds the blob's URL avoids creating an intermediate {@code String} for the query.
+     *
+     * @param destination
+     *      The {@code StringBuilder} to which the query string is appended.
+     * @param containerName
+     *      The name of the container holding the blob.
+     * @param blobName
+     *      The name of the blob, as it appears in the service and not URL-encoded.
+     * @return
+     *      The {@code destination} builder.
+     */
+    public StringBuilder appendSASQueryString(StringBuilder destination, String containerName, String blobName) {
+        if (Utility.isNullOrEmpty(containerName) || Utility.isNullOrEmpty(blobName)) {
+            throw new IllegalArgumentException("The container name and blob name must be specified.");
+        }
+
+        SigningState state = this.signingState.get();
+        state.mac.update(this.stringToSignPrefix);
+        state.updateWithCanonicalPath(containerName, blobName);
+        String signature = DatatypeConverter.printBase64Binary(state.mac.doFinal(this.stringToSignSuffix));
+
+        destination.append(this.encodedQueryPrefix);
+        // Base64 output only needs the three characters below escaped, so URLEncoder is not required.
+        for (int i = 0; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            switch (c) {
+                case '+':
+                    destination.append("%2B");
+                    break;
+                case '/':
+                    destination.append("%2F");
+                    break;
+                case '=':
+                    destination.append("%3D");
+                    break;
+                default:
+                    destination.append(c);
+            }
+        }
+        return destination;
+    }
+
+    private static void appendQueryParameter(StringBuilder sb, String param, String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(sb.length() == 0 ? '?' : '&');
+        try {
+            sb.append(param).append('=').append(URLEncoder.encode(value, Constants.UTF8_CHARSET));
+        } catch (UnsupportedEncodingException e) {
+            throw new Error(e); // If we can't encode with UTF-8, we fail.
+        }
+    }
+
+    /**
+     * The per-thread objects used while generating a token.
+     */
+    private static final class SigningState {
+
+        private final Mac mac;
+
+        private final StringBuilder path = new StringBuilder();
+
+        private final StringBuilder output = new StringBuilder();
+
+        private final CharsetEncoder encoder = UTF8.newEncoder();
+
+        private ByteBuffer pathBytes = ByteBuffer.allocate(Constants.KB);
+
+        private SigningState(Mac mac) {
+            this.mac = mac;
+        }
+
+        private void updateWithCanonicalPath(String containerName, String blobName) {
+            this.path.setLength(0);
+            this.path.append(containerName).append('/').append(blobName);
+            CharBuffer chars = CharBuffer.wrap(this.path);
+
+            this.encoder.reset();
+            this.pathBytes.clear();
+            CoderResult result = this.encoder.encode(chars, this.pathBytes, true);
+            while (result.isOverflow()) {
+                // Blob names may be up to 1024 characters, each of which may take up to three bytes in UTF-8.
+                ByteBuffer larger = ByteBuffer.allocate(this.pathBytes.capacity() * 2);
+                this.pathBytes.flip();
+                larger.put(this.pathBytes);
+                this.pathBytes = larger;
+                result = this.encoder.encode(chars, this.pathBytes, true);
+            }
+            if (result.isError()) {
+                try {
+                    result.throwException();
+                } catch (CharacterCodingException e) {
+                    throw new IllegalArgumentException("The blob path is not valid UTF-16.", e);
+                }
+            }
+            this.encoder.flush(this.pathBytes);
+
+            this.pathBytes.flip();
+            this.mac.update(this.pathBytes);
+        }
+    }
+}
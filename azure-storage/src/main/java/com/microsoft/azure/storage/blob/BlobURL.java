@@ -42,6 +42,10 @@ public class BlobURL extends StorageURL {
         super(url, pipeline);
     }
 
+    BlobURL(StorageURL parent, String url) {
+        super(parent, url);
+    }
+
     /**
      * Creates a new {@link BlobURL} with the given pipeline.
      *
@@ -81,12 +85,7 @@ public class BlobURL extends StorageURL {
      *      A {@link BlockBlobURL} object.
      */
     public BlockBlobURL toBlockBlobURL() {
-        try {
-            return new BlockBlobURL(new URL(this.storageClient.url()), super.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            // TODO: remove.
-        }
-        return null;
+        return new BlockBlobURL(this, this.storageClient.url());
     }
 
     /**
@@ -97,12 +96,7 @@ public class BlobURL extends StorageURL {
      *      An {@link AppendBlobURL} object.
      */
     public AppendBlobURL toAppendBlobURL() {
-        try {
-            return new AppendBlobURL(new URL(this.storageClient.url()), super.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            // TODO: remove
-        }
-        return null;
+        return new AppendBlobURL(this, this.storageClient.url());
     }
 
     /**
@@ -113,12 +107,7 @@ public class BlobURL extends StorageURL {
      *      A {@link PageBlobURL} object.
      */
     public PageBlobURL toPageBlobURL() {
-        try {
-            return new PageBlobURL(new URL(this.storageClient.url()), super.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            // TODO: remove
-        }
-        return null;
+        return new PageBlobURL(this, this.storageClient.url());
     }
 
     /**
@@ -143,7 +132,7 @@ public class BlobURL extends StorageURL {
             BlobAccessConditions destAccessConditions) {
         metadata = metadata == null ? Metadata.NONE : metadata;
         sourceAccessConditions = sourceAccessConditions == null ? BlobAccessConditions.NONE : sourceAccessConditions;
-        destAccessConditions = destAccessConditions == null ? BlobAccessConditions.NONE : sourceAccessConditions;
+        destAccessConditions = destAccessConditions == null ? BlobAccessConditions.NONE : destAccessConditions;
 
         return this.storageClient.blobs().copyWithRestResponseAsync(
                 sourceURL, null, metadata,
@@ -236,6 +225,35 @@ public class BlobURL extends StorageURL {
                 accessConditions.getHttpAccessConditions().getIfNoneMatch().toString(), null);
     }
 
+    /**
+     * Sets the tier of a block blob in a blob storage account, or of a page blob in a premium storage account. A blob
+     * moved out of the archive tier is rehydrated in the background; its data cannot be read until that finishes.
+     * For more information, see https://docs.microsoft.com/rest/api/storageservices/set-blob-tier.
+     *
+     * @param tier
+     *      The new {@link AccessTier} for the blob.
+     * @return
+     *      A {@link Single} which emits a {@link RestResponse} object containing the {@link BlobSetBlobTierHeaders}
+     *      and a {@code Void} body if successful.
+     */
+    public Single<RestResponse<BlobSetBlobTierHeaders, Void>> setTier(AccessTier tier) {
+        Utility.assertNotNull("tier", tier);
+
+        return this.storageClient.blobs().setBlobTierWithRestResponseAsync(tier, null, null);
+    }
+
+    /**
+     * Restores the contents and metadata of a soft deleted blob and any associated soft deleted snapshots.
+     * For more information, see https://docs.microsoft.com/rest/api/storageservices/undelete-blob.
+     *
+     * @return
+     *      A {@link Single} which emits a {@link RestResponse} object containing the {@link BlobUndeleteHeaders} and a
+     *      {@code Void} body if successful.
+     */
+    public Single<RestResponse<BlobUndeleteHeaders, Void>> undelete() {
+        return this.storageClient.blobs().undeleteWithRestResponseAsync(null, null);
+    }
+
     /**
      * Returns the blob's metadata and properties.
      * For more information, see https://docs.microsoft.com/rest/api/storageservices/get-blob-properties.
@@ -58,6 +58,10 @@ public final class BlockBlobURL extends BlobURL {
         super(url, pipeline);
     }
 
+    BlockBlobURL(StorageURL parent, String url) {
+        super(parent, url);
+    }
+
     /**
      * Creates a new {@link BlockBlobURL} with the given pipeline.
      *
@@ -97,7 +101,8 @@ public final class BlockBlobURL extends BlobURL {
      * For more information, see https://docs.microsoft.com/rest/api/storageservices/put-blob.
      *
      * @param data
-     *      A {@link Flowable} emitting {@link ByteBuffer} which contain the data to write to the blob.
+     *      A {@link Flowable} emitting {@link ByteBuffer} which contain the data to write to the blob. Pass a
+     *      {@link FileRegionBody} to upload part of a file without copying it through the heap.
      * @param length
      *      A {@code long} indicating how long the data is.
      * @param headers
@@ -137,7 +142,8 @@ public final class BlockBlobURL extends BlobURL {
      * @param base64BlockID
      *      A Base64 encoded {@code String} that specifies the ID for this block.
      * @param data
-     *      A {@link Flowable} of {@link ByteBuffer} which contains the data to write to the block.
+     *      A {@link Flowable} of {@link ByteBuffer} which contains the data to write to the block. Pass a
+     *      {@link FileRegionBody} to upload part of a file without copying it through the heap.
      * @param length
      *      A {@code long} indicating how long the data is.
      * @param leaseAccessConditions
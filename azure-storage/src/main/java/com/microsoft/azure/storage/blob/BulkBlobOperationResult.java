@@ -0,0 +1,54 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * The outcome of applying a bulk operation to one blob.
+ */
+public final class BulkBlobOperationResult {
+
+    private final BlobURL blobURL;
+
+    private final Throwable error;
+
+    BulkBlobOperationResult(BlobURL blobURL, Throwable error) {
+        this.blobURL = blobURL;
+        this.error = error;
+    }
+
+    /**
+     * @return
+     *      The {@link BlobURL} of the blob the operation was applied to.
+     */
+    public BlobURL getBlobURL() {
+        return this.blobURL;
+    }
+
+    /**
+     * @return
+     *      The error the operation failed with, or null if it succeeded.
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    /**
+     * @return
+     *      {@code true} if the operation succeeded.
+     */
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.AccessTier;
+import com.microsoft.azure.storage.models.DeleteSnapshotsOptionType;
+import com.microsoft.rest.v2.RestException;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.CompletableSubject;
+import org.reactivestreams.Publisher;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies an operation to every blob in a {@code Flowable}, such as the blobs of a listing. The number of operations
+ * in flight adapts to the service: it grows by one for each window of operations which succeed, and halves when the
+ * service reports it is busy, so a run over millions of blobs finds the rate the account sustains without
+ * configuration. An operation which fails is reported in its {@link BulkBlobOperationResult} and the run continues.
+ */
+public final class BulkBlobOperations {
+
+    private static final long MAX_THROTTLED_RETRY_DELAY_IN_MS = TimeUnit.SECONDS.toMillis(120);
+
+    private final BulkBlobOperationsOptions options;
+
+    /**
+     * Creates a {@code BulkBlobOperations} with the given options.
+     *
+     * @param options
+     *      A {@link BulkBlobOperationsOptions} object to configure the run. If null,
+     *      {@link BulkBlobOperationsOptions#DEFAULT} will be used.
+     */
+    public BulkBlobOperations(BulkBlobOperationsOptions options) {
+        this.options = options == null ? BulkBlobOperationsOptions.DEFAULT : options;
+    }
+
+    /**
+     * An operation which deletes each blob.
+     *
+     * @param deleteSnapshotsOptions
+     *      A {@link DeleteSnapshotsOptionType} which must be set if a blob has snapshots.
+     * @param accessConditions
+     *      A {@link BlobAccessConditions} object that represents the access conditions for each blob.
+     * @return
+     *      An {@link IBulkBlobOperation} to pass to {@link #execute(Flowable, IBulkBlobOperation)}.
+     */
+    public static IBulkBlobOperation delete(final DeleteSnapshotsOptionType deleteSnapshotsOptions,
+            final BlobAccessConditions accessConditions) {
+        return new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                return blobURL.delete(deleteSnapshotsOptions, accessConditions).toCompletable();
+            }
+        };
+    }
+
+    /**
+     * An operation which replaces the metadata of each blob.
+     *
+     * @param metadata
+     *      A {@link Metadata} object that specifies key value pairs to set on each blob.
+     * @param accessConditions
+     *      A {@link BlobAccessConditions} object that represents the access conditions for each blob.
+     * @return
+     *      An {@link IBulkBlobOperation} to pass to {@link #execute(Flowable, IBulkBlobOperation)}.
+     */
+    public static IBulkBlobOperation setMetadata(final Metadata metadata,
+            final BlobAccessConditions accessConditions) {
+        return new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                return blobURL.setMetadata(metadata, accessConditions).toCompletable();
+            }
+        };
+    }
+
+    /**
+     * An operation which replaces the HTTP headers of each blob.
+     *
+     * @param headers
+     *      A {@link BlobHTTPHeaders} object that specifies which properties to set on each blob.
+     * @param accessConditions
+     *      A {@link BlobAccessConditions} object that represents the access conditions for each blob.
+     * @return
+     *      An {@link IBulkBlobOperation} to pass to {@link #execute(Flowable, IBulkBlobOperation)}.
+     */
+    public static IBulkBlobOperation setHTTPHeaders(final BlobHTTPHeaders headers,
+            final BlobAccessConditions accessConditions) {
+        return new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                return blobURL.setProperties(headers, accessConditions).toCompletable();
+            }
+        };
+    }
+
+    /**
+     * An operation which sets the tier of each blob.
+     *
+     * @param tier
+     *      The new {@link AccessTier} for each blob.
+     * @return
+     *      An {@link IBulkBlobOperation} to pass to {@link #execute(Flowable, IBulkBlobOperation)}.
+     */
+    public static IBulkBlobOperation setTier(final AccessTier tier) {
+        Utility.assertNotNull("tier", tier);
+        return new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                return blobURL.setTier(tier).toCompletable();
+            }
+        };
+    }
+
+    /**
+     * An operation which restores each soft deleted blob.
+     *
+     * @return
+     *      An {@link IBulkBlobOperation} to pass to {@link #execute(Flowable, IBulkBlobOperation)}.
+     */
+    public static IBulkBlobOperation undelete() {
+        return new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                return blobURL.undelete().toCompletable();
+            }
+        };
+    }
+
+    /**
+     * Applies the operation to each blob.
+     *
+     * @param blobURLs
+     *      A {@link Flowable} of the blobs to apply the operation to. Blobs are read only as operations finish, so it
+     *      may be produced lazily, for example by mapping {@link ContainerURL#listBlobsAll(ListBlobsOptions)} through
+     *      {@link ContainerURL#createBlobURL(String)}.
+     * @param operation
+     *      The {@link IBulkBlobOperation} to apply.
+     * @return
+     *      A {@link Flowable} which emits a {@link BulkBlobOperationResult} for each blob as its operation finishes,
+     *      in the order they finish. A failed operation is reported through {@link BulkBlobOperationResult#getError()}
+     *      rather than by erroring the {@code Flowable}.
+     */
+    public Flowable<BulkBlobOperationResult> execute(final Flowable<BlobURL> blobURLs,
+            final IBulkBlobOperation operation) {
+        Utility.assertNotNull("blobURLs", blobURLs);
+        Utility.assertNotNull("operation", operation);
+
+        return execute(blobURLs,
+                new Function<BlobURL, BlobURL>() {
+                    @Override
+                    public BlobURL apply(BlobURL blobURL) throws Exception {
+                        return blobURL;
+                    }
+                },
+                new Function<BlobURL, IBulkBlobOperation>() {
+                    @Override
+                    public IBulkBlobOperation apply(BlobURL blobURL) throws Exception {
+                        return operation;
+                    }
+                });
+    }
+
+    /*
+     Applies to each item the operation chosen for it, for callers such as Highlevel.setTiersByAge which pick the
+     operation from more than the blob's URL.
+     */
+    <T> Flowable<BulkBlobOperationResult> execute(final Flowable<T> items, final Function<? super T, BlobURL> blobURLOf,
+            final Function<? super T, IBulkBlobOperation> operationFor) {
+        return Flowable.defer(new Callable<Publisher<BulkBlobOperationResult>>() {
+            @Override
+            public Publisher<BulkBlobOperationResult> call() throws Exception {
+                final ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+                final ProgressReporter reporter = new ProgressReporter(limiter);
+                /*
+                 flatMap's bound is only the ceiling; the limiter holds back the operations above the current
+                 concurrency, so at most maxConcurrency blobs are read ahead of the operations in flight.
+                 */
+                return items
+                        .flatMap(new Function<T, Publisher<BulkBlobOperationResult>>() {
+                            @Override
+                            public Publisher<BulkBlobOperationResult> apply(T item) throws Exception {
+                                final BlobURL blobURL = blobURLOf.apply(item);
+                                return limiter.run(operationFor.apply(item), blobURL)
+                                        .retryWhen(throttledRetries())
+                                        .toSingleDefault(new BulkBlobOperationResult(blobURL, null))
+                                        .onErrorReturn(new Function<Throwable, BulkBlobOperationResult>() {
+                                            @Override
+                                            public BulkBlobOperationResult apply(Throwable e) throws Exception {
+                                                return new BulkBlobOperationResult(blobURL, e);
+                                            }
+                                        })
+                                        .doOnSuccess(reporter)
+                                        .toFlowable();
+                            }
+                        }, options.getMaxConcurrency())
+                        .doOnSubscribe(new Consumer<Object>() {
+                            @Override
+                            public void accept(Object subscription) throws Exception {
+                                reporter.start();
+                            }
+                        })
+                        .doFinally(reporter);
+            }
+        });
+    }
+
+    /*
+     Retries an operation the service throttled after a backoff, so that the retries of the operations throttled
+     together do not land on the service at once. The operation gives up its slot in the limiter while it waits.
+     */
+    private Function<Flowable<Throwable>, Publisher<Long>> throttledRetries() {
+        final AtomicInteger retries = new AtomicInteger();
+        return new Function<Flowable<Throwable>, Publisher<Long>>() {
+            @Override
+            public Publisher<Long> apply(Flowable<Throwable> errors) throws Exception {
+                return errors.flatMap(new Function<Throwable, Publisher<Long>>() {
+                    @Override
+                    public Publisher<Long> apply(Throwable e) throws Exception {
+                        int retry = retries.incrementAndGet();
+                        if (!isServerBusy(e) || retry > options.getMaxThrottledRetries()) {
+                            return Flowable.error(e);
+                        }
+                        return Flowable.timer(throttledRetryDelayInMs(retry), TimeUnit.MILLISECONDS);
+                    }
+                });
+            }
+        };
+    }
+
+    /*
+     The wait before the given retry, counting from 1: exponential, capped, and with jitter.
+     */
+    long throttledRetryDelayInMs(int retry) {
+        long delayInMs = this.options.getThrottledRetryDelayInMs();
+        for (int i = 1; i < retry && delayInMs < MAX_THROTTLED_RETRY_DELAY_IN_MS; i++) {
+            delayInMs *= 2;
+        }
+        delayInMs = Math.min(delayInMs, Math.max(MAX_THROTTLED_RETRY_DELAY_IN_MS,
+                this.options.getThrottledRetryDelayInMs()));
+        return (long) (delayInMs * (0.8 + ThreadLocalRandom.current().nextDouble() * 0.4));
+    }
+
+    /*
+     The service answers 503 (ServerBusy) when an account or partition is over its request rate and 500
+     (OperationTimedOut) when it could not keep up with the request; both mean fewer requests should be in flight.
+     */
+    private static boolean isServerBusy(Throwable e) {
+        if (!(e instanceof RestException)) {
+            return false;
+        }
+        int statusCode = ((RestException) e).response().statusCode();
+        return statusCode == HttpURLConnection.HTTP_UNAVAILABLE || statusCode == HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * An additive-increase, multiplicative-decrease limit on the number of operations in flight. Operations over the
+     * limit wait in a queue and start, in order, as earlier operations finish. An operation which is disposed of gives
+     * up its slot, or its place in the queue.
+     */
+    final class ConcurrencyLimiter {
+
+        // All fields are guarded by this.
+        private final ArrayDeque<Permit> waiters = new ArrayDeque<Permit>();
+
+        private int limit = options.getInitialConcurrency();
+
+        private int inFlight;
+
+        private int successesSinceIncrease;
+
+        private long lastDecreaseTime = System.nanoTime();
+
+        Completable run(final IBulkBlobOperation operation, final BlobURL blobURL) {
+            return Completable.defer(new Callable<CompletableSource>() {
+                @Override
+                public CompletableSource call() throws Exception {
+                    final Permit permit = new Permit();
+                    final long[] startTime = new long[1];
+                    return acquire(permit)
+                            .andThen(Completable.defer(new Callable<CompletableSource>() {
+                                @Override
+                                public CompletableSource call() throws Exception {
+                                    startTime[0] = System.nanoTime();
+                                    return operation.apply(blobURL);
+                                }
+                            }))
+                            .doOnComplete(new Action() {
+                                @Override
+                                public void run() throws Exception {
+                                    release(permit, false, startTime[0]);
+                                }
+                            })
+                            .doOnError(new Consumer<Throwable>() {
+                                @Override
+                                public void accept(Throwable e) throws Exception {
+                                    release(permit, isServerBusy(e), startTime[0]);
+                                }
+                            })
+                            .doOnDispose(new Action() {
+                                @Override
+                                public void run() throws Exception {
+                                    cancel(permit);
+                                }
+                            });
+                }
+            });
+        }
+
+        synchronized int getLimit() {
+            return this.limit;
+        }
+
+        private synchronized Completable acquire(Permit permit) {
+            if (this.inFlight < this.limit) {
+                this.inFlight++;
+                permit.held = true;
+                return Completable.complete();
+            }
+            this.waiters.add(permit);
+            return permit.granted;
+        }
+
+        /*
+         Marks the permit as given up and reports whether it held a slot, which is then free. A permit still waiting
+         leaves the queue instead, so a later release does not hand a slot to an operation which is gone. A permit is
+         only given up once, since an operation may be disposed of after it has finished.
+         */
+        private boolean giveUp(Permit permit) {
+            if (permit.givenUp) {
+                return false;
+            }
+            permit.givenUp = true;
+            if (!permit.held) {
+                this.waiters.remove(permit);
+                return false;
+            }
+            this.inFlight--;
+            return true;
+        }
+
+        /*
+         Moves waiting permits into the slots the limit allows. They are granted outside the lock.
+         */
+        private List<Permit> admitWaiters() {
+            List<Permit> started = new ArrayList<Permit>();
+            while (this.inFlight < this.limit && !this.waiters.isEmpty()) {
+                Permit permit = this.waiters.poll();
+                permit.held = true;
+                this.inFlight++;
+                started.add(permit);
+            }
+            return started;
+        }
+
+        private void cancel(Permit permit) {
+            List<Permit> started;
+            synchronized (this) {
+                if (!giveUp(permit)) {
+                    return;
+                }
+                started = admitWaiters();
+            }
+            grant(started);
+        }
+
+        private void release(Permit permit, boolean serverBusy, long startTime) {
+            List<Permit> started;
+            synchronized (this) {
+                if (!giveUp(permit)) {
+                    return;
+                }
+                if (serverBusy) {
+                    /*
+                     Operations already in flight when the limit was last halved were sent at the old rate, so their
+                     failures must not halve it again.
+                     */
+                    if (startTime - this.lastDecreaseTime > 0) {
+                        this.limit = Math.max(1, this.limit / 2);
+                        this.successesSinceIncrease = 0;
+                        this.lastDecreaseTime = System.nanoTime();
+                    }
+                } else if (++this.successesSinceIncrease >= this.limit) {
+                    this.limit = Math.min(options.getMaxConcurrency(), this.limit + 1);
+                    this.successesSinceIncrease = 0;
+                }
+                started = admitWaiters();
+            }
+            grant(started);
+        }
+
+        private void grant(List<Permit> started) {
+            // Start the waiting operations outside the lock as they may complete synchronously.
+            for (Permit permit : started) {
+                permit.granted.onComplete();
+            }
+        }
+    }
+
+    /**
+     * One operation's claim on a slot in the {@link ConcurrencyLimiter}. Its fields are guarded by the limiter.
+     */
+    private static final class Permit {
+
+        final CompletableSubject granted = CompletableSubject.create();
+
+        boolean held;
+
+        boolean givenUp;
+    }
+
+    /**
+     * Counts the results of a run and reports them to the {@link IBulkProgressReceiver}, if any, on each interval and
+     * once more when the run ends.
+     */
+    private final class ProgressReporter implements Consumer<BulkBlobOperationResult>, Action {
+
+        private final ConcurrencyLimiter limiter;
+
+        private final AtomicLong succeeded = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        // Guarded by this.
+        private long lastReportTime;
+
+        private long lastReportCount;
+
+        private Disposable ticker;
+
+        private ProgressReporter(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        private synchronized void start() {
+            if (options.getProgressReceiver() == null) {
+                return;
+            }
+            this.lastReportTime = System.nanoTime();
+            this.ticker = Flowable.interval(options.getProgressIntervalInMs(), TimeUnit.MILLISECONDS)
+                    .subscribe(new Consumer<Long>() {
+                        @Override
+                        public void accept(Long tick) throws Exception {
+                            report();
+                        }
+                    });
+        }
+
+        @Override
+        public void accept(BulkBlobOperationResult result) {
+            if (result.isSuccess()) {
+                this.succeeded.incrementAndGet();
+            } else {
+                this.failed.incrementAndGet();
+            }
+        }
+
+        // Called when the run terminates or is cancelled.
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.ticker == null) {
+                    return;
+                }
+                this.ticker.dispose();
+            }
+            report();
+        }
+
+        private synchronized void report() {
+            long now = System.nanoTime();
+            long succeeded = this.succeeded.get();
+            long failed = this.failed.get();
+            double operationsPerSecond = now == this.lastReportTime ? 0 :
+                    (succeeded + failed - this.lastReportCount) * 1e9 / (now - this.lastReportTime);
+            this.lastReportTime = now;
+            this.lastReportCount = succeeded + failed;
+            options.getProgressReceiver().reportProgress(succeeded, failed, operationsPerSecond,
+                    this.limiter.getLimit());
+        }
+    }
+}
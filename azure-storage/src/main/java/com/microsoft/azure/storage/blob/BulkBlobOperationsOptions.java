@@ -0,0 +1,123 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Defines options available when creating {@link BulkBlobOperations}.
+ */
+public final class BulkBlobOperationsOptions {
+
+    /**
+     * An object representing the default options: an initial concurrency of 16, a maximum concurrency of 256, up to
+     * 3 retries of a throttled operation starting 1 second after it fails, and no progress reports.
+     */
+    public static final BulkBlobOperationsOptions DEFAULT = new BulkBlobOperationsOptions(null, null, null, null, null,
+            null);
+
+    private final int initialConcurrency;
+
+    private final int maxConcurrency;
+
+    private final int maxThrottledRetries;
+
+    private final long throttledRetryDelayInMs;
+
+    private final IBulkProgressReceiver progressReceiver;
+
+    private final long progressIntervalInMs;
+
+    /**
+     * A {@link BulkBlobOperationsOptions} object.
+     *
+     * @param initialConcurrency
+     *      The number of operations allowed in flight when the run starts. If null, 16 will be used.
+     * @param maxConcurrency
+     *      The largest number of operations allowed in flight. If null, 256 will be used.
+     * @param maxThrottledRetries
+     *      The number of times an operation which the service throttles is tried again, after the pipeline's own
+     *      retries, before it is reported as failed. If null, 3 will be used.
+     * @param throttledRetryDelayInMs
+     *      The time, in milliseconds, to wait before the first retry of a throttled operation. The wait doubles with
+     *      each further retry, up to 120 seconds, and varies by up to 20% either way so that the retries of
+     *      operations throttled together spread out. If null, 1000 will be used.
+     * @param progressReceiver
+     *      An object that implements the {@link IBulkProgressReceiver} interface which will be invoked periodically
+     *      with the progress of the run. May be null.
+     * @param progressIntervalInMs
+     *      The time, in milliseconds, between progress reports. If null, 1000 will be used.
+     */
+    public BulkBlobOperationsOptions(Integer initialConcurrency, Integer maxConcurrency, Integer maxThrottledRetries,
+            Long throttledRetryDelayInMs, IBulkProgressReceiver progressReceiver, Long progressIntervalInMs) {
+        this.initialConcurrency = initialConcurrency == null ? 16 : initialConcurrency;
+        this.maxConcurrency = maxConcurrency == null ? Math.max(256, this.initialConcurrency) : maxConcurrency;
+        this.maxThrottledRetries = maxThrottledRetries == null ? 3 : maxThrottledRetries;
+        this.throttledRetryDelayInMs = throttledRetryDelayInMs == null ? 1000 : throttledRetryDelayInMs;
+        this.progressReceiver = progressReceiver;
+        this.progressIntervalInMs = progressIntervalInMs == null ? 1000 : progressIntervalInMs;
+        Utility.assertInBounds("initialConcurrency", this.initialConcurrency, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("maxConcurrency", this.maxConcurrency, this.initialConcurrency, Integer.MAX_VALUE);
+        Utility.assertInBounds("maxThrottledRetries", this.maxThrottledRetries, 0, Integer.MAX_VALUE);
+        Utility.assertInBounds("throttledRetryDelayInMs", this.throttledRetryDelayInMs, 0, Long.MAX_VALUE);
+        Utility.assertInBounds("progressIntervalInMs", this.progressIntervalInMs, 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return
+     *      The number of operations allowed in flight when the run starts.
+     */
+    public int getInitialConcurrency() {
+        return this.initialConcurrency;
+    }
+
+    /**
+     * @return
+     *      The largest number of operations allowed in flight.
+     */
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * @return
+     *      The number of times a throttled operation is tried again before it is reported as failed.
+     */
+    public int getMaxThrottledRetries() {
+        return this.maxThrottledRetries;
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, to wait before the first retry of a throttled operation.
+     */
+    public long getThrottledRetryDelayInMs() {
+        return this.throttledRetryDelayInMs;
+    }
+
+    /**
+     * @return
+     *      The {@link IBulkProgressReceiver} invoked with the progress of the run, or null.
+     */
+    public IBulkProgressReceiver getProgressReceiver() {
+        return this.progressReceiver;
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, between progress reports.
+     */
+    public long getProgressIntervalInMs() {
+        return this.progressIntervalInMs;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.rest.v2.http.HttpPipeline;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of direct {@link ByteBuffer}s which the transfers of {@link Highlevel} read and write data through,
+ * configured by {@link PipelineOptions#bufferPool}. Reusing the buffers keeps a transfer's memory to what it has in
+ * flight, rather than leaving each buffer to the garbage collector, and makes that memory measurable: the
+ * statistics report how many bytes are in use at once and at most, which is what a container's memory limit must
+ * allow for on top of the heap.
+ * <p>
+ * Buffers come in size classes which are powers of two, from 4KB up to {@link #getMaxBufferBytes()}; a request is
+ * served with a buffer of the smallest class which holds it, and larger requests get buffers which are not pooled.
+ * Released buffers of up to 64KB are kept first in a small cache of the releasing thread, which the thread takes
+ * from without contention, and otherwise in an arena shared by all threads. Buffers released when the arena holds
+ * {@link #getMaxPooledBytes()} are left to the garbage collector.
+ * <p>
+ * Each buffer must be released at most once, and not used after it is released.
+ */
+public final class ByteBufferPool {
+
+    /**
+     * The pool used by pipelines whose options do not name one: buffers of up to 8MB, the default block size of
+     * {@link Highlevel#copyToBlockBlob}, with up to 64MB kept in the arena and 1MB in each thread's cache.
+     */
+    public static final ByteBufferPool DEFAULT = new ByteBufferPool(null, null, null);
+
+    private static final int MIN_CLASS_SHIFT = 12;
+
+    private static final int MAX_THREAD_CACHED_BYTES = 64 * Constants.KB;
+
+    // The pools createPipeline built pipelines with, so that a transfer can find the pool of its URL.
+    private static final Map<HttpPipeline, ByteBufferPool> PIPELINES = new WeakHashMap<>();
+
+    private final long maxPooledBytes;
+
+    private final int maxBufferBytes;
+
+    private final int threadCacheBytes;
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] arena;
+
+    private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong bytesOutstanding = new AtomicLong();
+
+    private final AtomicLong highWaterMark = new AtomicLong();
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxPooledBytes
+     *      The most bytes of released buffers the arena keeps for reuse. If null, 64MB will be used.
+     * @param maxBufferBytes
+     *      The size of the largest buffers which are pooled, which is rounded up to a power of two of at least 4KB.
+     *      If null, 8MB will be used.
+     * @param threadCacheBytes
+     *      The most bytes of released buffers each thread keeps for its own reuse. 0 turns the thread caches off. If
+     *      null, 1MB will be used.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(Long maxPooledBytes, Integer maxBufferBytes, Integer threadCacheBytes) {
+        this.maxPooledBytes = maxPooledBytes == null ? 64 * Constants.MB : maxPooledBytes;
+        int maxBuffer = maxBufferBytes == null ? 8 * Constants.MB : maxBufferBytes;
+        this.threadCacheBytes = threadCacheBytes == null ? Constants.MB : threadCacheBytes;
+        Utility.assertInBounds("maxPooledBytes", this.maxPooledBytes, 0, Long.MAX_VALUE);
+        Utility.assertInBounds("maxBufferBytes", maxBuffer, 1, 1 << 30);
+        Utility.assertInBounds("threadCacheBytes", this.threadCacheBytes, 0, Integer.MAX_VALUE);
+
+        int classes = sizeClass(maxBuffer) + 1;
+        this.maxBufferBytes = classSize(classes - 1);
+        this.arena = new ConcurrentLinkedQueue[classes];
+        for (int i = 0; i < classes; i++) {
+            this.arena[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Records that createPipeline built a pipeline with a pool, so that {@link #forPipeline(HttpPipeline)} can find
+     * it.
+     */
+    static void register(HttpPipeline pipeline, ByteBufferPool pool) {
+        synchronized (PIPELINES) {
+            PIPELINES.put(pipeline, pool);
+        }
+    }
+
+    /**
+     * @return
+     *      The pool the pipeline was built with, or {@link #DEFAULT} if it was not built by createPipeline.
+     */
+    static ByteBufferPool forPipeline(HttpPipeline pipeline) {
+        synchronized (PIPELINES) {
+            ByteBufferPool pool = PIPELINES.get(pipeline);
+            return pool == null ? DEFAULT : pool;
+        }
+    }
+
+    /**
+     * Gets a direct buffer with room for at least the given number of bytes, whose position is 0, whose limit is the
+     * number of bytes and whose byte order is big-endian. Its contents are undefined.
+     *
+     * @param bytes
+     *      The number of bytes the buffer must hold.
+     * @return
+     *      The buffer. Pass it to {@link #release(ByteBuffer)} when it is no longer used.
+     */
+    public ByteBuffer acquire(int bytes) {
+        Utility.assertInBounds("bytes", bytes, 0, Integer.MAX_VALUE);
+        ByteBuffer buffer = null;
+        if (bytes <= this.maxBufferBytes) {
+            int sizeClass = sizeClass(bytes);
+            if (classSize(sizeClass) <= MAX_THREAD_CACHED_BYTES && this.threadCacheBytes > 0) {
+                buffer = this.threadCaches.get().poll(sizeClass);
+            }
+            if (buffer == null) {
+                buffer = this.arena[sizeClass].poll();
+                if (buffer != null) {
+                    this.pooledBytes.addAndGet(-buffer.capacity());
+                }
+            }
+            if (buffer == null) {
+                this.misses.incrementAndGet();
+                buffer = ByteBuffer.allocateDirect(classSize(sizeClass));
+            } else {
+                this.hits.incrementAndGet();
+            }
+        } else {
+            this.misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(bytes);
+        }
+
+        long outstanding = this.bytesOutstanding.addAndGet(buffer.capacity());
+        long mark = this.highWaterMark.get();
+        while (outstanding > mark && !this.highWaterMark.compareAndSet(mark, outstanding)) {
+            mark = this.highWaterMark.get();
+        }
+
+        buffer.clear();
+        buffer.limit(bytes);
+        return buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the pool.
+     *
+     * @param buffer
+     *      The buffer, which must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        Utility.assertNotNull("buffer", buffer);
+        int capacity = buffer.capacity();
+        this.bytesOutstanding.addAndGet(-capacity);
+        // Only buffers of a size class can be served again; others are left to the garbage collector.
+        if (!buffer.isDirect() || capacity > this.maxBufferBytes || capacity < classSize(0)
+                || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if (capacity <= MAX_THREAD_CACHED_BYTES && this.threadCacheBytes > 0
+                && this.threadCaches.get().offer(sizeClass, buffer)) {
+            return;
+        }
+        if (this.pooledBytes.addAndGet(capacity) <= this.maxPooledBytes) {
+            this.arena[sizeClass].offer(buffer);
+        } else {
+            this.pooledBytes.addAndGet(-capacity);
+        }
+    }
+
+    /**
+     * @return
+     *      The most bytes of released buffers the arena keeps for reuse.
+     */
+    public long getMaxPooledBytes() {
+        return this.maxPooledBytes;
+    }
+
+    /**
+     * @return
+     *      The size of the largest buffers which are pooled.
+     */
+    public int getMaxBufferBytes() {
+        return this.maxBufferBytes;
+    }
+
+    /**
+     * @return
+     *      The most bytes of released buffers each thread keeps for its own reuse.
+     */
+    public int getThreadCacheBytes() {
+        return this.threadCacheBytes;
+    }
+
+    /**
+     * @return
+     *      The number of acquisitions served with a released buffer.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *      The number of acquisitions which allocated a new buffer.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     *      The total capacity of the buffers which have been acquired and not released, including any which were
+     *      dropped without being released, such as the buffers of requests which failed while they were being sent.
+     */
+    public long getBytesOutstanding() {
+        return this.bytesOutstanding.get();
+    }
+
+    /**
+     * @return
+     *      The most bytes that have been outstanding at once.
+     */
+    public long getHighWaterMark() {
+        return this.highWaterMark.get();
+    }
+
+    /**
+     * @return
+     *      The total capacity of the released buffers the arena holds. Buffers held by the thread caches are not
+     *      counted.
+     */
+    public long getPooledBytes() {
+        return this.pooledBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d bytesOutstanding=%d highWaterMark=%d pooledBytes=%d",
+                getHits(), getMisses(), getBytesOutstanding(), getHighWaterMark(), getPooledBytes());
+    }
+
+    private static int sizeClass(int bytes) {
+        if (bytes <= 1 << MIN_CLASS_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(bytes - 1) - MIN_CLASS_SHIFT;
+    }
+
+    private static int classSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_CLASS_SHIFT);
+    }
+
+    /**
+     * The released buffers of one thread, by size class. Only the thread itself uses it.
+     */
+    private final class ThreadCache {
+
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<ByteBuffer>[] buffers =
+                new ArrayDeque[sizeClass(MAX_THREAD_CACHED_BYTES) + 1];
+
+        private int bytes;
+
+        ByteBuffer poll(int sizeClass) {
+            ArrayDeque<ByteBuffer> queue = this.buffers[sizeClass];
+            ByteBuffer buffer = queue == null ? null : queue.poll();
+            if (buffer != null) {
+                this.bytes -= buffer.capacity();
+            }
+            return buffer;
+        }
+
+        boolean offer(int sizeClass, ByteBuffer buffer) {
+            if (this.bytes + buffer.capacity() > threadCacheBytes) {
+                return false;
+            }
+            if (this.buffers[sizeClass] == null) {
+                this.buffers[sizeClass] = new ArrayDeque<>();
+            }
+            this.buffers[sizeClass].offer(buffer);
+            this.bytes += buffer.capacity();
+            return true;
+        }
+    }
+}
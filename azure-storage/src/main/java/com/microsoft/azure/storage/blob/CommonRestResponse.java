@@ -2,6 +2,7 @@ package com.microsoft.azure.storage.blob;
 
 import com.microsoft.azure.storage.models.BlobPutHeaders;
 import com.microsoft.azure.storage.models.BlockBlobPutBlockListHeaders;
+import com.microsoft.azure.storage.models.PageBlobPutPageHeaders;
 import com.microsoft.rest.v2.RestResponse;
 
 import java.util.Date;
@@ -16,6 +17,8 @@ public final class CommonRestResponse {
 
     private RestResponse<BlockBlobPutBlockListHeaders, Void> putBlockListResponse;
 
+    private RestResponse<PageBlobPutPageHeaders, Void> putPageResponse;
+
     static CommonRestResponse createFromPutBlobResponse(RestResponse<BlobPutHeaders, Void> response) {
         CommonRestResponse commonRestResponse = new CommonRestResponse();
         commonRestResponse.putBlobResponse = response;
@@ -29,15 +32,25 @@ public final class CommonRestResponse {
         return commonRestResponse;
     }
 
+    static CommonRestResponse createFromPutPageResponse(RestResponse<PageBlobPutPageHeaders, Void> response) {
+        CommonRestResponse commonRestResponse = new CommonRestResponse();
+        commonRestResponse.putPageResponse = response;
+        return commonRestResponse;
+    }
+
     private CommonRestResponse() {
         putBlobResponse = null;
         putBlockListResponse = null;
+        putPageResponse = null;
     }
 
     public String eTag() {
         if (putBlobResponse != null) {
             return putBlobResponse.headers().eTag();
         }
+        if (putPageResponse != null) {
+            return putPageResponse.headers().eTag();
+        }
         return putBlockListResponse.headers().eTag();
     }
 
@@ -45,6 +58,9 @@ public final class CommonRestResponse {
         if (putBlobResponse != null) {
             return putBlobResponse.headers().lastModified().toDate(); // TODO: remove toDate
         }
+        if (putPageResponse != null) {
+            return putPageResponse.headers().lastModified().toDate();
+        }
         return putBlockListResponse.headers().lastModified().toDate();
     }
 
@@ -52,6 +68,9 @@ public final class CommonRestResponse {
         if (putBlobResponse != null) {
             return putBlobResponse.headers().requestId();
         }
+        if (putPageResponse != null) {
+            return putPageResponse.headers().requestId();
+        }
         return putBlockListResponse.headers().requestId();
     }
 
@@ -59,6 +78,9 @@ public final class CommonRestResponse {
         if (putBlobResponse != null) {
             return putBlobResponse.headers().dateProperty().toDate(); // TODO: remove toDate
         }
+        if (putPageResponse != null) {
+            return putPageResponse.headers().dateProperty().toDate();
+        }
         return putBlockListResponse.headers().dateProperty().toDate();
     }
 
@@ -66,6 +88,9 @@ public final class CommonRestResponse {
         if (putBlobResponse != null) {
             return putBlobResponse.headers().version();
         }
+        if (putPageResponse != null) {
+            return putPageResponse.headers().version();
+        }
         return putBlockListResponse.headers().version();
     }
 
@@ -73,6 +98,9 @@ public final class CommonRestResponse {
         if (putBlobResponse != null) {
             return putBlobResponse;
         }
+        if (putPageResponse != null) {
+            return putPageResponse;
+        }
         return putBlockListResponse;
     }
 
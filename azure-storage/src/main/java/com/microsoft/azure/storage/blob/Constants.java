@@ -28,11 +28,6 @@ final class Constants {
          */
         static final String AUTHORIZATION = "Authorization";
 
-        /**
-         * The format string for specifying ranges with only begin offset.
-         */
-        static final String BEGIN_RANGE_HEADER_FORMAT = "bytes=%d-";
-
         /**
          * The header that indicates the client request ID.
          */
@@ -93,11 +88,6 @@ final class Constants {
          */
         static final String RANGE = "Range";
 
-        /**
-         * The format string for specifying ranges.
-         */
-        static final String RANGE_HEADER_FORMAT = "bytes=%d-%d";
-
         /**
          * The current storage version header value.
          */
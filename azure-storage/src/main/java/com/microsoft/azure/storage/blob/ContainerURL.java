@@ -17,11 +17,18 @@ package com.microsoft.azure.storage.blob;
 import com.microsoft.azure.storage.models.*;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.http.HttpPipeline;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.UnicastProcessor;
+import org.reactivestreams.Publisher;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Represents a URL to the Azure Storage container allowing you to manipulate its blobs.
@@ -32,6 +39,10 @@ public final class ContainerURL extends StorageURL {
         super(url, pipeline);
     }
 
+    ContainerURL(StorageURL parent, String url) {
+        super(parent, url);
+    }
+
     /**
      * Creates a new {@link ContainerURL} with the given pipeline.
      *
@@ -61,12 +72,7 @@ public final class ContainerURL extends StorageURL {
      *      A new {@link BlockBlobURL} object which references the blob with the specified name in this container.
      */
     public BlockBlobURL createBlockBlobURL(String blobName) {
-        try {
-            return new BlockBlobURL(StorageURL.appendToURLPath(new URL(this.storageClient.url()), blobName),
-                    this.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
+        return new BlockBlobURL(this, StorageURL.appendToURLPath(this.storageClient.url(), blobName));
     }
 
     /**
@@ -82,12 +88,7 @@ public final class ContainerURL extends StorageURL {
      *      A new {@link PageBlobURL} object which references the blob with the specified name in this container.
      */
     public PageBlobURL createPageBlobURL(String blobName) {
-        try {
-            return new PageBlobURL(StorageURL.appendToURLPath(new URL(this.storageClient.url()), blobName),
-                    this.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
+        return new PageBlobURL(this, StorageURL.appendToURLPath(this.storageClient.url(), blobName));
     }
 
     /**
@@ -103,12 +104,7 @@ public final class ContainerURL extends StorageURL {
      *      A new {@link AppendBlobURL} object which references the blob with the specified name in this container.
      */
     public AppendBlobURL createAppendBlobURL(String blobName) {
-        try {
-            return new AppendBlobURL(StorageURL.appendToURLPath(new URL(this.storageClient.url()), blobName),
-                    this.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
+        return new AppendBlobURL(this, StorageURL.appendToURLPath(this.storageClient.url(), blobName));
     }
 
     /**
@@ -124,12 +120,7 @@ public final class ContainerURL extends StorageURL {
      *      A new {@link BlobURL} object which references the blob with the specified name in this container.
      */
     public BlobURL createBlobURL(String blobName) {
-        try {
-            return new BlobURL(StorageURL.appendToURLPath(new URL(this.storageClient.url()), blobName),
-                    this.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
+        return new BlobURL(this, StorageURL.appendToURLPath(this.storageClient.url(), blobName));
     }
 
     /**
@@ -455,4 +446,65 @@ public final class ContainerURL extends StorageURL {
                 options.getDelimiter(), marker, options.getMaxResults(),
                 options.getDetails().toList(), null, null);
     }
+
+    /**
+     * Returns every blob in the container, following the NextMarker of each segment until the listing is exhausted.
+     * The request for the next segment is issued as soon as the current segment is handed downstream, so one segment
+     * is always in flight while the previous one is being consumed. Further segments are only requested as the
+     * subscriber requests more blobs. Blob prefixes returned when a delimiter is specified are not emitted.
+     *
+     * @param options
+     *      A {@link ListBlobsOptions} object which specifies one or more datasets to include in the response.
+     * @return
+     *      A {@link Flowable} which emits each {@link Blob} in lexicographic order.
+     */
+    public Flowable<Blob> listBlobsAll(final ListBlobsOptions options) {
+        return Flowable.defer(new Callable<Publisher<Blob>>() {
+            @Override
+            public Publisher<Blob> call() throws Exception {
+                // The NextMarker of each segment is fed back in to drive the request for the following segment. An
+                // empty string stands in for the null marker of the first request.
+                final UnicastProcessor<String> markers = UnicastProcessor.create();
+                markers.onNext("");
+                return markers
+                        .concatMap(new Function<String, Publisher<ListBlobsResponse>>() {
+                            @Override
+                            public Publisher<ListBlobsResponse> apply(String marker) throws Exception {
+                                return listBlobs(marker.isEmpty() ? null : marker, options)
+                                        .map(new Function<RestResponse<ContainerListBlobsHeaders, ListBlobsResponse>,
+                                                ListBlobsResponse>() {
+                                            @Override
+                                            public ListBlobsResponse apply(
+                                                    RestResponse<ContainerListBlobsHeaders, ListBlobsResponse> response)
+                                                    throws Exception {
+                                                return response.body();
+                                            }
+                                        })
+                                        .toFlowable();
+                            }
+                        })
+                        .doOnNext(new Consumer<ListBlobsResponse>() {
+                            @Override
+                            public void accept(ListBlobsResponse response) throws Exception {
+                                if (Utility.isNullOrEmpty(response.nextMarker())) {
+                                    markers.onComplete();
+                                } else {
+                                    markers.onNext(response.nextMarker());
+                                }
+                            }
+                        })
+                        // A prefetch of one segment means the next segment is only requested once the blobs of the
+                        // current one have all been emitted.
+                        .concatMapIterable(new Function<ListBlobsResponse, Iterable<Blob>>() {
+                            @Override
+                            public Iterable<Blob> apply(ListBlobsResponse response) throws Exception {
+                                if (response.blobs() == null || response.blobs().blob() == null) {
+                                    return Collections.emptyList();
+                                }
+                                return response.blobs().blob();
+                            }
+                        }, 1);
+            }
+        });
+    }
 }
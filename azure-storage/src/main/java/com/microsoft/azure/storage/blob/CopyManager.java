@@ -0,0 +1,339 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.BlobCopyHeaders;
+import com.microsoft.azure.storage.models.BlobGetPropertiesHeaders;
+import com.microsoft.azure.storage.models.CopyStatusType;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.SingleSubject;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives many copies at once. Copies are started as requests are read from a {@code Flowable}, with a bounded number
+ * in progress, so a migration of any number of blobs runs in constant memory. Each request selects a {@link CopyMode}:
+ * chunked copies stream the data through the client, while server-side copies which the service does not finish
+ * synchronously are tracked by a single poller, which reads the status of the copies that are due on each tick with a
+ * bounded number of requests in flight. The interval between polls of a copy adapts to the progress it reports: a copy
+ * is next polled around when it is expected to finish, and a copy which is not making progress is polled less and less
+ * often. A failed poll is backed off and tried again the same way; the copy is reported as failed only when a poll finds
+ * the destination gone or access to it denied, or when {@link CopyManagerOptions#getMaxConsecutivePollFailures()} polls
+ * in a row fail.
+ */
+public final class CopyManager {
+
+    private final CopyManagerOptions options;
+
+    /**
+     * Creates a {@code CopyManager} with the given options.
+     *
+     * @param options
+     *      A {@link CopyManagerOptions} object to configure the copy behavior. If null,
+     *      {@link CopyManagerOptions#DEFAULT} will be used.
+     */
+    public CopyManager(CopyManagerOptions options) {
+        this.options = options == null ? CopyManagerOptions.DEFAULT : options;
+    }
+
+    /**
+     * Performs the requested copies.
+     *
+     * @param requests
+     *      A {@link Flowable} of {@link CopyRequest} objects. Requests are read only as copies finish, so it may be
+     *      produced lazily, for example from {@link ContainerURL#listBlobsAll(ListBlobsOptions)}.
+     * @return
+     *      A {@link Flowable} which emits a {@link CopyResult} for each request as its copy finishes, in the order
+     *      they finish. A copy which could not be started or tracked is reported through
+     *      {@link CopyResult#getError()} rather than by erroring the {@code Flowable}.
+     */
+    public Flowable<CopyResult> copy(final Flowable<CopyRequest> requests) {
+        Utility.assertNotNull("requests", requests);
+
+        return Flowable.defer(new Callable<Publisher<CopyResult>>() {
+            @Override
+            public Publisher<CopyResult> call() throws Exception {
+                final StatusPoller poller = new StatusPoller();
+                return requests
+                        .flatMap(new Function<CopyRequest, Publisher<CopyResult>>() {
+                            @Override
+                            public Publisher<CopyResult> apply(CopyRequest request) throws Exception {
+                                return startCopy(request, poller).toFlowable();
+                            }
+                        }, options.getMaxCopiesInProgress())
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                poller.dispose();
+                            }
+                        });
+            }
+        });
+    }
+
+    private Single<CopyResult> startCopy(final CopyRequest request, final StatusPoller poller) {
+        if (request.getMode() == CopyMode.CHUNKED) {
+            return Highlevel.copyToBlockBlob(request.getSource(), request.getDestination().toBlockBlobURL(),
+                    options.getChunkedCopyOptions().withDestination(request.getMetadata(),
+                            request.getDestinationAccessConditions()))
+                    .map(new Function<CommonRestResponse, CopyResult>() {
+                        @Override
+                        public CopyResult apply(CommonRestResponse response) throws Exception {
+                            return new CopyResult(request, null, CopyStatusType.SUCCESS, null, null);
+                        }
+                    })
+                    .onErrorReturn(new Function<Throwable, CopyResult>() {
+                        @Override
+                        public CopyResult apply(Throwable e) throws Exception {
+                            return new CopyResult(request, null, null, null, e);
+                        }
+                    });
+        }
+
+        return request.getDestination().startCopy(request.getSourceURL(), request.getMetadata(), null,
+                request.getDestinationAccessConditions())
+                .flatMap(new Function<RestResponse<BlobCopyHeaders, Void>, SingleSource<CopyResult>>() {
+                    @Override
+                    public SingleSource<CopyResult> apply(RestResponse<BlobCopyHeaders, Void> response)
+                            throws Exception {
+                        String copyId = response.headers().copyId();
+                        CopyStatusType status = response.headers().copyStatus();
+                        // Copies within an account often finish before the response is sent.
+                        if (status != CopyStatusType.PENDING) {
+                            return Single.just(new CopyResult(request, copyId, status, null, null));
+                        }
+                        return poller.track(request, copyId);
+                    }
+                })
+                .onErrorReturn(new Function<Throwable, CopyResult>() {
+                    @Override
+                    public CopyResult apply(Throwable e) throws Exception {
+                        return new CopyResult(request, null, null, null, e);
+                    }
+                });
+    }
+
+    /**
+     * Parses the x-ms-copy-progress header, which has the form "bytesCopied/totalBytes".
+     */
+    private static long[] parseCopyProgress(String copyProgress) {
+        if (copyProgress == null) {
+            return null;
+        }
+        int slash = copyProgress.indexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(copyProgress.substring(0, slash)),
+                    Long.parseLong(copyProgress.substring(slash + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Polls the status of the pending copies of one call to {@link #copy(Flowable)}. Ticks which arrive while the
+     * previous tick's polls are still in flight are dropped, so a copy is never polled twice at once.
+     */
+    private final class StatusPoller {
+
+        // Guarded by itself.
+        private final List<PendingCopy> pendingCopies = new ArrayList<PendingCopy>();
+
+        private final Disposable ticker;
+
+        private StatusPoller() {
+            this.ticker = Flowable.interval(options.getMinPollIntervalInMs(), TimeUnit.MILLISECONDS)
+                    .onBackpressureDrop()
+                    .concatMap(new Function<Long, Publisher<Object>>() {
+                        @Override
+                        public Publisher<Object> apply(Long tick) throws Exception {
+                            return pollDueCopies().toFlowable();
+                        }
+                    }, 1)
+                    .subscribe();
+        }
+
+        private Single<CopyResult> track(CopyRequest request, String copyId) {
+            PendingCopy pendingCopy = new PendingCopy(request, copyId, System.currentTimeMillis(),
+                    options.getMinPollIntervalInMs());
+            synchronized (this.pendingCopies) {
+                this.pendingCopies.add(pendingCopy);
+            }
+            return pendingCopy.result;
+        }
+
+        private void dispose() {
+            this.ticker.dispose();
+        }
+
+        private Completable pollDueCopies() {
+            long now = System.currentTimeMillis();
+            List<PendingCopy> dueCopies = new ArrayList<PendingCopy>();
+            synchronized (this.pendingCopies) {
+                for (PendingCopy pendingCopy : this.pendingCopies) {
+                    if (pendingCopy.nextPollTime <= now) {
+                        dueCopies.add(pendingCopy);
+                    }
+                }
+            }
+            return Flowable.fromIterable(dueCopies)
+                    .flatMapCompletable(new Function<PendingCopy, CompletableSource>() {
+                        @Override
+                        public CompletableSource apply(PendingCopy pendingCopy) throws Exception {
+                            return poll(pendingCopy);
+                        }
+                    }, false, options.getMaxConcurrentPolls());
+        }
+
+        private Completable poll(final PendingCopy pendingCopy) {
+            final CopyRequest request = pendingCopy.request;
+            return request.getDestination().getPropertiesAndMetadata(null)
+                    .doOnSuccess(new Consumer<RestResponse<BlobGetPropertiesHeaders, Void>>() {
+                        @Override
+                        public void accept(RestResponse<BlobGetPropertiesHeaders, Void> response) {
+                            BlobGetPropertiesHeaders headers = response.headers();
+                            if (!pendingCopy.copyId.equals(headers.copyId())) {
+                                finish(pendingCopy, new CopyResult(request, pendingCopy.copyId, null, null,
+                                        new IllegalStateException(
+                                                "Another copy to the destination blob was started.")));
+                            } else if (headers.copyStatus() != CopyStatusType.PENDING) {
+                                finish(pendingCopy, new CopyResult(request, pendingCopy.copyId,
+                                        headers.copyStatus(), headers.copyStatusDescription(), null));
+                            } else {
+                                pendingCopy.consecutiveFailures = 0;
+                                scheduleNextPoll(pendingCopy, headers.copyProgress());
+                            }
+                        }
+                    })
+                    .doOnError(new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable e) {
+                            /*
+                             The copy continues on the service whatever happens to a poll, so only a response which
+                             says the status can never be read ends it; anything else is tried again later.
+                             */
+                            pendingCopy.consecutiveFailures++;
+                            if (isDefinitive(e)
+                                    || pendingCopy.consecutiveFailures >= options.getMaxConsecutivePollFailures()) {
+                                finish(pendingCopy, new CopyResult(request, pendingCopy.copyId, null, null, e));
+                            } else {
+                                scheduleNextPoll(pendingCopy, null);
+                            }
+                        }
+                    })
+                    .toCompletable()
+                    .onErrorComplete();
+        }
+
+        /*
+         Whether a failed poll means the copy's status can never be read: the destination is gone, or access to it is
+         denied.
+         */
+        private boolean isDefinitive(Throwable e) {
+            if (!(e instanceof RestException)) {
+                return false;
+            }
+            int statusCode = ((RestException) e).response().statusCode();
+            return statusCode == 403 || statusCode == 404;
+        }
+
+        /*
+         Estimates when the copy will finish from the rate at which it progressed since the last poll. A copy which
+         made no progress, or whose poll failed, is polled half as often as before.
+         */
+        private void scheduleNextPoll(PendingCopy pendingCopy, String copyProgress) {
+            long now = System.currentTimeMillis();
+            long[] progress = parseCopyProgress(copyProgress);
+            long delay;
+            if (progress != null && progress[0] > pendingCopy.lastBytesCopied && now > pendingCopy.lastPollTime) {
+                double bytesPerMs = (double) (progress[0] - pendingCopy.lastBytesCopied)
+                        / (now - pendingCopy.lastPollTime);
+                delay = (long) ((progress[1] - progress[0]) / bytesPerMs);
+                pendingCopy.lastBytesCopied = progress[0];
+            } else {
+                delay = 2 * pendingCopy.pollInterval;
+            }
+            delay = Math.max(options.getMinPollIntervalInMs(), Math.min(options.getMaxPollIntervalInMs(), delay));
+
+            synchronized (this.pendingCopies) {
+                pendingCopy.pollInterval = delay;
+                pendingCopy.lastPollTime = now;
+                pendingCopy.nextPollTime = now + delay;
+            }
+        }
+
+        private void finish(PendingCopy pendingCopy, CopyResult result) {
+            synchronized (this.pendingCopies) {
+                Iterator<PendingCopy> iterator = this.pendingCopies.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next() == pendingCopy) {
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+            pendingCopy.result.onSuccess(result);
+        }
+    }
+
+    /**
+     * A copy which the service has accepted but not yet finished. The polling fields are written under the poller's
+     * lock.
+     */
+    private static final class PendingCopy {
+
+        private final CopyRequest request;
+
+        private final String copyId;
+
+        private final SingleSubject<CopyResult> result = SingleSubject.create();
+
+        private long lastPollTime;
+
+        private long lastBytesCopied;
+
+        private long pollInterval;
+
+        private long nextPollTime;
+
+        // Only the poll in flight, of which there is at most one, touches this.
+        private int consecutiveFailures;
+
+        private PendingCopy(CopyRequest request, String copyId, long startTime, long pollInterval) {
+            this.request = request;
+            this.copyId = copyId;
+            this.lastPollTime = startTime;
+            this.pollInterval = pollInterval;
+            this.nextPollTime = startTime + pollInterval;
+        }
+    }
+}
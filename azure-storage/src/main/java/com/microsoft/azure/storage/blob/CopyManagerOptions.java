@@ -0,0 +1,128 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Defines options available when creating a {@link CopyManager}.
+ */
+public final class CopyManagerOptions {
+
+    /**
+     * An object representing the default options: up to 100 copies in progress, up to 16 status polls at once, poll
+     * intervals between one second and one minute, a copy reported as failed after 10 polls in a row fail, and the
+     * default options for chunked copies.
+     */
+    public static final CopyManagerOptions DEFAULT = new CopyManagerOptions(null, null, null, null, null, null);
+
+    private final int maxCopiesInProgress;
+
+    private final int maxConcurrentPolls;
+
+    private final long minPollIntervalInMs;
+
+    private final long maxPollIntervalInMs;
+
+    private final int maxConsecutivePollFailures;
+
+    private final Highlevel.CopyToBlockBlobOptions chunkedCopyOptions;
+
+    /**
+     * A {@link CopyManagerOptions} object.
+     *
+     * @param maxCopiesInProgress
+     *      The maximum number of copies which have been requested but have not yet finished. Further requests are
+     *      not read from the source {@code Flowable} until a copy finishes. If null, 100 will be used.
+     * @param maxConcurrentPolls
+     *      The maximum number of copy status requests sent at once. If null, 16 will be used.
+     * @param minPollIntervalInMs
+     *      The shortest time, in milliseconds, between polls of the status of a copy. If null, 1000 will be used.
+     * @param maxPollIntervalInMs
+     *      The longest time, in milliseconds, between polls of the status of a copy. If null, 60000 will be used.
+     * @param maxConsecutivePollFailures
+     *      The number of polls of a copy in a row which may fail, for example with a timeout or a server error, before
+     *      the copy is reported as failed. Between failed polls the copy is polled less and less often. A poll which
+     *      fails because the destination is gone or access is denied reports the copy as failed at once. If null, 10
+     *      will be used.
+     * @param chunkedCopyOptions
+     *      A {@link Highlevel.CopyToBlockBlobOptions} object to configure each {@link CopyMode#CHUNKED} copy. Its
+     *      access conditions are replaced by those of the request. If null,
+     *      {@link Highlevel.CopyToBlockBlobOptions#DEFAULT} will be used.
+     */
+    public CopyManagerOptions(Integer maxCopiesInProgress, Integer maxConcurrentPolls, Long minPollIntervalInMs,
+            Long maxPollIntervalInMs, Integer maxConsecutivePollFailures,
+            Highlevel.CopyToBlockBlobOptions chunkedCopyOptions) {
+        this.maxCopiesInProgress = maxCopiesInProgress == null ? 100 : maxCopiesInProgress;
+        this.maxConcurrentPolls = maxConcurrentPolls == null ? 16 : maxConcurrentPolls;
+        this.minPollIntervalInMs = minPollIntervalInMs == null ? 1000 : minPollIntervalInMs;
+        this.maxPollIntervalInMs = maxPollIntervalInMs == null ? 60000 : maxPollIntervalInMs;
+        this.maxConsecutivePollFailures = maxConsecutivePollFailures == null ? 10 : maxConsecutivePollFailures;
+        this.chunkedCopyOptions = chunkedCopyOptions == null ?
+                Highlevel.CopyToBlockBlobOptions.DEFAULT : chunkedCopyOptions;
+        Utility.assertInBounds("maxCopiesInProgress", this.maxCopiesInProgress, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("maxConcurrentPolls", this.maxConcurrentPolls, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("minPollIntervalInMs", this.minPollIntervalInMs, 1, Long.MAX_VALUE);
+        Utility.assertInBounds("maxPollIntervalInMs", this.maxPollIntervalInMs, this.minPollIntervalInMs,
+                Long.MAX_VALUE);
+        Utility.assertInBounds("maxConsecutivePollFailures", this.maxConsecutivePollFailures, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return
+     *      The maximum number of copies which have been requested but have not yet finished.
+     */
+    public int getMaxCopiesInProgress() {
+        return this.maxCopiesInProgress;
+    }
+
+    /**
+     * @return
+     *      The maximum number of copy status requests sent at once.
+     */
+    public int getMaxConcurrentPolls() {
+        return this.maxConcurrentPolls;
+    }
+
+    /**
+     * @return
+     *      The shortest time, in milliseconds, between polls of the status of a copy.
+     */
+    public long getMinPollIntervalInMs() {
+        return this.minPollIntervalInMs;
+    }
+
+    /**
+     * @return
+     *      The longest time, in milliseconds, between polls of the status of a copy.
+     */
+    public long getMaxPollIntervalInMs() {
+        return this.maxPollIntervalInMs;
+    }
+
+    /**
+     * @return
+     *      The number of polls of a copy in a row which may fail before the copy is reported as failed.
+     */
+    public int getMaxConsecutivePollFailures() {
+        return this.maxConsecutivePollFailures;
+    }
+
+    /**
+     * @return
+     *      The {@link Highlevel.CopyToBlockBlobOptions} used for each {@link CopyMode#CHUNKED} copy.
+     */
+    public Highlevel.CopyToBlockBlobOptions getChunkedCopyOptions() {
+        return this.chunkedCopyOptions;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Selects how a {@link CopyManager} copies a blob.
+ */
+public enum CopyMode {
+    /**
+     * Asks the service to copy the blob with Copy Blob and polls until the copy finishes. No data passes through the
+     * client, but copies between accounts are scheduled by the service and may take a long time to finish.
+     */
+    SERVER_SIDE,
+
+    /**
+     * Reads the source blob in ranges and writes them to the destination as blocks, as with
+     * {@link Highlevel#copyToBlockBlob(BlobURL, BlockBlobURL, Highlevel.CopyToBlockBlobOptions)}. The data passes
+     * through the client, so the copy runs at the client's throughput. The destination is always a block blob.
+     */
+    CHUNKED
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.net.URL;
+
+/**
+ * Describes one copy for a {@link CopyManager} to perform.
+ */
+public final class CopyRequest {
+
+    private final URL sourceURL;
+
+    private final BlobURL source;
+
+    private final BlobURL destination;
+
+    private final Metadata metadata;
+
+    private final BlobAccessConditions destinationAccessConditions;
+
+    private final CopyMode mode;
+
+    /**
+     * A {@link CopyRequest} object for a {@link CopyMode#SERVER_SIDE} copy.
+     *
+     * @param sourceURL
+     *      The {@code URL} of the source blob. It must be readable by the service, for example by including a SAS.
+     * @param destination
+     *      A {@link BlobURL} that points to the blob to copy to.
+     * @param metadata
+     *      A {@link Metadata} object to set on the destination blob. If null, the source blob's metadata is copied.
+     * @param destinationAccessConditions
+     *      A {@link BlobAccessConditions} object that specifies under which conditions the copy should be started. For
+     *      example, an If-None-Match condition of {@link ETag#ANY} skips destinations which already exist.
+     */
+    public CopyRequest(URL sourceURL, BlobURL destination, Metadata metadata,
+            BlobAccessConditions destinationAccessConditions) {
+        Utility.assertNotNull("sourceURL", sourceURL);
+        Utility.assertNotNull("destination", destination);
+        this.sourceURL = sourceURL;
+        this.source = null;
+        this.destination = destination;
+        this.metadata = metadata;
+        this.destinationAccessConditions = destinationAccessConditions;
+        this.mode = CopyMode.SERVER_SIDE;
+    }
+
+    /**
+     * A {@link CopyRequest} object whose copy is performed in the given mode.
+     *
+     * @param source
+     *      A {@link BlobURL} that points to the source blob. A {@link CopyMode#CHUNKED} copy reads the source through
+     *      its pipeline; a {@link CopyMode#SERVER_SIDE} copy passes its URL to the service, so the URL must be readable
+     *      by the service, for example by including a SAS.
+     * @param destination
+     *      A {@link BlobURL} that points to the blob to copy to.
+     * @param metadata
+     *      A {@link Metadata} object to set on the destination blob. If null, the source blob's metadata is copied.
+     * @param destinationAccessConditions
+     *      A {@link BlobAccessConditions} object that specifies under which conditions the copy should be started. For
+     *      example, an If-None-Match condition of {@link ETag#ANY} skips destinations which already exist.
+     * @param mode
+     *      A {@link CopyMode} which selects how the blob is copied.
+     */
+    public CopyRequest(BlobURL source, BlobURL destination, Metadata metadata,
+            BlobAccessConditions destinationAccessConditions, CopyMode mode) {
+        Utility.assertNotNull("source", source);
+        Utility.assertNotNull("destination", destination);
+        Utility.assertNotNull("mode", mode);
+        this.sourceURL = source.toURL();
+        this.source = source;
+        this.destination = destination;
+        this.metadata = metadata;
+        this.destinationAccessConditions = destinationAccessConditions;
+        this.mode = mode;
+    }
+
+    /**
+     * @return
+     *      The {@code URL} of the source blob.
+     */
+    public URL getSourceURL() {
+        return this.sourceURL;
+    }
+
+    /**
+     * @return
+     *      The {@link BlobURL} of the source blob, or null if the request was created from the source's {@code URL}.
+     */
+    public BlobURL getSource() {
+        return this.source;
+    }
+
+    /**
+     * @return
+     *      The {@link BlobURL} of the blob to copy to.
+     */
+    public BlobURL getDestination() {
+        return this.destination;
+    }
+
+    /**
+     * @return
+     *      The {@link Metadata} to set on the destination blob, or null to copy the source blob's metadata.
+     */
+    public Metadata getMetadata() {
+        return this.metadata;
+    }
+
+    /**
+     * @return
+     *      The {@link BlobAccessConditions} under which the copy should be started.
+     */
+    public BlobAccessConditions getDestinationAccessConditions() {
+        return this.destinationAccessConditions;
+    }
+
+    /**
+     * @return
+     *      The {@link CopyMode} which selects how the blob is copied.
+     */
+    public CopyMode getMode() {
+        return this.mode;
+    }
+}
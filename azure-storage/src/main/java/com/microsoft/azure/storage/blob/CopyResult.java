@@ -0,0 +1,91 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.CopyStatusType;
+
+/**
+ * The outcome of a copy performed by a {@link CopyManager}.
+ */
+public final class CopyResult {
+
+    private final CopyRequest request;
+
+    private final String copyId;
+
+    private final CopyStatusType status;
+
+    private final String statusDescription;
+
+    private final Throwable error;
+
+    CopyResult(CopyRequest request, String copyId, CopyStatusType status, String statusDescription,
+            Throwable error) {
+        this.request = request;
+        this.copyId = copyId;
+        this.status = status;
+        this.statusDescription = statusDescription;
+        this.error = error;
+    }
+
+    /**
+     * @return
+     *      The {@link CopyRequest} this is the result of.
+     */
+    public CopyRequest getRequest() {
+        return this.request;
+    }
+
+    /**
+     * @return
+     *      The identifier the service assigned to the copy, or null if the copy could not be started.
+     */
+    public String getCopyId() {
+        return this.copyId;
+    }
+
+    /**
+     * @return
+     *      The final {@link CopyStatusType} of the copy: success, failed or aborted. Null if the copy could not be
+     *      started or its status could not be read, in which case {@link #getError()} says why.
+     */
+    public CopyStatusType getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return
+     *      The service's description of why the copy failed or was aborted, if any.
+     */
+    public String getStatusDescription() {
+        return this.statusDescription;
+    }
+
+    /**
+     * @return
+     *      The error from starting the copy or from reading its status, or null if there was none.
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    /**
+     * @return
+     *      {@code true} if the destination blob now holds a copy of the source.
+     */
+    public boolean isSuccess() {
+        return this.status == CopyStatusType.SUCCESS;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.functions.BiFunction;
+import org.reactivestreams.Subscriber;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+
+/**
+ * A request body which is a region of a file. It may be passed as the data of {@link BlockBlobURL#putBlob},
+ * {@link BlockBlobURL#putBlock}, {@link PageBlobURL#putPages} and {@link AppendBlobURL#appendBlock} like any other
+ * {@link Flowable}, but the Netty client a pipeline built with {@link PipelineOptions#transportOptions} uses
+ * recognizes it and sends the region without copying it through the Java heap: with the operating system's sendfile
+ * over plain HTTP, and by reading it straight into the direct buffers TLS encrypts from over HTTPS. Every subscription
+ * reads the region afresh, so a retried request sends the same bytes again.
+ * <p>
+ * Other subscribers receive the region in heap {@code ByteBuffer}s of up to 64KB, each read when it is requested.
+ * <p>
+ * The region is read with positional reads, so the file's position is not used and several bodies may share one
+ * {@link FileChannel}. The file must stay open, and the region unchanged, until the request completes.
+ */
+public final class FileRegionBody extends Flowable<ByteBuffer> {
+
+    static final int CHUNK_SIZE = 64 * Constants.KB;
+
+    private final FileChannel file;
+
+    private final long offset;
+
+    private final long count;
+
+    /**
+     * Creates a body from a region of a file.
+     *
+     * @param file
+     *      The file to read. It must be open for reading.
+     * @param offset
+     *      The offset in the file at which the region starts.
+     * @param count
+     *      The number of bytes in the region. This is the length to pass with the body.
+     */
+    public FileRegionBody(FileChannel file, long offset, long count) {
+        Utility.assertNotNull("file", file);
+        Utility.assertInBounds("offset", offset, 0, Long.MAX_VALUE);
+        Utility.assertInBounds("count", count, 0, Long.MAX_VALUE - offset);
+        this.file = file;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    /**
+     * @return
+     *      The file the region is read from.
+     */
+    public FileChannel getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return
+     *      The offset in the file at which the region starts.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return
+     *      The number of bytes in the region.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super ByteBuffer> subscriber) {
+        Flowable.generate(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return offset;
+            }
+        }, new BiFunction<Long, Emitter<ByteBuffer>, Long>() {
+            @Override
+            public Long apply(Long position, Emitter<ByteBuffer> emitter) throws Exception {
+                long end = offset + count;
+                if (position == end) {
+                    emitter.onComplete();
+                    return position;
+                }
+                ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, end - position));
+                long next = position;
+                while (chunk.hasRemaining()) {
+                    int read = file.read(chunk, next);
+                    if (read < 0) {
+                        throw new EOFException("The file ended before the end of the region.");
+                    }
+                    next += read;
+                }
+                chunk.flip();
+                emitter.onNext(chunk);
+                return next;
+            }
+        }).subscribe(subscriber);
+    }
+}
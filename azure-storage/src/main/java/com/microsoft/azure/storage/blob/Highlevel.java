@@ -1,23 +1,66 @@
 package com.microsoft.azure.storage.blob;
 
+import com.microsoft.azure.storage.models.AccessTier;
+import com.microsoft.azure.storage.models.Blob;
+import com.microsoft.azure.storage.models.BlobProperties;
 import com.microsoft.azure.storage.models.BlobPutHeaders;
+import com.microsoft.azure.storage.models.BlobType;
 import com.microsoft.azure.storage.models.BlockBlobPutBlockHeaders;
 import com.microsoft.azure.storage.models.BlockBlobPutBlockListHeaders;
+import com.microsoft.azure.storage.models.BlobGetHeaders;
+import com.microsoft.azure.storage.models.BlobGetPropertiesHeaders;
+import com.microsoft.azure.storage.models.BlobTakeSnapshotHeaders;
+import com.microsoft.azure.storage.models.PageBlobGetPageRangesHeaders;
+import com.microsoft.azure.storage.models.PageBlobPutPageHeaders;
+import com.microsoft.azure.storage.models.PageList;
+import com.microsoft.azure.storage.models.PageRange;
 import com.microsoft.rest.v2.RestResponse;
 import io.reactivex.*;
+import io.reactivex.functions.Action;
 import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import org.reactivestreams.Publisher;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Highlevel {
 
+    /*
+     The largest run of empty pages read along with the ranges around it when downloading a page blob. At typical
+     throughput this many bytes take less time than the round trip of a separate request.
+     */
+    private static final long PAGE_RANGE_READ_MAX_GAP = 64 * Constants.KB;
+
+    // The states of the buffer copyBlock reads a block into.
+    private static final int BUFFER_FILLING = 0;
+
+    private static final int BUFFER_SENDING = 1;
+
+    private static final int BUFFER_RELEASED = 2;
+
+    // Written over the cleared pages of a page blob synced to a file.
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(64 * Constants.KB);
+
+    // The tiers of a standard account, from warmest to coolest.
+    private static final List<AccessTier> STANDARD_TIERS = Arrays.asList(AccessTier.HOT, AccessTier.COOL,
+            AccessTier.ARCHIVE);
+
     public static class UploadToBlockBlobOptions {
 
         /**
@@ -71,6 +114,240 @@ public class Highlevel {
         }
     }
 
+    public static class UploadToPageBlobOptions {
+
+        /**
+         * An object which represents the default parallel page blob upload options. httpHeaders, metadata, and
+         * accessConditions are default values. parallelism=5.
+         */
+        public static final UploadToPageBlobOptions DEFAULT = new UploadToPageBlobOptions(null, null, null, null);
+
+        private BlobHTTPHeaders httpHeaders;
+
+        private Metadata metadata;
+
+        private BlobAccessConditions accessConditions;
+
+        private int parallelism;
+
+        /**
+         * Creates a new object that configures the parallel page blob upload behavior.
+         *
+         * @param httpHeaders
+         *      A {@link BlobHTTPHeaders} to be associated with the blob when it is created.
+         * @param metadata
+         *      A {@link Metadata} object to be associated with the blob when it is created.
+         * @param accessConditions
+         *      A {@link BlobAccessConditions} object that indicate the access conditions for creating the page blob.
+         *      Only the lease access conditions are applied to the calls to PutPages.
+         * @param parallelism
+         *      A {@code int} that indicates the maximum number of PutPages calls to make in parallel. Must be greater
+         *      than 0. The default is 5 (null=default).
+         */
+        public UploadToPageBlobOptions(BlobHTTPHeaders httpHeaders, Metadata metadata,
+                                       BlobAccessConditions accessConditions, Integer parallelism) {
+            if (parallelism == null) {
+                this.parallelism = 5;
+            }
+            else if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            } else {
+                this.parallelism = parallelism;
+            }
+
+            this.httpHeaders = httpHeaders;
+            this.metadata = metadata;
+            this.accessConditions = accessConditions == null ? BlobAccessConditions.NONE : accessConditions;
+        }
+    }
+
+    public static class DownloadFromPageBlobOptions {
+
+        /**
+         * An object which represents the default parallel page blob download options. accessConditions are default
+         * values. parallelism=5.
+         */
+        public static final DownloadFromPageBlobOptions DEFAULT = new DownloadFromPageBlobOptions(null, null);
+
+        private BlobAccessConditions accessConditions;
+
+        private int parallelism;
+
+        /**
+         * Creates a new object that configures the parallel page blob download behavior.
+         *
+         * @param accessConditions
+         *      A {@link BlobAccessConditions} object that indicate the access conditions for reading the page ranges.
+         *      The ranges themselves are read on the condition that the blob is unchanged since its ranges were
+         *      listed.
+         * @param parallelism
+         *      A {@code int} that indicates the maximum number of ranges to download in parallel. Must be greater than
+         *      0. The default is 5 (null=default).
+         */
+        public DownloadFromPageBlobOptions(BlobAccessConditions accessConditions, Integer parallelism) {
+            if (parallelism == null) {
+                this.parallelism = 5;
+            }
+            else if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            } else {
+                this.parallelism = parallelism;
+            }
+
+            this.accessConditions = accessConditions == null ? BlobAccessConditions.NONE : accessConditions;
+        }
+    }
+
+    public static class SyncPageBlobToFileOptions {
+
+        /**
+         * An object which represents the default page blob sync options. parallelism=5. deletePreviousSnapshot=false.
+         */
+        public static final SyncPageBlobToFileOptions DEFAULT = new SyncPageBlobToFileOptions(null, false);
+
+        private int parallelism;
+
+        private boolean deletePreviousSnapshot;
+
+        /**
+         * Creates a new object that configures the page blob sync behavior.
+         *
+         * @param parallelism
+         *      A {@code int} that indicates the maximum number of ranges to download in parallel. Must be greater than
+         *      0. The default is 5 (null=default).
+         * @param deletePreviousSnapshot
+         *      A {@code boolean} indicating whether the snapshot of the previous sync should be deleted once the file
+         *      has been brought up to date. Only the most recent snapshot is needed for the next sync.
+         */
+        public SyncPageBlobToFileOptions(Integer parallelism, boolean deletePreviousSnapshot) {
+            if (parallelism == null) {
+                this.parallelism = 5;
+            }
+            else if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            } else {
+                this.parallelism = parallelism;
+            }
+
+            this.deletePreviousSnapshot = deletePreviousSnapshot;
+        }
+    }
+
+    public static class CopyToBlockBlobOptions {
+
+        /**
+         * An object which represents the default chunked copy options. blockLength=8MB. metadata is copied from the
+         * source. accessConditions are default values. parallelism=5.
+         */
+        public static final CopyToBlockBlobOptions DEFAULT = new CopyToBlockBlobOptions(null, null, null, null);
+
+        private int blockLength;
+
+        private Metadata metadata;
+
+        private BlobAccessConditions accessConditions;
+
+        private int parallelism;
+
+        /**
+         * Creates a new object that configures the chunked copy behavior.
+         *
+         * @param blockLength
+         *      A {@code int} that indicates the size of the blocks the source is read and written in. Larger blocks are
+         *      used if the source would not otherwise fit in {@link BlockBlobURL#MAX_BLOCKS} blocks. The default is
+         *      8MB (null=default).
+         * @param metadata
+         *      A {@link Metadata} object to be associated with the destination blob. If null, the source blob's
+         *      metadata is copied.
+         * @param accessConditions
+         *      A {@link BlobAccessConditions} object that indicate the access conditions for the destination blob.
+         *      Only the lease access conditions are applied to the calls to PutBlock.
+         * @param parallelism
+         *      A {@code int} that indicates the maximum number of blocks to copy in parallel. Must be greater than 0.
+         *      The default is 5 (null=default). The copy holds at most this many blocks in memory.
+         */
+        public CopyToBlockBlobOptions(Integer blockLength, Metadata metadata, BlobAccessConditions accessConditions,
+                                      Integer parallelism) {
+            if (parallelism == null) {
+                this.parallelism = 5;
+            }
+            else if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            } else {
+                this.parallelism = parallelism;
+            }
+
+            if (blockLength == null) {
+                this.blockLength = 8 * Constants.MB;
+            } else {
+                Utility.assertInBounds("blockLength", blockLength, 1, BlockBlobURL.MAX_PUT_BLOCK_BYTES);
+                this.blockLength = blockLength;
+            }
+            this.metadata = metadata;
+            this.accessConditions = accessConditions == null ? BlobAccessConditions.NONE : accessConditions;
+        }
+
+        /*
+         Returns options with the same block length and parallelism for another destination.
+         */
+        CopyToBlockBlobOptions withDestination(Metadata metadata, BlobAccessConditions accessConditions) {
+            return new CopyToBlockBlobOptions(this.blockLength, metadata, accessConditions, this.parallelism);
+        }
+    }
+
+    public static class SetTiersByAgeOptions {
+
+        private Integer coolAfterDays;
+
+        private Integer archiveAfterDays;
+
+        private String prefix;
+
+        private int parallelism;
+
+        /**
+         * Creates a new object that configures which blobs are moved to a cooler tier. At least one of coolAfterDays
+         * and archiveAfterDays must be given.
+         *
+         * @param coolAfterDays
+         *      A {@code int} that indicates how many days after it was last modified a blob is moved to the cool tier.
+         *      If null, blobs are not moved to the cool tier.
+         * @param archiveAfterDays
+         *      A {@code int} that indicates how many days after it was last modified a blob is moved to the archive
+         *      tier. Must not be less than coolAfterDays. If null, blobs are not moved to the archive tier.
+         * @param prefix
+         *      A {@code String} which, if given, limits the policy to the blobs whose names begin with it.
+         * @param parallelism
+         *      A {@code int} that indicates the maximum number of tiers to set in parallel. Must be greater than 0.
+         *      The default is 5 (null=default).
+         */
+        public SetTiersByAgeOptions(Integer coolAfterDays, Integer archiveAfterDays, String prefix,
+                                    Integer parallelism) {
+            if (parallelism == null) {
+                this.parallelism = 5;
+            }
+            else if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be > 0");
+            } else {
+                this.parallelism = parallelism;
+            }
+
+            if (coolAfterDays == null && archiveAfterDays == null) {
+                throw new IllegalArgumentException("At least one of coolAfterDays and archiveAfterDays must be given.");
+            }
+            if (coolAfterDays != null) {
+                Utility.assertInBounds("coolAfterDays", coolAfterDays, 0, Integer.MAX_VALUE);
+            }
+            if (archiveAfterDays != null) {
+                Utility.assertInBounds("archiveAfterDays", archiveAfterDays,
+                        coolAfterDays == null ? 0 : coolAfterDays, Integer.MAX_VALUE);
+            }
+            this.coolAfterDays = coolAfterDays;
+            this.archiveAfterDays = archiveAfterDays;
+            this.prefix = prefix;
+        }
+    }
+
     /**
      * Uploads the contents of a file to a block blob in parallel, breaking it into block-size chunks if necessary.
      *
@@ -95,46 +372,35 @@ public class Highlevel {
         Utility.assertNotNull("options", options);
         Utility.assertInBounds("blockLength", blockLength, 1, BlockBlobURL.MAX_PUT_BLOCK_BYTES);
 
+        final long fileSize;
         try {
-            // If the size of the file can fit in a single putBlob, do it this way.
-            if (file.size() < BlockBlobURL.MAX_PUT_BLOB_BYTES) {
-                return doSingleShotUpload(file.map(FileChannel.MapMode.READ_ONLY, 0, file.size()), blockBlobURL,
-                        options);
-            }
-            // Can successfully cast to an int because MaxBlockSize is an int, which this expression must be less than.
-            int numBlocks = (int)(file.size()/blockLength);
-            return Observable.range(0, numBlocks)
-                    .map(new Function<Integer, ByteBuffer>() {
-                        @Override
-                        public ByteBuffer apply(Integer i) throws Exception {
-                            /*
-                            The docs say that the result of mapping a region which is not entirely contained by the file
-                            is undefined, so we must be precise with the last block size.
-                             */
-                            int count = Math.min(blockLength, (int)(file.size()-i*blockLength));
-                            // Memory map the file to get a ByteBuffer to an in memory portion of the file.
-                            return file.map(FileChannel.MapMode.READ_ONLY, i*blockLength, count);
-                        }
-                    })
-                    // Gather all of the buffers, in order, into this list, which will become the block list.
-                    .collectInto(new ArrayList<ByteBuffer>(numBlocks),
-                            new BiConsumer<ArrayList<ByteBuffer>, ByteBuffer>() {
-                        @Override
-                        public void accept(ArrayList<ByteBuffer> blocks, ByteBuffer block) throws Exception {
-                            blocks.add(block);
-                        }
-                    })
-                    // Turn the list into a call to uploadByteBuffersToBlockBlob and return that result.
-                    .flatMap(new Function<ArrayList<ByteBuffer>, SingleSource<CommonRestResponse>>() {
-                        @Override
-                        public SingleSource<CommonRestResponse> apply(ArrayList<ByteBuffer> blocks) throws Exception {
-                            return uploadByteBuffersToBlockBlob(blocks, blockBlobURL, options);
-                        }
-                    });
+            fileSize = file.size();
         }
         catch (IOException e) {
             throw new Error(e);
         }
+
+        // The blocks are sent from the file as FileRegionBodies, which the HTTP client can send without copying.
+        // If the size of the file can fit in a single putBlob, do it this way.
+        if (fileSize < BlockBlobURL.MAX_PUT_BLOB_BYTES) {
+            return doSingleShotUpload(new FileRegionBody(file, 0, fileSize), fileSize, blockBlobURL, options);
+        }
+        // Can successfully cast to an int because MaxBlockSize is an int, which this expression must be less than.
+        final int numBlocks = (int)((fileSize + blockLength - 1)/blockLength);
+        if (numBlocks > BlockBlobURL.MAX_BLOCKS) {
+            throw new IllegalArgumentException(SR.BLOB_OVER_MAX_BLOCK_LIMIT);
+        }
+        return commitBlocks(Observable.range(0, numBlocks)
+                // See uploadByteBuffersToBlockBlob for why concatMapEager.
+                .concatMapEager(new Function<Integer, ObservableSource<String>>() {
+                    @Override
+                    public ObservableSource<String> apply(Integer i) throws Exception {
+                        // Be precise with the last block size, which is whatever remains of the file.
+                        long offset = (long)i*blockLength;
+                        long count = Math.min(blockLength, fileSize-offset);
+                        return putBlock(new FileRegionBody(file, offset, count), count, blockBlobURL, options);
+                    }
+                }, options.parallelism, 1), numBlocks, blockBlobURL, options);
     }
 
     /**
@@ -223,7 +489,8 @@ public class Highlevel {
 
         // If the size can fit in 1 putBlob call, do it this way.
         if (numBlocks == 1 && size <= BlockBlobURL.MAX_PUT_BLOB_BYTES) {
-            return doSingleShotUpload(data.iterator().next(), blockBlobURL, options);
+            ByteBuffer blockData = data.iterator().next();
+            return doSingleShotUpload(Flowable.just(blockData), blockData.remaining(), blockBlobURL, options);
         }
 
         if (numBlocks > BlockBlobURL.MAX_BLOCKS) {
@@ -233,7 +500,7 @@ public class Highlevel {
         // TODO: context with cancel?
 
         // Generate a flowable that emits items which are the ByteBuffers in the provided Iterable.
-        return Observable.fromIterable(data)
+        return commitBlocks(Observable.fromIterable(data)
                 /*
                  For each ByteBuffer, make a call to putBlock as follows. concatMap ensures that the items
                  emitted by this Observable are in the same sequence as they are begun, which will be important for
@@ -248,27 +515,7 @@ public class Highlevel {
 
                         // TODO: progress
 
-                        final String blockId = DatatypeConverter.printBase64Binary(
-                                UUID.randomUUID().toString().getBytes());
-
-                        // TODO: What happens if one of the calls fails? It seems like this single/observable
-                        // will emit an error, which will halt the collecting into a list. Will the list still
-                        // be emitted or will it emit an error? In the latter, it'll just propogate. In the former,
-                        // we should check the size of the blockList equals numBlocks before sending it up.
-
-                        /*
-                         Make a call to putBlock. Instead of emitting the RestResponse, which we don't care about,
-                         emit the blockId for this request. These will be collected below. Turn that into an Observable
-                         which emits one item to comply with the signature of concatMapEager.
-                         */
-                        return blockBlobURL.putBlock(blockId, Flowable.just(blockData), blockData.remaining(),
-                                options.accessConditions.getLeaseAccessConditions())
-                                .map(new Function<RestResponse<BlockBlobPutBlockHeaders,Void>, String>() {
-                                    @Override
-                                    public String apply(RestResponse<BlockBlobPutBlockHeaders, Void> x) throws Exception {
-                                        return blockId;
-                                    }
-                                }).toObservable();
+                        return putBlock(Flowable.just(blockData), blockData.remaining(), blockBlobURL, options);
 
                 /*
                  Specify the number of concurrent subscribers to this map. This determines how many concurrent rest
@@ -280,7 +527,50 @@ public class Highlevel {
                  */
 
                     }
-                }, options.parallelism, 1)
+                }, options.parallelism, 1), numBlocks, blockBlobURL, options);
+
+
+        /*
+         * Should take in a ByteBuffer.
+         * Get FileChannel from FileInputStream and call map to get MappedByteBuffer.
+         * Duplicate/slice the buffer for each network call (backed by the same data)
+         * Set the position and limit on the new buffer (independent per buffer object).
+         * Can convert to flowable by get()-ing some relative section of the array or the whole thing. This will read
+         * those bytes into memory. Create using Flowable.just(byte[]).
+         *
+         */
+    }
+
+    /*
+     Puts one block under a new ID. Instead of emitting the RestResponse, which we don't care about, emit the blockId
+     for this request, to be collected by commitBlocks. This is an Observable which emits one item to comply with the
+     signature of concatMapEager.
+     */
+    private static Observable<String> putBlock(Flowable<ByteBuffer> data, long length,
+            BlockBlobURL blockBlobURL, UploadToBlockBlobOptions options) {
+        final String blockId = DatatypeConverter.printBase64Binary(
+                RequestIDFactory.SEQUENTIAL.generateRequestID().getBytes());
+
+        // TODO: What happens if one of the calls fails? It seems like this single/observable
+        // will emit an error, which will halt the collecting into a list. Will the list still
+        // be emitted or will it emit an error? In the latter, it'll just propogate. In the former,
+        // we should check the size of the blockList equals numBlocks before sending it up.
+
+        return blockBlobURL.putBlock(blockId, data, length, options.accessConditions.getLeaseAccessConditions())
+                .map(new Function<RestResponse<BlockBlobPutBlockHeaders,Void>, String>() {
+                    @Override
+                    public String apply(RestResponse<BlockBlobPutBlockHeaders, Void> x) throws Exception {
+                        return blockId;
+                    }
+                }).toObservable();
+    }
+
+    /*
+     Commits the blocks whose IDs are emitted, in the order they are emitted, once all of them have been put.
+     */
+    private static Single<CommonRestResponse> commitBlocks(Observable<String> blockIds, int numBlocks,
+            final BlockBlobURL blockBlobURL, final UploadToBlockBlobOptions options) {
+        return blockIds
                 /*
                 collectInto will gather each of the emitted blockIds into a list. Because we used concatMap, the Ids
                 will be emitted according to their block number, which means the list generated here will be properly
@@ -312,26 +602,668 @@ public class Highlevel {
                         return CommonRestResponse.createFromPutBlockListResponse(response);
                     }
                 });
+    }
+
+    /**
+     * Uploads the contents of a file to a page blob, skipping the pages of the file which contain only zeros. The page
+     * blob is created with the size of the file rounded up to a whole number of pages, so the skipped pages read back
+     * as zeros. Runs of adjacent pages which contain data are written with PutPages calls of up to
+     * {@link PageBlobURL#MAX_PUT_PAGES_BYTES} each, several of which may be in flight at once. This makes uploading
+     * disk images, which are mostly empty, much cheaper than uploading every byte.
+     *
+     * @param file
+     *      The file to upload.
+     * @param pageBlobURL
+     *      A {@link PageBlobURL} that points to the blob to which the data should be uploaded.
+     * @param options
+     *      A {@link UploadToPageBlobOptions} object to configure the upload behavior.
+     * @return
+     *      A {@link Single} that will return a {@link CommonRestResponse} if successful. If any pages were written, it
+     *      holds the response of the last PutPages call to complete; otherwise it holds the response which created
+     *      the blob.
+     */
+    public static Single<CommonRestResponse> uploadFileToPageBlob(
+            final FileChannel file, final PageBlobURL pageBlobURL, final UploadToPageBlobOptions options) {
+        Utility.assertNotNull("file", file);
+        Utility.assertNotNull("pageBlobURL", pageBlobURL);
+        Utility.assertNotNull("options", options);
+
+        final long fileSize;
+        try {
+            fileSize = file.size();
+        }
+        catch (IOException e) {
+            throw new Error(e);
+        }
+        long blobSize = (fileSize + PageBlobURL.PAGE_BYTES - 1) / PageBlobURL.PAGE_BYTES * PageBlobURL.PAGE_BYTES;
+
+        // Conditions such as If-None-Match apply to creating the blob and would fail every subsequent write.
+        final BlobAccessConditions putPagesAccessConditions = new BlobAccessConditions(null,
+                options.accessConditions.getLeaseAccessConditions(), null, null);
+
+        return pageBlobURL.create(blobSize, null, options.httpHeaders, options.metadata, options.accessConditions)
+                .flatMap(new Function<RestResponse<BlobPutHeaders, Void>, SingleSource<CommonRestResponse>>() {
+                    @Override
+                    public SingleSource<CommonRestResponse> apply(RestResponse<BlobPutHeaders, Void> createResponse)
+                            throws Exception {
+                        /*
+                         The scanner only reads as far ahead as flatMap requests, so no more than parallelism runs of
+                         the file are being sent at a time.
+                         */
+                        final ByteBufferPool pool = pageBlobURL.bufferPool();
+                        return Flowable.generate(new Callable<NonZeroPageScanner>() {
+                                    @Override
+                                    public NonZeroPageScanner call() throws Exception {
+                                        return new NonZeroPageScanner(file, fileSize,
+                                                pool.acquire(PageBlobURL.MAX_PUT_PAGES_BYTES));
+                                    }
+                                }, new BiConsumer<NonZeroPageScanner, Emitter<PageRange>>() {
+                                    @Override
+                                    public void accept(NonZeroPageScanner scanner, Emitter<PageRange> emitter)
+                                            throws Exception {
+                                        PageRange range = scanner.next();
+                                        if (range == null) {
+                                            emitter.onComplete();
+                                        } else {
+                                            emitter.onNext(range);
+                                        }
+                                    }
+                                }, new Consumer<NonZeroPageScanner>() {
+                                    @Override
+                                    public void accept(NonZeroPageScanner scanner) {
+                                        pool.release(scanner.buffer);
+                                    }
+                                })
+                                // Scanning blocks on file reads, so keep it off of the threads completing the calls.
+                                .subscribeOn(Schedulers.io())
+                                .flatMap(new Function<PageRange,
+                                        Publisher<RestResponse<PageBlobPutPageHeaders, Void>>>() {
+                                    @Override
+                                    public Publisher<RestResponse<PageBlobPutPageHeaders, Void>> apply(PageRange range)
+                                            throws Exception {
+                                        return pageBlobURL.putPages(range, pagesBody(file, fileSize, range),
+                                                putPagesAccessConditions).toFlowable();
+                                    }
+                                }, options.parallelism)
+                                .map(new Function<RestResponse<PageBlobPutPageHeaders, Void>, CommonRestResponse>() {
+                                    @Override
+                                    public CommonRestResponse apply(RestResponse<PageBlobPutPageHeaders, Void> response)
+                                            throws Exception {
+                                        return CommonRestResponse.createFromPutPageResponse(response);
+                                    }
+                                })
+                                .last(CommonRestResponse.createFromPutBlobResponse(createResponse));
+                    }
+                });
+    }
+
+    /**
+     * Downloads a page blob to a file, transferring only the pages which hold data. The valid page ranges are listed
+     * first and then read in parallel and written at their offsets in the file, so the pages which were never written
+     * or were cleared are left as holes on file systems which support sparse files. Any existing contents of the file
+     * are discarded. For a page blob which is mostly empty, such as a virtual machine disk, this transfers only the
+     * used fraction of the blob.
+     *
+     * @param pageBlobURL
+     *      A {@link PageBlobURL} that points to the blob or snapshot to download.
+     * @param file
+     *      The file to which the blob is written. It must be open for writing.
+     * @param options
+     *      A {@link DownloadFromPageBlobOptions} object to configure the download behavior.
+     * @return
+     *      A {@link Completable} which completes when the file holds the contents of the blob.
+     */
+    public static Completable downloadPageBlobToFile(
+            final PageBlobURL pageBlobURL, final FileChannel file, final DownloadFromPageBlobOptions options) {
+        Utility.assertNotNull("pageBlobURL", pageBlobURL);
+        Utility.assertNotNull("file", file);
+        Utility.assertNotNull("options", options);
+
+        return pageBlobURL.getPageRanges(null, options.accessConditions)
+                .flatMapCompletable(new Function<RestResponse<PageBlobGetPageRangesHeaders, PageList>,
+                        CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(RestResponse<PageBlobGetPageRangesHeaders, PageList> response)
+                            throws Exception {
+                        final long blobSize = response.headers().blobContentLength();
+
+                        // Only the listed ranges are written, so whatever the file held before must not remain.
+                        file.truncate(0);
+
+                        /*
+                         Reading every range on the condition that the ETag is unchanged guarantees the file is a
+                         consistent copy of the blob as it was when the ranges were listed.
+                         */
+                        BlobAccessConditions getBlobAccessConditions = new BlobAccessConditions(
+                                new HTTPAccessConditions(null, null, new ETag(response.headers().eTag()), null),
+                                options.accessConditions.getLeaseAccessConditions(), null, null);
+
+                        return downloadRangesToFile(pageBlobURL, file, planPageRangeReads(response.body()),
+                                getBlobAccessConditions, options.parallelism)
+                                .andThen(Completable.fromAction(new Action() {
+                                    @Override
+                                    public void run() throws Exception {
+                                        // Extend the file over any empty pages at the end of the blob.
+                                        if (file.size() < blobSize) {
+                                            file.write(ByteBuffer.allocate(1), blobSize - 1);
+                                        }
+                                    }
+                                }));
+                    }
+                });
+    }
+
+    /**
+     * Brings a local replica of a page blob up to date by transferring only the pages which changed since the last
+     * sync. A snapshot of the blob is taken, and the pages which differ between it and the snapshot of the previous
+     * sync are applied to the file: updated pages are downloaded in parallel, and cleared pages are overwritten with
+     * zeros. If there was no previous sync, the whole snapshot is downloaded as with
+     * {@link #downloadPageBlobToFile(PageBlobURL, FileChannel, DownloadFromPageBlobOptions)}. The returned snapshot
+     * ID should be stored once the sync completes and passed as {@code previousSnapshot} to the next sync. If a sync
+     * fails, running it again with the same previous snapshot repairs the file; the snapshot taken by the failed
+     * attempt is left in place.
+     *
+     * @param pageBlobURL
+     *      A {@link PageBlobURL} that points to the base blob to replicate.
+     * @param file
+     *      The replica file. It must be open for reading and writing and, unless {@code previousSnapshot} is null,
+     *      must hold the contents of the blob as of {@code previousSnapshot}.
+     * @param previousSnapshot
+     *      The snapshot ID returned by the previous sync, or {@code null} to download the whole blob.
+     * @param options
+     *      A {@link SyncPageBlobToFileOptions} object to configure the sync behavior.
+     * @return
+     *      A {@link Single} which emits the ID of the snapshot the file now matches.
+     */
+    public static Single<String> syncPageBlobToFile(final PageBlobURL pageBlobURL, final FileChannel file,
+            final String previousSnapshot, final SyncPageBlobToFileOptions options) {
+        Utility.assertNotNull("pageBlobURL", pageBlobURL);
+        Utility.assertNotNull("file", file);
+        Utility.assertNotNull("options", options);
+
+        return pageBlobURL.createSnapshot(null, null)
+                .flatMap(new Function<RestResponse<BlobTakeSnapshotHeaders, Void>, SingleSource<String>>() {
+                    @Override
+                    public SingleSource<String> apply(RestResponse<BlobTakeSnapshotHeaders, Void> response)
+                            throws Exception {
+                        final String snapshot = response.headers().snapshot();
+                        final PageBlobURL snapshotURL = pageBlobURL.withSnapshot(snapshot);
+
+                        Completable sync;
+                        if (previousSnapshot == null) {
+                            sync = downloadPageBlobToFile(snapshotURL, file,
+                                    new DownloadFromPageBlobOptions(null, options.parallelism));
+                        } else {
+                            sync = applyPageRangesDiff(snapshotURL, file, previousSnapshot, options.parallelism);
+                            if (options.deletePreviousSnapshot) {
+                                sync = sync.andThen(Completable.fromSingle(
+                                        pageBlobURL.withSnapshot(previousSnapshot).delete(null, null)));
+                            }
+                        }
+                        return sync.toSingleDefault(snapshot);
+                    }
+                });
+    }
+
+    /*
+     Applies the changes between the previous snapshot and the given snapshot to the file. Snapshots are read-only, so
+     no access conditions are needed to get a consistent view.
+     */
+    private static Completable applyPageRangesDiff(final PageBlobURL snapshotURL, final FileChannel file,
+            String previousSnapshot, final int parallelism) {
+        return snapshotURL.getPageRangesDiff(null, previousSnapshot, null)
+                .flatMapCompletable(new Function<RestResponse<PageBlobGetPageRangesHeaders, PageList>,
+                        CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(RestResponse<PageBlobGetPageRangesHeaders, PageList> response)
+                            throws Exception {
+                        final long blobSize = response.headers().blobContentLength();
+                        final PageRangeSet clearRanges = PageRangeSet.fromClearRanges(response.body());
+
+                        // The blob may have been resized since the previous snapshot.
+                        if (file.size() > blobSize) {
+                            file.truncate(blobSize);
+                        }
+
+                        /*
+                         Java has no way to punch a hole in a file, so cleared pages are overwritten with zeros. The
+                         updated and cleared ranges never overlap, so the two may be applied in either order.
+                         */
+                        Completable clear = Completable.fromAction(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                if (clearRanges.isEmpty()) {
+                                    return;
+                                }
+                                // The zeros are only read, so every sync can write from the same buffer.
+                                ByteBuffer zeros = ZEROS.duplicate();
+                                for (int i = 0; i < clearRanges.size(); i++) {
+                                    long position = clearRanges.start(i);
+                                    while (position <= clearRanges.end(i)) {
+                                        zeros.clear();
+                                        zeros.limit((int) Math.min(zeros.capacity(),
+                                                clearRanges.end(i) + 1 - position));
+                                        position += file.write(zeros, position);
+                                    }
+                                }
+                            }
+                        }).subscribeOn(Schedulers.io());
+
+                        return clear
+                                .andThen(downloadRangesToFile(snapshotURL, file,
+                                        planPageRangeReads(response.body()), BlobAccessConditions.NONE, parallelism))
+                                .andThen(Completable.fromAction(new Action() {
+                                    @Override
+                                    public void run() throws Exception {
+                                        // Extend the file over any empty pages at the end of the blob.
+                                        if (file.size() < blobSize) {
+                                            file.write(ByteBuffer.allocate(1), blobSize - 1);
+                                        }
+                                    }
+                                }));
+                    }
+                });
+    }
+
+    /**
+     * Copies a blob to a block blob by reading the source in ranges and writing each range as a block, committing the
+     * blocks once all have been written. Unlike Copy Blob, which the service performs in the background and may take
+     * hours to finish between accounts, this copies at the throughput of the client. The ranges are read on the
+     * condition that the source is unchanged since the copy began, and the source's HTTP headers, and unless
+     * others are given its metadata, are copied to the destination. No local disk is used: each block is read into a
+     * buffer from the destination pipeline's {@link ByteBufferPool}, which is released once the block has been
+     * written, so the copy holds at most parallelism blocks in memory.
+     *
+     * @param source
+     *      A {@link BlobURL} that points to the blob to copy. It may be in another account, in which case its pipeline
+     *      should hold the credentials for that account.
+     * @param destination
+     *      A {@link BlockBlobURL} that points to the blob to copy to.
+     * @param options
+     *      A {@link CopyToBlockBlobOptions} object to configure the copy behavior.
+     * @return
+     *      A {@link Single} that will return a {@link CommonRestResponse} if successful.
+     */
+    public static Single<CommonRestResponse> copyToBlockBlob(final BlobURL source, final BlockBlobURL destination,
+            final CopyToBlockBlobOptions options) {
+        Utility.assertNotNull("source", source);
+        Utility.assertNotNull("destination", destination);
+        Utility.assertNotNull("options", options);
+
+        return source.getPropertiesAndMetadata(null)
+                .flatMap(new Function<RestResponse<BlobGetPropertiesHeaders, Void>,
+                        SingleSource<RestResponse<BlockBlobPutBlockListHeaders, Void>>>() {
+                    @Override
+                    public SingleSource<RestResponse<BlockBlobPutBlockListHeaders, Void>> apply(
+                            RestResponse<BlobGetPropertiesHeaders, Void> response) throws Exception {
+                        final BlobGetPropertiesHeaders properties = response.headers();
+                        final long size = properties.contentLength();
+                        final int blockLength = (int) Math.max(options.blockLength,
+                                (size + BlockBlobURL.MAX_BLOCKS - 1) / BlockBlobURL.MAX_BLOCKS);
+                        int numBlocks = (int) ((size + blockLength - 1) / blockLength);
+
+                        final BlobAccessConditions sourceAccessConditions = new BlobAccessConditions(
+                                new HTTPAccessConditions(null, null, new ETag(properties.eTag()), null),
+                                null, null, null);
+                        final ByteBufferPool buffers = destination.bufferPool();
+
+                        final BlobHTTPHeaders headers = new BlobHTTPHeaders(properties.cacheControl(),
+                                properties.contentDisposition(), properties.contentEncoding(),
+                                properties.contentLanguage(), properties.contentMD5(), properties.contentType());
+                        final Metadata metadata;
+                        if (options.metadata != null) {
+                            metadata = options.metadata;
+                        } else {
+                            metadata = new Metadata();
+                            if (properties.metadata() != null) {
+                                metadata.putAll(properties.metadata());
+                            }
+                        }
+
+                        return Flowable.range(0, numBlocks)
+                                .concatMapEager(new Function<Integer, Publisher<String>>() {
+                                    @Override
+                                    public Publisher<String> apply(Integer blockIndex) throws Exception {
+                                        long offset = (long) blockIndex * blockLength;
+                                        return copyBlock(source, destination,
+                                                new BlobRange(offset, Math.min(blockLength, size - offset)),
+                                                sourceAccessConditions, options.accessConditions, buffers)
+                                                .toFlowable();
+                                    }
+                                }, options.parallelism, 1)
+                                .collectInto(new ArrayList<String>(numBlocks),
+                                        new BiConsumer<ArrayList<String>, String>() {
+                                    @Override
+                                    public void accept(ArrayList<String> ids, String id) throws Exception {
+                                        ids.add(id);
+                                    }
+                                })
+                                .flatMap(new Function<ArrayList<String>,
+                                        SingleSource<RestResponse<BlockBlobPutBlockListHeaders, Void>>>() {
+                                    @Override
+                                    public SingleSource<RestResponse<BlockBlobPutBlockListHeaders, Void>> apply(
+                                            ArrayList<String> ids) throws Exception {
+                                        return destination.putBlockList(ids, headers, metadata,
+                                                options.accessConditions);
+                                    }
+                                });
+                    }
+                })
+                .map(new Function<RestResponse<BlockBlobPutBlockListHeaders, Void>, CommonRestResponse>() {
+                    @Override
+                    public CommonRestResponse apply(RestResponse<BlockBlobPutBlockListHeaders, Void> response)
+                            throws Exception {
+                        return CommonRestResponse.createFromPutBlockListResponse(response);
+                    }
+                });
+    }
 
+    /*
+     Reads one range of the source into a buffer from the pool and writes it to the destination as a block, emitting
+     the block's ID. The buffer goes back to the pool once the copy of the block terminates or is disposed, whether or
+     not the block was written. A failed or disposed PutBlock may still have writes of the buffer queued on a
+     connection that is being closed, but those only read it, so a new block filling the buffer can garble only that
+     abandoned request, whose block is never committed.
+     */
+    private static Single<String> copyBlock(final BlobURL source, final BlockBlobURL destination,
+            final BlobRange range, final BlobAccessConditions sourceAccessConditions,
+            final BlobAccessConditions destinationAccessConditions, final ByteBufferPool buffers) {
+        return Single.defer(new Callable<SingleSource<String>>() {
+            @Override
+            public SingleSource<String> call() throws Exception {
+                final String blockId = DatatypeConverter.printBase64Binary(
+                        RequestIDFactory.SEQUENTIAL.generateRequestID().getBytes());
+                final ByteBuffer buffer = buffers.acquire((int) range.getCount());
+                // Whether the buffer is still being filled, being sent, or has been released.
+                final AtomicInteger state = new AtomicInteger(BUFFER_FILLING);
+                final Action release = new Action() {
+                    @Override
+                    public void run() {
+                        // Disposal may come while the body is still being copied in, so the two exclude each other.
+                        synchronized (state) {
+                            if (state.getAndSet(BUFFER_RELEASED) != BUFFER_RELEASED) {
+                                buffers.release(buffer);
+                            }
+                        }
+                    }
+                };
 
-        /*
-         * Should take in a ByteBuffer.
-         * Get FileChannel from FileInputStream and call map to get MappedByteBuffer.
-         * Duplicate/slice the buffer for each network call (backed by the same data)
-         * Set the position and limit on the new buffer (independent per buffer object).
-         * Can convert to flowable by get()-ing some relative section of the array or the whole thing. This will read
-         * those bytes into memory. Create using Flowable.just(byte[]).
-         *
+                return source.getBlob(range, sourceAccessConditions, false)
+                        .flatMap(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>,
+                                SingleSource<ByteBuffer>>() {
+                            @Override
+                            public SingleSource<ByteBuffer> apply(
+                                    RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> response) throws Exception {
+                                return response.body().reduce(buffer, new BiFunction<ByteBuffer, ByteBuffer,
+                                        ByteBuffer>() {
+                                    @Override
+                                    public ByteBuffer apply(ByteBuffer block, ByteBuffer data) throws Exception {
+                                        synchronized (state) {
+                                            if (state.get() != BUFFER_FILLING) {
+                                                throw new CancellationException("The copy of the block was disposed.");
+                                            }
+                                            return block.put(data);
+                                        }
+                                    }
+                                });
+                            }
+                        })
+                        .flatMap(new Function<ByteBuffer,
+                                SingleSource<RestResponse<BlockBlobPutBlockHeaders, Void>>>() {
+                            @Override
+                            public SingleSource<RestResponse<BlockBlobPutBlockHeaders, Void>> apply(ByteBuffer block)
+                                    throws Exception {
+                                if (!state.compareAndSet(BUFFER_FILLING, BUFFER_SENDING)) {
+                                    throw new CancellationException("The copy of the block was disposed.");
+                                }
+                                block.flip();
+                                return destination.putBlock(blockId, Flowable.just(block), block.remaining(),
+                                        destinationAccessConditions.getLeaseAccessConditions());
+                            }
+                        })
+                        .map(new Function<RestResponse<BlockBlobPutBlockHeaders, Void>, String>() {
+                            @Override
+                            public String apply(RestResponse<BlockBlobPutBlockHeaders, Void> response)
+                                    throws Exception {
+                                return blockId;
+                            }
+                        })
+                        .doFinally(release);
+            }
+        });
+    }
+
+    /**
+     * Moves the block blobs in a container to cooler tiers by the time since they were last modified, as reported by
+     * the listing. The listing is read as tiers are set, so a container of any size is processed in one pass with
+     * at most parallelism blobs held in memory. Blobs are only moved to a cooler tier, never back: a blob already in
+     * the target tier or a cooler one, and blobs which are not block blobs, are skipped. The tiers are set through
+     * {@link BulkBlobOperations}, so fewer are set at once while the service reports it is busy.
+     *
+     * @param containerURL
+     *      A {@link ContainerURL} that points to the container whose blobs should be tiered.
+     * @param options
+     *      A {@link SetTiersByAgeOptions} object to configure the policy.
+     * @return
+     *      A {@link Flowable} which emits a {@link BulkBlobOperationResult} for each blob whose tier was set, in the
+     *      order they finish. A blob whose tier could not be set is reported through
+     *      {@link BulkBlobOperationResult#getError()} rather than by erroring the {@code Flowable}.
+     */
+    public static Flowable<BulkBlobOperationResult> setTiersByAge(final ContainerURL containerURL,
+            final SetTiersByAgeOptions options) {
+        Utility.assertNotNull("containerURL", containerURL);
+        Utility.assertNotNull("options", options);
+        final long now = System.currentTimeMillis();
+
+        // The limit starts at, and never grows past, the requested parallelism, and halves while the service is busy.
+        return new BulkBlobOperations(new BulkBlobOperationsOptions(options.parallelism, options.parallelism, null,
+                null, null, null))
+                .execute(containerURL.listBlobsAll(new ListBlobsOptions(null, options.prefix, null, null))
+                                .filter(new Predicate<Blob>() {
+                                    @Override
+                                    public boolean test(Blob blob) throws Exception {
+                                        return tierByAge(blob, now, options) != null;
+                                    }
+                                }),
+                        new Function<Blob, BlobURL>() {
+                            @Override
+                            public BlobURL apply(Blob blob) throws Exception {
+                                return containerURL.createBlobURL(blob.name());
+                            }
+                        },
+                        new Function<Blob, IBulkBlobOperation>() {
+                            @Override
+                            public IBulkBlobOperation apply(Blob blob) throws Exception {
+                                return BulkBlobOperations.setTier(tierByAge(blob, now, options));
+                            }
+                        });
+    }
+
+    /*
+     Returns the tier the policy moves the blob to, or null if it should be left where it is.
+     */
+    private static AccessTier tierByAge(Blob blob, long now, SetTiersByAgeOptions options) {
+        BlobProperties properties = blob.properties();
+        if (properties.blobType() != BlobType.BLOCK_BLOB) {
+            return null;
+        }
+        long ageInDays = (now - properties.lastModified().getMillis()) / TimeUnit.DAYS.toMillis(1);
+        AccessTier target;
+        if (options.archiveAfterDays != null && ageInDays >= options.archiveAfterDays) {
+            target = AccessTier.ARCHIVE;
+        } else if (options.coolAfterDays != null && ageInDays >= options.coolAfterDays) {
+            target = AccessTier.COOL;
+        } else {
+            return null;
+        }
+        // The service omits the tier of a blob which has the account's default tier, which is hot.
+        AccessTier current = properties.accessTier() == null ? AccessTier.HOT : properties.accessTier();
+        int currentRank = STANDARD_TIERS.indexOf(current);
+        return currentRank >= 0 && currentRank < STANDARD_TIERS.indexOf(target) ? target : null;
+    }
+
+    /*
+     Plans the reads for a set of page ranges. Ranges separated by small gaps are read as one, since the zeros read from
+     the gap cost less than another round trip, and each read is kept to at most PageBlobURL.MAX_PUT_PAGES_BYTES so
+     that it is short enough to retry cheaply.
+     */
+    private static List<BlobRange> planPageRangeReads(PageList pageList) {
+        return PageRangeSet.fromPageRanges(pageList).coalesce(PAGE_RANGE_READ_MAX_GAP)
+                .toBlobRanges(PageBlobURL.MAX_PUT_PAGES_BYTES);
+    }
+
+    /*
+     Reads each of the ranges from the blob and writes it at the same offset in the file.
+     */
+    private static Completable downloadRangesToFile(final BlobURL blobURL, final FileChannel file,
+            Iterable<BlobRange> ranges, final BlobAccessConditions accessConditions, int parallelism) {
+        return Flowable.fromIterable(ranges)
+                .flatMapCompletable(new Function<BlobRange, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(final BlobRange range) throws Exception {
+                        return blobURL.getBlob(range, accessConditions, false)
+                                .flatMapCompletable(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>,
+                                        CompletableSource>() {
+                                    @Override
+                                    public CompletableSource apply(
+                                            RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> response)
+                                            throws Exception {
+                                        return Completable.fromSingle(
+                                                writeToFile(response.body(), file, range.getOffset()));
+                                    }
+                                });
+                    }
+                }, false, parallelism);
+    }
+
+    /*
+     Writes the buffers to the file one after another, starting at the given offset. Positional writes do not move the
+     channel's position, so several of these may write to the same file at once. The body is delivered on the HTTP
+     client's I/O threads, which also serve other connections, so the blocking writes are moved off of them.
+     */
+    private static Single<Long> writeToFile(Flowable<ByteBuffer> data, final FileChannel file, long offset) {
+        return data.observeOn(Schedulers.io()).reduce(offset, new BiFunction<Long, ByteBuffer, Long>() {
+            @Override
+            public Long apply(Long position, ByteBuffer buffer) throws Exception {
+                long next = position;
+                while (buffer.hasRemaining()) {
+                    next += file.write(buffer, next);
+                }
+                return next;
+            }
+        });
+    }
+
+    /*
+     Sends the pages of the range from the file. The last page of a file whose length is not a whole number of pages is
+     padded with zeros.
+     */
+    private static Flowable<ByteBuffer> pagesBody(FileChannel file, long fileSize, PageRange range) {
+        long end = Math.min(range.end() + 1, fileSize);
+        FileRegionBody data = new FileRegionBody(file, range.start(), end - range.start());
+        int padding = (int) (range.end() + 1 - end);
+        if (padding == 0) {
+            return data;
+        }
+        return Flowable.concat(data, Flowable.just(ByteBuffer.allocate(padding)));
+    }
+
+    /**
+     * Reads a file a page at a time and returns the runs of pages which contain data. Java offers no way to query the
+     * allocated regions of a sparse file, but reading a hole does not touch the disk, so the whole file is read and
+     * checked a word at a time.
+     */
+    private static final class NonZeroPageScanner {
+
+        private final FileChannel file;
+
+        private final long fileSize;
+
+        // Holds a whole number of pages.
+        private final ByteBuffer buffer;
+
+        // The file offset of the first byte in the buffer.
+        private long bufferOffset;
+
+        // The file offset of the next page to check.
+        private long position;
+
+        NonZeroPageScanner(FileChannel file, long fileSize, ByteBuffer buffer) {
+            this.file = file;
+            this.fileSize = fileSize;
+            this.buffer = buffer.order(ByteOrder.nativeOrder());
+            this.buffer.limit(0);
+        }
+
+        /**
+         * @return
+         *      The next run of pages which contain data, no longer than {@link PageBlobURL#MAX_PUT_PAGES_BYTES}, or
+         *      {@code null} if the end of the file has been reached.
          */
+        PageRange next() throws IOException {
+            long runStart = -1;
+            while (this.position < this.fileSize) {
+                if (this.position >= this.bufferOffset + this.buffer.limit()) {
+                    this.fill();
+                }
+
+                int length = (int) Math.min(PageBlobURL.PAGE_BYTES, this.fileSize - this.position);
+                boolean isEmpty = isZero(this.buffer, (int) (this.position - this.bufferOffset), length);
+                this.position += PageBlobURL.PAGE_BYTES;
+
+                if (isEmpty) {
+                    if (runStart >= 0) {
+                        return new PageRange().withStart(runStart)
+                                .withEnd(this.position - PageBlobURL.PAGE_BYTES - 1);
+                    }
+                } else {
+                    if (runStart < 0) {
+                        runStart = this.position - PageBlobURL.PAGE_BYTES;
+                    }
+                    if (this.position - runStart == PageBlobURL.MAX_PUT_PAGES_BYTES) {
+                        return new PageRange().withStart(runStart).withEnd(this.position - 1);
+                    }
+                }
+            }
+            return runStart < 0 ? null : new PageRange().withStart(runStart).withEnd(this.position - 1);
+        }
+
+        private void fill() throws IOException {
+            // The buffer holds a whole number of pages, so a page only ever spans its end at the end of the file.
+            this.buffer.clear();
+            this.bufferOffset = this.position;
+            while (this.buffer.hasRemaining()) {
+                if (this.file.read(this.buffer, this.bufferOffset + this.buffer.position()) < 0) {
+                    break;
+                }
+            }
+            this.buffer.flip();
+        }
+
+        private static boolean isZero(ByteBuffer buffer, int offset, int length) {
+            int end = offset + length;
+            int i = offset;
+            for (; i + 8 <= end; i += 8) {
+                if (buffer.getLong(i) != 0) {
+                    return false;
+                }
+            }
+            for (; i < end; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     private static Single<CommonRestResponse> doSingleShotUpload(
-            ByteBuffer data, BlockBlobURL blockBlobURL, UploadToBlockBlobOptions options) {
+            Flowable<ByteBuffer> data, long length, BlockBlobURL blockBlobURL, UploadToBlockBlobOptions options) {
         if (options.progressReceiver != null) {
             // TODO: Wrap in a progress stream once progress is written.
         }
 
-        return blockBlobURL.putBlob(Flowable.just(data), data.remaining(), options.httpHeaders,
+        return blockBlobURL.putBlob(data, length, options.httpHeaders,
                 options.metadata, options.accessConditions)
                 .map(new Function<RestResponse<BlobPutHeaders, Void>, CommonRestResponse>() {
                     // Transform the specific RestResponse into a CommonRestResponse.
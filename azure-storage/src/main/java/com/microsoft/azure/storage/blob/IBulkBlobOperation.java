@@ -0,0 +1,34 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import io.reactivex.Completable;
+
+/**
+ * An operation which {@link BulkBlobOperations} applies to each blob. {@link BulkBlobOperations} provides the common
+ * operations.
+ */
+public interface IBulkBlobOperation {
+
+    /**
+     * Applies the operation to a blob.
+     *
+     * @param blobURL
+     *      A {@link BlobURL} that points to the blob.
+     * @return
+     *      A {@link Completable} which completes once the operation has succeeded.
+     */
+    public Completable apply(BlobURL blobURL);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+public interface IBulkProgressReceiver {
+
+    /**
+     * The callback function invoked periodically while {@link BulkBlobOperations} runs, and once more when it ends.
+     *
+     * @param succeeded
+     *      The total number of blobs the operation has succeeded on.
+     * @param failed
+     *      The total number of blobs the operation has failed on.
+     * @param operationsPerSecond
+     *      The number of operations which finished per second since the previous report.
+     * @param concurrency
+     *      The number of operations currently allowed in flight.
+     */
+    public void reportProgress(long succeeded, long failed, double operationsPerSecond, int concurrency);
+}
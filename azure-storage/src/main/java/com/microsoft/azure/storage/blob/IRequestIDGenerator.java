@@ -0,0 +1,31 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+/**
+ * Generates the client request IDs which {@link RequestIDFactory} sends in the x-ms-client-request-id header. The
+ * service records them in its analytics logs, so a generator can be supplied to correlate requests with another
+ * tracing system. Implementations are called concurrently and must be thread-safe.
+ */
+public interface IRequestIDGenerator {
+
+    /**
+     * Generates the ID of a request.
+     *
+     * @return
+     *      A {@code String} of at most 1024 characters which identifies the request.
+     */
+    public String generateRequestID();
+}
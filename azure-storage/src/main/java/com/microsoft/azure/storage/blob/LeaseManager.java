@@ -0,0 +1,446 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.BlobLeaseHeaders;
+import com.microsoft.azure.storage.models.ContainerLeaseHeaders;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.RestResponse;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps many blob and container leases alive from a single timer. Each lease is renewed once about half of its
+ * duration has passed since it was last renewed, and the leases which fall due on the same tick are renewed together
+ * with a bounded number of requests in flight. The timer ticks several times per renewal period, so a tick delayed by
+ * a pause in the process still leaves time to renew before the lease expires. A lease which the service refuses to
+ * renew, which could not be renewed before it expired, or whose release failed, is reported through
+ * {@link Lease#lost()}. Disposing of the manager stops the timer and releases every lease it holds.
+ * <p>
+ * Instances are safe to use from many threads.
+ */
+public final class LeaseManager implements Disposable {
+
+    private final int leaseDurationInSeconds;
+
+    private final int maxConcurrentRenewals;
+
+    private final Set<Lease> leases = Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+
+    private final Disposable ticker;
+
+    private final AtomicBoolean disposed = new AtomicBoolean();
+
+    /**
+     * Creates a {@code LeaseManager} for leases of the given duration.
+     *
+     * @param leaseDurationInSeconds
+     *      The duration of the leases, between 15 and 60 seconds. Infinite leases do not need renewing.
+     * @param maxConcurrentRenewals
+     *      The maximum number of renewal requests to send at once. If null, 16 will be used.
+     */
+    public LeaseManager(int leaseDurationInSeconds, Integer maxConcurrentRenewals) {
+        Utility.assertInBounds("leaseDurationInSeconds", leaseDurationInSeconds, 15, 60);
+        this.leaseDurationInSeconds = leaseDurationInSeconds;
+        this.maxConcurrentRenewals = maxConcurrentRenewals == null ? 16 : maxConcurrentRenewals;
+        Utility.assertInBounds("maxConcurrentRenewals", this.maxConcurrentRenewals, 1, Integer.MAX_VALUE);
+
+        long tickInMs = TimeUnit.SECONDS.toMillis(leaseDurationInSeconds) / 8;
+        this.ticker = Schedulers.computation().schedulePeriodicallyDirect(new Runnable() {
+            @Override
+            public void run() {
+                renewDueLeases();
+            }
+        }, tickInMs, tickInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acquires a lease on a blob and keeps it alive until it is released.
+     *
+     * @param blobURL
+     *      A {@link BlobURL} that points to the blob to lease.
+     * @param proposedID
+     *      A {@code String} in any valid GUID format, or null to let the service choose the lease ID.
+     * @return
+     *      A {@link Single} which emits the {@link Lease} once it has been acquired.
+     */
+    public Single<Lease> acquire(final BlobURL blobURL, String proposedID) {
+        Utility.assertNotNull("blobURL", blobURL);
+        final long acquireTime = System.nanoTime();
+        return blobURL.acquireLease(proposedID, this.leaseDurationInSeconds, null)
+                .map(new Function<RestResponse<BlobLeaseHeaders, Void>, Lease>() {
+                    @Override
+                    public Lease apply(RestResponse<BlobLeaseHeaders, Void> response) throws Exception {
+                        return track(new BlobLeaseTarget(blobURL), response.headers().leaseId(), acquireTime);
+                    }
+                });
+    }
+
+    /**
+     * Acquires a lease on a container and keeps it alive until it is released.
+     *
+     * @param containerURL
+     *      A {@link ContainerURL} that points to the container to lease.
+     * @param proposedID
+     *      A {@code String} in any valid GUID format, or null to let the service choose the lease ID.
+     * @return
+     *      A {@link Single} which emits the {@link Lease} once it has been acquired.
+     */
+    public Single<Lease> acquire(final ContainerURL containerURL, String proposedID) {
+        Utility.assertNotNull("containerURL", containerURL);
+        final long acquireTime = System.nanoTime();
+        return containerURL.acquireLease(proposedID, this.leaseDurationInSeconds, null)
+                .map(new Function<RestResponse<ContainerLeaseHeaders, Void>, Lease>() {
+                    @Override
+                    public Lease apply(RestResponse<ContainerLeaseHeaders, Void> response) throws Exception {
+                        return track(new ContainerLeaseTarget(containerURL), response.headers().leaseId(),
+                                acquireTime);
+                    }
+                });
+    }
+
+    /**
+     * Starts keeping alive a lease on a blob which has already been acquired with this manager's duration. The lease
+     * is renewed on the next tick, since the time it was last renewed is not known.
+     *
+     * @param blobURL
+     *      A {@link BlobURL} that points to the leased blob.
+     * @param leaseID
+     *      The ID of the lease.
+     * @return
+     *      The {@link Lease}.
+     */
+    public Lease add(BlobURL blobURL, String leaseID) {
+        Utility.assertNotNull("blobURL", blobURL);
+        Utility.assertNotNull("leaseID", leaseID);
+        return this.track(new BlobLeaseTarget(blobURL), leaseID, Long.MIN_VALUE);
+    }
+
+    /**
+     * Starts keeping alive a lease on a container which has already been acquired with this manager's duration. The
+     * lease is renewed on the next tick, since the time it was last renewed is not known.
+     *
+     * @param containerURL
+     *      A {@link ContainerURL} that points to the leased container.
+     * @param leaseID
+     *      The ID of the lease.
+     * @return
+     *      The {@link Lease}.
+     */
+    public Lease add(ContainerURL containerURL, String leaseID) {
+        Utility.assertNotNull("containerURL", containerURL);
+        Utility.assertNotNull("leaseID", leaseID);
+        return this.track(new ContainerLeaseTarget(containerURL), leaseID, Long.MIN_VALUE);
+    }
+
+    /**
+     * Stops the timer and releases every lease held by the manager.
+     *
+     * @return
+     *      A {@link Completable} which completes once every lease has been released. If any release fails, it errors
+     *      once the others have finished.
+     */
+    public Completable close() {
+        List<Lease> held;
+        // Excludes track, so every lease is either released here or refused there.
+        synchronized (this.leases) {
+            this.disposed.set(true);
+            held = new ArrayList<Lease>(this.leases);
+        }
+        this.ticker.dispose();
+        return Flowable.fromIterable(held)
+                .flatMapCompletable(new Function<Lease, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(Lease lease) throws Exception {
+                        return lease.release();
+                    }
+                }, true, this.maxConcurrentRenewals);
+    }
+
+    /**
+     * Stops the timer and releases every lease held by the manager without waiting for the releases to finish. Any
+     * lease which fails to be released expires at the end of its duration.
+     */
+    @Override
+    public void dispose() {
+        this.close().onErrorComplete().subscribe();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return this.disposed.get();
+    }
+
+    private Lease track(LeaseTarget target, String leaseID, long renewedTime) {
+        synchronized (this.leases) {
+            if (!this.disposed.get()) {
+                Lease lease = new Lease(target, leaseID, renewedTime);
+                this.leases.add(lease);
+                return lease;
+            }
+        }
+        // The lease was acquired after the manager was disposed, so it is released rather than held.
+        target.release(leaseID).onErrorComplete().subscribe();
+        throw new IllegalStateException("The lease manager has been disposed.");
+    }
+
+    private void renewDueLeases() {
+        long now = System.nanoTime();
+        long renewAfter = TimeUnit.SECONDS.toNanos(this.leaseDurationInSeconds) / 2;
+        List<Lease> dueLeases = new ArrayList<Lease>();
+        for (Lease lease : this.leases) {
+            if (lease.renewedTime == Long.MIN_VALUE || now - lease.renewedTime >= renewAfter) {
+                // A lease whose renewal is still in flight is left to that renewal.
+                if (lease.renewing.compareAndSet(false, true)) {
+                    dueLeases.add(lease);
+                } else {
+                    lease.checkExpired(now);
+                }
+            }
+        }
+        if (dueLeases.isEmpty()) {
+            return;
+        }
+
+        Flowable.fromIterable(dueLeases)
+                .flatMapCompletable(new Function<Lease, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(Lease lease) throws Exception {
+                        return lease.renew();
+                    }
+                }, false, this.maxConcurrentRenewals)
+                .subscribe();
+    }
+
+    /*
+     Only client errors mean the service has refused the renewal, typically because the lease has expired and been
+     taken by someone else. Other failures may succeed on the next tick, as long as the lease has not yet expired.
+     */
+    private static boolean isRenewalRefused(Throwable e) {
+        if (!(e instanceof RestException) || ((RestException) e).response() == null) {
+            return false;
+        }
+        int statusCode = ((RestException) e).response().statusCode();
+        return statusCode >= HttpURLConnection.HTTP_BAD_REQUEST && statusCode < HttpURLConnection.HTTP_INTERNAL_ERROR
+                && statusCode != HttpURLConnection.HTTP_CLIENT_TIMEOUT && statusCode != 429;
+    }
+
+    /**
+     * A lease kept alive by a {@link LeaseManager}.
+     */
+    public final class Lease {
+
+        private final LeaseTarget target;
+
+        private final String leaseID;
+
+        private final CompletableSubject lost = CompletableSubject.create();
+
+        private final AtomicBoolean renewing = new AtomicBoolean();
+
+        /*
+         The System.nanoTime at which the last successful renewal was sent, or Long.MIN_VALUE if it is not known.
+         */
+        private volatile long renewedTime;
+
+        private Lease(LeaseTarget target, String leaseID, long renewedTime) {
+            this.target = target;
+            this.leaseID = leaseID;
+            this.renewedTime = renewedTime;
+        }
+
+        /**
+         * @return
+         *      The ID of the lease.
+         */
+        public String getLeaseID() {
+            return this.leaseID;
+        }
+
+        /**
+         * @return
+         *      A {@link LeaseAccessConditions} object for making requests under the lease.
+         */
+        public LeaseAccessConditions getLeaseAccessConditions() {
+            return new LeaseAccessConditions(this.leaseID);
+        }
+
+        /**
+         * @return
+         *      A {@link Completable} which errors when the lease is lost, with the error which prevented its renewal
+         *      or release, and completes when the lease is released. Merging it with the work done under the lease
+         *      cancels that work as soon as the lease is lost.
+         */
+        public Completable lost() {
+            return this.lost.hide();
+        }
+
+        /**
+         * Stops renewing the lease and releases it. The lease is no longer renewed even if the release fails, so it
+         * is then reported as lost, and expires at the end of its duration unless it was already gone.
+         *
+         * @return
+         *      A {@link Completable} which completes once the lease has been released.
+         */
+        public Completable release() {
+            return Completable.defer(new Callable<CompletableSource>() {
+                @Override
+                public CompletableSource call() throws Exception {
+                    if (!leases.remove(Lease.this)) {
+                        return Completable.complete();
+                    }
+                    // Disposal may race with the outcome, and only the first of them is reported.
+                    final AtomicBoolean settled = new AtomicBoolean();
+                    return target.release(leaseID)
+                            .doOnComplete(new Action() {
+                                @Override
+                                public void run() throws Exception {
+                                    if (settled.compareAndSet(false, true)) {
+                                        lost.onComplete();
+                                    }
+                                }
+                            })
+                            .doOnError(new Consumer<Throwable>() {
+                                @Override
+                                public void accept(Throwable e) throws Exception {
+                                    if (settled.compareAndSet(false, true)) {
+                                        lost.onError(e);
+                                    }
+                                }
+                            })
+                            .doOnDispose(new Action() {
+                                @Override
+                                public void run() throws Exception {
+                                    if (settled.compareAndSet(false, true)) {
+                                        lost.onError(new CancellationException(
+                                                "The release of the lease was disposed."));
+                                    }
+                                }
+                            });
+                }
+            });
+        }
+
+        private Completable renew() {
+            final long sendTime = System.nanoTime();
+            return this.target.renew(this.leaseID)
+                    .doOnComplete(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            // The service measures the duration from when it received the request, which is no
+                            // earlier than when it was sent.
+                            renewedTime = sendTime;
+                        }
+                    })
+                    .doOnError(new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable e) throws Exception {
+                            if (isRenewalRefused(e)) {
+                                markLost(e);
+                            } else {
+                                checkExpired(System.nanoTime());
+                            }
+                        }
+                    })
+                    .doFinally(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            renewing.set(false);
+                        }
+                    })
+                    .onErrorComplete();
+        }
+
+        private void checkExpired(long now) {
+            if (this.renewedTime != Long.MIN_VALUE
+                    && now - this.renewedTime >= TimeUnit.SECONDS.toNanos(leaseDurationInSeconds)) {
+                this.markLost(new IllegalStateException("The lease expired before it could be renewed."));
+            }
+        }
+
+        private void markLost(Throwable e) {
+            if (leases.remove(this)) {
+                this.lost.onError(e);
+            }
+        }
+    }
+
+    /**
+     * The renew and release operations of the leased blob or container.
+     */
+    private abstract static class LeaseTarget {
+
+        abstract Completable renew(String leaseID);
+
+        abstract Completable release(String leaseID);
+    }
+
+    private static final class BlobLeaseTarget extends LeaseTarget {
+
+        private final BlobURL blobURL;
+
+        private BlobLeaseTarget(BlobURL blobURL) {
+            this.blobURL = blobURL;
+        }
+
+        @Override
+        Completable renew(String leaseID) {
+            return Completable.fromSingle(this.blobURL.renewLease(leaseID, null));
+        }
+
+        @Override
+        Completable release(String leaseID) {
+            return Completable.fromSingle(this.blobURL.releaseLease(leaseID, null));
+        }
+    }
+
+    private static final class ContainerLeaseTarget extends LeaseTarget {
+
+        private final ContainerURL containerURL;
+
+        private ContainerLeaseTarget(ContainerURL containerURL) {
+            this.containerURL = containerURL;
+        }
+
+        @Override
+        Completable renew(String leaseID) {
+            return Completable.fromSingle(this.containerURL.renewLease(leaseID, null));
+        }
+
+        @Override
+        Completable release(String leaseID) {
+            return Completable.fromSingle(this.containerURL.releaseLease(leaseID, null));
+        }
+    }
+}
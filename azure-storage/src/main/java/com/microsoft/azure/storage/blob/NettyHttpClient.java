@@ -0,0 +1,1156 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpHeader;
+import com.microsoft.rest.v2.http.HttpHeaders;
+import com.microsoft.rest.v2.http.HttpPipeline;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FileRegion;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequestEncoder;
+import io.netty.handler.codec.http.HttpResponseDecoder;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.LongConsumer;
+import io.reactivex.processors.UnicastProcessor;
+import io.reactivex.schedulers.Schedulers;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link HttpClient} which sends requests over pools of Netty connections configured by {@link TransportOptions}.
+ * Each host gets a pool of up to {@link TransportOptions#getMaxConnectionsPerHost()} connections, each carrying one
+ * request at a time. Request bodies are written as they are produced, pausing while the connection's write buffer is
+ * above its high watermark, and response bodies are read from the connection only as fast as they are requested. The
+ * buffers of a response body are views of the memory the bytes were received into rather than copies. A
+ * {@link FileRegionBody} is instead sent from its file: with sendfile over plain connections, and over TLS in direct
+ * buffers read from the file on the I/O scheduler.
+ * <p>
+ * To spare short-lived processes the cost of setting up connections, host names are resolved once per
+ * {@link TransportOptions#getDnsCacheTtlInMs()}, TLS sessions are cached so that later connections to a host resume
+ * the session with an abbreviated handshake, and {@link #warmUp(URL, int)} opens connections before they are needed.
+ * <p>
+ * A client holds its threads and connections until {@link #close()}, which {@link TransportOptions#close()} calls for
+ * the client built for those options.
+ */
+final class NettyHttpClient extends HttpClient {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Sessions are cached by host and port, so this allows for many more hosts than an application talks to.
+    private static final int TLS_SESSION_CACHE_SIZE = 1024;
+
+    private static final int TLS_SESSION_TIMEOUT_IN_SECONDS = 24 * 60 * 60;
+
+    // Bounds the wait for tasks already queued on the event loops when the client is closed.
+    private static final int SHUTDOWN_TIMEOUT_IN_SECONDS = 15;
+
+    /*
+     Received bytes are handed out as views of the buffers they were read and decrypted into, so those buffers must
+     never be reused once released. Unpooled heap buffers are left to the garbage collector instead.
+     */
+    private static final ByteBufAllocator ALLOCATOR = new UnpooledByteBufAllocator(false);
+
+    private static final Map<TransportOptions, NettyHttpClient> CLIENTS = new HashMap<>();
+
+    // The pipelines createPipeline built over each client, so that a URL can find the client to warm up.
+    private static final Map<HttpPipeline, NettyHttpClient> PIPELINES = new WeakHashMap<>();
+
+    private final TransportOptions options;
+
+    private final EventLoopGroup eventLoopGroup;
+
+    private final Bootstrap bootstrap;
+
+    private final SslContext sslContext;
+
+    private final AbstractChannelPoolMap<Endpoint, FixedChannelPool> pools;
+
+    private volatile boolean closed;
+
+    /**
+     * Gets the client for the given options, creating it the first time they are used.
+     *
+     * @param options
+     *      {@link TransportOptions}
+     * @return
+     *      The {@link NettyHttpClient} for the options.
+     */
+    static NettyHttpClient forOptions(TransportOptions options) {
+        synchronized (CLIENTS) {
+            NettyHttpClient client = CLIENTS.get(options);
+            if (client == null) {
+                client = new NettyHttpClient(options);
+                CLIENTS.put(options, client);
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Closes the client for the given options, if one was created, so that the options get a new client the next time
+     * they are used.
+     *
+     * @param options
+     *      {@link TransportOptions}
+     * @return
+     *      A {@link Completable} which completes once the client's threads have stopped.
+     */
+    static Completable close(TransportOptions options) {
+        NettyHttpClient client;
+        synchronized (CLIENTS) {
+            client = CLIENTS.remove(options);
+        }
+        return client == null ? Completable.complete() : client.close();
+    }
+
+    /**
+     * Records that a pipeline sends its requests with a client, so that {@link #forPipeline(HttpPipeline)} can find it.
+     */
+    static void register(HttpPipeline pipeline, NettyHttpClient client) {
+        synchronized (PIPELINES) {
+            PIPELINES.put(pipeline, client);
+        }
+    }
+
+    /**
+     * @return
+     *      The client the pipeline sends its requests with, or null if it was not built over a {@link NettyHttpClient}.
+     */
+    static NettyHttpClient forPipeline(HttpPipeline pipeline) {
+        synchronized (PIPELINES) {
+            return PIPELINES.get(pipeline);
+        }
+    }
+
+    private NettyHttpClient(TransportOptions options) {
+        this(options, SslContextBuilder.forClient());
+    }
+
+    /*
+     Tests pass a builder of their own, so that the client trusts their certificates.
+     */
+    NettyHttpClient(TransportOptions options, SslContextBuilder sslContextBuilder) {
+        this.options = options;
+        ThreadFactory threadFactory = new DefaultThreadFactory("azure-storage-http", true);
+        boolean useEpoll = options.getUseNativeTransport() && NativeTransport.isAvailable();
+        this.eventLoopGroup = useEpoll
+                ? NativeTransport.eventLoopGroup(options.getEventLoopCount(), threadFactory)
+                : new NioEventLoopGroup(options.getEventLoopCount(), threadFactory);
+        this.bootstrap = new Bootstrap()
+                .group(this.eventLoopGroup)
+                .channel(useEpoll ? NativeTransport.channelClass() : NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, options.getTcpNoDelay())
+                .option(ChannelOption.SO_KEEPALIVE, options.getKeepAlive())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, options.getConnectTimeoutInMs())
+                .option(ChannelOption.ALLOCATOR, ALLOCATOR)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        options.getWriteBufferLowWaterMark(), options.getWriteBufferHighWaterMark()))
+                .resolver(new CachingResolverGroup(options.getDnsCacheTtlInMs()));
+        if (options.getSendBufferBytes() > 0) {
+            this.bootstrap.option(ChannelOption.SO_SNDBUF, options.getSendBufferBytes());
+        }
+        if (options.getReceiveBufferBytes() > 0) {
+            this.bootstrap.option(ChannelOption.SO_RCVBUF, options.getReceiveBufferBytes());
+        }
+        try {
+            this.sslContext = sslContextBuilder
+                    .sessionCacheSize(TLS_SESSION_CACHE_SIZE)
+                    .sessionTimeout(TLS_SESSION_TIMEOUT_IN_SECONDS)
+                    .build();
+        } catch (SSLException e) {
+            throw new Error(e); // The default client context needs no keys or certificates.
+        }
+        this.pools = new AbstractChannelPoolMap<Endpoint, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(Endpoint endpoint) {
+                // The most recently used connection is reused first, so that idle connections age out.
+                return new FixedChannelPool(bootstrap.clone().remoteAddress(endpoint.host, endpoint.port),
+                        new PoolHandler(endpoint), ChannelHealthChecker.ACTIVE, null, -1,
+                        NettyHttpClient.this.options.getMaxConnectionsPerHost(), Integer.MAX_VALUE, true, true);
+            }
+        };
+    }
+
+    /**
+     * Closes the pooled connections and stops the event loops. Requests in progress fail, and so do requests sent
+     * afterwards.
+     *
+     * @return
+     *      A {@link Completable} which completes once the event loops have stopped.
+     */
+    Completable close() {
+        synchronized (CLIENTS) {
+            if (CLIENTS.get(this.options) == this) {
+                CLIENTS.remove(this.options);
+            }
+        }
+        this.closed = true;
+        this.pools.close();
+        // Closing the pools queues tasks on the event loops, which run them before they stop.
+        final Future<?> termination = this.eventLoopGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_IN_SECONDS,
+                TimeUnit.SECONDS);
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(final CompletableEmitter emitter) {
+                termination.addListener(new FutureListener<Object>() {
+                    @Override
+                    public void operationComplete(Future<Object> future) {
+                        emitter.onComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("The HTTP client has been closed.");
+    }
+
+    @Override
+    public Single<HttpResponse> sendRequestAsync(final HttpRequest request) {
+        return Single.create(new SingleOnSubscribe<HttpResponse>() {
+            @Override
+            public void subscribe(final SingleEmitter<HttpResponse> emitter) {
+                if (closed) {
+                    emitter.onError(closedException());
+                    return;
+                }
+                final FixedChannelPool pool = pools.get(Endpoint.of(request.url()));
+                pool.acquire().addListener(new FutureListener<Channel>() {
+                    @Override
+                    public void operationComplete(Future<Channel> future) {
+                        if (!future.isSuccess()) {
+                            emitter.tryOnError(future.cause());
+                            return;
+                        }
+                        final Channel channel = future.getNow();
+                        if (emitter.isDisposed()) {
+                            pool.release(channel);
+                            return;
+                        }
+                        // A request written before the handshake fails would only see the engine closing.
+                        handshakeFuture(channel).addListener(new FutureListener<Channel>() {
+                            @Override
+                            public void operationComplete(Future<Channel> handshake) {
+                                if (!handshake.isSuccess()) {
+                                    pool.release(channel);
+                                    emitter.tryOnError(handshake.cause());
+                                    return;
+                                }
+                                channel.eventLoop().execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        new Exchange(request, emitter, channel, pool).start();
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private static Future<Channel> handshakeFuture(Channel channel) {
+        SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+        return sslHandler == null ? channel.eventLoop().newSucceededFuture(channel) : sslHandler.handshakeFuture();
+    }
+
+    /**
+     * Opens connections to the host of a URL, up to the most the pool allows, and returns them to the pool. The first
+     * connection is opened alone, so that the others can resume its TLS session instead of each making a full
+     * handshake.
+     *
+     * @param url
+     *      A URL on the host to connect to.
+     * @param connections
+     *      The number of connections the pool should hold afterwards. Connections already in the pool count.
+     * @return
+     *      A {@link Completable} which completes when the connections are open and their TLS handshakes are done.
+     */
+    Completable warmUp(URL url, int connections) {
+        if (this.closed) {
+            return Completable.error(closedException());
+        }
+        final FixedChannelPool pool = this.pools.get(Endpoint.of(url));
+        final int count = Math.min(connections, this.options.getMaxConnectionsPerHost());
+        if (count <= 0) {
+            return Completable.complete();
+        }
+        // The connections are held until all are open; otherwise the pool would hand the same one out again.
+        final List<Channel> held = Collections.synchronizedList(new ArrayList<Channel>(count));
+        return acquireConnected(pool, held)
+                .andThen(Flowable.range(1, count - 1).flatMapCompletable(new Function<Integer, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(Integer i) {
+                        return acquireConnected(pool, held);
+                    }
+                }))
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        synchronized (held) {
+                            for (Channel channel : held) {
+                                pool.release(channel);
+                            }
+                            held.clear();
+                        }
+                    }
+                });
+    }
+
+    private static Completable acquireConnected(final FixedChannelPool pool, final List<Channel> held) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(final CompletableEmitter emitter) {
+                pool.acquire().addListener(new FutureListener<Channel>() {
+                    @Override
+                    public void operationComplete(Future<Channel> future) {
+                        if (!future.isSuccess()) {
+                            emitter.tryOnError(future.cause());
+                            return;
+                        }
+                        Channel channel = future.getNow();
+                        if (emitter.isDisposed()) {
+                            pool.release(channel);
+                            return;
+                        }
+                        held.add(channel);
+                        handshakeFuture(channel).addListener(new FutureListener<Channel>() {
+                            @Override
+                            public void operationComplete(Future<Channel> handshake) {
+                                if (handshake.isSuccess()) {
+                                    emitter.onComplete();
+                                } else {
+                                    emitter.tryOnError(handshake.cause());
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The scheme, host and port a pool connects to.
+     */
+    private static final class Endpoint {
+
+        final String host;
+
+        final int port;
+
+        final boolean secure;
+
+        private Endpoint(String host, int port, boolean secure) {
+            this.host = host;
+            this.port = port;
+            this.secure = secure;
+        }
+
+        static Endpoint of(URL url) {
+            return new Endpoint(url.getHost(), url.getPort() == -1 ? url.getDefaultPort() : url.getPort(),
+                    "https".equalsIgnoreCase(url.getProtocol()));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Endpoint)) {
+                return false;
+            }
+            Endpoint endpoint = (Endpoint) other;
+            return this.port == endpoint.port && this.secure == endpoint.secure && this.host.equals(endpoint.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.host.hashCode() * 31 + this.port) * 2 + (this.secure ? 1 : 0);
+        }
+    }
+
+    /**
+     * Sets up each new connection of a pool.
+     */
+    private final class PoolHandler extends AbstractChannelPoolHandler {
+
+        private final Endpoint endpoint;
+
+        PoolHandler(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void channelCreated(Channel channel) {
+            ChannelPipeline pipeline = channel.pipeline();
+            if (this.endpoint.secure) {
+                SslHandler sslHandler = sslContext.newHandler(channel.alloc(), this.endpoint.host, this.endpoint.port);
+                // The engine only checks that the certificate chains to a trusted root; HTTPS also needs it to name
+                // the host.
+                SSLEngine engine = sslHandler.engine();
+                SSLParameters parameters = engine.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(parameters);
+                pipeline.addLast(sslHandler);
+            }
+            pipeline.addLast(new IdleStateHandler(0, 0, options.getIdleTimeoutInMs(), TimeUnit.MILLISECONDS))
+                    .addLast(new HttpRequestEncoder())
+                    .addLast(new ResponseDecoder())
+                    .addLast(new ExchangeHandler());
+        }
+    }
+
+    /**
+     * Decodes responses, gathering partial messages by adding buffers to a composite rather than copying them into one
+     * buffer. The copying cumulator of {@link HttpClientCodec} may also compact its buffer in place, which would
+     * overwrite the bytes of response body buffers already handed out.
+     */
+    private static final class ResponseDecoder extends HttpResponseDecoder {
+
+        // Set by each exchange, as HttpClientCodec would from the requests it encodes.
+        boolean headRequest;
+
+        ResponseDecoder() {
+            setCumulator(ByteToMessageDecoder.COMPOSITE_CUMULATOR);
+        }
+
+        @Override
+        protected boolean isContentAlwaysEmpty(HttpMessage message) {
+            return this.headRequest || super.isContentAlwaysEmpty(message);
+        }
+    }
+
+    /**
+     * The last handler of each connection, which passes events to the exchange the connection is carrying.
+     */
+    private static final class ExchangeHandler extends ChannelInboundHandlerAdapter {
+
+        private Exchange exchange;
+
+        @Override
+        public void channelRead(ChannelHandlerContext context, Object message) {
+            try {
+                if (this.exchange != null) {
+                    this.exchange.onResponseObject((HttpObject) message);
+                }
+            } finally {
+                ReferenceCountUtil.release(message);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext context) {
+            if (this.exchange != null) {
+                this.exchange.onReadComplete();
+            }
+            context.fireChannelReadComplete();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext context) {
+            if (this.exchange != null && context.channel().isWritable()) {
+                this.exchange.onWritable();
+            }
+            context.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext context) {
+            if (this.exchange != null) {
+                this.exchange.fail(new IOException("The connection was closed before the response was complete."));
+            }
+            context.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
+            if (this.exchange != null) {
+                this.exchange.fail(cause);
+            }
+            context.close();
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext context, Object event) {
+            if (event instanceof IdleStateEvent) {
+                // A connection carrying a request is left alone; the retry policy's try timeout bounds the request.
+                if (this.exchange == null) {
+                    context.close();
+                }
+            } else {
+                context.fireUserEventTriggered(event);
+            }
+        }
+    }
+
+    /**
+     * One request and its response on a connection. Except for the {@link Subscriber} methods, which hop to it, all
+     * of its methods run on the connection's event loop.
+     */
+    private static final class Exchange implements Subscriber<ByteBuffer> {
+
+        private final HttpRequest request;
+
+        private final SingleEmitter<HttpResponse> emitter;
+
+        private final Channel channel;
+
+        private final FixedChannelPool pool;
+
+        private final ExchangeHandler handler;
+
+        private final ChannelFutureListener failOnWriteError = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    fail(future.cause());
+                }
+            }
+        };
+
+        /*
+         A file region is written without waiting for it to be read, so the request only counts as sent once the
+         writes complete. Until then, a response ends the exchange as one that came before the request was sent.
+         */
+        private final ChannelFutureListener onFileBodySent = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    fail(future.cause());
+                } else if (!done) {
+                    requestSent = true;
+                    if (responseComplete) {
+                        finish();
+                    }
+                }
+            }
+        };
+
+        private Subscription requestBody;
+
+        private FileRegionBody fileBody;
+
+        private long filePosition;
+
+        private boolean awaitingWritability;
+
+        private boolean requestSent;
+
+        private UnicastProcessor<ByteBuffer> responseBody;
+
+        /*
+         The buffers of the response body requested but not yet emitted. A read can emit more buffers than were
+         requested, leaving this negative until the processor's queue is drained.
+         */
+        private long responseDemand;
+
+        // Read by the emitter's cancellable, which may run on another thread.
+        private volatile boolean responseStarted;
+
+        private boolean responseComplete;
+
+        private boolean keepAlive;
+
+        private boolean done;
+
+        Exchange(HttpRequest request, SingleEmitter<HttpResponse> emitter, Channel channel, FixedChannelPool pool) {
+            this.request = request;
+            this.emitter = emitter;
+            this.channel = channel;
+            this.pool = pool;
+            this.handler = channel.pipeline().get(ExchangeHandler.class);
+        }
+
+        void start() {
+            this.handler.exchange = this;
+            this.emitter.setCancellable(new Cancellable() {
+                @Override
+                public void cancel() {
+                    // The emitter is also disposed after it emits the response, which must not end the exchange.
+                    if (!responseStarted) {
+                        onEventLoop(new Runnable() {
+                            @Override
+                            public void run() {
+                                fail(new CancellationException("The request was cancelled."));
+                            }
+                        });
+                    }
+                }
+            });
+
+            // The connection is read from only while the response is awaited or its body is requested.
+            this.channel.config().setAutoRead(false);
+            this.channel.read();
+
+            URL url = this.request.url();
+            String target = url.getFile().isEmpty() ? "/" : url.getFile();
+            DefaultHttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1,
+                    HttpMethod.valueOf(this.request.httpMethod().toString()), target);
+            this.channel.pipeline().get(ResponseDecoder.class).headRequest = head.method() == HttpMethod.HEAD;
+            for (HttpHeader header : this.request.headers()) {
+                head.headers().add(header.name(), header.value());
+            }
+            head.headers().set(HttpHeaderNames.HOST,
+                    url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort());
+
+            Flowable<ByteBuffer> body = this.request.body();
+            if (body instanceof FileRegionBody) {
+                this.fileBody = (FileRegionBody) body;
+                this.filePosition = this.fileBody.getOffset();
+                if (!head.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+                    head.headers().set(HttpHeaderNames.CONTENT_LENGTH, this.fileBody.getCount());
+                }
+                this.channel.write(head).addListener(this.failOnWriteError);
+                if (this.channel.pipeline().get(SslHandler.class) == null) {
+                    sendFileRegion();
+                } else {
+                    writeFileChunks();
+                }
+            } else if (body == null) {
+                if (!head.headers().contains(HttpHeaderNames.CONTENT_LENGTH)
+                        && (head.method() == HttpMethod.PUT || head.method() == HttpMethod.POST)) {
+                    head.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                }
+                this.channel.write(head).addListener(this.failOnWriteError);
+                this.channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(this.failOnWriteError);
+                this.requestSent = true;
+            } else {
+                if (!head.headers().contains(HttpHeaderNames.CONTENT_LENGTH)) {
+                    HttpUtil.setTransferEncodingChunked(head, true);
+                }
+                this.channel.write(head).addListener(this.failOnWriteError);
+                body.subscribe(this);
+            }
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            onEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if (done) {
+                        subscription.cancel();
+                        return;
+                    }
+                    requestBody = subscription;
+                    subscription.request(1);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final ByteBuffer buffer) {
+            onEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if (done) {
+                        return;
+                    }
+                    // An empty chunk would end a chunked body early.
+                    if (buffer.hasRemaining()) {
+                        channel.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(buffer)))
+                                .addListener(failOnWriteError);
+                    }
+                    if (channel.isWritable()) {
+                        requestBody.request(1);
+                    } else {
+                        awaitingWritability = true;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            onEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    fail(throwable);
+                }
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            onEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if (done) {
+                        return;
+                    }
+                    channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(failOnWriteError);
+                    requestSent = true;
+                    if (responseComplete) {
+                        finish();
+                    }
+                }
+            });
+        }
+
+        void onReadComplete() {
+            if (!this.done && (!this.responseStarted || this.responseDemand > 0)) {
+                this.channel.read();
+            }
+        }
+
+        private void onResponseBodyRequest(long n) {
+            if (this.done) {
+                return;
+            }
+            this.responseDemand = this.responseDemand + n < this.responseDemand
+                    ? Long.MAX_VALUE : this.responseDemand + n;
+            if (this.responseDemand > 0) {
+                this.channel.read();
+            }
+        }
+
+        void onWritable() {
+            if (this.awaitingWritability && !this.done) {
+                this.awaitingWritability = false;
+                if (this.fileBody != null) {
+                    writeFileChunks();
+                } else {
+                    this.requestBody.request(1);
+                }
+            }
+        }
+
+        /*
+         Hands the whole region to the transport, which sends it with sendfile. DefaultFileRegion closes its file when
+         it is released, so it is retained once more than the write releases it, leaving the file open.
+         */
+        private void sendFileRegion() {
+            FileRegion region = new DefaultFileRegion(this.fileBody.getFile(), this.fileBody.getOffset(),
+                    this.fileBody.getCount());
+            this.channel.write(region.retain()).addListener(this.failOnWriteError);
+            this.channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(this.onFileBodySent);
+        }
+
+        /*
+         Reads the region into direct buffers, which the TLS engine encrypts from without another copy, one chunk at a
+         time until the connection stops being writable. The reads block, so they run on the I/O scheduler and each
+         chunk is handed back to the event loop to write; a chunk is read while the one before it is encrypted and
+         sent. A ChunkedWriteHandler with a ChunkedNioFile would save the hop, but it reads on the event loop, which
+         stalls every other connection sharing it for as long as the disk takes.
+         */
+        private void writeFileChunks() {
+            final long end = this.fileBody.getOffset() + this.fileBody.getCount();
+            if (this.filePosition >= end) {
+                this.channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(this.onFileBodySent);
+                return;
+            }
+            final FileChannel file = this.fileBody.getFile();
+            final long position = this.filePosition;
+            final int length = (int) Math.min(FileRegionBody.CHUNK_SIZE, end - position);
+            Schedulers.io().scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    final ByteBuf chunk = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+                    try {
+                        while (chunk.isWritable()) {
+                            if (chunk.writeBytes(file, position + chunk.readableBytes(), chunk.writableBytes()) < 0) {
+                                throw new EOFException("The file ended before the end of the region.");
+                            }
+                        }
+                    } catch (final IOException e) {
+                        chunk.release();
+                        onEventLoop(new Runnable() {
+                            @Override
+                            public void run() {
+                                fail(e);
+                            }
+                        });
+                        return;
+                    }
+                    onEventLoop(new Runnable() {
+                        @Override
+                        public void run() {
+                            onFileChunkRead(chunk);
+                        }
+                    });
+                }
+            });
+        }
+
+        private void onFileChunkRead(ByteBuf chunk) {
+            if (this.done) {
+                chunk.release();
+                return;
+            }
+            this.filePosition += chunk.readableBytes();
+            this.channel.writeAndFlush(new DefaultHttpContent(chunk)).addListener(this.failOnWriteError);
+            if (this.channel.isWritable()) {
+                writeFileChunks();
+            } else {
+                this.awaitingWritability = true;
+            }
+        }
+
+        void onResponseObject(HttpObject message) {
+            if (this.done) {
+                return;
+            }
+            if (message.decoderResult().isFailure()) {
+                fail(message.decoderResult().cause());
+                return;
+            }
+            if (message instanceof io.netty.handler.codec.http.HttpResponse) {
+                io.netty.handler.codec.http.HttpResponse head = (io.netty.handler.codec.http.HttpResponse) message;
+                this.keepAlive = HttpUtil.isKeepAlive(head);
+                this.responseBody = UnicastProcessor.create();
+                this.responseStarted = true;
+                this.emitter.onSuccess(new NettyResponse(head, this.responseBody.doOnRequest(new LongConsumer() {
+                    @Override
+                    public void accept(final long n) {
+                        onEventLoop(new Runnable() {
+                            @Override
+                            public void run() {
+                                onResponseBodyRequest(n);
+                            }
+                        });
+                    }
+                }).doOnCancel(new Action() {
+                    @Override
+                    public void run() {
+                        onEventLoop(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!responseComplete) {
+                                    fail(new CancellationException("The response body was cancelled."));
+                                }
+                            }
+                        });
+                    }
+                })));
+            }
+            if (message instanceof HttpContent) {
+                ByteBuf content = ((HttpContent) message).content();
+                if (content.isReadable()) {
+                    // The content is released after this returns, but its memory is never reused; see ALLOCATOR.
+                    if (this.responseDemand != Long.MAX_VALUE) {
+                        this.responseDemand--;
+                    }
+                    this.responseBody.onNext(content.nioBuffer());
+                }
+                if (message instanceof LastHttpContent) {
+                    this.responseComplete = true;
+                    this.responseBody.onComplete();
+                    if (this.requestSent) {
+                        finish();
+                    } else {
+                        // The service answered before the whole body was sent, which leaves the connection unusable.
+                        this.keepAlive = false;
+                        if (this.requestBody != null) {
+                            this.requestBody.cancel();
+                        }
+                        finish();
+                    }
+                }
+            }
+        }
+
+        void fail(Throwable throwable) {
+            if (this.done) {
+                return;
+            }
+            this.done = true;
+            this.handler.exchange = null;
+            if (this.requestBody != null) {
+                this.requestBody.cancel();
+            }
+            if (this.responseStarted) {
+                this.responseBody.onError(throwable);
+            } else {
+                this.emitter.tryOnError(throwable);
+            }
+            this.channel.close();
+            this.pool.release(this.channel);
+        }
+
+        private void finish() {
+            this.done = true;
+            this.handler.exchange = null;
+            if (!this.keepAlive) {
+                this.channel.close();
+            } else {
+                // An idle connection keeps reading, so that it notices when the service closes it.
+                this.channel.config().setAutoRead(true);
+            }
+            this.pool.release(this.channel);
+        }
+
+        private void onEventLoop(Runnable task) {
+            if (this.channel.eventLoop().inEventLoop()) {
+                task.run();
+            } else {
+                this.channel.eventLoop().execute(task);
+            }
+        }
+    }
+
+    /**
+     * A response whose body is emitted as it arrives. The body can be subscribed to once.
+     */
+    private static final class NettyResponse extends HttpResponse {
+
+        private final int statusCode;
+
+        private final HttpHeaders headers;
+
+        private final Flowable<ByteBuffer> body;
+
+        NettyResponse(io.netty.handler.codec.http.HttpResponse head, Flowable<ByteBuffer> body) {
+            this.statusCode = head.status().code();
+            this.headers = new HttpHeaders();
+            for (Map.Entry<String, String> header : head.headers()) {
+                this.headers.set(header.getKey(), header.getValue());
+            }
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return this.statusCode;
+        }
+
+        @Override
+        public String headerValue(String headerName) {
+            return this.headers.value(headerName);
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return this.headers;
+        }
+
+        @Override
+        public Flowable<ByteBuffer> body() {
+            return this.body;
+        }
+
+        @Override
+        public Single<byte[]> bodyAsByteArray() {
+            return this.body.collect(new Callable<ByteArrayOutputStream>() {
+                @Override
+                public ByteArrayOutputStream call() {
+                    return new ByteArrayOutputStream();
+                }
+            }, new BiConsumer<ByteArrayOutputStream, ByteBuffer>() {
+                @Override
+                public void accept(ByteArrayOutputStream stream, ByteBuffer buffer) {
+                    stream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                }
+            }).map(new Function<ByteArrayOutputStream, byte[]>() {
+                @Override
+                public byte[] apply(ByteArrayOutputStream stream) {
+                    return stream.toByteArray();
+                }
+            });
+        }
+
+        @Override
+        public Single<String> bodyAsString() {
+            return bodyAsByteArray().map(new Function<byte[], String>() {
+                @Override
+                public String apply(byte[] bytes) {
+                    return new String(bytes, UTF8);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resolves host names with the JVM's resolver, as Netty does by default, and reuses the result for a fixed time.
+     * Like the default, it blocks the event loop while it resolves a name, which the cache makes rare.
+     */
+    static class CachingResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+        private final long ttlInNanos;
+
+        private final ConcurrentHashMap<String, ResolvedHost> cache = new ConcurrentHashMap<>();
+
+        CachingResolverGroup(long ttlInMs) {
+            this.ttlInNanos = TimeUnit.MILLISECONDS.toNanos(ttlInMs);
+        }
+
+        @Override
+        protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+            return new InetNameResolver(executor) {
+                @Override
+                protected void doResolve(String host, Promise<InetAddress> promise) {
+                    try {
+                        promise.setSuccess(lookUp(host)[0]);
+                    } catch (IOException e) {
+                        promise.setFailure(e);
+                    }
+                }
+
+                @Override
+                protected void doResolveAll(String host, Promise<List<InetAddress>> promise) {
+                    try {
+                        promise.setSuccess(Arrays.asList(lookUp(host)));
+                    } catch (IOException e) {
+                        promise.setFailure(e);
+                    }
+                }
+            }.asAddressResolver();
+        }
+
+        InetAddress[] lookUp(String host) throws IOException {
+            long now = System.nanoTime();
+            ResolvedHost resolved = this.cache.get(host);
+            if (resolved == null || now - resolved.resolvedAtInNanos >= this.ttlInNanos) {
+                // Concurrent misses may resolve the same name more than once, which is harmless.
+                resolved = new ResolvedHost(resolve(host), now);
+                if (this.ttlInNanos > 0) {
+                    this.cache.put(host, resolved);
+                }
+            }
+            return resolved.addresses;
+        }
+
+        /*
+         Resolves a name the cache does not hold. Tests override it to count the lookups.
+         */
+        InetAddress[] resolve(String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    }
+
+    private static final class ResolvedHost {
+
+        final InetAddress[] addresses;
+
+        final long resolvedAtInNanos;
+
+        ResolvedHost(InetAddress[] addresses, long resolvedAtInNanos) {
+            this.addresses = addresses;
+            this.resolvedAtInNanos = resolvedAtInNanos;
+        }
+    }
+
+    /**
+     * Netty's native epoll transport. Its classes are only loaded once {@link #isAvailable()} has returned true.
+     */
+    private static final class NativeTransport {
+
+        static boolean isAvailable() {
+            try {
+                Class.forName("io.netty.channel.epoll.Epoll");
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+            return Epoll.isAvailable();
+        }
+
+        static EventLoopGroup eventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        static Class<? extends Channel> channelClass() {
+            return EpollSocketChannel.class;
+        }
+    }
+}
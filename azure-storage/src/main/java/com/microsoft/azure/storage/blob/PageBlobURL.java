@@ -53,6 +53,10 @@ public final class PageBlobURL extends BlobURL {
         super( url, pipeline);
     }
 
+    PageBlobURL(StorageURL parent, String url) {
+        super(parent, url);
+    }
+
     /**
      * Creates a new {@link PageBlobURL} with the given pipeline.
      *
@@ -142,7 +146,8 @@ public final class PageBlobURL extends BlobURL {
      * @param pageRange
      *      A {@link PageRange} object. Specifies the range of bytes to be written as a page.
      * @param body
-     *      A {@link Flowable} of {@link ByteBuffer} that contains the content of the page.
+     *      A {@link Flowable} of {@link ByteBuffer} that contains the content of the page. Pass a
+     *      {@link FileRegionBody} to upload part of a file without copying it through the heap.
      * @param accessConditions
      *      A {@link BlobAccessConditions} object that specifies under which conditions the operation should
      *      complete.
@@ -156,7 +161,7 @@ public final class PageBlobURL extends BlobURL {
         if (pageRange == null) {
             // Throwing is preferred to Single.error because this will error out immediately instead of waiting until
             // subscription.
-            new IllegalArgumentException("pageRange cannot be null.");
+            throw new IllegalArgumentException("pageRange cannot be null.");
         }
         String pageRangeStr = this.pageRangeToString(pageRange);
 
@@ -0,0 +1,426 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.ClearRange;
+import com.microsoft.azure.storage.models.PageList;
+import com.microsoft.azure.storage.models.PageRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of byte ranges, such as the valid or cleared pages of a page blob, held as sorted, disjoint, non-adjacent
+ * ranges in a single array of primitive longs. This takes 16 bytes per range, so even the range map of a heavily
+ * fragmented disk stays small, and set operations run in a single pass over their inputs. Ranges are exposed with
+ * inclusive ends, as in {@link PageRange}.
+ * NOTE: Instances of this class are immutable.
+ */
+public final class PageRangeSet {
+
+    /**
+     * A set which contains no ranges.
+     */
+    public static final PageRangeSet EMPTY = new PageRangeSet(new long[0], 0);
+
+    /*
+     The start and exclusive end of the i-th range are at 2i and 2i + 1. Only the first 2 * size elements are used, so
+     results may be built in an array sized for the worst case without copying.
+     */
+    private final long[] bounds;
+
+    private final int size;
+
+    private PageRangeSet(long[] bounds, int size) {
+        this.bounds = bounds;
+        this.size = size;
+    }
+
+    /**
+     * Creates a set holding a single range. The range need not be aligned to pages, as sets are also used to plan
+     * reads; {@link #toPageRanges(long)} checks the alignment of the ranges when they are written.
+     *
+     * @param offset
+     *      The offset of the first byte in the range.
+     * @param count
+     *      The number of bytes in the range. A count of 0 creates an empty set.
+     * @return
+     *      A {@code PageRangeSet} holding the range.
+     */
+    public static PageRangeSet of(long offset, long count) {
+        if (offset < 0 || count < 0) {
+            throw new IllegalArgumentException("The offset and count must be greater than or equal to 0.");
+        }
+        return count == 0 ? EMPTY : new PageRangeSet(new long[]{offset, offset + count}, 1);
+    }
+
+    /**
+     * Creates a set from the valid page ranges of a {@link PageList}.
+     *
+     * @param pageList
+     *      The {@link PageList} returned from getPageRanges or getPageRangesDiff.
+     * @return
+     *      A {@code PageRangeSet} holding the union of the page ranges.
+     */
+    public static PageRangeSet fromPageRanges(PageList pageList) {
+        List<PageRange> pageRanges = pageList == null ? null : pageList.pageRange();
+        if (pageRanges == null || pageRanges.isEmpty()) {
+            return EMPTY;
+        }
+        long[] starts = new long[pageRanges.size()];
+        long[] ends = new long[pageRanges.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = pageRanges.get(i).start();
+            ends[i] = pageRanges.get(i).end() + 1;
+        }
+        return normalize(starts, ends);
+    }
+
+    /**
+     * Creates a set from the cleared ranges of a {@link PageList}.
+     *
+     * @param pageList
+     *      The {@link PageList} returned from getPageRangesDiff.
+     * @return
+     *      A {@code PageRangeSet} holding the union of the cleared ranges.
+     */
+    public static PageRangeSet fromClearRanges(PageList pageList) {
+        List<ClearRange> clearRanges = pageList == null ? null : pageList.clearRange();
+        if (clearRanges == null || clearRanges.isEmpty()) {
+            return EMPTY;
+        }
+        long[] starts = new long[clearRanges.size()];
+        long[] ends = new long[clearRanges.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = clearRanges.get(i).start();
+            ends[i] = clearRanges.get(i).end() + 1;
+        }
+        return normalize(starts, ends);
+    }
+
+    /*
+     Sorting the starts and the ends independently preserves the union of the ranges: a point is covered exactly when
+     more ranges start at or before it than end at or before it. So there is a gap between the i-th smallest end and
+     the (i+1)-th smallest start exactly when that start lies beyond that end, and the merged ranges fall between those
+     gaps.
+     */
+    private static PageRangeSet normalize(long[] starts, long[] ends) {
+        Arrays.sort(starts);
+        Arrays.sort(ends);
+        long[] bounds = new long[starts.length * 2];
+        int size = 0;
+        int first = 0;
+        for (int i = 1; i <= starts.length; i++) {
+            if (i == starts.length || starts[i] > ends[i - 1]) {
+                if (ends[i - 1] > starts[first]) {
+                    bounds[2 * size] = starts[first];
+                    bounds[2 * size + 1] = ends[i - 1];
+                    size++;
+                }
+                first = i;
+            }
+        }
+        return new PageRangeSet(bounds, size);
+    }
+
+    /**
+     * @return
+     *      The number of ranges in the set.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return
+     *      {@code true} if the set holds no ranges.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param index
+     *      The index of the range, from 0 to {@link #size()} - 1.
+     * @return
+     *      The offset of the first byte of the range.
+     */
+    public long start(int index) {
+        Utility.assertInBounds("index", index, 0, this.size - 1);
+        return this.bounds[2 * index];
+    }
+
+    /**
+     * @param index
+     *      The index of the range, from 0 to {@link #size()} - 1.
+     * @return
+     *      The offset of the last byte of the range.
+     */
+    public long end(int index) {
+        Utility.assertInBounds("index", index, 0, this.size - 1);
+        return this.bounds[2 * index + 1] - 1;
+    }
+
+    /**
+     * @return
+     *      The total number of bytes covered by the set.
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (int i = 0; i < this.size; i++) {
+            total += this.bounds[2 * i + 1] - this.bounds[2 * i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the set of bytes which are in this set, the other set, or both.
+     *
+     * @param other
+     *      The set to combine with this one.
+     * @return
+     *      A {@code PageRangeSet} holding the union.
+     */
+    public PageRangeSet union(PageRangeSet other) {
+        Utility.assertNotNull("other", other);
+        long[] result = new long[2 * (this.size + other.size)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < this.size || j < other.size) {
+            // Take whichever range starts first and fold in every range from either set that touches it.
+            long start;
+            long end;
+            if (j == other.size || (i < this.size && this.bounds[2 * i] <= other.bounds[2 * j])) {
+                start = this.bounds[2 * i];
+                end = this.bounds[2 * i + 1];
+                i++;
+            } else {
+                start = other.bounds[2 * j];
+                end = other.bounds[2 * j + 1];
+                j++;
+            }
+            while (true) {
+                if (i < this.size && this.bounds[2 * i] <= end) {
+                    end = Math.max(end, this.bounds[2 * i + 1]);
+                    i++;
+                } else if (j < other.size && other.bounds[2 * j] <= end) {
+                    end = Math.max(end, other.bounds[2 * j + 1]);
+                    j++;
+                } else {
+                    break;
+                }
+            }
+            result[2 * size] = start;
+            result[2 * size + 1] = end;
+            size++;
+        }
+        return new PageRangeSet(result, size);
+    }
+
+    /**
+     * Returns the set of bytes which are in both this set and the other set.
+     *
+     * @param other
+     *      The set to intersect with this one.
+     * @return
+     *      A {@code PageRangeSet} holding the intersection.
+     */
+    public PageRangeSet intersection(PageRangeSet other) {
+        Utility.assertNotNull("other", other);
+        long[] result = new long[2 * (this.size + other.size)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < this.size && j < other.size) {
+            long start = Math.max(this.bounds[2 * i], other.bounds[2 * j]);
+            long end = Math.min(this.bounds[2 * i + 1], other.bounds[2 * j + 1]);
+            if (start < end) {
+                result[2 * size] = start;
+                result[2 * size + 1] = end;
+                size++;
+            }
+            // Whichever range ends first cannot overlap anything further in the other set.
+            if (this.bounds[2 * i + 1] < other.bounds[2 * j + 1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new PageRangeSet(result, size);
+    }
+
+    /**
+     * Returns the set of bytes which are in this set but not in the other set.
+     *
+     * @param other
+     *      The set to remove from this one.
+     * @return
+     *      A {@code PageRangeSet} holding the difference.
+     */
+    public PageRangeSet difference(PageRangeSet other) {
+        Utility.assertNotNull("other", other);
+        long[] result = new long[2 * (this.size + other.size)];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < this.size; i++) {
+            long start = this.bounds[2 * i];
+            long end = this.bounds[2 * i + 1];
+            // Skip the ranges of the other set which end before this range starts.
+            while (j < other.size && other.bounds[2 * j + 1] <= start) {
+                j++;
+            }
+            int k = j;
+            while (k < other.size && other.bounds[2 * k] < end) {
+                if (other.bounds[2 * k] > start) {
+                    result[2 * size] = start;
+                    result[2 * size + 1] = other.bounds[2 * k];
+                    size++;
+                }
+                start = Math.max(start, other.bounds[2 * k + 1]);
+                k++;
+            }
+            if (start < end) {
+                result[2 * size] = start;
+                result[2 * size + 1] = end;
+                size++;
+            }
+        }
+        return new PageRangeSet(result, size);
+    }
+
+    /**
+     * Merges ranges which are separated by no more than the given number of bytes. Reading or writing the small gaps
+     * between ranges is often cheaper than making a separate request for each range.
+     *
+     * @param maxGap
+     *      The largest gap, in bytes, to close.
+     * @return
+     *      A {@code PageRangeSet} in which no two ranges are within {@code maxGap} bytes of each other.
+     */
+    public PageRangeSet coalesce(long maxGap) {
+        Utility.assertInBounds("maxGap", maxGap, 0, Long.MAX_VALUE);
+        if (this.size == 0) {
+            return this;
+        }
+        long[] result = new long[2 * this.size];
+        int size = 0;
+        result[0] = this.bounds[0];
+        result[1] = this.bounds[1];
+        for (int i = 1; i < this.size; i++) {
+            if (this.bounds[2 * i] - result[2 * size + 1] <= maxGap) {
+                result[2 * size + 1] = this.bounds[2 * i + 1];
+            } else {
+                size++;
+                result[2 * size] = this.bounds[2 * i];
+                result[2 * size + 1] = this.bounds[2 * i + 1];
+            }
+        }
+        return new PageRangeSet(result, size + 1);
+    }
+
+    /**
+     * Converts the set into a list of ranges to read, splitting any range longer than the given length.
+     *
+     * @param maxCount
+     *      The maximum number of bytes in each {@link BlobRange}.
+     * @return
+     *      A {@code List} of {@link BlobRange} in ascending order.
+     */
+    public List<BlobRange> toBlobRanges(long maxCount) {
+        Utility.assertInBounds("maxCount", maxCount, 1, Long.MAX_VALUE);
+        List<BlobRange> ranges = new ArrayList<BlobRange>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            for (long offset = this.bounds[2 * i]; offset < this.bounds[2 * i + 1]; offset += maxCount) {
+                ranges.add(new BlobRange(offset, Math.min(maxCount, this.bounds[2 * i + 1] - offset)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Converts the set into a list of page ranges to write or clear, splitting any range longer than the given length.
+     * Every range in the set must start and end on a multiple of {@link PageBlobURL#PAGE_BYTES}, as the service only
+     * writes and clears whole pages.
+     *
+     * @param maxCount
+     *      The maximum number of bytes in each {@link PageRange}. Must be a multiple of {@link PageBlobURL#PAGE_BYTES}.
+     * @return
+     *      A {@code List} of {@link PageRange} in ascending order.
+     * @throws IllegalArgumentException
+     *      If a range in the set is not aligned to {@link PageBlobURL#PAGE_BYTES}.
+     */
+    public List<PageRange> toPageRanges(long maxCount) {
+        Utility.assertInBounds("maxCount", maxCount, PageBlobURL.PAGE_BYTES, Long.MAX_VALUE);
+        if (maxCount % PageBlobURL.PAGE_BYTES != 0) {
+            throw new IllegalArgumentException("maxCount must be a multiple of PageBlobURL.PAGE_BYTES.");
+        }
+        List<PageRange> ranges = new ArrayList<PageRange>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            if (this.bounds[2 * i] % PageBlobURL.PAGE_BYTES != 0
+                    || this.bounds[2 * i + 1] % PageBlobURL.PAGE_BYTES != 0) {
+                throw new IllegalArgumentException("The range " + this.bounds[2 * i] + "-"
+                        + (this.bounds[2 * i + 1] - 1) + " is not aligned to PageBlobURL.PAGE_BYTES.");
+            }
+            for (long offset = this.bounds[2 * i]; offset < this.bounds[2 * i + 1]; offset += maxCount) {
+                ranges.add(new PageRange().withStart(offset)
+                        .withEnd(Math.min(offset + maxCount, this.bounds[2 * i + 1]) - 1));
+            }
+        }
+        return ranges;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PageRangeSet)) {
+            return false;
+        }
+        PageRangeSet other = (PageRangeSet) obj;
+        if (this.size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < 2 * this.size; i++) {
+            if (this.bounds[i] != other.bounds[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < 2 * this.size; i++) {
+            hash = 31 * hash + (int) (this.bounds[i] ^ (this.bounds[i] >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(this.bounds[2 * i]).append('-').append(this.bounds[2 * i + 1] - 1);
+        }
+        return sb.append(']').toString();
+    }
+}
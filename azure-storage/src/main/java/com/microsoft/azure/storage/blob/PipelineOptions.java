@@ -31,10 +31,17 @@ public final class PipelineOptions {
      */
 
     /**
-     * Specifies which HttpClient to use to send the requests.
+     * Specifies which HttpClient to use to send the requests. If null, a client configured by
+     * {@link #transportOptions} is used when those are set, and the runtime's default client otherwise.
      */
     public HttpClient client;
 
+    /**
+     * If set and {@link #client} is null, requests are sent with a Netty client configured by these options, such as
+     * {@link TransportOptions#DEFAULT}. The client lives until {@link TransportOptions#close()} is called.
+     */
+    public TransportOptions transportOptions;
+
     /**
      * Specifies the logger for the pipeline.
      */
@@ -55,6 +62,19 @@ public final class PipelineOptions {
      */
     public TelemetryOptions telemetryOptions = TelemetryOptions.DEFAULT;
 
+    /**
+     * Generates the client request ID of each request. {@link RequestIDFactory#SEQUENTIAL} spares applications which
+     * send requests at high rates the contention on SecureRandom, and a tracing system can supply its own
+     * {@link IRequestIDGenerator}.
+     */
+    public IRequestIDGenerator requestIDGenerator = RequestIDFactory.RANDOM_UUID;
+
+    /**
+     * The pool of direct buffers the {@link Highlevel} transfers through the pipeline's URLs use. Pipelines may share
+     * a pool, and its statistics then cover all of them. If null, {@link ByteBufferPool#DEFAULT} is used.
+     */
+    public ByteBufferPool bufferPool = ByteBufferPool.DEFAULT;
+
     // TODO:
     public PipelineOptions() {
         this.logger = new HttpPipelineLogger() {
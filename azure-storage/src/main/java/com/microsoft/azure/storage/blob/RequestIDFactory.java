@@ -28,6 +28,44 @@ import java.util.UUID;
  */
 public final class RequestIDFactory implements RequestPolicyFactory {
 
+    /**
+     * Generates version 4 UUIDs from a random per-JVM prefix and a counter, without drawing from SecureRandom for each
+     * request. The IDs are unique but predictable. Applications which send requests at high rates can opt into it
+     * through {@link PipelineOptions#requestIDGenerator}.
+     */
+    public static final IRequestIDGenerator SEQUENTIAL = SequentialRequestIDGenerator.INSTANCE;
+
+    /**
+     * Generates each ID with {@link UUID#randomUUID()}, which contends on a shared SecureRandom at high request rates.
+     * This is the default.
+     */
+    public static final IRequestIDGenerator RANDOM_UUID = new IRequestIDGenerator() {
+        @Override
+        public String generateRequestID() {
+            return UUID.randomUUID().toString();
+        }
+    };
+
+    private final IRequestIDGenerator generator;
+
+    /**
+     * Creates a factory which generates IDs with {@link #RANDOM_UUID}.
+     */
+    public RequestIDFactory() {
+        this(null);
+    }
+
+    /**
+     * Creates a factory which generates IDs with the given generator.
+     *
+     * @param generator
+     *      An {@link IRequestIDGenerator} which generates the ID of each request. If null, {@link #RANDOM_UUID} will
+     *      be used.
+     */
+    public RequestIDFactory(IRequestIDGenerator generator) {
+        this.generator = generator == null ? RANDOM_UUID : generator;
+    }
+
     private final class RequestIDPolicy implements RequestPolicy {
         private final RequestPolicy nextPolicy;
 
@@ -47,7 +85,7 @@ public final class RequestIDFactory implements RequestPolicyFactory {
          *      A {@link Single} representing the {@link HttpResponse} that will arrive asynchronously.
          */
         public Single<HttpResponse> sendAsync(HttpRequest request) {
-            request.headers().set(Constants.HeaderConstants.CLIENT_REQUEST_ID_HEADER, UUID.randomUUID().toString());
+            request.headers().set(Constants.HeaderConstants.CLIENT_REQUEST_ID_HEADER, generator.generateRequestID());
             return nextPolicy.sendAsync(request);
         }
     }
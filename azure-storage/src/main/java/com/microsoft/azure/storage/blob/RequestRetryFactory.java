@@ -121,6 +121,10 @@ public final class RequestRetryFactory implements RequestPolicyFactory {
             // Clone the original request to ensure that each try starts with the original (unmutated) request.
             // buffer() will also reset to the beginning of the stream.
             final HttpRequest requestCopy = httpRequest.buffer();
+            if (httpRequest.body() instanceof FileRegionBody) {
+                // A file body reads its region afresh for each try, and the client only recognizes it unwrapped.
+                requestCopy.withBody(httpRequest.body());
+            }
             if(!tryingPrimary) {
                 UrlBuilder builder = UrlBuilder.parse(requestCopy.url());
                 builder.withHost(this.requestRetryOptions.getSecondaryHost());
@@ -0,0 +1,199 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches service SAS tokens so that repeated requests for the same resource and access do not recompute the
+ * signature. Tokens are keyed by the resource path, permissions, IP range and protocol, as well as by the version,
+ * identifier and response headers, since any of these changes the signature. The start and expiry times are not part
+ * of the key, but a cached token is only returned if it grants no more than was asked for and is usable now:
+ * <ul>
+ *     <li>it expires no later than the requested expiry time,</li>
+ *     <li>it starts no later than now, or than the requested start time if that is later, and</li>
+ *     <li>at least the configured fraction of the requested lifetime remains before it expires.</li>
+ * </ul>
+ * Otherwise a new token is generated with the requested signature values, and replaces the cached one. The returned
+ * token may therefore expire earlier than requested, by at most the fraction of the lifetime not required to remain.
+ * Instances are safe to use from many threads.
+ */
+public final class SASCache {
+
+    private final SharedKeyCredentials sharedKeyCredentials;
+
+    private final int maxEntries;
+
+    private final double minRemainingLifetimeFraction;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /*
+     Entries in the order they were added. Since tokens are usually minted with the same lifetime, this is also roughly
+     the order in which they go stale, so both capacity and time-based eviction take from the head. An entry which has
+     been replaced in the map stays in the queue until it reaches the head, so the queue is allowed to grow to twice
+     the capacity before it is trimmed.
+     */
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<Entry>();
+
+    private final AtomicInteger queuedCount = new AtomicInteger();
+
+    /**
+     * Creates a cache of SAS tokens signed with the given credentials.
+     *
+     * @param sharedKeyCredentials
+     *      A {@link SharedKeyCredentials} object used to sign the tokens.
+     * @param maxEntries
+     *      The maximum number of tokens to hold.
+     * @param minRemainingLifetimeFraction
+     *      The fraction of a token's lifetime, between 0 and 1, which must remain for it to be returned from the cache.
+     *      For example, 0.5 returns a token until half of its lifetime has passed.
+     */
+    public SASCache(SharedKeyCredentials sharedKeyCredentials, int maxEntries, double minRemainingLifetimeFraction) {
+        Utility.assertNotNull("sharedKeyCredentials", sharedKeyCredentials);
+        Utility.assertInBounds("maxEntries", maxEntries, 1, Integer.MAX_VALUE);
+        if (!(minRemainingLifetimeFraction >= 0 && minRemainingLifetimeFraction <= 1)) {
+            throw new IllegalArgumentException("minRemainingLifetimeFraction must be between 0 and 1.");
+        }
+        this.sharedKeyCredentials = sharedKeyCredentials;
+        this.maxEntries = maxEntries;
+        this.minRemainingLifetimeFraction = minRemainingLifetimeFraction;
+    }
+
+    /**
+     * Returns a cached token for the resource and access described by the signature values, or generates and caches a
+     * new one if no cached token is within the requested start and expiry times with enough of its lifetime
+     * remaining. Signature values without an expiry
+     * time, such as those which refer to a stored access policy, are signed without being cached.
+     *
+     * @param signatureValues
+     *      A {@link ServiceSASSignatureValues} object describing the token. The object is not referenced after the call
+     *      returns.
+     * @return
+     *      A {@link SASQueryParameters} object containing the signed query parameters.
+     */
+    public SASQueryParameters getSASQueryParameters(ServiceSASSignatureValues signatureValues) {
+        Utility.assertNotNull("signatureValues", signatureValues);
+        if (signatureValues.expiryTime == null) {
+            return signatureValues.GenerateSASQueryParameters(this.sharedKeyCredentials);
+        }
+
+        long now = System.currentTimeMillis();
+        long expiry = signatureValues.expiryTime.getTime();
+        // A token without a start time is valid as soon as it is issued.
+        long start = signatureValues.startTime == null ? Long.MIN_VALUE : signatureValues.startTime.getTime();
+        long lifetimeStart = signatureValues.startTime == null ? now : Math.min(start, now);
+        long requiredLifetime = (long) ((expiry - lifetimeStart) * this.minRemainingLifetimeFraction);
+
+        String key = getKey(signatureValues);
+        Entry entry = this.entries.get(key);
+        if (entry != null && now < entry.refreshTime && entry.expiry <= expiry
+                && entry.start <= Math.max(start, now) && entry.expiry - now >= requiredLifetime) {
+            return entry.sasQueryParameters;
+        }
+
+        SASQueryParameters sasQueryParameters = signatureValues.GenerateSASQueryParameters(this.sharedKeyCredentials);
+        long refreshTime = expiry - requiredLifetime;
+        if (refreshTime > now) {
+            entry = new Entry(key, sasQueryParameters, start, expiry, refreshTime);
+            this.entries.put(key, entry);
+            this.insertionOrder.add(entry);
+            this.queuedCount.incrementAndGet();
+        }
+        this.evict(now);
+        return sasQueryParameters;
+    }
+
+    /**
+     * Removes all tokens from the cache.
+     */
+    public void clear() {
+        this.entries.clear();
+        this.insertionOrder.clear();
+        this.queuedCount.set(0);
+    }
+
+    /**
+     * @return
+     *      The number of tokens currently held by the cache, including any which have gone stale but have not yet been
+     *      evicted.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    private void evict(long now) {
+        while (true) {
+            Entry head = this.insertionOrder.peek();
+            if (head == null) {
+                return;
+            }
+            boolean overCapacity = this.entries.size() > this.maxEntries
+                    || this.queuedCount.get() > 2 * this.maxEntries;
+            if (!overCapacity && now < head.refreshTime) {
+                return;
+            }
+
+            // Another thread may have taken the head in the meantime, in which case the entry taken here is the next
+            // oldest and is just as good a candidate.
+            Entry oldest = this.insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            this.queuedCount.decrementAndGet();
+            this.entries.remove(oldest.key, oldest);
+        }
+    }
+
+    private static String getKey(ServiceSASSignatureValues signatureValues) {
+        return Utility.join(new String[]{
+                signatureValues.containerName,
+                signatureValues.blobName,
+                signatureValues.permissions,
+                signatureValues.ipRange == null ? null : signatureValues.ipRange.toString(),
+                signatureValues.protocol == null ? null : signatureValues.protocol.toString(),
+                signatureValues.version,
+                signatureValues.identifier,
+                signatureValues.cacheControl,
+                signatureValues.contentDisposition,
+                signatureValues.contentEncoding,
+                signatureValues.contentLanguage,
+                signatureValues.contentType
+        }, '\n');
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final SASQueryParameters sasQueryParameters;
+
+        private final long start;
+
+        private final long expiry;
+
+        private final long refreshTime;
+
+        private Entry(String key, SASQueryParameters sasQueryParameters, long start, long expiry, long refreshTime) {
+            this.key = key;
+            this.sasQueryParameters = sasQueryParameters;
+            this.start = start;
+            this.expiry = expiry;
+            this.refreshTime = refreshTime;
+        }
+    }
+}
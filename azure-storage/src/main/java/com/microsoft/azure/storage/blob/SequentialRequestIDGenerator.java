@@ -0,0 +1,79 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generates version 4 UUIDs from a random prefix, drawn once per JVM, and a counter. Unlike
+ * {@link UUID#randomUUID()}, which draws from a shared SecureRandom for every ID, this takes no locks and does not
+ * consume entropy. The IDs are unique within the JVM and, through the prefix, across JVMs, but they are predictable,
+ * so they must not be used where an unguessable value is needed.
+ */
+final class SequentialRequestIDGenerator implements IRequestIDGenerator {
+
+    static final SequentialRequestIDGenerator INSTANCE = new SequentialRequestIDGenerator();
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Counters are spaced a cache line apart so that threads on different stripes do not contend.
+    private static final int STRIPE_SPACING = 8;
+
+    private final int stripeBits;
+
+    private final AtomicLongArray counters;
+
+    /*
+     "xxxxxxxx-xxxx-4xxx-y" from the random prefix, which carries the version and variant bits; the counter fills the
+     remaining "xxx-xxxxxxxxxxxx", 60 bits.
+     */
+    private final char[] prefix;
+
+    private final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            char[] buffer = new char[36];
+            System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+            buffer[23] = '-';
+            return buffer;
+        }
+    };
+
+    private SequentialRequestIDGenerator() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+        this.stripeBits = Integer.numberOfTrailingZeros(stripes);
+        this.counters = new AtomicLongArray(stripes * STRIPE_SPACING);
+        this.prefix = UUID.randomUUID().toString().substring(0, 20).toCharArray();
+    }
+
+    @Override
+    public String generateRequestID() {
+        int stripe = (int) Thread.currentThread().getId() & ((1 << this.stripeBits) - 1);
+        // Each stripe counts in its own residue class, so the values of different stripes never collide.
+        long value = (this.counters.getAndIncrement(stripe * STRIPE_SPACING) << this.stripeBits) | stripe;
+
+        char[] buffer = this.buffers.get();
+        for (int i = 35; i >= 24; i--) {
+            buffer[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        for (int i = 22; i >= 20; i--) {
+            buffer[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(buffer);
+    }
+}
@@ -132,8 +132,8 @@ public final class ServiceSASSignatureValues {
                  this.expiryTime == null ? "" : Utility.ISO8601UTCDateFormat.format(this.expiryTime),
                  getCanonicalName(sharedKeyCredentials.getAccountName()),
                  this.identifier,
-                 this.ipRange.toString(),
-                 this.protocol.toString(),
+                 this.ipRange == null ? null : this.ipRange.toString(),
+                 this.protocol == null ? null : this.protocol.toString(),
                  this.version,
                  this.cacheControl,
                  this.contentDisposition,
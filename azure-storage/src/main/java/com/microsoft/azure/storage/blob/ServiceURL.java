@@ -17,10 +17,18 @@ package com.microsoft.azure.storage.blob;
 import com.microsoft.azure.storage.models.*;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.http.HttpPipeline;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.UnicastProcessor;
+import org.reactivestreams.Publisher;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Represents a URL to an Azure Storage Blob Service.
@@ -32,12 +40,7 @@ public final class ServiceURL extends StorageURL {
     }
 
     public ContainerURL createContainerURL(String containerName) {
-        try {
-            return new ContainerURL(StorageURL.appendToURLPath(new URL(super.storageClient.url()), containerName),
-                    super.storageClient.httpPipeline());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
+        return new ContainerURL(this, StorageURL.appendToURLPath(super.storageClient.url(), containerName));
     }
 
     /**
@@ -80,6 +83,95 @@ public final class ServiceURL extends StorageURL {
                 options.getMaxResults(), options.getDetails().toIncludeType(), null, null);
     }
 
+    /**
+     * Returns every container in the account, following the NextMarker of each segment until the listing is
+     * exhausted. The request for the next segment is issued as soon as the current segment is handed downstream, so
+     * one segment is always in flight while the previous one is being consumed. Further segments are only requested
+     * as the subscriber requests more containers.
+     *
+     * @param options
+     *      A {@link ListContainersOptions} which specifies what data should be returned by the service.
+     * @return
+     *      A {@link Flowable} which emits each {@link Container} in lexicographic order.
+     */
+    public Flowable<Container> listContainersAll(final ListContainersOptions options) {
+        return Flowable.defer(new Callable<Publisher<Container>>() {
+            @Override
+            public Publisher<Container> call() throws Exception {
+                // The NextMarker of each segment is fed back in to drive the request for the following segment. An
+                // empty string stands in for the null marker of the first request.
+                final UnicastProcessor<String> markers = UnicastProcessor.create();
+                markers.onNext("");
+                return markers
+                        .concatMap(new Function<String, Publisher<ListContainersResponse>>() {
+                            @Override
+                            public Publisher<ListContainersResponse> apply(String marker) throws Exception {
+                                return listContainers(marker.isEmpty() ? null : marker, options)
+                                        .map(new Function<RestResponse<ServiceListContainersHeaders,
+                                                ListContainersResponse>, ListContainersResponse>() {
+                                            @Override
+                                            public ListContainersResponse apply(
+                                                    RestResponse<ServiceListContainersHeaders,
+                                                            ListContainersResponse> response) throws Exception {
+                                                return response.body();
+                                            }
+                                        })
+                                        .toFlowable();
+                            }
+                        })
+                        .doOnNext(new Consumer<ListContainersResponse>() {
+                            @Override
+                            public void accept(ListContainersResponse response) throws Exception {
+                                if (Utility.isNullOrEmpty(response.nextMarker())) {
+                                    markers.onComplete();
+                                } else {
+                                    markers.onNext(response.nextMarker());
+                                }
+                            }
+                        })
+                        // A prefetch of one segment means the next segment is only requested once the containers of
+                        // the current one have all been emitted.
+                        .concatMapIterable(new Function<ListContainersResponse, Iterable<Container>>() {
+                            @Override
+                            public Iterable<Container> apply(ListContainersResponse response) throws Exception {
+                                List<Container> containers = response.containers();
+                                return containers == null ? Collections.<Container>emptyList() : containers;
+                            }
+                        }, 1);
+            }
+        });
+    }
+
+    /**
+     * Lists every container in the account as with {@link #listContainersAll(ListContainersOptions)} and maps each of
+     * them to a stream of work, running the work for at most {@code maxConcurrency} containers at a time. Items from
+     * different containers are interleaved in the order they are produced. For example, an account-wide sweep of all
+     * blobs may be expressed by mapping each {@link ContainerURL} to {@link ContainerURL#listBlobsAll(ListBlobsOptions)}.
+     *
+     * @param options
+     *      A {@link ListContainersOptions} which specifies what data should be returned by the service.
+     * @param mapper
+     *      A function which returns the work to perform for a given container.
+     * @param maxConcurrency
+     *      The maximum number of containers whose work may be in progress at once.
+     * @param <T>
+     *      The type of the items produced for each container.
+     * @return
+     *      A {@link Flowable} which emits the items produced for all of the containers.
+     */
+    public <T> Flowable<T> flatMapContainers(ListContainersOptions options,
+            final Function<? super ContainerURL, ? extends Publisher<? extends T>> mapper, int maxConcurrency) {
+        Utility.assertNotNull("mapper", mapper);
+        Utility.assertInBounds("maxConcurrency", maxConcurrency, 1, Integer.MAX_VALUE);
+        return this.listContainersAll(options)
+                .flatMap(new Function<Container, Publisher<? extends T>>() {
+                    @Override
+                    public Publisher<? extends T> apply(Container container) throws Exception {
+                        return mapper.apply(createContainerURL(container.name()));
+                    }
+                }, maxConcurrency);
+    }
+
     /**
      * Gets the properties of a storage account’s Blob service. For more information, see:
      * https://docs.microsoft.com/en-us/rest/api/storageservices/get-blob-service-properties.
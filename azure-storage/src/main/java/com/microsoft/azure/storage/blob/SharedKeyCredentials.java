@@ -37,7 +37,7 @@ public final class SharedKeyCredentials implements ICredentials {
 
     private final byte[] accountKey;
 
-    private final Mac hmacSha256;
+    private final ThreadLocal<Mac> hmacSha256;
 
     /**
      * Initializes a new instance of SharedKeyCredentials contains an account's name and its primary or secondary
@@ -52,14 +52,20 @@ public final class SharedKeyCredentials implements ICredentials {
         this.accountName = accountName;
         this.accountKey = DatatypeConverter.parseBase64Binary(accountKey);
 
-        try {
-            this.hmacSha256 = Mac.getInstance("HmacSHA256");
-        }
-        catch (final NoSuchAlgorithmException e) {
-            throw new Error(e);
-        }
-
-        this.hmacSha256.init(new SecretKeySpec(this.accountKey, "HmacSHA256"));
+        // Mac instances are not thread safe, and requests are signed concurrently from many threads, so each thread
+        // gets its own. The first one is created here so that an invalid key fails construction.
+        final Mac validatedHmac = this.createHmacSha256();
+        this.hmacSha256 = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    return createHmacSha256();
+                } catch (InvalidKeyException e) {
+                    throw new Error(e); // The key was validated in the constructor.
+                }
+            }
+        };
+        this.hmacSha256.set(validatedHmac);
     }
 
     /**
@@ -274,11 +280,33 @@ public final class SharedKeyCredentials implements ICredentials {
     String computeHmac256(final String stringToSign) throws InvalidKeyException {
         try {
             byte[] utf8Bytes = stringToSign.getBytes(Constants.UTF8_CHARSET);
-            return DatatypeConverter.printBase64Binary(this.hmacSha256.doFinal(utf8Bytes));
+            return DatatypeConverter.printBase64Binary(this.hmacSha256.get().doFinal(utf8Bytes));
         }
         catch (final UnsupportedEncodingException e) {
             throw new Error(e);
         }
     }
+
+    /**
+     * Creates a new HMAC-SHA256 {@link Mac} initialized with the account key. Package-private so that callers which
+     * sign at high rates can keep their own instance per thread.
+     *
+     * @return
+     *      A {@link Mac} ready to sign with the account key.
+     * @throws InvalidKeyException
+     *      If the accountKey is not a valid Base64-encoded string.
+     */
+    Mac createHmacSha256() throws InvalidKeyException {
+        final Mac mac;
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+
+        mac.init(new SecretKeySpec(this.accountKey, "HmacSHA256"));
+        return mac;
+    }
 }
 
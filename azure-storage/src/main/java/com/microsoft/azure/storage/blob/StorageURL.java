@@ -18,11 +18,11 @@ import com.microsoft.azure.storage.implementation.StorageClientImpl;
 import com.microsoft.rest.v2.http.HttpPipeline;
 import com.microsoft.rest.v2.http.HttpRequest;
 import com.microsoft.rest.v2.http.HttpResponse;
-import com.microsoft.rest.v2.http.UrlBuilder;
 import com.microsoft.rest.v2.policy.DecodingPolicyFactory;
 import com.microsoft.rest.v2.policy.RequestPolicy;
 import com.microsoft.rest.v2.policy.RequestPolicyFactory;
 import com.microsoft.rest.v2.policy.RequestPolicyOptions;
+import io.reactivex.Completable;
 import io.reactivex.Single;
 
 import java.net.MalformedURLException;
@@ -49,6 +49,15 @@ public abstract class StorageURL {
         this.storageClient.withUrl(url.toString());
     }
 
+    /*
+     Creates a URL to another resource which shares the pipeline of parent. The client shares the REST proxies of the
+     parent's, so this costs little more than the string, which matters when a URL is created for every blob of a
+     large listing.
+     */
+    StorageURL(StorageURL parent, String url) {
+        this.storageClient = new StorageClientImpl(parent.storageClient, url);
+    }
+
     @Override
     public String toString() {
         return this.storageClient.url();
@@ -67,6 +76,34 @@ public abstract class StorageURL {
         return null;
     }
 
+    /**
+     * Opens connections to the host of this URL before they are needed, so that the first requests do not wait for
+     * name resolution, TCP connection and TLS handshakes. The connections are returned to the pool of the pipeline's
+     * HTTP client, which keeps them open until they have been idle for {@link TransportOptions#getIdleTimeoutInMs()}.
+     * This has no effect unless the pipeline was created with {@link PipelineOptions#transportOptions} and without a
+     * {@link PipelineOptions#client} of its own.
+     *
+     * @param connections
+     *      The number of connections to open, at most {@link TransportOptions#getMaxConnectionsPerHost()}.
+     *      Connections already open count towards it.
+     * @return
+     *      A {@link Completable} which completes when the connections are ready.
+     */
+    public Completable warmUp(int connections) {
+        NettyHttpClient client = NettyHttpClient.forPipeline(this.storageClient.httpPipeline());
+        if (client == null) {
+            return Completable.complete();
+        }
+        return client.warmUp(this.toURL(), connections);
+    }
+
+    /*
+     The pool of buffers for transfers through this URL's pipeline.
+     */
+    ByteBufferPool bufferPool() {
+        return ByteBufferPool.forPipeline(this.storageClient.httpPipeline());
+    }
+
     /**
      * Appends a string to the end of a URL's path (prefixing the string with a '/' if required).
      * @param baseURL
@@ -77,15 +114,33 @@ public abstract class StorageURL {
      *      A {@code String} with the name appended to the URL.
      */
     protected static URL appendToURLPath(URL baseURL, String name) throws MalformedURLException {
-        UrlBuilder url = UrlBuilder.parse(baseURL.toString());
-        if(url.path() == null) {
-            url.withPath("/"); // .path() will return null if it is empty, so we have to process separately from below.
-        }
-        else if (url.path().charAt(url.path().length() - 1) != '/') {
-            url.withPath(url.path() + '/');
+        return new URL(appendToURLPath(baseURL.toString(), name));
+    }
+
+    /**
+     * Appends a string to the end of the path of a URL held as a string, before any query, prefixing the string with
+     * a '/' if required. This avoids parsing the URL, which the URL-based overload does twice.
+     *
+     * @param baseURL
+     *      A {@code String} with an absolute URL to which the name should be appended.
+     * @param name
+     *      A {@code String} with the name to be appended.
+     * @return
+     *      A {@code String} with the name appended to the URL.
+     */
+    static String appendToURLPath(String baseURL, String name) {
+        int queryStart = baseURL.indexOf('?');
+        int pathEnd = queryStart < 0 ? baseURL.length() : queryStart;
+        int authorityStart = baseURL.indexOf("://");
+        int pathStart = baseURL.indexOf('/', authorityStart < 0 ? 0 : authorityStart + 3);
+        boolean hasTrailingSlash = pathStart >= 0 && pathStart < pathEnd && baseURL.charAt(pathEnd - 1) == '/';
+
+        StringBuilder url = new StringBuilder(baseURL.length() + name.length() + 1)
+                .append(baseURL, 0, pathEnd);
+        if (!hasTrailingSlash) {
+            url.append('/');
         }
-        url.withPath(url.path() + name);
-        return new URL(url.toString()); // TODO: modify when toURL is released.
+        return url.append(name).append(baseURL, pathEnd, baseURL.length()).toString();
     }
 
     // TODO: Move this? Not discoverable.
@@ -114,7 +169,7 @@ public abstract class StorageURL {
         // Closest to API goes first, closest to wire goes last.
         ArrayList<RequestPolicyFactory> factories = new ArrayList<>();
         factories.add(new TelemetryFactory(pipelineOptions.telemetryOptions));
-        factories.add(new RequestIDFactory());
+        factories.add(new RequestIDFactory(pipelineOptions.requestIDGenerator));
         factories.add(new RequestRetryFactory(pipelineOptions.requestRetryOptions));
         factories.add(new AddDatePolicy());
         if (!(credentials instanceof AnonymousCredentials)) {
@@ -123,8 +178,19 @@ public abstract class StorageURL {
         factories.add(new DecodingPolicyFactory());
         factories.add(new LoggingFactory(pipelineOptions.loggingOptions));
 
-        return HttpPipeline.build(pipelineOptions.client,
-                factories.toArray(new RequestPolicyFactory[factories.size()]));
+        RequestPolicyFactory[] factoryArray = factories.toArray(new RequestPolicyFactory[factories.size()]);
+        HttpPipeline pipeline;
+        if (pipelineOptions.client == null && pipelineOptions.transportOptions != null) {
+            NettyHttpClient client = NettyHttpClient.forOptions(pipelineOptions.transportOptions);
+            pipeline = HttpPipeline.build(client, factoryArray);
+            NettyHttpClient.register(pipeline, client);
+        } else {
+            pipeline = HttpPipeline.build(pipelineOptions.client, factoryArray);
+        }
+        if (pipelineOptions.bufferPool != null) {
+            ByteBufferPool.register(pipeline, pipelineOptions.bufferPool);
+        }
+        return pipeline;
     }
 
     // TODO: revisit.
@@ -0,0 +1,240 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import io.reactivex.Completable;
+
+/**
+ * Configures the Netty HTTP client {@link StorageURL#createPipeline(ICredentials, PipelineOptions)} builds when
+ * {@link PipelineOptions#transportOptions} is set and {@link PipelineOptions#client} is null. Without them, the
+ * pipeline uses the runtime's default client, with its proxy and other configuration. The defaults are sized for
+ * transfers of 10Gbps and more: enough connections per host to keep many blocks in flight, and write buffers large
+ * enough to keep a fast link busy.
+ * <p>
+ * Each {@code TransportOptions} object gets its own client, with its own event loops and connection pools, which
+ * pipelines built with the same object share. The client holds its threads and connections until {@link #close()}
+ * is called, so create the options once and reuse them rather than creating them for each pipeline.
+ */
+public final class TransportOptions {
+
+    /**
+     * An object representing the default options: up to 128 connections per host, two event loop threads per core,
+     * the native epoll transport where it is available, the operating system's socket buffer sizes, TCP_NODELAY and
+     * keep-alive on, write-buffer watermarks of 1MB and 4MB, a 10 second connect timeout, idle connections closed
+     * after 60 seconds and host names cached for 60 seconds.
+     */
+    public static final TransportOptions DEFAULT = new TransportOptions(null, null, null, null, null, null, null,
+            null, null, null, null, null);
+
+    private final int maxConnectionsPerHost;
+
+    private final int eventLoopCount;
+
+    private final boolean useNativeTransport;
+
+    private final int sendBufferBytes;
+
+    private final int receiveBufferBytes;
+
+    private final boolean tcpNoDelay;
+
+    private final boolean keepAlive;
+
+    private final int writeBufferLowWaterMark;
+
+    private final int writeBufferHighWaterMark;
+
+    private final int connectTimeoutInMs;
+
+    private final long idleTimeoutInMs;
+
+    private final long dnsCacheTtlInMs;
+
+    /**
+     * A {@link TransportOptions} object.
+     *
+     * @param maxConnectionsPerHost
+     *      The most connections open to one host at once. Requests wait for a connection when all are in use. If null,
+     *      128 will be used.
+     * @param eventLoopCount
+     *      The number of threads which perform the network I/O. If null, twice the number of processors will be used.
+     * @param useNativeTransport
+     *      Whether to use Netty's native epoll transport, which makes fewer system calls and copies, when it is on
+     *      the classpath and the platform supports it. If null, true will be used.
+     * @param sendBufferBytes
+     *      The size of each socket's send buffer (SO_SNDBUF). Setting it turns off the operating system's automatic
+     *      tuning of the buffer, which usually does better on fast links, so only set it to cap memory or to reach
+     *      past the system's limits. If null or 0, the operating system's default will be used.
+     * @param receiveBufferBytes
+     *      The size of each socket's receive buffer (SO_RCVBUF), with the same caveat as {@code sendBufferBytes}. If
+     *      null or 0, the operating system's default will be used.
+     * @param tcpNoDelay
+     *      Whether to turn off Nagle's algorithm (TCP_NODELAY), so that small requests are sent at once. If null, true
+     *      will be used.
+     * @param keepAlive
+     *      Whether to send TCP keep-alive probes on idle connections (SO_KEEPALIVE). If null, true will be used.
+     * @param writeBufferLowWaterMark
+     *      The number of bytes queued for writing on a connection below which more of a request body is read. If
+     *      null, 1MB will be used.
+     * @param writeBufferHighWaterMark
+     *      The number of bytes queued for writing on a connection above which reading the request body pauses. If
+     *      null, 4MB will be used.
+     * @param connectTimeoutInMs
+     *      The time, in milliseconds, allowed to open a connection. If null, 10000 will be used.
+     * @param idleTimeoutInMs
+     *      The time, in milliseconds, after which a pooled connection which has not been used is closed. If null,
+     *      60000 will be used.
+     * @param dnsCacheTtlInMs
+     *      The time, in milliseconds, for which the addresses a host name resolves to are reused before it is resolved
+     *      again. 0 turns this cache off, leaving only the JVM's own. If null, 60000 will be used.
+     */
+    public TransportOptions(Integer maxConnectionsPerHost, Integer eventLoopCount, Boolean useNativeTransport,
+            Integer sendBufferBytes, Integer receiveBufferBytes, Boolean tcpNoDelay, Boolean keepAlive,
+            Integer writeBufferLowWaterMark, Integer writeBufferHighWaterMark, Integer connectTimeoutInMs,
+            Long idleTimeoutInMs, Long dnsCacheTtlInMs) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost == null ? 128 : maxConnectionsPerHost;
+        this.eventLoopCount = eventLoopCount == null ? 2 * Runtime.getRuntime().availableProcessors()
+                : eventLoopCount;
+        this.useNativeTransport = useNativeTransport == null ? true : useNativeTransport;
+        this.sendBufferBytes = sendBufferBytes == null ? 0 : sendBufferBytes;
+        this.receiveBufferBytes = receiveBufferBytes == null ? 0 : receiveBufferBytes;
+        this.tcpNoDelay = tcpNoDelay == null ? true : tcpNoDelay;
+        this.keepAlive = keepAlive == null ? true : keepAlive;
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark == null ? 1024 * 1024 : writeBufferLowWaterMark;
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark == null
+                ? Math.max(4 * 1024 * 1024, this.writeBufferLowWaterMark) : writeBufferHighWaterMark;
+        this.connectTimeoutInMs = connectTimeoutInMs == null ? 10000 : connectTimeoutInMs;
+        this.idleTimeoutInMs = idleTimeoutInMs == null ? 60000 : idleTimeoutInMs;
+        this.dnsCacheTtlInMs = dnsCacheTtlInMs == null ? 60000 : dnsCacheTtlInMs;
+        Utility.assertInBounds("maxConnectionsPerHost", this.maxConnectionsPerHost, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("eventLoopCount", this.eventLoopCount, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("sendBufferBytes", this.sendBufferBytes, 0, Integer.MAX_VALUE);
+        Utility.assertInBounds("receiveBufferBytes", this.receiveBufferBytes, 0, Integer.MAX_VALUE);
+        Utility.assertInBounds("writeBufferLowWaterMark", this.writeBufferLowWaterMark, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("writeBufferHighWaterMark", this.writeBufferHighWaterMark,
+                this.writeBufferLowWaterMark, Integer.MAX_VALUE);
+        Utility.assertInBounds("connectTimeoutInMs", this.connectTimeoutInMs, 1, Integer.MAX_VALUE);
+        Utility.assertInBounds("idleTimeoutInMs", this.idleTimeoutInMs, 1, Long.MAX_VALUE);
+        Utility.assertInBounds("dnsCacheTtlInMs", this.dnsCacheTtlInMs, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Closes the client built for these options, if there is one: its connections are closed and its threads stop.
+     * Requests in progress fail, and so do requests sent afterwards through pipelines built with these options.
+     * Pipelines built with these options after this call get a new client.
+     *
+     * @return
+     *      A {@link Completable} which completes once the client's threads have stopped.
+     */
+    public Completable close() {
+        return NettyHttpClient.close(this);
+    }
+
+    /**
+     * @return
+     *      The most connections open to one host at once.
+     */
+    public int getMaxConnectionsPerHost() {
+        return this.maxConnectionsPerHost;
+    }
+
+    /**
+     * @return
+     *      The number of threads which perform the network I/O.
+     */
+    public int getEventLoopCount() {
+        return this.eventLoopCount;
+    }
+
+    /**
+     * @return
+     *      Whether the native epoll transport is used where it is available.
+     */
+    public boolean getUseNativeTransport() {
+        return this.useNativeTransport;
+    }
+
+    /**
+     * @return
+     *      The size of each socket's send buffer, or 0 for the operating system's default.
+     */
+    public int getSendBufferBytes() {
+        return this.sendBufferBytes;
+    }
+
+    /**
+     * @return
+     *      The size of each socket's receive buffer, or 0 for the operating system's default.
+     */
+    public int getReceiveBufferBytes() {
+        return this.receiveBufferBytes;
+    }
+
+    /**
+     * @return
+     *      Whether TCP_NODELAY is set.
+     */
+    public boolean getTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * @return
+     *      Whether SO_KEEPALIVE is set.
+     */
+    public boolean getKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * @return
+     *      The number of bytes queued for writing below which more of a request body is read.
+     */
+    public int getWriteBufferLowWaterMark() {
+        return this.writeBufferLowWaterMark;
+    }
+
+    /**
+     * @return
+     *      The number of bytes queued for writing above which reading the request body pauses.
+     */
+    public int getWriteBufferHighWaterMark() {
+        return this.writeBufferHighWaterMark;
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, allowed to open a connection.
+     */
+    public int getConnectTimeoutInMs() {
+        return this.connectTimeoutInMs;
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, after which an unused pooled connection is closed.
+     */
+    public long getIdleTimeoutInMs() {
+        return this.idleTimeoutInMs;
+    }
+
+    /**
+     * @return
+     *      The time, in milliseconds, for which resolved host names are reused.
+     */
+    public long getDnsCacheTtlInMs() {
+        return this.dnsCacheTtlInMs;
+    }
+}
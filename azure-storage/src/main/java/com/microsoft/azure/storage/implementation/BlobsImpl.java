@@ -30,7 +30,6 @@ import com.microsoft.azure.storage.models.DeleteSnapshotsOptionType;
 import com.microsoft.azure.storage.models.LeaseActionType;
 import com.microsoft.azure.storage.models.SequenceNumberActionType;
 import com.microsoft.rest.v2.DateTimeRfc1123;
-import com.microsoft.rest.v2.RestProxy;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.ServiceCallback;
 import com.microsoft.rest.v2.ServiceFuture;
@@ -65,12 +64,12 @@ public final class BlobsImpl implements Blobs {
     /**
      * The proxy service used to perform REST calls.
      */
-    private BlobsService service;
+    private final BlobsService service;
 
     /**
      * The service client containing this operation class.
      */
-    private StorageClientImpl client;
+    private final StorageClientImpl client;
 
     /**
      * Initializes an instance of BlobsImpl.
@@ -78,7 +77,7 @@ public final class BlobsImpl implements Blobs {
      * @param client the instance of the service client containing this operation class.
      */
     public BlobsImpl(StorageClientImpl client) {
-        this.service = RestProxy.create(BlobsService.class, client);
+        this.service = client.restProxies().get(BlobsService.class, client);
         this.client = client;
     }
 
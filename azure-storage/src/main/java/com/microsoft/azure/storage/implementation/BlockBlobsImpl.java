@@ -18,7 +18,6 @@ import com.microsoft.azure.storage.models.BlockList;
 import com.microsoft.azure.storage.models.BlockListType;
 import com.microsoft.azure.storage.models.BlockLookupList;
 import com.microsoft.rest.v2.DateTimeRfc1123;
-import com.microsoft.rest.v2.RestProxy;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.ServiceCallback;
 import com.microsoft.rest.v2.ServiceFuture;
@@ -50,12 +49,12 @@ public final class BlockBlobsImpl implements BlockBlobs {
     /**
      * The proxy service used to perform REST calls.
      */
-    private BlockBlobsService service;
+    private final BlockBlobsService service;
 
     /**
      * The service client containing this operation class.
      */
-    private StorageClientImpl client;
+    private final StorageClientImpl client;
 
     /**
      * Initializes an instance of BlockBlobsImpl.
@@ -63,7 +62,7 @@ public final class BlockBlobsImpl implements BlockBlobs {
      * @param client the instance of the service client containing this operation class.
      */
     public BlockBlobsImpl(StorageClientImpl client) {
-        this.service = RestProxy.create(BlockBlobsService.class, client);
+        this.service = client.restProxies().get(BlockBlobsService.class, client);
         this.client = client;
     }
 
@@ -27,7 +27,6 @@ import com.microsoft.azure.storage.models.PublicAccessType;
 import com.microsoft.azure.storage.models.SignedIdentifier;
 import com.microsoft.rest.v2.CollectionFormat;
 import com.microsoft.rest.v2.DateTimeRfc1123;
-import com.microsoft.rest.v2.RestProxy;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.ServiceCallback;
 import com.microsoft.rest.v2.ServiceFuture;
@@ -60,12 +59,12 @@ public final class ContainersImpl implements Containers {
     /**
      * The proxy service used to perform REST calls.
      */
-    private ContainersService service;
+    private final ContainersService service;
 
     /**
      * The service client containing this operation class.
      */
-    private StorageClientImpl client;
+    private final StorageClientImpl client;
 
     /**
      * Initializes an instance of ContainersImpl.
@@ -73,7 +72,7 @@ public final class ContainersImpl implements Containers {
      * @param client the instance of the service client containing this operation class.
      */
     public ContainersImpl(StorageClientImpl client) {
-        this.service = RestProxy.create(ContainersService.class, client);
+        this.service = client.restProxies().get(ContainersService.class, client);
         this.client = client;
     }
 
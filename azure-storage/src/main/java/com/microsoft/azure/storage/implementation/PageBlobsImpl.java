@@ -17,7 +17,6 @@ import com.microsoft.azure.storage.models.PageBlobPutPageHeaders;
 import com.microsoft.azure.storage.models.PageList;
 import com.microsoft.azure.storage.models.PageWriteType;
 import com.microsoft.rest.v2.DateTimeRfc1123;
-import com.microsoft.rest.v2.RestProxy;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.ServiceCallback;
 import com.microsoft.rest.v2.ServiceFuture;
@@ -50,12 +49,12 @@ public final class PageBlobsImpl implements PageBlobs {
     /**
      * The proxy service used to perform REST calls.
      */
-    private PageBlobsService service;
+    private final PageBlobsService service;
 
     /**
      * The service client containing this operation class.
      */
-    private StorageClientImpl client;
+    private final StorageClientImpl client;
 
     /**
      * Initializes an instance of PageBlobsImpl.
@@ -63,7 +62,7 @@ public final class PageBlobsImpl implements PageBlobs {
      * @param client the instance of the service client containing this operation class.
      */
     public PageBlobsImpl(StorageClientImpl client) {
-        this.service = RestProxy.create(PageBlobsService.class, client);
+        this.service = client.restProxies().get(PageBlobsService.class, client);
         this.client = client;
     }
 
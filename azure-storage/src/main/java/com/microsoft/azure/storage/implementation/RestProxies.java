@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure.storage.implementation;
+
+import com.microsoft.rest.v2.RestProxy;
+import com.microsoft.rest.v2.ServiceClient;
+import com.microsoft.rest.v2.http.HttpPipeline;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The REST proxies of the operation groups, shared by all the clients which send requests through the same pipeline.
+ * Creating a proxy builds a dynamic proxy class and parses the annotations of every method of its interface, which
+ * costs far more than the rest of creating a client. The proxies take the URL of each request as a parameter, so one
+ * proxy can serve any number of clients.
+ */
+final class RestProxies {
+
+    /*
+     The cache holds the pipelines and the proxies weakly: the proxies refer to their pipeline, so holding them strongly
+     would keep every pipeline alive. A client holds its RestProxies strongly, so the proxies live as long as any client
+     of the pipeline does.
+     */
+    private static final Map<HttpPipeline, WeakReference<RestProxies>> CACHE =
+            new WeakHashMap<HttpPipeline, WeakReference<RestProxies>>();
+
+    private final ConcurrentHashMap<Class<?>, Object> proxies = new ConcurrentHashMap<Class<?>, Object>();
+
+    private RestProxies() {
+    }
+
+    /**
+     * Gets the proxies for a pipeline.
+     *
+     * @param pipeline the pipeline the proxies send requests through.
+     * @return the RestProxies shared by the clients of the pipeline.
+     */
+    static RestProxies forPipeline(HttpPipeline pipeline) {
+        synchronized (CACHE) {
+            WeakReference<RestProxies> reference = CACHE.get(pipeline);
+            RestProxies proxies = reference == null ? null : reference.get();
+            if (proxies == null) {
+                proxies = new RestProxies();
+                CACHE.put(pipeline, new WeakReference<RestProxies>(proxies));
+            }
+            return proxies;
+        }
+    }
+
+    /**
+     * Gets the proxy for a Swagger interface, creating it on first use.
+     *
+     * @param swaggerInterface the interface of the operation group.
+     * @param client the client whose pipeline and serializer the proxy uses if it is created.
+     * @param <A> the type of the interface.
+     * @return the proxy.
+     */
+    <A> A get(Class<A> swaggerInterface, ServiceClient client) {
+        Object proxy = this.proxies.get(swaggerInterface);
+        if (proxy == null) {
+            proxy = RestProxy.create(swaggerInterface, client);
+            Object existing = this.proxies.putIfAbsent(swaggerInterface, proxy);
+            if (existing != null) {
+                proxy = existing;
+            }
+        }
+        return swaggerInterface.cast(proxy);
+    }
+}
@@ -19,7 +19,6 @@ import com.microsoft.azure.storage.models.ServiceListContainersHeaders;
 import com.microsoft.azure.storage.models.ServiceSetPropertiesHeaders;
 import com.microsoft.azure.storage.models.StorageServiceProperties;
 import com.microsoft.azure.storage.models.StorageServiceStats;
-import com.microsoft.rest.v2.RestProxy;
 import com.microsoft.rest.v2.RestResponse;
 import com.microsoft.rest.v2.ServiceCallback;
 import com.microsoft.rest.v2.ServiceFuture;
@@ -46,12 +45,12 @@ public final class ServicesImpl implements Services {
     /**
      * The proxy service used to perform REST calls.
      */
-    private ServicesService service;
+    private final ServicesService service;
 
     /**
      * The service client containing this operation class.
      */
-    private StorageClientImpl client;
+    private final StorageClientImpl client;
 
     /**
      * Initializes an instance of ServicesImpl.
@@ -59,7 +58,7 @@ public final class ServicesImpl implements Services {
      * @param client the instance of the service client containing this operation class.
      */
     public ServicesImpl(StorageClientImpl client) {
-        this.service = RestProxy.create(ServicesService.class, client);
+        this.service = client.restProxies().get(ServicesService.class, client);
         this.client = client;
     }
 
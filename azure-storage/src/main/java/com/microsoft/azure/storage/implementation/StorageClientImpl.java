@@ -76,18 +76,34 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
         return this;
     }
 
+    /**
+     * The REST proxies shared with the other clients of the pipeline.
+     */
+    private final RestProxies restProxies;
+
+    /*
+     The operation groups are created on first use, as most clients only use one or two of them. They are published
+     without synchronization, like String's hash: the groups only have final fields, so a thread which sees one sees it
+     fully constructed, and a race creates a duplicate which is equivalent to the first.
+     */
+
     /**
      * The Services object to access its operations.
      */
     private Services services;
 
     /**
-     * Gets the Services object to access its operations.
+     * Gets the Services object to access its operations, creating it on first use.
      *
      * @return the Services object.
      */
     public Services services() {
-        return this.services;
+        Services services = this.services;
+        if (services == null) {
+            services = new ServicesImpl(this);
+            this.services = services;
+        }
+        return services;
     }
 
     /**
@@ -96,12 +112,17 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
     private Containers containers;
 
     /**
-     * Gets the Containers object to access its operations.
+     * Gets the Containers object to access its operations, creating it on first use.
      *
      * @return the Containers object.
      */
     public Containers containers() {
-        return this.containers;
+        Containers containers = this.containers;
+        if (containers == null) {
+            containers = new ContainersImpl(this);
+            this.containers = containers;
+        }
+        return containers;
     }
 
     /**
@@ -110,12 +131,17 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
     private Blobs blobs;
 
     /**
-     * Gets the Blobs object to access its operations.
+     * Gets the Blobs object to access its operations, creating it on first use.
      *
      * @return the Blobs object.
      */
     public Blobs blobs() {
-        return this.blobs;
+        Blobs blobs = this.blobs;
+        if (blobs == null) {
+            blobs = new BlobsImpl(this);
+            this.blobs = blobs;
+        }
+        return blobs;
     }
 
     /**
@@ -124,12 +150,17 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
     private BlockBlobs blockBlobs;
 
     /**
-     * Gets the BlockBlobs object to access its operations.
+     * Gets the BlockBlobs object to access its operations, creating it on first use.
      *
      * @return the BlockBlobs object.
      */
     public BlockBlobs blockBlobs() {
-        return this.blockBlobs;
+        BlockBlobs blockBlobs = this.blockBlobs;
+        if (blockBlobs == null) {
+            blockBlobs = new BlockBlobsImpl(this);
+            this.blockBlobs = blockBlobs;
+        }
+        return blockBlobs;
     }
 
     /**
@@ -138,12 +169,17 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
     private PageBlobs pageBlobs;
 
     /**
-     * Gets the PageBlobs object to access its operations.
+     * Gets the PageBlobs object to access its operations, creating it on first use.
      *
      * @return the PageBlobs object.
      */
     public PageBlobs pageBlobs() {
-        return this.pageBlobs;
+        PageBlobs pageBlobs = this.pageBlobs;
+        if (pageBlobs == null) {
+            pageBlobs = new PageBlobsImpl(this);
+            this.pageBlobs = pageBlobs;
+        }
+        return pageBlobs;
     }
 
     /**
@@ -152,12 +188,17 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
     private AppendBlobs appendBlobs;
 
     /**
-     * Gets the AppendBlobs object to access its operations.
+     * Gets the AppendBlobs object to access its operations, creating it on first use.
      *
      * @return the AppendBlobs object.
      */
     public AppendBlobs appendBlobs() {
-        return this.appendBlobs;
+        AppendBlobs appendBlobs = this.appendBlobs;
+        if (appendBlobs == null) {
+            appendBlobs = new AppendBlobsImpl(this);
+            this.appendBlobs = appendBlobs;
+        }
+        return appendBlobs;
     }
 
     /**
@@ -174,11 +215,24 @@ public final class StorageClientImpl extends ServiceClient implements StorageCli
      */
     public StorageClientImpl(@NonNull HttpPipeline httpPipeline) {
         super(httpPipeline);
-        this.services = new ServicesImpl(this);
-        this.containers = new ContainersImpl(this);
-        this.blobs = new BlobsImpl(this);
-        this.blockBlobs = new BlockBlobsImpl(this);
-        this.pageBlobs = new PageBlobsImpl(this);
-        this.appendBlobs = new AppendBlobsImpl(this);
+        this.restProxies = RestProxies.forPipeline(httpPipeline);
+    }
+
+    /**
+     * Initializes an instance of StorageClient client for another URL, sharing the pipeline, version and REST proxies
+     * of an existing client.
+     *
+     * @param client the client to share the pipeline, version and REST proxies of.
+     * @param url the url value.
+     */
+    public StorageClientImpl(@NonNull StorageClientImpl client, String url) {
+        super(client.httpPipeline());
+        this.restProxies = client.restProxies;
+        this.version = client.version;
+        this.url = url;
+    }
+
+    RestProxies restProxies() {
+        return this.restProxies;
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpMethod;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AppendBlobURLTests extends EmulatorTestBase {
+
+    /*
+     Counts the HEAD requests sent through the default client.
+     */
+    private static final class HeadCountingHttpClient extends HttpClient {
+
+        private final HttpClient client = HttpClient.createDefault();
+
+        private final AtomicInteger heads = new AtomicInteger();
+
+        @Override
+        public Single<HttpResponse> sendRequestAsync(HttpRequest request) {
+            if (request.httpMethod() == HttpMethod.HEAD) {
+                this.heads.incrementAndGet();
+            }
+            return this.client.sendRequestAsync(request);
+        }
+    }
+
+    private static void awaitSize(ByteArrayOutputStream received, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (received) {
+                if (received.size() >= size) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail("The tail did not receive " + size + " bytes in time.");
+    }
+
+    @Test
+    public void TestAppendBlobTailAgainstEmulator() throws Exception {
+        HeadCountingHttpClient client = new HeadCountingHttpClient();
+        PipelineOptions po = new PipelineOptions();
+        po.client = client;
+        AppendBlobURL bu = startEmulatorWithContainer(null, po).createAppendBlobURL("javatestblob");
+        bu.create(null, null, null).blockingGet();
+        bu.appendBlock(Flowable.just(ByteBuffer.wrap("head".getBytes())), 4, null).blockingGet();
+
+        // Reads of at most 10 bytes, so each append of 17 bytes is caught up on in more than one read.
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        Disposable tail = bu.tail(4, new AppendBlobTailOptions(20L, 320L, 10L)).subscribe(new Consumer<ByteBuffer>() {
+            @Override
+            public void accept(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                synchronized (received) {
+                    received.write(bytes, 0, bytes.length);
+                }
+            }
+        });
+        try {
+            // Data appended while tailing arrives in order, and only from the offset.
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                String record = String.format("record%04d;%5d;", i, i);
+                expected.append(record);
+                bu.appendBlock(Flowable.just(ByteBuffer.wrap(record.getBytes())), record.length(), null)
+                        .blockingGet();
+                Thread.sleep(30);
+            }
+            awaitSize(received, expected.length());
+            synchronized (received) {
+                assertEquals(expected.toString(), received.toString());
+            }
+
+            // While the blob is idle, polls back off to the maximum interval rather than staying at the minimum.
+            int heads = client.heads.get();
+            Thread.sleep(2000);
+            int idleHeads = client.heads.get() - heads;
+            assertTrue(idleHeads > 0 && idleHeads < 20);
+
+            // Data appended after the back off still arrives.
+            bu.appendBlock(Flowable.just(ByteBuffer.wrap("tail".getBytes())), 4, null).blockingGet();
+            expected.append("tail");
+            awaitSize(received, expected.length());
+            synchronized (received) {
+                assertEquals(expected.toString(), received.toString());
+            }
+        } finally {
+            tail.dispose();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Function;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AppendBlobWriterTests extends EmulatorTestBase {
+
+    /*
+     Performs every other append and then reports the connection as reset, as if the response had been lost, so that
+     the retry policy sends the append again after it has already landed.
+     */
+    private static final class LostAppendResponseHttpClient extends HttpClient {
+
+        private final HttpClient client = HttpClient.createDefault();
+
+        private final AtomicInteger appends = new AtomicInteger();
+
+        private final AtomicInteger lostResponses = new AtomicInteger();
+
+        @Override
+        public Single<HttpResponse> sendRequestAsync(HttpRequest request) {
+            Single<HttpResponse> response = this.client.sendRequestAsync(request);
+            String query = request.url().getQuery();
+            if (query == null || !query.contains("comp=appendblock") || this.appends.incrementAndGet() % 2 == 0) {
+                return response;
+            }
+            return response.flatMap(new Function<HttpResponse, SingleSource<HttpResponse>>() {
+                @Override
+                public SingleSource<HttpResponse> apply(HttpResponse r) {
+                    if (r.statusCode() != 201) {
+                        return Single.just(r);
+                    }
+                    lostResponses.incrementAndGet();
+                    return Single.error(new IOException("The connection was reset."));
+                }
+            });
+        }
+    }
+
+    private static Function<Integer, AppendBlobURL> logBlobs(final ContainerURL cu) {
+        return new Function<Integer, AppendBlobURL>() {
+            @Override
+            public AppendBlobURL apply(Integer index) {
+                return cu.createAppendBlobURL("javatestlog" + index);
+            }
+        };
+    }
+
+    private static Completable writeRecords(AppendBlobWriter writer, String prefix, int count) {
+        List<Completable> written = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            written.add(writer.write(ByteBuffer.wrap(String.format("%s%04d;", prefix, i).getBytes())));
+        }
+        return Completable.merge(written);
+    }
+
+    private static String expectedRecords(String prefix, int from, int to) {
+        StringBuilder records = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            records.append(String.format("%s%04d;", prefix, i));
+        }
+        return records.toString();
+    }
+
+    @Test
+    public void TestAppendBlobWriterAgainstEmulator() throws Exception {
+        ContainerURL cu = startEmulatorWithContainer(null, null);
+
+        // 1000 records of 8 bytes in blocks of up to 100 bytes, so records share blocks and blocks queue up.
+        AppendBlobWriter writer = new AppendBlobWriter(logBlobs(cu),
+                new AppendBlobWriterOptions(100, 5L, null, null, null));
+        Completable written = writeRecords(writer, "rec", 1000);
+        writer.close().blockingAwait();
+        written.blockingAwait();
+
+        AppendBlobURL bu = cu.createAppendBlobURL("javatestlog0");
+        assertEquals(expectedRecords("rec", 0, 1000), new String(readBlob(bu)));
+        int blocks = Integer.parseInt(bu.getPropertiesAndMetadata(null).blockingGet().headers()
+                .blobCommittedBlockCount());
+        assertTrue(blocks >= 8000 / 100 && blocks < 1000);
+        try {
+            writer.write(ByteBuffer.wrap(new byte[]{1}));
+            fail("The writer should be closed.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void TestAppendBlobWriterRetriedAppendAgainstEmulator() throws Exception {
+        // Throttled appends are retried before they land; lost responses are retried after.
+        EmulatorOptions eo = new EmulatorOptions();
+        eo.throttleProbability = 0.2;
+        LostAppendResponseHttpClient client = new LostAppendResponseHttpClient();
+        PipelineOptions po = new PipelineOptions();
+        po.client = client;
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 20, 0, 1L, 1L, null);
+        ContainerURL cu = startEmulatorWithContainer(eo, po);
+
+        AppendBlobWriter writer = new AppendBlobWriter(logBlobs(cu),
+                new AppendBlobWriterOptions(100, 5L, null, null, null));
+        Completable written = writeRecords(writer, "rec", 200);
+        writer.close().blockingAwait();
+        written.blockingAwait();
+
+        // Every record was appended exactly once even though some appends were sent twice.
+        assertTrue(client.lostResponses.get() > 0);
+        assertEquals(expectedRecords("rec", 0, 200), new String(readBlob(cu.createAppendBlobURL("javatestlog0"))));
+    }
+
+    @Test
+    public void TestAppendBlobWriterRolloverAgainstEmulator() throws Exception {
+        ContainerURL cu = startEmulatorWithContainer(null, null);
+
+        // Each 8-byte record fills a block, and each blob holds three blocks.
+        AppendBlobWriterOptions options = new AppendBlobWriterOptions(8, null, 3, null, null);
+        AppendBlobWriter writer = new AppendBlobWriter(logBlobs(cu), options);
+        Completable written = writeRecords(writer, "rec", 10);
+        writer.close().blockingAwait();
+        written.blockingAwait();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expectedRecords("rec", 3 * i, 3 * i + 3),
+                    new String(readBlob(cu.createAppendBlobURL("javatestlog" + i))));
+        }
+        assertEquals(expectedRecords("rec", 9, 10), new String(readBlob(cu.createAppendBlobURL("javatestlog3"))));
+
+        // A new writer, as after a restart, skips the full blobs and fills the last one before rolling over.
+        writer = new AppendBlobWriter(logBlobs(cu), options);
+        written = writeRecords(writer, "new", 3);
+        writer.close().blockingAwait();
+        written.blockingAwait();
+        assertEquals(expectedRecords("rec", 9, 10) + expectedRecords("new", 0, 2),
+                new String(readBlob(cu.createAppendBlobURL("javatestlog3"))));
+        assertEquals(expectedRecords("new", 2, 3), new String(readBlob(cu.createAppendBlobURL("javatestlog4"))));
+    }
+}
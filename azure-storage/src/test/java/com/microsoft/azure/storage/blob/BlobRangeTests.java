@@ -0,0 +1,44 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlobRangeTests {
+
+    @Test
+    public void TestBlobRange() {
+        assertEquals("bytes=8192-10239", new BlobRange(8192, 2048).toString());
+        assertEquals("bytes=0-0", new BlobRange(0, 1).toString());
+        assertEquals("bytes=1024-", new BlobRange(1024, 0).toString());
+        assertEquals("bytes=0-", BlobRange.DEFAULT.toString());
+        assertEquals("bytes=4294967296-4294967305", new BlobRange(4294967296L, 10).toString());
+
+        try {
+            new BlobRange(-1, 10);
+            fail("A negative offset should be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            new BlobRange(0, -1);
+            fail("A negative count should be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
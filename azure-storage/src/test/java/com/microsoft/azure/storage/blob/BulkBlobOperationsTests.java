@@ -0,0 +1,125 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import com.microsoft.azure.storage.models.Blob;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BulkBlobOperationsTests extends EmulatorTestBase {
+
+    @Test
+    public void TestBulkDeleteAgainstEmulator() throws Exception {
+        EmulatorOptions eo = new EmulatorOptions();
+        eo.throttleProbability = 0.3;
+        PipelineOptions po = new PipelineOptions();
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 20, 0, 1L, 1L, null);
+        ContainerURL cu = startEmulatorWithContainer(eo, po);
+        for (int i = 0; i < 100; i++) {
+            cu.createBlockBlobURL(String.format("javatestblob%03d", i))
+                    .putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1, null, null, null).blockingGet();
+        }
+
+        // The deletes are not retried by the pipeline, so the throttling reaches the bulk operations.
+        PipelineOptions noRetries = new PipelineOptions();
+        noRetries.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 1, 0, null, null, null);
+        final ContainerURL deleteContainer = serviceURL(noRetries).createContainerURL(CONTAINER_NAME);
+        final AtomicInteger smallestLimit = new AtomicInteger(Integer.MAX_VALUE);
+        IBulkProgressReceiver progressReceiver = new IBulkProgressReceiver() {
+            @Override
+            public void reportProgress(long succeeded, long failed, double operationsPerSecond, int concurrency) {
+                if (concurrency < smallestLimit.get()) {
+                    smallestLimit.set(concurrency);
+                }
+            }
+        };
+        List<BulkBlobOperationResult> results = new BulkBlobOperations(
+                new BulkBlobOperationsOptions(16, 32, 100, 1L, progressReceiver, 1L))
+                .execute(cu.listBlobsAll(new ListBlobsOptions(null, null, null, 10))
+                                .map(new Function<Blob, BlobURL>() {
+                                    @Override
+                                    public BlobURL apply(Blob blob) {
+                                        return deleteContainer.createBlobURL(blob.name());
+                                    }
+                                }),
+                        BulkBlobOperations.delete(null, null))
+                .toList()
+                .blockingGet();
+
+        // Every blob has exactly one result, every delete succeeded, and throttling lowered the limit.
+        Set<String> deleted = new HashSet<>();
+        for (BulkBlobOperationResult result : results) {
+            assertTrue(result.isSuccess());
+            assertTrue(deleted.add(result.getBlobURL().toString()));
+        }
+        assertEquals(100, deleted.size());
+        assertTrue(smallestLimit.get() < 16);
+        assertEquals(0, (long) cu.listBlobsAll(null).count().blockingGet());
+    }
+
+    @Test
+    public void TestConcurrencyLimiterReleasesDisposedOperations() {
+        BulkBlobOperations.ConcurrencyLimiter limiter = new BulkBlobOperations(
+                new BulkBlobOperationsOptions(1, 1, null, null, null, null)).new ConcurrencyLimiter();
+        final AtomicInteger started = new AtomicInteger();
+        IBulkBlobOperation never = new IBulkBlobOperation() {
+            @Override
+            public Completable apply(BlobURL blobURL) {
+                started.incrementAndGet();
+                return Completable.never();
+            }
+        };
+        Disposable first = limiter.run(never, null).subscribe();
+        Disposable second = limiter.run(never, null).subscribe();
+        assertEquals(1, started.get());
+
+        // The waiting operation leaves the queue, and the one in flight gives up its slot, so a new one starts.
+        second.dispose();
+        first.dispose();
+        assertEquals(1, started.get());
+        Disposable third = limiter.run(never, null).subscribe();
+        assertEquals(2, started.get());
+        third.dispose();
+    }
+
+    @Test
+    public void TestThrottledRetryDelays() {
+        BulkBlobOperations operations = new BulkBlobOperations(
+                new BulkBlobOperationsOptions(null, null, null, 1000L, null, null));
+
+        // The delay doubles with each retry, up to 120 seconds, and varies by up to 20% either way.
+        long first = operations.throttledRetryDelayInMs(1);
+        assertTrue(first >= 800 && first <= 1200);
+        long third = operations.throttledRetryDelayInMs(3);
+        assertTrue(third >= 3200 && third <= 4800);
+        long last = operations.throttledRetryDelayInMs(100);
+        assertTrue(last >= 96000 && last <= 144000);
+
+        assertEquals(0, new BulkBlobOperations(new BulkBlobOperationsOptions(null, null, null, 0L, null, null))
+                .throttledRetryDelayInMs(5));
+    }
+}
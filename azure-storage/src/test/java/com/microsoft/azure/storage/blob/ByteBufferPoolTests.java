@@ -0,0 +1,73 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ByteBufferPoolTests {
+
+    @Test
+    public void TestByteBufferPool() {
+        ByteBufferPool pool = new ByteBufferPool(1024L * 1024, 256 * 1024, 0);
+        assertEquals(256 * 1024, pool.getMaxBufferBytes());
+
+        // Requests are rounded up to a size class, and a released buffer serves the next request of its class.
+        ByteBuffer a = pool.acquire(5000);
+        assertTrue(a.isDirect());
+        assertEquals(8192, a.capacity());
+        assertEquals(0, a.position());
+        assertEquals(5000, a.limit());
+        ByteBuffer b = pool.acquire(8192);
+        assertEquals(16384, pool.getBytesOutstanding());
+        pool.release(a);
+        pool.release(b);
+        assertEquals(0, pool.getBytesOutstanding());
+        assertEquals(16384, pool.getPooledBytes());
+        assertSame(a, pool.acquire(6000));
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(16384, pool.getHighWaterMark());
+
+        // Buffers larger than the largest class are not pooled.
+        ByteBuffer large = pool.acquire(300 * 1024);
+        assertEquals(300 * 1024, large.capacity());
+        pool.release(large);
+        assertEquals(8192, pool.getPooledBytes());
+        assertEquals(8192 + 300 * 1024, pool.getHighWaterMark());
+
+        // The arena keeps no more than its limit.
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            buffers.add(pool.acquire(256 * 1024));
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertTrue(pool.getPooledBytes() <= 1024 * 1024);
+
+        try {
+            new ByteBufferPool(-1L, null, null);
+            fail("The pool size must not be negative.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.CopyStatusType;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpHeaders;
+import com.microsoft.rest.v2.http.HttpMethod;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CopyManagerTests {
+
+    /*
+     Starts every copy as pending, then answers the status polls with the given status codes in turn before reporting
+     the copy as finished.
+     */
+    private static final class FlakyCopyStatusHttpClient extends HttpClient {
+
+        private final int[] pollStatusCodes;
+
+        private int polls;
+
+        private FlakyCopyStatusHttpClient(int... pollStatusCodes) {
+            this.pollStatusCodes = pollStatusCodes;
+        }
+
+        @Override
+        public synchronized Single<HttpResponse> sendRequestAsync(HttpRequest request) {
+            final HttpHeaders headers = new HttpHeaders();
+            headers.set("x-ms-copy-id", "javatestcopy");
+            final int statusCode;
+            if (request.httpMethod() == HttpMethod.PUT) {
+                statusCode = 202;
+                headers.set("x-ms-copy-status", "pending");
+            } else if (this.polls < this.pollStatusCodes.length) {
+                statusCode = this.pollStatusCodes[this.polls++];
+            } else {
+                this.polls++;
+                statusCode = 200;
+                headers.set("x-ms-copy-status", "success");
+                headers.set("x-ms-copy-progress", "1024/1024");
+            }
+            final byte[] body = new byte[0];
+            return Single.<HttpResponse>just(new HttpResponse() {
+                @Override
+                public int statusCode() {
+                    return statusCode;
+                }
+
+                @Override
+                public String headerValue(String headerName) {
+                    return headers.value(headerName);
+                }
+
+                @Override
+                public HttpHeaders headers() {
+                    return headers;
+                }
+
+                @Override
+                public Flowable<ByteBuffer> body() {
+                    return Flowable.just(ByteBuffer.wrap(body));
+                }
+
+                @Override
+                public Single<byte[]> bodyAsByteArray() {
+                    return Single.just(body);
+                }
+
+                @Override
+                public Single<String> bodyAsString() {
+                    return Single.just(new String(body));
+                }
+            });
+        }
+    }
+
+    private static CopyResult copyWithPollStatusCodes(FlakyCopyStatusHttpClient client,
+            CopyManagerOptions options) throws Exception {
+        PipelineOptions po = new PipelineOptions();
+        po.client = client;
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 1, 0, null, null, null);
+        SharedKeyCredentials creds = new SharedKeyCredentials("account",
+                DatatypeConverter.printBase64Binary("javatestkey".getBytes()));
+        ContainerURL cu = new ServiceURL(new URL("http://localhost/account"), StorageURL.createPipeline(creds, po))
+                .createContainerURL("javatestcontainer");
+        CopyRequest request = new CopyRequest(new URL("http://localhost/account/javatestcontainer/javatestsource"),
+                cu.createBlobURL("javatestblob"), null, null);
+        return new CopyManager(options).copy(Flowable.just(request)).blockingSingle();
+    }
+
+    @Test
+    public void TestCopyManagerPollFailures() throws Exception {
+        CopyManagerOptions options = new CopyManagerOptions(null, null, 10L, 40L, 3, null);
+
+        // Transient failures are polled through.
+        FlakyCopyStatusHttpClient client = new FlakyCopyStatusHttpClient(500, 503);
+        CopyResult result = copyWithPollStatusCodes(client, options);
+        assertNull(result.getError());
+        assertEquals(CopyStatusType.SUCCESS, result.getStatus());
+        assertEquals(3, client.polls);
+
+        // A missing destination ends the copy at once.
+        client = new FlakyCopyStatusHttpClient(404);
+        result = copyWithPollStatusCodes(client, options);
+        assertEquals(404, ((RestException) result.getError()).response().statusCode());
+        assertEquals(1, client.polls);
+
+        // Too many failures in a row end the copy.
+        client = new FlakyCopyStatusHttpClient(500, 500, 500, 500);
+        result = copyWithPollStatusCodes(client, options);
+        assertEquals(500, ((RestException) result.getError()).response().statusCode());
+        assertEquals(3, client.polls);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.emulator.BlobServiceEmulator;
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import com.microsoft.rest.v2.util.FlowableUtil;
+import org.junit.After;
+
+/**
+ * The base of the tests which run against a {@link BlobServiceEmulator}, so that they need no account or network. A
+ * test starts its emulator with {@link #startEmulator(EmulatorOptions, PipelineOptions)}, and the emulator is closed
+ * after the test.
+ */
+public abstract class EmulatorTestBase {
+
+    protected static final String CONTAINER_NAME = "javatestcontainer";
+
+    protected BlobServiceEmulator emulator;
+
+    protected SharedKeyCredentials credentials;
+
+    @After
+    public void closeEmulator() {
+        if (this.emulator != null) {
+            this.emulator.close();
+            this.emulator = null;
+        }
+    }
+
+    /**
+     * Starts the test's emulator.
+     *
+     * @param emulatorOptions
+     *      {@link EmulatorOptions}. If null, the emulator's defaults are used.
+     * @param pipelineOptions
+     *      {@link PipelineOptions} for the returned URL's pipeline. If null, the defaults are used.
+     * @return
+     *      The {@link ServiceURL} of the emulated account.
+     */
+    protected ServiceURL startEmulator(EmulatorOptions emulatorOptions, PipelineOptions pipelineOptions)
+            throws Exception {
+        this.emulator = new BlobServiceEmulator(emulatorOptions).start();
+        this.credentials = new SharedKeyCredentials(this.emulator.getAccountName(), this.emulator.getAccountKey());
+        return serviceURL(pipelineOptions);
+    }
+
+    /**
+     * @return
+     *      The {@link ServiceURL} of the running emulator's account, with a pipeline of its own.
+     */
+    protected ServiceURL serviceURL(PipelineOptions pipelineOptions) {
+        return new ServiceURL(this.emulator.getServiceURL(), StorageURL.createPipeline(this.credentials,
+                pipelineOptions == null ? new PipelineOptions() : pipelineOptions));
+    }
+
+    /**
+     * Starts the test's emulator and creates a container in it.
+     *
+     * @return
+     *      The {@link ContainerURL} of {@link #CONTAINER_NAME}.
+     */
+    protected ContainerURL startEmulatorWithContainer(EmulatorOptions emulatorOptions,
+            PipelineOptions pipelineOptions) throws Exception {
+        ContainerURL cu = startEmulator(emulatorOptions, pipelineOptions).createContainerURL(CONTAINER_NAME);
+        cu.create(null, null).blockingGet();
+        return cu;
+    }
+
+    protected static byte[] readBlob(BlobURL bu) {
+        return FlowableUtil.collectBytesInArray(bu.getBlob(null, null, false).blockingGet().body()).blockingGet();
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import com.microsoft.azure.storage.models.AccessTier;
+import com.microsoft.azure.storage.models.PageRange;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.http.HttpClient;
+import com.microsoft.rest.v2.http.HttpHeaders;
+import com.microsoft.rest.v2.http.HttpMethod;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HighlevelTests extends EmulatorTestBase {
+
+    @Test
+    public void TestCopyToBlockBlobUsesBufferPool() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(null, null, null);
+        PipelineOptions po = new PipelineOptions();
+        po.bufferPool = pool;
+        ContainerURL cu = startEmulatorWithContainer(null, po);
+
+        byte[] data = new byte[1024 * 1024 + 100];
+        new Random(1).nextBytes(data);
+        BlockBlobURL source = cu.createBlockBlobURL("javatestblob");
+        source.putBlob(Flowable.just(ByteBuffer.wrap(data)), data.length, null, null, null).blockingGet();
+        BlockBlobURL destination = cu.createBlockBlobURL("javatestblob2");
+        Highlevel.copyToBlockBlob(source, destination,
+                new Highlevel.CopyToBlockBlobOptions(64 * 1024, null, null, 2)).blockingGet();
+
+        assertArrayEquals(data, readBlob(destination));
+        // Every block buffer was released, and no more than parallelism were in use at once.
+        assertEquals(0, pool.getBytesOutstanding());
+        assertTrue(pool.getHits() > 0);
+        assertTrue(pool.getHighWaterMark() <= 2 * 64 * 1024);
+    }
+
+    private static Single<HttpResponse> respond(final int statusCode, final HttpHeaders headers,
+            final byte[] body) {
+        return Single.<HttpResponse>just(new HttpResponse() {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public String headerValue(String headerName) {
+                return headers.value(headerName);
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public Flowable<ByteBuffer> body() {
+                return Flowable.just(ByteBuffer.wrap(body));
+            }
+
+            @Override
+            public Single<byte[]> bodyAsByteArray() {
+                return Single.just(body);
+            }
+
+            @Override
+            public Single<String> bodyAsString() {
+                return Single.just(new String(body));
+            }
+        });
+    }
+
+    private static final byte[] CONDITION_NOT_MET =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?><Error><Code>ConditionNotMet</Code></Error>".getBytes();
+
+    private static HttpHeaders blockBlobProperties(long length) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Content-Length", String.valueOf(length));
+        headers.set("ETag", "\"0x1\"");
+        headers.set("x-ms-blob-type", "BlockBlob");
+        return headers;
+    }
+
+    /*
+     Answers HEAD requests as a 200KB blob and fails every other request with 412, as the service does when a blob
+     changes while it is being read.
+     */
+    private static final class ChangingBlobHttpClient extends HttpClient {
+
+        @Override
+        public Single<HttpResponse> sendRequestAsync(HttpRequest request) {
+            if (request.httpMethod() == HttpMethod.HEAD) {
+                return respond(200, blockBlobProperties(200 * 1024), new byte[0]);
+            }
+            return respond(412, new HttpHeaders(), CONDITION_NOT_MET);
+        }
+    }
+
+    /*
+     Answers HEAD requests as a 128KB blob and reads of it with 64KB of zeros, but fails every write with 412, as the
+     service does when the destination's lease or conditions no longer match.
+     */
+    private static final class RejectingDestinationHttpClient extends HttpClient {
+
+        @Override
+        public Single<HttpResponse> sendRequestAsync(HttpRequest request) {
+            if (request.httpMethod() == HttpMethod.HEAD) {
+                return respond(200, blockBlobProperties(128 * 1024), new byte[0]);
+            }
+            if (request.httpMethod() == HttpMethod.GET) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("Content-Length", String.valueOf(64 * 1024));
+                return respond(206, headers, new byte[64 * 1024]);
+            }
+            return respond(412, new HttpHeaders(), CONDITION_NOT_MET);
+        }
+    }
+
+    @Test
+    public void TestCopyToBlockBlobReleasesBuffersOnFailure() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(null, null, null);
+        PipelineOptions po = new PipelineOptions();
+        po.client = new ChangingBlobHttpClient();
+        po.bufferPool = pool;
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 1, 0, null, null, null);
+        SharedKeyCredentials creds = new SharedKeyCredentials("account",
+                DatatypeConverter.printBase64Binary("javatestkey".getBytes()));
+        ContainerURL cu = new ServiceURL(new URL("http://localhost/account"), StorageURL.createPipeline(creds, po))
+                .createContainerURL("javatestcontainer");
+
+        try {
+            Highlevel.copyToBlockBlob(cu.createBlobURL("javatestblob"), cu.createBlockBlobURL("javatestblob2"),
+                    new Highlevel.CopyToBlockBlobOptions(64 * 1024, null, null, 2)).blockingGet();
+            fail("Reading the source should fail.");
+        } catch (RestException e) {
+            assertEquals(412, e.response().statusCode());
+        }
+        // Buffers were taken for the blocks being read, and all were returned when the reads failed or were disposed.
+        assertTrue(pool.getMisses() > 0);
+        assertEquals(0, pool.getBytesOutstanding());
+    }
+
+    @Test
+    public void TestCopyToBlockBlobReleasesBuffersWhenPutBlockFails() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(null, null, null);
+        PipelineOptions po = new PipelineOptions();
+        po.client = new RejectingDestinationHttpClient();
+        po.bufferPool = pool;
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 1, 0, null, null, null);
+        SharedKeyCredentials creds = new SharedKeyCredentials("account",
+                DatatypeConverter.printBase64Binary("javatestkey".getBytes()));
+        ContainerURL cu = new ServiceURL(new URL("http://localhost/account"), StorageURL.createPipeline(creds, po))
+                .createContainerURL("javatestcontainer");
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                Highlevel.copyToBlockBlob(cu.createBlobURL("javatestblob"), cu.createBlockBlobURL("javatestblob2"),
+                        new Highlevel.CopyToBlockBlobOptions(64 * 1024, null, null, 2)).blockingGet();
+                fail("Writing the destination should fail.");
+            } catch (RestException e) {
+                assertEquals(412, e.response().statusCode());
+            }
+        }
+        // The buffers of the rejected blocks went back to the pool, so later copies reused them.
+        assertEquals(0, pool.getBytesOutstanding());
+        assertTrue(pool.getHits() > 0);
+        assertTrue(pool.getHighWaterMark() <= 2 * 64 * 1024);
+    }
+
+    @Test
+    public void TestSetTiersByAgeAgainstEmulator() throws Exception {
+        // Throttling makes the bulk operations back off and try again.
+        EmulatorOptions eo = new EmulatorOptions();
+        eo.throttleProbability = 0.3;
+        PipelineOptions po = new PipelineOptions();
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 20, 0, 1L, 1L, null);
+        ContainerURL cu = startEmulatorWithContainer(eo, po);
+        for (int i = 0; i < 10; i++) {
+            cu.createBlockBlobURL("javatestblob" + i).putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1,
+                    null, null, null).blockingGet();
+        }
+        cu.createPageBlobURL("javatestpageblob").create(512, null, null, null, null).blockingGet();
+        cu.createBlockBlobURL("otherblob").putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1, null, null,
+                null).blockingGet();
+        cu.createBlobURL("javatestblob0").setTier(AccessTier.ARCHIVE).blockingGet();
+
+        // Every blob is at least 0 days old, so the block blobs under the prefix move to cool, except the one
+        // already archived.
+        List<BulkBlobOperationResult> results = Highlevel.setTiersByAge(cu,
+                new Highlevel.SetTiersByAgeOptions(0, null, "javatest", 2)).toList().blockingGet();
+        Set<String> tiered = new HashSet<>();
+        for (BulkBlobOperationResult result : results) {
+            assertTrue(result.isSuccess());
+            assertTrue(tiered.add(result.getBlobURL().toString()));
+        }
+        assertEquals(9, tiered.size());
+        for (int i = 1; i < 10; i++) {
+            assertEquals("Cool", cu.createBlobURL("javatestblob" + i).getPropertiesAndMetadata(null)
+                    .blockingGet().headers().accessTier());
+        }
+        assertEquals("Archive", cu.createBlobURL("javatestblob0").getPropertiesAndMetadata(null)
+                .blockingGet().headers().accessTier());
+        assertEquals("Hot", cu.createBlobURL("otherblob").getPropertiesAndMetadata(null)
+                .blockingGet().headers().accessTier());
+
+        // Blobs are never moved back to a warmer tier.
+        assertEquals(0, (long) Highlevel.setTiersByAge(cu,
+                new Highlevel.SetTiersByAgeOptions(0, null, "javatest", 2)).count().blockingGet());
+
+        // The archive age takes precedence over the cool age.
+        assertEquals(9, (long) Highlevel.setTiersByAge(cu,
+                new Highlevel.SetTiersByAgeOptions(0, 0, "javatest", 2)).count().blockingGet());
+        assertEquals("Archive", cu.createBlobURL("javatestblob5").getPropertiesAndMetadata(null)
+                .blockingGet().headers().accessTier());
+    }
+
+    private static byte[] readFile(FileChannel file) throws IOException {
+        ByteBuffer contents = ByteBuffer.allocate((int) file.size());
+        while (contents.hasRemaining()) {
+            if (file.read(contents, contents.position()) < 0) {
+                break;
+            }
+        }
+        return contents.array();
+    }
+
+    private static void putPages(PageBlobURL pu, byte[] data, int offset, int length) {
+        pu.putPages(new PageRange().withStart(offset).withEnd(offset + length - 1),
+                Flowable.just(ByteBuffer.wrap(data, offset, length)), null).blockingGet();
+    }
+
+    @Test
+    public void TestPageBlobFileTransfersAgainstEmulator() throws Exception {
+        // A sparse file, not a whole number of pages long, with data in a few pages and zeros everywhere else.
+        byte[] data = new byte[3 * 1024 * 1024 + 100];
+        Random random = new Random(1);
+        byte[] chunk = new byte[5000];
+        random.nextBytes(chunk);
+        System.arraycopy(chunk, 0, data, 0, 1024);
+        System.arraycopy(chunk, 0, data, 1024 * 1024 + 700, 5000);
+        System.arraycopy(chunk, 0, data, data.length - 100, 100);
+        File temp = File.createTempFile("javatestfile", null);
+        temp.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        }
+        byte[] padded = Arrays.copyOf(data, 3 * 1024 * 1024 + 512);
+
+        PageBlobURL pu = startEmulatorWithContainer(null, null).createPageBlobURL("javatestblob");
+        try (FileChannel file = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+            Highlevel.uploadFileToPageBlob(file, pu, Highlevel.UploadToPageBlobOptions.DEFAULT).blockingGet();
+        }
+        assertArrayEquals(padded, readBlob(pu));
+        // Only the pages holding data were written.
+        long written = 0;
+        for (PageRange range : pu.getPageRanges(null, null).blockingGet().body().pageRange()) {
+            written += range.end() - range.start() + 1;
+        }
+        assertEquals(2 * 512 + 11 * 512 + 512, written);
+
+        // Whatever the file held before is replaced, and the empty pages are left as zeros.
+        File download = File.createTempFile("javatestfile", null);
+        download.deleteOnExit();
+        try (FileChannel file = FileChannel.open(download.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            byte[] junk = new byte[4 * 1024 * 1024];
+            Arrays.fill(junk, (byte) 7);
+            file.write(ByteBuffer.wrap(junk));
+            Highlevel.downloadPageBlobToFile(pu, file, Highlevel.DownloadFromPageBlobOptions.DEFAULT)
+                    .blockingAwait();
+            assertArrayEquals(padded, readFile(file));
+        }
+    }
+
+    @Test
+    public void TestSyncPageBlobToFileAgainstEmulator() throws Exception {
+        PageBlobURL pu = startEmulatorWithContainer(null, null).createPageBlobURL("javatestblob");
+        File replica = File.createTempFile("javatestfile", null);
+        replica.deleteOnExit();
+        try (FileChannel file = FileChannel.open(replica.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            byte[] data = new byte[2 * 1024 * 1024];
+            pu.create(data.length, null, null, null, null).blockingGet();
+            Random random = new Random(1);
+            random.nextBytes(data);
+            putPages(pu, data, 0, 64 * 1024);
+            putPages(pu, data, 1024 * 1024, 8192);
+            Arrays.fill(data, 64 * 1024, 1024 * 1024, (byte) 0);
+            Arrays.fill(data, 1024 * 1024 + 8192, data.length, (byte) 0);
+
+            // The first sync downloads the whole blob.
+            String snapshot = Highlevel.syncPageBlobToFile(pu, file, null,
+                    Highlevel.SyncPageBlobToFileOptions.DEFAULT).blockingGet();
+            assertArrayEquals(data, readFile(file));
+
+            // Later syncs apply the updated pages and zero the cleared ones.
+            random.nextBytes(data);
+            putPages(pu, data, 512 * 1024, 4096);
+            pu.clearPages(new PageRange().withStart(4096).withEnd(8191), null).blockingGet();
+            pu.clearPages(new PageRange().withStart(1024 * 1024).withEnd(1024 * 1024 + 8191), null).blockingGet();
+            byte[] expected = readBlob(pu);
+            String nextSnapshot = Highlevel.syncPageBlobToFile(pu, file, snapshot,
+                    new Highlevel.SyncPageBlobToFileOptions(null, true)).blockingGet();
+            assertArrayEquals(expected, readFile(file));
+            for (int i = 4096; i < 8192; i++) {
+                assertEquals(0, expected[i]);
+            }
+            try {
+                pu.withSnapshot(snapshot).getPropertiesAndMetadata(null).blockingGet();
+                fail("The previous snapshot should have been deleted.");
+            } catch (RestException e) {
+                assertEquals(404, e.response().statusCode());
+            }
+
+            // A sync with nothing changed leaves the file as it was.
+            Highlevel.syncPageBlobToFile(pu, file, nextSnapshot, Highlevel.SyncPageBlobToFileOptions.DEFAULT)
+                    .blockingGet();
+            assertArrayEquals(expected, readFile(file));
+        }
+    }
+}
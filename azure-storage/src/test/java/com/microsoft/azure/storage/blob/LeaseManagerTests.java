@@ -0,0 +1,116 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.LeaseStateType;
+import com.microsoft.azure.storage.models.LeaseStatusType;
+import com.microsoft.rest.v2.RestException;
+import io.reactivex.Flowable;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LeaseManagerTests extends EmulatorTestBase {
+
+    @Test
+    public void TestLeaseManagerAgainstEmulator() throws Exception {
+        ContainerURL cu = startEmulatorWithContainer(null, null);
+        LeaseManager manager = new LeaseManager(15, null);
+        try {
+            List<BlobURL> blobs = new ArrayList<>();
+            List<LeaseManager.Lease> leases = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                BlockBlobURL bu = cu.createBlockBlobURL("javatestblob" + i);
+                bu.putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1, null, null, null).blockingGet();
+                blobs.add(bu);
+                leases.add(manager.acquire(bu, null).blockingGet());
+            }
+            LeaseManager.Lease containerLease = manager.acquire(cu, null).blockingGet();
+
+            // Past the duration of the leases, they are all still held.
+            Thread.sleep(20000);
+            for (BlobURL bu : blobs) {
+                assertEquals(LeaseStatusType.LOCKED,
+                        bu.getPropertiesAndMetadata(null).blockingGet().headers().leaseStatus());
+                try {
+                    bu.acquireLease(null, 15, null).blockingGet();
+                    fail("The lease should still be held.");
+                } catch (RestException e) {
+                    assertEquals(409, e.response().statusCode());
+                }
+            }
+            assertEquals(LeaseStatusType.LOCKED,
+                    cu.getPropertiesAndMetadata(null).blockingGet().headers().leaseStatus());
+
+            // Another party breaks a lease, so the next renewal is refused.
+            blobs.get(0).breakLease(0, null).blockingGet();
+            Throwable lost = leases.get(0).lost().blockingGet(20, TimeUnit.SECONDS);
+            assertTrue(lost instanceof RestException);
+            assertEquals(409, ((RestException) lost).response().statusCode());
+
+            // Closing the manager releases the leases it still holds, and not the lost one.
+            manager.close().blockingAwait();
+            for (int i = 1; i < 3; i++) {
+                assertNull(leases.get(i).lost().blockingGet(1, TimeUnit.SECONDS));
+                assertEquals(LeaseStateType.AVAILABLE,
+                        blobs.get(i).getPropertiesAndMetadata(null).blockingGet().headers().leaseState());
+            }
+            assertNull(containerLease.lost().blockingGet(1, TimeUnit.SECONDS));
+            assertEquals(LeaseStateType.AVAILABLE,
+                    cu.getPropertiesAndMetadata(null).blockingGet().headers().leaseState());
+        } finally {
+            manager.dispose();
+        }
+    }
+
+    @Test
+    public void TestFailedReleaseLosesLease() throws Exception {
+        ContainerURL cu = startEmulatorWithContainer(null, null);
+        BlockBlobURL bu = cu.createBlockBlobURL("javatestblob");
+        bu.putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1, null, null, null).blockingGet();
+        bu.acquireLease(null, 15, null).blockingGet();
+        LeaseManager manager = new LeaseManager(15, null);
+        try {
+            // The manager is given the wrong ID, so the service refuses the release and the lease is reported lost.
+            LeaseManager.Lease lease = manager.add(bu, UUID.randomUUID().toString());
+            try {
+                lease.release().blockingAwait();
+                fail("The release should be refused.");
+            } catch (RestException e) {
+                assertEquals(409, e.response().statusCode());
+            }
+            Throwable lost = lease.lost().blockingGet(1, TimeUnit.SECONDS);
+            assertTrue(lost instanceof RestException);
+            assertEquals(409, ((RestException) lost).response().statusCode());
+        } finally {
+            manager.dispose();
+        }
+
+        // A lease added once the manager is closed is refused rather than left unrenewed.
+        try {
+            manager.add(bu, UUID.randomUUID().toString());
+            fail("The manager should refuse new leases once closed.");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+
+import javax.xml.bind.DatatypeConverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ An HTTPS server on the loopback interface that answers every request with a 200 and the same body. Its certificate
+ names only "localhost", and clients trust it through the context builder from trustingClientContext. It only speaks
+ TLS 1.2, where a resumed session keeps the ID of the session it resumes, and records the session ID of each handshake.
+ */
+final class LoopbackHttpsServer implements Closeable {
+
+    private final NioEventLoopGroup group = new NioEventLoopGroup(1);
+
+    private final Channel channel;
+
+    private final AtomicInteger responsesSent = new AtomicInteger();
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final List<String> sessionIDs = Collections.synchronizedList(new ArrayList<String>());
+
+    LoopbackHttpsServer() throws IOException, InterruptedException {
+        this(new byte[0]);
+    }
+
+    LoopbackHttpsServer(final byte[] responseBody) throws IOException, InterruptedException {
+        final SslContext sslContext;
+        try (InputStream certificate = resource("/localhost.crt"); InputStream key = resource("/localhost.key")) {
+            sslContext = SslContextBuilder.forServer(certificate, key).protocols("TLSv1.2").build();
+        }
+        this.channel = new ServerBootstrap()
+                .group(this.group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        connections.incrementAndGet();
+                        final SslHandler sslHandler = sslContext.newHandler(ch.alloc());
+                        ch.pipeline().addLast(sslHandler, new HttpServerCodec(),
+                                new HttpObjectAggregator(1024 * 1024),
+                                new SimpleChannelInboundHandler<HttpRequest>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, HttpRequest request) {
+                                        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                                                HttpResponseStatus.OK, Unpooled.wrappedBuffer(responseBody));
+                                        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, responseBody.length);
+                                        ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
+                                            @Override
+                                            public void operationComplete(ChannelFuture future) {
+                                                if (future.isSuccess()) {
+                                                    responsesSent.incrementAndGet();
+                                                }
+                                            }
+                                        });
+                                    }
+
+                                    @Override
+                                    public void userEventTriggered(ChannelHandlerContext ctx, Object event) {
+                                        if (event == SslHandshakeCompletionEvent.SUCCESS) {
+                                            sessionIDs.add(DatatypeConverter.printHexBinary(
+                                                    sslHandler.engine().getSession().getId()));
+                                        }
+                                        ctx.fireUserEventTriggered(event);
+                                    }
+
+                                    @Override
+                                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                        // Failed handshakes are what some tests expect.
+                                        ctx.close();
+                                    }
+                                });
+                    }
+                })
+                .bind(new InetSocketAddress("localhost", 0))
+                .sync()
+                .channel();
+    }
+
+    static SslContextBuilder trustingClientContext() throws IOException {
+        try (InputStream certificate = resource("/localhost.crt")) {
+            return SslContextBuilder.forClient().trustManager(certificate);
+        }
+    }
+
+    private static InputStream resource(String name) {
+        return LoopbackHttpsServer.class.getResourceAsStream(name);
+    }
+
+    int port() {
+        return ((InetSocketAddress) this.channel.localAddress()).getPort();
+    }
+
+    /*
+     The responses whose bodies have been written to the socket, which happens only as fast as the client reads them.
+     */
+    int responsesSent() {
+        return this.responsesSent.get();
+    }
+
+    /*
+     The connections accepted so far.
+     */
+    int connections() {
+        return this.connections.get();
+    }
+
+    /*
+     The session ID of each completed handshake, in the order they completed.
+     */
+    List<String> sessionIDs() {
+        synchronized (this.sessionIDs) {
+            return new ArrayList<>(this.sessionIDs);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.channel.close().syncUninterruptibly();
+        this.group.shutdownGracefully().syncUninterruptibly();
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.emulator.EmulatorOptions;
+import com.microsoft.azure.storage.models.BlobGetHeaders;
+import com.microsoft.azure.storage.models.BlobPutHeaders;
+import com.microsoft.rest.v2.RestResponse;
+import com.microsoft.rest.v2.http.HttpHeaders;
+import com.microsoft.rest.v2.http.HttpMethod;
+import com.microsoft.rest.v2.http.HttpRequest;
+import com.microsoft.rest.v2.http.HttpResponse;
+import com.microsoft.rest.v2.util.FlowableUtil;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Function;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class NettyHttpClientTests extends EmulatorTestBase {
+
+    @Test
+    public void TestTransportOptionsAgainstEmulator() throws Exception {
+        try {
+            new TransportOptions(null, null, null, null, null, null, null, 1024, 512, null, null, null);
+            fail("The high watermark must not be below the low watermark.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        // More requests than connections, so that requests wait for and reuse pooled connections.
+        PipelineOptions po = new PipelineOptions();
+        po.transportOptions = new TransportOptions(2, 1, null, null, null, null, null, null, null, null, null, null);
+        try {
+            assertTransfersThroughPool(startEmulator(null, po).createContainerURL(CONTAINER_NAME));
+        } finally {
+            po.transportOptions.close().blockingAwait();
+        }
+    }
+
+    private static void assertTransfersThroughPool(final ContainerURL cu) {
+        cu.warmUp(4).blockingAwait();
+        cu.create(null, null).blockingGet();
+
+        final byte[] data = new byte[256 * 1024];
+        new Random(1).nextBytes(data);
+        List<byte[]> downloads = Flowable.range(0, 16)
+                .flatMapSingle(new Function<Integer, SingleSource<byte[]>>() {
+                    @Override
+                    public SingleSource<byte[]> apply(Integer i) {
+                        final BlockBlobURL bu = cu.createBlockBlobURL("javatestblob" + i);
+                        return bu.putBlob(Flowable.just(ByteBuffer.wrap(data)), data.length, null, null, null)
+                                .flatMap(new Function<RestResponse<BlobPutHeaders, Void>,
+                                        SingleSource<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>>>() {
+                                    @Override
+                                    public SingleSource<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>> apply(
+                                            RestResponse<BlobPutHeaders, Void> r) {
+                                        return bu.getBlob(null, null, false);
+                                    }
+                                })
+                                .flatMap(new Function<RestResponse<BlobGetHeaders, Flowable<ByteBuffer>>,
+                                        SingleSource<byte[]>>() {
+                                    @Override
+                                    public SingleSource<byte[]> apply(
+                                            RestResponse<BlobGetHeaders, Flowable<ByteBuffer>> r) {
+                                        return FlowableUtil.collectBytesInArray(r.body());
+                                    }
+                                });
+                    }
+                }, false, 8)
+                .toList()
+                .blockingGet();
+        assertEquals(16, downloads.size());
+        for (byte[] download : downloads) {
+            assertArrayEquals(data, download);
+        }
+    }
+
+    @Test
+    public void TestFileRegionBodyAgainstEmulator() throws Exception {
+        File temp = File.createTempFile("javatestfile", null);
+        temp.deleteOnExit();
+        byte[] data = new byte[300 * 1024];
+        new Random(1).nextBytes(data);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        }
+
+        // Throttling makes the retry policy send some of the bodies more than once.
+        EmulatorOptions eo = new EmulatorOptions();
+        eo.throttleProbability = 0.5;
+        PipelineOptions po = new PipelineOptions();
+        po.transportOptions = new TransportOptions(null, 1, null, null, null, null, null, null, null, null, null,
+                null);
+        po.requestRetryOptions = new RequestRetryOptions(RetryPolicyType.FIXED, 20, 0, 1L, 1L, null);
+        ContainerURL cu = startEmulatorWithContainer(eo, po);
+        try (FileChannel file = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+            BlockBlobURL bu = cu.createBlockBlobURL("javatestblob");
+            String id1 = DatatypeConverter.printBase64Binary("0001".getBytes());
+            String id2 = DatatypeConverter.printBase64Binary("0002".getBytes());
+            bu.putBlock(id1, new FileRegionBody(file, 0, 100 * 1024), 100 * 1024, null).blockingGet();
+            bu.putBlock(id2, new FileRegionBody(file, 100 * 1024, 200 * 1024), 200 * 1024, null).blockingGet();
+            bu.putBlockList(Arrays.asList(id1, id2), null, null, null).blockingGet();
+            assertArrayEquals(data, readBlob(bu));
+
+            // Any subscriber can read the region.
+            assertArrayEquals(Arrays.copyOfRange(data, 10, 70010),
+                    FlowableUtil.collectBytesInArray(new FileRegionBody(file, 10, 70000)).blockingGet());
+
+            BlockBlobURL bu2 = cu.createBlockBlobURL("javatestblob2");
+            Highlevel.uploadFileToBlockBlob(file, bu2, 64 * 1024, Highlevel.UploadToBlockBlobOptions.DEFAULT)
+                    .blockingGet();
+            assertArrayEquals(data, readBlob(bu2));
+        } finally {
+            po.transportOptions.close().blockingAwait();
+        }
+    }
+
+    private static NettyHttpClient loopbackClient() throws IOException {
+        return new NettyHttpClient(new TransportOptions(null, 1, null, null, null, null, null, null, null, null, null,
+                null), LoopbackHttpsServer.trustingClientContext());
+    }
+
+    private static Single<HttpResponse> get(NettyHttpClient client, String url) throws MalformedURLException {
+        return client.sendRequestAsync(new HttpRequest("test", HttpMethod.GET, new URL(url), new HttpHeaders(), null,
+                null));
+    }
+
+    @Test
+    public void TestTlsHostNameVerification() throws Exception {
+        try (LoopbackHttpsServer server = new LoopbackHttpsServer()) {
+            NettyHttpClient client = loopbackClient();
+            try {
+                assertEquals(200, get(client, "https://localhost:" + server.port() + "/").blockingGet().statusCode());
+
+                // The certificate chains to a trusted root but does not name the host.
+                try {
+                    get(client, "https://127.0.0.1:" + server.port() + "/").blockingGet();
+                    fail("The certificate should not be accepted for a host it does not name.");
+                } catch (RuntimeException e) {
+                    Throwable cause = e;
+                    while (cause != null && !(cause instanceof SSLHandshakeException)) {
+                        cause = cause.getCause();
+                    }
+                    assertNotNull(cause);
+                }
+            } finally {
+                client.close().blockingAwait();
+            }
+        }
+    }
+
+    @Test
+    public void TestResponseBodyIsReadOnDemand() throws Exception {
+        // Far more than the socket buffers hold, so that the server can only finish writing once the client reads.
+        final byte[] data = new byte[64 * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        try (LoopbackHttpsServer server = new LoopbackHttpsServer(data)) {
+            NettyHttpClient client = loopbackClient();
+            try {
+                HttpResponse response = get(client, "https://localhost:" + server.port() + "/").blockingGet();
+
+                final AtomicReference<Subscription> subscription = new AtomicReference<>();
+                final ByteArrayOutputStream received = new ByteArrayOutputStream();
+                final CountDownLatch completed = new CountDownLatch(1);
+                response.body().subscribe(new FlowableSubscriber<ByteBuffer>() {
+                    @Override
+                    public void onSubscribe(Subscription s) {
+                        subscription.set(s);
+                        s.request(1);
+                    }
+
+                    @Override
+                    public void onNext(ByteBuffer buffer) {
+                        synchronized (received) {
+                            received.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                                    buffer.remaining());
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        completed.countDown();
+                    }
+                });
+
+                // With one buffer requested, the client stops reading and the server cannot send the rest.
+                Thread.sleep(1000);
+                assertEquals(0, server.responsesSent());
+                synchronized (received) {
+                    assertTrue(received.size() > 0 && received.size() < data.length / 4);
+                }
+
+                // The buffers handed out stay intact while later ones are read.
+                subscription.get().request(Long.MAX_VALUE);
+                assertTrue(completed.await(30, TimeUnit.SECONDS));
+                assertEquals(1, server.responsesSent());
+                assertArrayEquals(data, received.toByteArray());
+            } finally {
+                client.close().blockingAwait();
+            }
+        }
+    }
+
+    private static Set<Thread> transportThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("azure-storage-http")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    @Test
+    public void TestCloseStopsTheClient() throws Exception {
+        // Only pipelines built with transport options use a Netty client.
+        assertNull(NettyHttpClient.forPipeline(
+                StorageURL.createPipeline(new AnonymousCredentials(), new PipelineOptions())));
+        PipelineOptions po = new PipelineOptions();
+        po.transportOptions = new TransportOptions(null, 1, null, null, null, null, null, null, null, null, null,
+                null);
+        NettyHttpClient pooled = NettyHttpClient.forPipeline(
+                StorageURL.createPipeline(new AnonymousCredentials(), po));
+        assertSame(pooled, NettyHttpClient.forOptions(po.transportOptions));
+
+        // Closing the options closes their client, and later pipelines get a new one.
+        po.transportOptions.close().blockingAwait();
+        assertNotSame(pooled, NettyHttpClient.forOptions(po.transportOptions));
+        po.transportOptions.close().blockingAwait();
+
+        try (LoopbackHttpsServer server = new LoopbackHttpsServer()) {
+            Set<Thread> before = transportThreads();
+            NettyHttpClient client = loopbackClient();
+            assertEquals(200, get(client, "https://localhost:" + server.port() + "/").blockingGet().statusCode());
+            Set<Thread> started = transportThreads();
+            started.removeAll(before);
+            assertFalse(started.isEmpty());
+
+            // The event loop threads stop, and requests sent afterwards fail.
+            client.close().blockingAwait();
+            for (Thread thread : started) {
+                thread.join(5000);
+                assertFalse(thread.isAlive());
+            }
+            try {
+                get(client, "https://localhost:" + server.port() + "/").blockingGet();
+                fail("The client should be closed.");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void TestWarmUpResumesTlsSessions() throws Exception {
+        try (LoopbackHttpsServer server = new LoopbackHttpsServer()) {
+            NettyHttpClient client = loopbackClient();
+            try {
+                URL url = new URL("https://localhost:" + server.port() + "/");
+                client.warmUp(url, 3).blockingAwait();
+
+                // The pool holds the connections, so requests do not open more.
+                assertEquals(3, server.connections());
+                for (int i = 0; i < 5; i++) {
+                    assertEquals(200, get(client, url.toString()).blockingGet().statusCode());
+                }
+                assertEquals(3, server.connections());
+
+                // The first connection makes a full handshake, and the others resume its session.
+                List<String> sessionIDs = server.sessionIDs();
+                assertEquals(3, sessionIDs.size());
+                for (String sessionID : sessionIDs) {
+                    assertEquals(sessionIDs.get(0), sessionID);
+                }
+
+                // A warm-up counts the connections already open.
+                client.warmUp(url, 2).blockingAwait();
+                assertEquals(3, server.connections());
+            } finally {
+                client.close().blockingAwait();
+            }
+        }
+    }
+
+    private static final class CountingResolverGroup extends NettyHttpClient.CachingResolverGroup {
+
+        private final AtomicInteger lookUps = new AtomicInteger();
+
+        CountingResolverGroup(long ttlInMs) {
+            super(ttlInMs);
+        }
+
+        @Override
+        InetAddress[] resolve(String host) throws UnknownHostException {
+            this.lookUps.incrementAndGet();
+            return super.resolve(host);
+        }
+    }
+
+    @Test
+    public void TestDnsCache() throws Exception {
+        // Within the TTL the first resolution is reused, and after it the name is resolved again.
+        CountingResolverGroup resolver = new CountingResolverGroup(500);
+        InetAddress[] addresses = resolver.lookUp("localhost");
+        assertSame(addresses, resolver.lookUp("localhost"));
+        assertEquals(1, resolver.lookUps.get());
+        Thread.sleep(600);
+        assertNotSame(addresses, resolver.lookUp("localhost"));
+        assertEquals(2, resolver.lookUps.get());
+
+        // A TTL of 0 turns the cache off.
+        resolver = new CountingResolverGroup(0);
+        resolver.lookUp("localhost");
+        resolver.lookUp("localhost");
+        assertEquals(2, resolver.lookUps.get());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.PageList;
+import com.microsoft.azure.storage.models.PageRange;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageRangeSetTests {
+
+    @Test
+    public void TestPageRangeSetOperations() {
+        PageList pageList = new PageList().withPageRange(Arrays.asList(
+                new PageRange().withStart(4096).withEnd(8191),
+                new PageRange().withStart(0).withEnd(511),
+                new PageRange().withStart(512).withEnd(1023),
+                new PageRange().withStart(6144).withEnd(10239)));
+        PageRangeSet pages = PageRangeSet.fromPageRanges(pageList);
+        assertEquals("[0-1023, 4096-10239]", pages.toString());
+        assertEquals(1024 + 6144, pages.totalBytes());
+
+        PageRangeSet other = PageRangeSet.of(512, 4096);
+        assertEquals("[0-10239]", pages.union(other).toString());
+        assertEquals("[512-1023, 4096-4607]", pages.intersection(other).toString());
+        assertEquals("[0-511, 4608-10239]", pages.difference(other).toString());
+        assertEquals(PageRangeSet.EMPTY, pages.difference(pages));
+
+        assertEquals(2, pages.coalesce(3071).size());
+        assertEquals("[0-10239]", pages.coalesce(3072).toString());
+
+        List<BlobRange> reads = pages.toBlobRanges(4096);
+        assertEquals(3, reads.size());
+        assertEquals(8192, reads.get(2).getOffset());
+        assertEquals(2048, reads.get(2).getCount());
+
+        List<PageRange> writes = pages.toPageRanges(4096);
+        assertEquals(3, writes.size());
+        assertEquals(8192, writes.get(2).start());
+        assertEquals(10239, writes.get(2).end());
+
+        // Unaligned ranges can be read, but not written as pages.
+        PageRangeSet unaligned = PageRangeSet.of(100, 1000);
+        assertEquals(100, unaligned.toBlobRanges(4096).get(0).getOffset());
+        assertEquals(1000, unaligned.toBlobRanges(4096).get(0).getCount());
+        try {
+            unaligned.toPageRanges(4096);
+            fail("Unaligned ranges should not be converted to page ranges.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            pages.toPageRanges(1000);
+            fail("The maximum count must be a multiple of the page size.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
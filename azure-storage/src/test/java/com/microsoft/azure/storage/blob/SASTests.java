@@ -0,0 +1,103 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.security.InvalidKeyException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SASTests {
+
+    // Any valid Base64 key will do; the tokens are only compared with each other.
+    private static SharedKeyCredentials credentials() throws InvalidKeyException {
+        return new SharedKeyCredentials("account", DatatypeConverter.printBase64Binary("javatestkey".getBytes()));
+    }
+
+    private static ServiceSASSignatureValues sasValues(String blobName, long startTime, long expiryTime) {
+        ServiceSASSignatureValues values = new ServiceSASSignatureValues();
+        values.protocol = SASProtocol.HTTPS_ONLY;
+        values.startTime = startTime == 0 ? null : new Date(startTime);
+        values.expiryTime = new Date(expiryTime);
+        values.permissions = "r";
+        values.ipRange = IPRange.DEFAULT;
+        values.containerName = "javatestcontainer";
+        values.blobName = blobName;
+        return values;
+    }
+
+    @Test
+    public void TestBlobSASGeneratorMatchesSignatureValues() throws InvalidKeyException {
+        SharedKeyCredentials creds = credentials();
+        ServiceSASSignatureValues values = sasValues(null, 0, 1500000000000L);
+
+        BlobSASGenerator generator = new BlobSASGenerator(values, creds);
+        for (String blobName : new String[]{"javatestblob", "dir/javatestblob \u00e9", "javatestblob+="}) {
+            values.blobName = blobName;
+            String signature = values.GenerateSASQueryParameters(creds).encode();
+            signature = signature.substring(signature.indexOf("&sig=") + "&sig=".length());
+
+            String query = generator.generateSASQueryString("javatestcontainer", blobName);
+            assertTrue(query.startsWith("?sv="));
+            assertTrue(query.contains("&sr=b&sp=r&"));
+            assertEquals(signature, query.substring(query.indexOf("&sig=") + "&sig=".length()));
+        }
+    }
+
+    @Test
+    public void TestSASCache() throws InvalidKeyException {
+        SASCache cache = new SASCache(credentials(), 2, 0.5);
+        long now = System.currentTimeMillis();
+        long hour = TimeUnit.HOURS.toMillis(1);
+
+        // A second request for the same access is a hit.
+        SASQueryParameters token = cache.getSASQueryParameters(sasValues("javatestblob", 0, now + hour));
+        assertSame(token, cache.getSASQueryParameters(sasValues("javatestblob", 0, now + hour + 1000)));
+
+        // A shorter expiry than the cached token's is not served from the cache, and replaces it.
+        SASQueryParameters shorter = cache.getSASQueryParameters(sasValues("javatestblob", 0, now + 60000));
+        assertNotSame(token, shorter);
+        assertEquals(new Date(now + 60000), shorter.getExpiryTime());
+        // Nor is a longer expiry when too little of the requested lifetime would remain.
+        SASQueryParameters longer = cache.getSASQueryParameters(sasValues("javatestblob", 0, now + 7 * 24 * hour));
+        assertNotSame(shorter, longer);
+        assertEquals(new Date(now + 7 * 24 * hour), longer.getExpiryTime());
+
+        // A token which is not valid yet is only returned for requests starting no earlier than it does.
+        SASQueryParameters future =
+                cache.getSASQueryParameters(sasValues("javatestfuture", now + hour, now + 3 * hour));
+        assertSame(future, cache.getSASQueryParameters(sasValues("javatestfuture", now + hour, now + 3 * hour)));
+        SASQueryParameters immediate = cache.getSASQueryParameters(sasValues("javatestfuture", 0, now + 3 * hour));
+        assertNotSame(future, immediate);
+        assertNull(immediate.getStartTime());
+
+        // Different access gets a different token.
+        SASQueryParameters other = cache.getSASQueryParameters(sasValues("javatestother", 0, now + hour));
+        ServiceSASSignatureValues write = sasValues("javatestother", 0, now + hour);
+        write.permissions = "w";
+        assertNotSame(other, cache.getSASQueryParameters(write));
+        assertNotEquals(other.getSignature(), cache.getSASQueryParameters(write).getSignature());
+
+        // The oldest tokens are evicted beyond maxEntries.
+        assertTrue(cache.size() <= 2);
+        assertNotSame(longer, cache.getSASQueryParameters(sasValues("javatestblob", 0, now + 7 * 24 * hour)));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
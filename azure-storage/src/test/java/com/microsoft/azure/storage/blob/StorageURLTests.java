@@ -0,0 +1,125 @@
+/*
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.models.Blob;
+import com.microsoft.azure.storage.models.Container;
+import com.microsoft.rest.v2.RestException;
+import com.microsoft.rest.v2.http.HttpPipeline;
+import com.microsoft.rest.v2.util.FlowableUtil;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StorageURLTests extends EmulatorTestBase {
+
+    @Test
+    public void TestCreateURLsFromParents() throws MalformedURLException {
+        HttpPipeline pipeline = StorageURL.createPipeline(new AnonymousCredentials(), new PipelineOptions());
+        ServiceURL su = new ServiceURL(new URL("https://account.blob.core.windows.net?sv=2017-04-17&sig=abc"),
+                pipeline);
+        ContainerURL cu = su.createContainerURL("container");
+        assertEquals("https://account.blob.core.windows.net/container?sv=2017-04-17&sig=abc", cu.toString());
+        BlobURL bu = cu.createBlobURL("dir/blob");
+        assertEquals("https://account.blob.core.windows.net/container/dir/blob?sv=2017-04-17&sig=abc",
+                bu.toString());
+        assertEquals(bu.toString(), bu.toPageBlobURL().toString());
+
+        ServiceURL emulator = new ServiceURL(new URL("http://127.0.0.1:10000/devstoreaccount1/"), pipeline);
+        assertEquals("http://127.0.0.1:10000/devstoreaccount1/container",
+                emulator.createContainerURL("container").toString());
+    }
+
+    @Test
+    public void TestPutBlobAgainstEmulator() throws Exception {
+        ContainerURL cu = startEmulatorWithContainer(null, null);
+
+        BlockBlobURL bu = cu.createBlockBlobURL("javatestblob");
+        bu.putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1, 2, 3})), 3, null, null, null).blockingGet();
+        Flowable<ByteBuffer> data = bu.getBlob(new BlobRange(1L, 2L), null, false).blockingGet().body();
+        assertArrayEquals(new byte[]{2, 3}, FlowableUtil.collectBytesInArray(data).blockingGet());
+
+        try {
+            cu.create(null, null).blockingGet();
+            fail("The container should already exist.");
+        } catch (RestException e) {
+            assertEquals(409, e.response().statusCode());
+        }
+    }
+
+    @Test
+    public void TestListAllAgainstEmulator() throws Exception {
+        ServiceURL su = startEmulator(null, null);
+        List<String> expectedContainers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expectedContainers.add("javatestlist" + i);
+            su.createContainerURL("javatestlist" + i).create(null, null).blockingGet();
+        }
+        su.createContainerURL("othercontainer").create(null, null).blockingGet();
+
+        // Pages of two containers, so the last page is partly full.
+        List<String> containers = new ArrayList<>();
+        for (Container container : su.listContainersAll(new ListContainersOptions(null, "javatestlist", 2))
+                .blockingIterable()) {
+            containers.add(container.name());
+        }
+        assertEquals(expectedContainers, containers);
+
+        ContainerURL cu = su.createContainerURL("javatestlist0");
+        List<String> expectedBlobs = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            expectedBlobs.add(String.format("blob%02d", i));
+        }
+        expectedBlobs.add("dir/a");
+        expectedBlobs.add("dir/b");
+        for (String name : expectedBlobs) {
+            cu.createBlockBlobURL(name).putBlob(Flowable.just(ByteBuffer.wrap(new byte[]{1})), 1, null, null,
+                    null).blockingGet();
+        }
+
+        List<String> blobs = new ArrayList<>();
+        for (Blob blob : cu.listBlobsAll(new ListBlobsOptions(null, null, null, 4)).blockingIterable()) {
+            blobs.add(blob.name());
+        }
+        assertEquals(expectedBlobs, blobs);
+
+        // With a delimiter, the blob prefix is not emitted, and the blobs under it are not listed.
+        blobs.clear();
+        for (Blob blob : cu.listBlobsAll(new ListBlobsOptions(null, null, "/", 4)).blockingIterable()) {
+            blobs.add(blob.name());
+        }
+        assertEquals(expectedBlobs.subList(0, 23), blobs);
+
+        // Taking only the first few blobs does not fail the listing.
+        assertEquals(expectedBlobs.subList(0, 5), cu.listBlobsAll(new ListBlobsOptions(null, null, null, 4))
+                .take(5)
+                .map(new Function<Blob, String>() {
+                    @Override
+                    public String apply(Blob blob) {
+                        return blob.name();
+                    }
+                })
+                .toList()
+                .blockingGet());
+    }
+}